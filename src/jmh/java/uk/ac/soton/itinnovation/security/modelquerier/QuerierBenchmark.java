@@ -0,0 +1,93 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb.TDBFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.ac.soton.itinnovation.security.modelquerier.util.SyntheticModelGenerator;
+import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
+
+/**
+ * Loading of the system model entities used by the risk calculation, from a fresh querier each time so
+ * nothing comes from the querier's cache. Uses the network test model scaled up by making copies of its
+ * assets, validated once per trial.
+ *
+ * Run with: ./gradlew jmh -Pjmh.include=QuerierBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuerierBenchmark {
+
+    @Param({"1", "10"})
+    private int copies;
+
+    private TestHelper tester;
+    private Dataset dataset;
+    private JenaQuerierDB querier;
+
+    @Setup(Level.Trial)
+    public void setUpStore() {
+        tester = new TestHelper("build/jmh-tdb");
+        tester.addDomain(0, "modelvalidator/domain-network.rdf.gz",
+                "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/domain-network");
+        tester.addSystem(0, "modelvalidator/system-network.nq.gz",
+                "http://it-innovation.soton.ac.uk/system/5ad09178567d94846a9aeaec");
+        tester.setUp();
+        tester.switchModels(0, 0);
+        dataset = TDBFactory.createDataset("build/jmh-tdb");
+        SyntheticModelGenerator.replicate(dataset, tester.getModel(), copies);
+        SyntheticModelGenerator.validate(dataset, tester.getModel());
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpQuerier() {
+        querier = new JenaQuerierDB(dataset, tester.getModel(), true);
+        querier.init();
+    }
+
+    @Benchmark
+    public void getEntities(Blackhole blackhole) {
+        blackhole.consume(querier.getThreats("system-inf"));
+        blackhole.consume(querier.getMisbehaviourSets("system", "system-inf"));
+        blackhole.consume(querier.getTrustworthinessAttributeSets("system", "system-inf"));
+        blackhole.consume(querier.getControlSets("system", "system-inf"));
+        blackhole.consume(querier.getControlStrategies("system-inf"));
+    }
+
+}
@@ -0,0 +1,142 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier.util;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
+import uk.ac.soton.itinnovation.security.modelvalidator.Progress;
+import uk.ac.soton.itinnovation.security.modelvalidator.Validator;
+
+/**
+ * Creates larger system models for benchmarks by copying the asserted content of a test model.
+ *
+ * Each copy gets its own assets, relationships and asserted TWAS/MS levels: the asset IDs and the local names
+ * of asset URIs are given a suffix, as are the IDs embedded in other URIs (e.g. "TWAS-UserTW-9127bc56"). The
+ * copies are not connected to each other, so the size of the validated model grows in proportion to the
+ * number of copies.
+ */
+public class SyntheticModelGenerator {
+
+	private static final Logger logger = LoggerFactory.getLogger(SyntheticModelGenerator.class);
+
+	private static final String CORE = "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/core#";
+	private static final String SYSTEM = "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/system#";
+
+	private SyntheticModelGenerator() {
+	}
+
+	/**
+	 * Replace the asserted graph of the current system model with copies of its content, and clear the
+	 * inferred graph, so the model must be validated again.
+	 *
+	 * @param dataset the dataset containing the system model
+	 * @param model the model stack, with the current system model graphs
+	 * @param copies the number of copies (1 leaves the asserted graph unchanged)
+	 */
+	public static void replicate(Dataset dataset, ModelStack model, int copies) {
+		dataset.begin(ReadWrite.WRITE);
+		try {
+			Model asserted = dataset.getNamedModel(model.getGraph("system"));
+			List<Statement> original = asserted.listStatements().toList();
+
+			// Find the asset IDs and local names, which must be changed in each copy
+			Property hasID = asserted.createProperty(CORE + "hasID");
+			Set<String> tokens = new HashSet<>();
+			for (Statement statement : original) {
+				if (statement.getPredicate().equals(hasID)) {
+					tokens.add(statement.getString());
+					tokens.add(statement.getSubject().getURI().substring(SYSTEM.length()));
+				}
+			}
+
+			for (int copy = 1; copy < copies; copy++) {
+				String suffix = "c" + copy;
+				for (Statement statement : original) {
+					if (!isSystemResource(statement.getSubject())) {
+						// Model-level triples are only needed once
+						continue;
+					}
+					Resource subject = rename(asserted, statement.getSubject(), tokens, suffix);
+					RDFNode object = statement.getObject();
+					if (object.isURIResource()) {
+						object = rename(asserted, object.asResource(), tokens, suffix);
+					} else if (statement.getPredicate().equals(hasID)) {
+						object = asserted.createLiteral(statement.getString() + suffix);
+					}
+					asserted.add(subject, statement.getPredicate(), object);
+				}
+			}
+
+			dataset.getNamedModel(model.getGraph("system-inf")).removeAll();
+			dataset.commit();
+
+			logger.info("Created {} copies of system model {}, with {} asserted triples", copies,
+					model.getGraph("system"), original.size() * copies);
+		} finally {
+			dataset.end();
+		}
+	}
+
+	/**
+	 * Validate the current system model and save the inferred graph.
+	 */
+	public static void validate(Dataset dataset, ModelStack model) {
+		IQuerierDB querier = new JenaQuerierDB(dataset, model, true);
+		querier.initForValidation();
+		Validator validator = new Validator(querier);
+		validator.validate(new Progress(model.getGraph("system")));
+	}
+
+	private static boolean isSystemResource(Resource resource) {
+		return resource.isURIResource() && resource.getURI().startsWith(SYSTEM);
+	}
+
+	private static Resource rename(Model model, Resource resource, Set<String> tokens, String suffix) {
+		if (!isSystemResource(resource)) {
+			return resource;
+		}
+		String[] parts = resource.getURI().substring(SYSTEM.length()).split("-");
+		StringBuilder name = new StringBuilder(SYSTEM);
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0) {
+				name.append('-');
+			}
+			name.append(parts[i]);
+			if (tokens.contains(parts[i])) {
+				name.append(suffix);
+			}
+		}
+		return model.createResource(name.toString());
+	}
+
+}
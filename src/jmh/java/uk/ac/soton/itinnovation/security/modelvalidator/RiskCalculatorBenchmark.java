@@ -0,0 +1,103 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelvalidator;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb.TDBFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.itinnovation.security.model.system.RiskCalculationMode;
+import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.util.SyntheticModelGenerator;
+import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
+
+/**
+ * Compares a risk calculation using the compiled threat graph with one using the map-based propagation, in
+ * each risk calculation mode. Uses the validated SHIELD test model from the unit test resources, which can be
+ * scaled up by making copies of its assets (the copies are validated once per trial).
+ *
+ * Run with: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RiskCalculatorBenchmark {
+
+    @Param({"true", "false"})
+    private boolean compiledGraph;
+
+    @Param({"FUTURE", "CURRENT"})
+    private RiskCalculationMode mode;
+
+    @Param({"1"})
+    private int copies;
+
+    private TestHelper tester;
+    private Dataset dataset;
+    private IQuerierDB querier;
+
+    @Setup(Level.Trial)
+    public void setUpStore() {
+        tester = new TestHelper("build/jmh-tdb");
+        tester.addDomain(0, "modelvalidator/domain-shield-with-frequency.rdf.gz",
+                "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/domain-shield-with-frequency");
+        tester.addSystem(0, "modelvalidator/system-shield-validated-with-frequencies.nq.gz",
+                "http://it-innovation.soton.ac.uk/system/5b15202b567d9478125b3dda",
+                "http://it-innovation.soton.ac.uk/system/5b15202b567d9478125b3ddb");
+        tester.setUp();
+        tester.switchModels(0, 0);
+        dataset = TDBFactory.createDataset("build/jmh-tdb");
+        if (copies > 1) {
+            SyntheticModelGenerator.replicate(dataset, tester.getModel(), copies);
+            SyntheticModelGenerator.validate(dataset, tester.getModel());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpQuerier() {
+        querier = new JenaQuerierDB(dataset, tester.getModel(), true);
+        querier.initForRiskCalculation();
+    }
+
+    @Benchmark
+    public RiskCalculator calculateRiskLevels() {
+        RiskCalculator rc = new RiskCalculator(querier);
+        rc.setCompiledGraphEnabled(compiledGraph);
+        rc.calculateRiskLevels(mode, false, new Progress(tester.getGraph("system")));
+        return rc;
+    }
+
+}
@@ -0,0 +1,96 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelvalidator;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb.TDBFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.util.SyntheticModelGenerator;
+import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
+
+/**
+ * Validation of the unvalidated network test model, scaled up by making copies of its assets. The inferred
+ * graph is cleared before each validation, so each one starts from the asserted model. Threat patterns are
+ * matched on the given number of threads.
+ *
+ * Run with: ./gradlew jmh -Pjmh.include=ValidatorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    @Param({"1", "10"})
+    private int copies;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private TestHelper tester;
+    private Dataset dataset;
+    private IQuerierDB querier;
+
+    @Setup(Level.Trial)
+    public void setUpStore() {
+        tester = new TestHelper("build/jmh-tdb");
+        tester.addDomain(0, "modelvalidator/domain-network.rdf.gz",
+                "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/domain-network");
+        tester.addSystem(0, "modelvalidator/system-network.nq.gz",
+                "http://it-innovation.soton.ac.uk/system/5ad09178567d94846a9aeaec");
+        tester.setUp();
+        tester.switchModels(0, 0);
+        dataset = TDBFactory.createDataset("build/jmh-tdb");
+        SyntheticModelGenerator.replicate(dataset, tester.getModel(), copies);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpQuerier() {
+        tester.getStore().clearGraph(tester.getGraph("system-inf"));
+        querier = new JenaQuerierDB(dataset, tester.getModel(), true);
+        querier.initForValidation();
+    }
+
+    @Benchmark
+    public Validator validate() {
+        Validator validator = new Validator(querier);
+        validator.setMatchingParallelism(parallelism);
+        validator.validate(new Progress(tester.getGraph("system")));
+        return validator;
+    }
+
+}
@@ -0,0 +1,103 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelvalidator.attackpath;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb.TDBFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.itinnovation.security.model.system.RiskCalculationMode;
+import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.LevelDB;
+import uk.ac.soton.itinnovation.security.modelquerier.util.SyntheticModelGenerator;
+import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
+import uk.ac.soton.itinnovation.security.modelvalidator.Progress;
+import uk.ac.soton.itinnovation.security.modelvalidator.RiskCalculator;
+
+/**
+ * Attack tree construction for all misbehaviour sets above the lowest risk level, in the network test model
+ * scaled up by making copies of its assets. The model is validated and its risks are calculated once per
+ * trial, and the attack path dataset is loaded outside the measured method.
+ *
+ * Run with: ./gradlew jmh -Pjmh.include=AttackTreeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AttackTreeBenchmark {
+
+    @Param({"1", "10"})
+    private int copies;
+
+    @Param({"true", "false"})
+    private boolean shortestPath;
+
+    private AttackPathDataset apd;
+    private List<String> targetUris;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TestHelper tester = new TestHelper("build/jmh-tdb");
+        tester.addDomain(0, "modelvalidator/domain-network.rdf.gz",
+                "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/domain-network");
+        tester.addSystem(0, "modelvalidator/system-network.nq.gz",
+                "http://it-innovation.soton.ac.uk/system/5ad09178567d94846a9aeaec");
+        tester.setUp();
+        tester.switchModels(0, 0);
+        Dataset dataset = TDBFactory.createDataset("build/jmh-tdb");
+        SyntheticModelGenerator.replicate(dataset, tester.getModel(), copies);
+        SyntheticModelGenerator.validate(dataset, tester.getModel());
+
+        IQuerierDB querier = new JenaQuerierDB(dataset, tester.getModel(), true);
+        querier.initForRiskCalculation();
+        RiskCalculator rc = new RiskCalculator(querier);
+        rc.calculateRiskLevels(RiskCalculationMode.FUTURE, true, new Progress(tester.getGraph("system")));
+
+        apd = new AttackPathDataset(querier);
+        List<LevelDB> riskLevels = new ArrayList<>(querier.getRiskLevels().values());
+        riskLevels.sort(Comparator.comparingInt(LevelDB::getLevelValue));
+        targetUris = apd.filterMisbehavioursByRiskLevel(riskLevels.get(0).getUri());
+    }
+
+    @Benchmark
+    public AttackTree createAttackTree() {
+        return new AttackTree(targetUris, true, shortestPath, apd);
+    }
+
+}
@@ -0,0 +1,158 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.semanticstore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.apache.jena.tdb.TDBFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.itinnovation.security.modelquerier.util.SyntheticModelGenerator;
+import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
+import uk.ac.soton.itinnovation.security.semanticstore.IStoreWrapper.Format;
+
+/**
+ * Gzipped N-Quads export of a validated system model, as done by the model export REST method. Compares the
+ * previous export, which built the whole export in memory (as a String and then as gzipped bytes), with the
+ * streamed export, which compresses each quad as it is read from the store. Uses the network test model scaled
+ * up by making copies of its assets.
+ *
+ * Besides the time, the peak heap usage during each export is reported as "peakHeapMB". This is the sum of the
+ * peak usage of each heap memory pool, so it overstates the true peak, but the difference between the two
+ * exports is what matters. Run with "-prof gc" as well to compare the allocation rates.
+ *
+ * Run with: ./gradlew jmh -Pjmh.include=ExportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ExportBenchmark {
+
+    @Param({"1", "10"})
+    private int copies;
+
+    private AStoreWrapper store;
+    private String[] graphs;
+
+    @Setup(Level.Trial)
+    public void setUpStore() {
+        TestHelper tester = new TestHelper("build/jmh-tdb");
+        tester.addDomain(0, "modelvalidator/domain-network.rdf.gz",
+                "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/domain-network");
+        tester.addSystem(0, "modelvalidator/system-network.nq.gz",
+                "http://it-innovation.soton.ac.uk/system/5ad09178567d94846a9aeaec");
+        tester.setUp();
+        tester.switchModels(0, 0);
+        SyntheticModelGenerator.replicate(TDBFactory.createDataset("build/jmh-tdb"), tester.getModel(), copies);
+        SyntheticModelGenerator.validate(TDBFactory.createDataset("build/jmh-tdb"), tester.getModel());
+        store = tester.getStore();
+        graphs = new String[] {tester.getGraph("system"), tester.getGraph("system-inf")};
+    }
+
+    @Benchmark
+    public byte[] buffered(HeapUsage heap) throws IOException {
+        String quads = store.export(Format.NQ, null, graphs);
+        ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+        try (GZIPOutputStream zippedOutput = new GZIPOutputStream(byteOutput)) {
+            zippedOutput.write(quads.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] export = byteOutput.toByteArray();
+        heap.record();
+        return export;
+    }
+
+    @Benchmark
+    public long streamed(HeapUsage heap) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (GZIPOutputStream zippedOutput = new GZIPOutputStream(out, 64 * 1024)) {
+            store.exportQuads(zippedOutput, null, graphs);
+        }
+        heap.record();
+        return out.count;
+    }
+
+    /**
+     * The peak heap usage in each iteration, in MB.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapUsage {
+        public long peakHeapMB;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            peakHeapMB = 0;
+        }
+
+        void record() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            peakHeapMB = peak / (1024 * 1024);
+        }
+    }
+
+    /**
+     * Stands in for the HTTP response, counting the bytes written to it.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+}
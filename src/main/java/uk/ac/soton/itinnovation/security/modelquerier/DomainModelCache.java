@@ -0,0 +1,160 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier;
+
+import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.EntityDB;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of domain model content, shared by all JenaQuerierDB instances.
+ *
+ * A domain model is read-only once it has been uploaded, so there is no need for each querier to read the
+ * same domain model entities and type structure from the triple store. Instead, the first querier to load
+ * all entities of a type from a domain graph saves copies in a snapshot for that graph, and later queriers
+ * copy them into their own POJOs without going back to the triple store.
+ *
+ * Each domain graph has a version number, which must be incremented by calling invalidate() whenever the
+ * domain model is uploaded or deleted. Snapshots made for an earlier version are then discarded. A querier
+ * keeps the snapshot it first obtained, so it sees a consistent domain model for its lifetime.
+ *
+ * The content of a snapshot is never changed once added, and must not be modified by the caller.
+ */
+public class DomainModelCache {
+    private static final Logger logger = LoggerFactory.getLogger(DomainModelCache.class);
+
+    private static final Map<String, Long> versions = new ConcurrentHashMap<>();               // Version number of each domain graph, indexed by graph URI
+    private static final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();          // Current snapshot of each domain graph, indexed by graph URI
+
+    private DomainModelCache() {
+    }
+
+    /**
+     * Get the snapshot for the current version of a domain graph, creating an empty one if necessary.
+     *
+     * @param dataset the dataset containing the domain graph
+     * @param domainGraph the domain graph URI
+     * @return the snapshot
+     */
+    public static Snapshot getSnapshot(Dataset dataset, String domainGraph) {
+        long version = getVersion(domainGraph);
+        Snapshot snapshot = snapshots.get(domainGraph);
+        if (snapshot != null && snapshot.dataset == dataset && snapshot.version == version) {
+            return snapshot;
+        }
+
+        // Only publish the new snapshot if the domain graph has not been invalidated in the meantime
+        Snapshot newSnapshot = new Snapshot(dataset, domainGraph, version);
+        snapshots.compute(domainGraph, (k, old) -> getVersion(k) == version ? newSnapshot : old);
+        return newSnapshot;
+    }
+
+    /**
+     * Get the current version number of a domain graph.
+     */
+    public static long getVersion(String domainGraph) {
+        return versions.getOrDefault(domainGraph, 0L);
+    }
+
+    /**
+     * Discard any snapshot of a domain graph. Must be called when a domain model is uploaded or deleted.
+     *
+     * @param domainGraph the domain graph URI
+     */
+    public static void invalidate(String domainGraph) {
+        long version = versions.merge(domainGraph, 1L, Long::sum);
+        snapshots.remove(domainGraph);
+        logger.info("Invalidated cached domain model {}, now at version {}", domainGraph, version);
+    }
+
+    /**
+     * Discard all snapshots, e.g. when a store is cleared and reloaded.
+     */
+    public static void clear() {
+        for (String domainGraph : new ArrayList<>(snapshots.keySet())) {
+            invalidate(domainGraph);
+        }
+    }
+
+    /**
+     * Content of one version of a domain graph. Entities are held as POJOs that are never given to consumers.
+     * Each querier copies them into its own POJOs, so consumers cannot change the shared content.
+     */
+    public static class Snapshot {
+        private final Dataset dataset;
+        private final String domainGraph;
+        private final long version;
+
+        private final Map<String, Map<String, EntityDB>> entitiesByType = new ConcurrentHashMap<>();     // Map of entities, indexed by entity cache type name and then by URI
+        private volatile TypeHierarchy typeHierarchy = null;                                                // Sub-types and super-types of each type
+
+        private Snapshot(Dataset dataset, String domainGraph, long version) {
+            this.dataset = dataset;
+            this.domainGraph = domainGraph;
+            this.version = version;
+        }
+
+        public String getDomainGraph() {
+            return domainGraph;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Get all entities of a type, or null if they have not yet been added.
+         */
+        public Map<String, EntityDB> getEntities(String entityCacheType) {
+            return entitiesByType.get(entityCacheType);
+        }
+
+        /**
+         * Add all entities of a type. If they were already added by another querier, the first set is kept.
+         */
+        public void putEntities(String entityCacheType, Map<String, EntityDB> entities) {
+            entitiesByType.putIfAbsent(entityCacheType, Collections.unmodifiableMap(new HashMap<>(entities)));
+        }
+
+        public TypeHierarchy getTypeHierarchy() {
+            return typeHierarchy;
+        }
+
+        /**
+         * Add the type structure of the domain model. If it was already added by another querier, the first
+         * one is kept. Returns the one that was kept.
+         */
+        public synchronized TypeHierarchy putTypeHierarchy(TypeHierarchy typeHierarchy) {
+            if (this.typeHierarchy == null) {
+                this.typeHierarchy = typeHierarchy;
+            }
+            return this.typeHierarchy;
+        }
+    }
+
+}
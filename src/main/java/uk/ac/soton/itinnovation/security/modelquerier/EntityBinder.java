@@ -0,0 +1,381 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier;
+
+import com.google.gson.annotations.SerializedName;
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.EntityDB;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds triples from the triple store directly onto EntityDB POJOs.
+ *
+ * This replaces the old route of converting each resource into a Gson JsonObject and then deserialising
+ * the JsonObject into a POJO. The mapping is the same: a predicate is bound to the field whose name (or
+ * @SerializedName value) matches the short name of the predicate, string fields take the first of several
+ * resource values, collection fields take all of them, and literals other than xsd:string, xsd:integer and
+ * xsd:boolean are ignored. Where a resource is found in more than one graph, each property present in a
+ * later graph replaces the value from earlier graphs.
+ *
+ * The fields of each EntityDB class are found once per JVM. The binding of each predicate node to a field is
+ * found once per binder, because the short names depend on the querier's prefixes. Short names of object
+ * resources are shared between entities, so a large model does not hold a separate copy of every URI.
+ *
+ * A binder is not thread safe, so each JenaQuerierDB has its own.
+ */
+class EntityBinder {
+
+    private static final int MAX_CACHED_NAMES = 100000;                                     // Limit on the number of object short names cached
+
+    private static final Map<Class<?>, ClassIndex> classIndexes = new ConcurrentHashMap<>();    // Fields of each EntityDB class, shared by all binders
+
+    private final ShortNamer namer;
+    private final Map<Class<?>, Map<Node, FieldBinding>> predicateBindings = new HashMap<>();  // Field bound to each predicate, indexed by class and then predicate
+    private final Map<Node, String> objectNames = new HashMap<>();                             // Short names of object resources, indexed by node
+    private boolean[] touched = new boolean[32];                                               // Fields set from the resource currently being bound
+
+    /**
+     * Converts a full URI to the short form used in the POJOs.
+     */
+    interface ShortNamer {
+        String getShortName(String uri, boolean keepGraph);
+    }
+
+    EntityBinder(ShortNamer namer) {
+        this.namer = namer;
+    }
+
+    /**
+     * Bind the triples of a resource in one graph onto a POJO.
+     *
+     * @param graph the graph containing the triples
+     * @param subject the resource node
+     * @param entity the POJO to merge the triples into, or null to create a new POJO
+     * @param entityClass the class of POJO to create
+     * @return the POJO
+     */
+    <T extends EntityDB> T bind(Graph graph, Node subject, T entity, Class<T> entityClass) {
+        ClassIndex index = getClassIndex(entityClass);
+        if (entity == null) {
+            entity = index.newInstance(entityClass);
+        }
+        entity.setUri(namer.getShortName(subject.getURI(), true));
+
+        Map<Node, FieldBinding> bindings = predicateBindings.computeIfAbsent(entityClass, k -> new HashMap<>());
+        if (touched.length < index.fields.size()) {
+            touched = new boolean[index.fields.size()];
+        } else {
+            Arrays.fill(touched, 0, index.fields.size(), false);
+        }
+
+        ExtendedIterator<Triple> it = graph.find(subject, Node.ANY, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple triple = it.next();
+                FieldBinding binding = bindings.computeIfAbsent(triple.getPredicate(), p -> getBinding(index, p));
+                if (binding != FieldBinding.NONE) {
+                    binding.bind(entity, triple.getObject(), this);
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        return entity;
+    }
+
+    /**
+     * Create a copy of a POJO. Values are shared, apart from collections, so either POJO can be changed without
+     * affecting the other.
+     *
+     * @param entity the POJO to copy
+     * @param entityClass the class of the copy
+     * @return the copy
+     */
+    <T extends EntityDB> T copy(EntityDB entity, Class<T> entityClass) {
+        ClassIndex index = getClassIndex(entityClass);
+        T copy = index.newInstance(entityClass);
+        copy.setUri(entity.getUri());
+        for (FieldBinding binding : index.fields) {
+            if (binding.field.getDeclaringClass().isInstance(entity)) {
+                binding.copy(entity, copy);
+            }
+        }
+        return copy;
+    }
+
+    private FieldBinding getBinding(ClassIndex index, Node predicate) {
+        if (!predicate.isURI()) {
+            return FieldBinding.NONE;
+        }
+        String name = namer.getShortName(predicate.getURI(), false);
+        if ("uri".equals(name)) {
+            return FieldBinding.NONE;
+        }
+        return index.fieldsByName.getOrDefault(name, FieldBinding.NONE);
+    }
+
+    private String getObjectName(Node object) {
+        String name = objectNames.get(object);
+        if (name == null) {
+            if (objectNames.size() >= MAX_CACHED_NAMES) {
+                objectNames.clear();
+            }
+            name = escape(namer.getShortName(object.getURI(), true));
+            objectNames.put(object, name);
+        }
+        return name;
+    }
+
+    private boolean touch(int slot) {
+        boolean first = !touched[slot];
+        touched[slot] = true;
+        return first;
+    }
+
+    private static ClassIndex getClassIndex(Class<?> entityClass) {
+        return classIndexes.computeIfAbsent(entityClass, ClassIndex::new);
+    }
+
+    /**
+     * Escape a string as it was escaped by JenaQuerierDB.StringDeserializer, which took strings from their
+     * JSON form. Consumers (and JenaQuerierDB when storing entities) rely on this, so it is kept. Most strings
+     * have nothing to escape, and are returned unchanged.
+     */
+    static String escape(String value) {
+        int i = 0;
+        while (i < value.length() && !needsEscape(value.charAt(i))) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+
+        StringBuilder builder = new StringBuilder(value.length() + 16);
+        builder.append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\t': builder.append("\\t"); break;
+                case '\b': builder.append("\\b"); break;
+                case '\n': builder.append("\\n"); break;
+                case '\r': builder.append("\\r"); break;
+                case '\f': builder.append("\\f"); break;
+                default:
+                    if (needsEscape(c)) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean needsEscape(char c) {
+        return c < 0x20 || c == '"' || c == '\\' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * The bindable fields of an EntityDB class, found in the same way as Gson finds them.
+     */
+    private static class ClassIndex {
+        private final List<FieldBinding> fields = new ArrayList<>();
+        private final Map<String, FieldBinding> fieldsByName = new HashMap<>();
+        private final Constructor<?> constructor;
+
+        ClassIndex(Class<?> entityClass) {
+            for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()
+                            || "uri".equals(field.getName())) {
+                        continue;
+                    }
+                    FieldKind kind = FieldKind.of(field.getType());
+                    if (kind == null) {
+                        continue;
+                    }
+                    SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                    String name = serializedName != null ? serializedName.value() : field.getName();
+                    if (!fieldsByName.containsKey(name)) {
+                        field.setAccessible(true);
+                        FieldBinding binding = new FieldBinding(field, kind, fields.size());
+                        fields.add(binding);
+                        fieldsByName.put(name, binding);
+                    }
+                }
+            }
+
+            try {
+                constructor = entityClass.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Entity class " + entityClass.getName() + " has no default constructor", e);
+            }
+        }
+
+        <T> T newInstance(Class<T> entityClass) {
+            try {
+                return entityClass.cast(constructor.newInstance());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create an instance of " + entityClass.getName(), e);
+            }
+        }
+    }
+
+    private enum FieldKind {
+        STRING, BOOLEAN, INTEGER, COLLECTION;
+
+        static FieldKind of(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == Boolean.class || type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == Integer.class || type == int.class) {
+                return INTEGER;
+            } else if (type == Collection.class || type == List.class || type == ArrayList.class) {
+                return COLLECTION;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Binding of a predicate to one field.
+     */
+    private static class FieldBinding {
+        static final FieldBinding NONE = new FieldBinding(null, null, -1);
+
+        private final Field field;
+        private final FieldKind kind;
+        private final int slot;
+
+        FieldBinding(Field field, FieldKind kind, int slot) {
+            this.field = field;
+            this.kind = kind;
+            this.slot = slot;
+        }
+
+        void bind(EntityDB entity, Node object, EntityBinder binder) {
+            try {
+                if (object.isLiteral()) {
+                    Object value = getLiteralValue(object);
+                    if (value == null) {
+                        return;
+                    }
+                    if (kind == FieldKind.COLLECTION) {
+                        getCollection(entity, binder).add(value.toString());
+                    } else {
+                        binder.touch(slot);
+                        field.set(entity, value);
+                    }
+                } else if (object.isURI()) {
+                    String name = binder.getObjectName(object);
+                    if (kind == FieldKind.COLLECTION) {
+                        getCollection(entity, binder).add(name);
+                    } else if (kind == FieldKind.STRING && binder.touch(slot)) {
+                        // Only the first of several values is kept
+                        field.set(entity, name);
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Could not set field " + field.getName(), e);
+            }
+        }
+
+        /**
+         * Get the value of a literal as the field type, or null if it cannot be bound.
+         */
+        private Object getLiteralValue(Node object) {
+            RDFDatatype type = object.getLiteralDatatype();
+            if (type.equals(XSDDatatype.XSDinteger)) {
+                int value = ((Number) object.getLiteralValue()).intValue();
+                if (kind == FieldKind.INTEGER) {
+                    return value;
+                } else if (kind == FieldKind.STRING || kind == FieldKind.COLLECTION) {
+                    return Integer.toString(value);
+                }
+            } else if (type.equals(XSDDatatype.XSDboolean)) {
+                if (kind == FieldKind.BOOLEAN) {
+                    return object.getLiteralValue();
+                } else if (kind == FieldKind.STRING || kind == FieldKind.COLLECTION) {
+                    return object.getLiteralLexicalForm();
+                }
+            } else if (type.equals(XSDDatatype.XSDstring)) {
+                String value = object.getLiteralLexicalForm();
+                if (kind == FieldKind.STRING || kind == FieldKind.COLLECTION) {
+                    return escape(value);
+                } else if (kind == FieldKind.BOOLEAN) {
+                    return Boolean.valueOf(value);
+                } else if (kind == FieldKind.INTEGER) {
+                    return Integer.valueOf(value);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get the collection for this field, replacing any values from other graphs when the first value is found
+         * in this graph.
+         */
+        @SuppressWarnings("unchecked")
+        private Collection<String> getCollection(EntityDB entity, EntityBinder binder) throws IllegalAccessException {
+            if (binder.touch(slot)) {
+                Collection<String> values = new ArrayList<>();
+                field.set(entity, values);
+                return values;
+            }
+            return (Collection<String>) field.get(entity);
+        }
+
+        @SuppressWarnings("unchecked")
+        void copy(EntityDB from, EntityDB to) {
+            try {
+                Object value = field.get(from);
+                if (value instanceof Collection) {
+                    value = new ArrayList<>((Collection<String>) value);
+                }
+                field.set(to, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Could not copy field " + field.getName(), e);
+            }
+        }
+    }
+
+}
@@ -232,6 +232,10 @@ public interface IQuerierDB {
      * Get the sub types of `type`. If `includeSelf` is true, then `type` will be included in the returned list.
      */
     List<String> getSuperTypes(String type, boolean includeSelf);
+    /**
+     * Check whether `type` is `superType` or one of its sub types.
+     */
+    boolean isSubTypeOf(String type, String superType);
 
     /**
      * OPTIONAL: This method synchronises the in-java memory and the database, if such an operation is required.
@@ -26,8 +26,6 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.modelquerier;
 
-import com.google.common.graph.SuccessorsFunction;
-import com.google.common.graph.Traverser;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -39,6 +37,10 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import org.apache.jena.datatypes.RDFDatatype;
 import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.ReadWrite;
 import org.apache.jena.rdf.model.Literal;
@@ -51,11 +53,13 @@ import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.sparql.function.library.max;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.*;
+import uk.ac.soton.itinnovation.security.modelquerier.util.ModelChangeNotifier;
 import uk.ac.soton.itinnovation.security.modelquerier.util.ModelStack;
 
 import java.lang.Exception;
@@ -82,17 +86,27 @@ public class JenaQuerierDB implements IQuerierDB {
     private Dataset dataset;
     private ModelStack stack;
     private Gson gson;
+    private EntityBinder binder;                                                        // Binds triples to POJOs without going via Json
     private Map<String, String> prefixMap;
     private Map<String, String> prefixReverseMap;
 
-    private Traverser<String> superTypeTree;
-    private Traverser<String> subTypeTree;
+    private TypeHierarchy typeHierarchy;                                                // Sub-types and super-types of each domain model type
 
     private Map<Integer, String[]> checkedOutEntityGraphs = new HashMap<>();
 
     private EntityCache cache;
     private boolean cacheEnabled;
 
+    private boolean diffSyncEnabled = true;                                             // Write only changed triples when synchronising the cache
+    private boolean changeNotificationEnabled = true;                                   // Report each committed change to ModelChangeNotifier
+    private int syncBatchSize = 10000;                                                  // Number of changed triples to buffer before writing them to a graph
+    private long syncUpdatedCount = 0;                                                  // Number of entities written by the last sync()
+    private long syncSkippedCount = 0;                                                  // Number of entities found to be unchanged by the last sync()
+    private long syncAddedTripleCount = 0;                                              // Number of triples added by the last sync()
+    private long syncRemovedTripleCount = 0;                                            // Number of triples removed by the last sync()
+
+    private DomainModelCache.Snapshot domainSnapshot;                                   // Shared domain model content, obtained on first use
+
     private Map<String, LevelDB> poLevels = new HashMap<>();                            // Map of domain model population levels indexed by URI
     private Map<String, LevelDB> twLevels = new HashMap<>();                            // Map of domain model trustworthiness levels indexed by URI
     private List<LevelDB> trustworthinessLevels = new ArrayList<>();                    // Array of domain model trustworthiness levels indexed by level value
@@ -119,6 +133,61 @@ public class JenaQuerierDB implements IQuerierDB {
         this.cacheEnabled = cacheEnabled;
     }
 
+    /**
+     * Check if sync() writes only the triples that differ from the triple store. If not, every stored entity
+     * has all its properties removed and added again.
+     */
+    public boolean isDiffSyncEnabled() {
+        return diffSyncEnabled;
+    }
+
+    public void setDiffSyncEnabled(boolean diffSyncEnabled) {
+        this.diffSyncEnabled = diffSyncEnabled;
+    }
+
+    /**
+     * Check if each committed change is reported to ModelChangeNotifier. If not, the caller must report that the
+     * model has changed itself, e.g. once at the end of a job that makes many temporary changes.
+     */
+    public boolean isChangeNotificationEnabled() {
+        return changeNotificationEnabled;
+    }
+
+    public void setChangeNotificationEnabled(boolean changeNotificationEnabled) {
+        this.changeNotificationEnabled = changeNotificationEnabled;
+    }
+
+    public int getSyncBatchSize() {
+        return syncBatchSize;
+    }
+
+    /**
+     * Set the number of changed triples buffered by sync() before they are written to a graph. Each graph is
+     * still written in a single transaction.
+     */
+    public void setSyncBatchSize(int syncBatchSize) {
+        if (syncBatchSize < 1) {
+            throw new IllegalArgumentException("Sync batch size must be at least 1");
+        }
+        this.syncBatchSize = syncBatchSize;
+    }
+
+    public long getSyncUpdatedCount() {
+        return syncUpdatedCount;
+    }
+
+    public long getSyncSkippedCount() {
+        return syncSkippedCount;
+    }
+
+    public long getSyncAddedTripleCount() {
+        return syncAddedTripleCount;
+    }
+
+    public long getSyncRemovedTripleCount() {
+        return syncRemovedTripleCount;
+    }
+
     /*  Helper method used to convert an array of strings to a single string. 
      *  Useful here because most 'get' methods have an argument list that ends
      *  with a list of models (referred to via strings), so any warning message
@@ -178,6 +247,8 @@ public class JenaQuerierDB implements IQuerierDB {
         gsonBuilder.registerTypeAdapter(String.class, new StringDeserializer());
         gson = gsonBuilder.create();
 
+        binder = new EntityBinder(this::getShortName);
+
         createTypeTrees();
 
         // Get population scale in the form needed by highest/lowest TW level calculations
@@ -192,6 +263,15 @@ public class JenaQuerierDB implements IQuerierDB {
         logger.info("JenaQuerierDB.init(): execution time {} ms", endTime - startTime);
     } 
 
+    /**
+     * Forget the graphs each entity fetched so far was read from. Only needed if a querier is reused for many
+     * read-only lookups, so the record of fetched entities does not keep growing. Entities fetched before the
+     * call should not be stored afterwards.
+     */
+    public void releaseEntities() {
+        checkedOutEntityGraphs.clear();
+    }
+
     /** Loads default settings and organises them so they can be found for an asset,
      *  using inheritance if necessary.
      */
@@ -675,10 +755,36 @@ public class JenaQuerierDB implements IQuerierDB {
     }
 
     /**
-     * Query the 'domain' model for the type structure and store it in two type trees: a subclass tree and a superclass
-     * tree.
+     * Get the shared snapshot of the domain model, or null if this querier has no domain graph.
+     */
+    private DomainModelCache.Snapshot getDomainSnapshot() {
+        if (domainSnapshot == null) {
+            String domainGraph = stack.getGraph("domain");
+            if (domainGraph != null) {
+                domainSnapshot = DomainModelCache.getSnapshot(dataset, domainGraph);
+            }
+        }
+        return domainSnapshot;
+    }
+
+    /**
+     * Check if a query is only for the domain model, so the results can be shared via the domain model snapshot.
+     */
+    private boolean isDomainOnly(String... graphs) {
+        return graphs.length == 1 && "domain".equals(graphs[0]) && getDomainSnapshot() != null;
+    }
+
+    /**
+     * Query the 'domain' model for the type structure and store it in a TypeHierarchy, which holds the sub-types
+     * and super-types of each type, including indirect ones.
      */
     private void createTypeTrees() {
+        DomainModelCache.Snapshot snapshot = getDomainSnapshot();
+        if (snapshot != null && snapshot.getTypeHierarchy() != null) {
+            typeHierarchy = snapshot.getTypeHierarchy();
+            return;
+        }
+
         Map<String,List<String>> subTypeMap = new HashMap<>();
         Map<String,List<String>> superTypeMap = new HashMap<>();
 
@@ -711,30 +817,25 @@ public class JenaQuerierDB implements IQuerierDB {
 
         dataset.end();
 
-        SuccessorsFunction<String> subTypeFunction = type -> subTypeMap.getOrDefault(type, new ArrayList<>());
-        subTypeTree = Traverser.forTree(subTypeFunction);
-        SuccessorsFunction<String> superTypeFunction = type -> superTypeMap.getOrDefault(type, new ArrayList<>());
-        superTypeTree = Traverser.forTree(superTypeFunction);
+        typeHierarchy = new TypeHierarchy(subTypeMap, superTypeMap);
+        if (snapshot != null) {
+            typeHierarchy = snapshot.putTypeHierarchy(typeHierarchy);
+        }
     }
 
     @Override
     public List<String> getSubTypes(String type, boolean includeSelf) {
-        return getTypeList(subTypeTree, type, includeSelf);
+        return typeHierarchy.getSubTypes(type, includeSelf);
     }
 
     @Override
     public List<String> getSuperTypes(String type, boolean includeSelf) {
-        return getTypeList(superTypeTree, type, includeSelf);
+        return typeHierarchy.getSuperTypes(type, includeSelf);
     }
 
-    private List<String> getTypeList(Traverser<String> tree, String type, boolean includeSelf) {
-        List<String> types = new ArrayList<>();
-
-        tree.breadthFirst(type).forEach(types::add);
-        if (!includeSelf) {
-            types.remove(type);
-        }
-        return types;
+    @Override
+    public boolean isSubTypeOf(String type, String superType) {
+        return typeHierarchy.isSubTypeOf(type, superType);
     }
 
     @Override
@@ -866,17 +967,26 @@ public class JenaQuerierDB implements IQuerierDB {
          * convert from a JSON object back to a JENA resource. We don't want it for properties as it allows
          * or easier conversion from a JSON object to a POJO using GSON.
          */
-
-        String[] uriSplit = resource.getURI().split("#");
+        return getShortName(resource.getURI(), keepGraph);
+    }
+    private String getShortName(String uri, boolean keepGraph) {
         String prefix;
         String name;
 
-        if (uriSplit.length > 1) {
-            prefix = prefixReverseMap.getOrDefault(uriSplit[0] + "#", "") + "#";
-            name = uriSplit[1];
+        int hash = uri.indexOf('#');
+        if (hash >= 0 && hash < uri.length() - 1 && uri.indexOf('#', hash + 1) < 0) {
+            // Usual case of a single '#' followed by a local name, found without splitting the URI
+            prefix = prefixReverseMap.getOrDefault(uri.substring(0, hash + 1), "") + "#";
+            name = uri.substring(hash + 1);
         } else {
-            prefix = "";
-            name = uriSplit[0];
+            String[] uriSplit = uri.split("#");
+            if (uriSplit.length > 1) {
+                prefix = prefixReverseMap.getOrDefault(uriSplit[0] + "#", "") + "#";
+                name = uriSplit[1];
+            } else {
+                prefix = "";
+                name = uriSplit[0];
+            }
         }
 
         // TODO: compatability workaround, delete AFTER REFACTOR, change EntityDB fields to match
@@ -914,10 +1024,70 @@ public class JenaQuerierDB implements IQuerierDB {
             if (cache.checkTypeValid(entityCacheType, queryArr)) return allEntities;
         }
 
-        Map<String, JsonObject> jsonEntities = new HashMap<>();
+        Map<String, T> newEntities = new HashMap<>();
         Map<String, String> entityMainGraph = new HashMap<>();
         Map<String, List<String>> entitiesByGraph = new HashMap<>();
 
+        // Domain model entities can be copied from the shared snapshot if another querier has loaded them
+        boolean domainOnly = isDomainOnly(graphs);
+        Map<String, EntityDB> snapshotEntities = domainOnly ? domainSnapshot.getEntities(entityCacheType) : null;
+        if (snapshotEntities != null) {
+            List<String> entities = new ArrayList<>();
+            for (Map.Entry<String, EntityDB> entry : snapshotEntities.entrySet()) {
+                if (!cache.checkEntityValid(entry.getKey(), graphs)) {
+                    newEntities.put(entry.getKey(), binder.copy(entry.getValue(), entityClass));
+                    entities.add(entry.getKey());
+                }
+            }
+            entitiesByGraph.put("domain", entities);
+        } else {
+            boolean complete = readEntities(shortEntityType, entityClass, graphs, newEntities, entityMainGraph, entitiesByGraph);
+
+            // If nothing was skipped, this is the complete set of domain model entities so copies can be shared
+            if (domainOnly && complete) {
+                Map<String, EntityDB> sharedEntities = new HashMap<>();
+                for (T entity : newEntities.values()) {
+                    sharedEntities.put(entity.getUri(), binder.copy(entity, entityClass));
+                }
+                domainSnapshot.putEntities(entityCacheType, sharedEntities);
+            }
+        }
+
+        // Save the entities and the graphs they came from
+        for (T entity : newEntities.values()) {
+            allEntities.put(entity.getUri(), entity);
+            checkedOutEntityGraphs.put(System.identityHashCode(entity), graphs);
+        }
+
+        // Put the entities into the cache if they weren't already included there
+        if (cacheEnabled) {
+            for (String graph : entitiesByGraph.keySet()) {
+                Map<String, EntityDB> cacheEntities = new HashMap<>();
+                for (String entityUri : entitiesByGraph.get(graph)) {
+                    cacheEntities.put(entityUri, allEntities.get(entityUri));
+                }
+                /* Cache these entities. Since this method got all entities of the specified type,
+                 * the cache will be valid for that type, so pass in validateCache = true. 
+                 */
+                cache.cacheEntities(cacheEntities, entityCacheType, true, graph, graphs);
+            }
+        }
+
+        //System.out.println("GOT " + allEntities.size() + " of " + entityType + " in " + Arrays.toString(graphs));
+        return allEntities;
+    }
+
+    /**
+     * Read all entities of a type from the triple store as POJOs, merging any triples found in other graphs.
+     * Entities that are already validly cached are skipped.
+     * 
+     * @return true if no entities were skipped
+     */
+    private <T extends EntityDB> boolean readEntities(String shortEntityType, Class<T> entityClass, String[] graphs,
+            Map<String, T> entities, Map<String, String> entityMainGraph, Map<String, List<String>> entitiesByGraph) {
+        List<String> queryGraphs = Arrays.asList(graphs);
+        boolean complete = true;
+
         dataset.begin(ReadWrite.READ);
 
         for (String queryGraph : queryGraphs) {
@@ -933,13 +1103,13 @@ public class JenaQuerierDB implements IQuerierDB {
 
                 if (cache.checkEntityValid(uri, graphs)) {
                     // Don't bother to read and convert this entity in this graph
+                    complete = false;
                     continue;
                 }
 
-                // Merge the resource (as Json) with any previously found resources
-                JsonObject existingJsonObject = jsonEntities.get(uri);
-                JsonObject jsonObject = resourceToJson(resource, existingJsonObject);
-                jsonEntities.put(uri, jsonObject);
+                // Merge the resource with any previously found resources
+                T entity = binder.bind(mainModel.getGraph(), resource.asNode(), entities.get(uri), entityClass);
+                entities.put(uri, entity);
 
                 /* Save the graph where the resource was found
                  *
@@ -950,8 +1120,8 @@ public class JenaQuerierDB implements IQuerierDB {
                 entityMainGraph.put(uri, queryGraph);
 
                 // Save the resource URI in a list of those found in this graph
-                List<String> entities = entitiesByGraph.computeIfAbsent(queryGraph, k ->  new ArrayList<>());
-                entities.add(uri);
+                List<String> graphEntities = entitiesByGraph.computeIfAbsent(queryGraph, k ->  new ArrayList<>());
+                graphEntities.add(uri);
             }
         }
 
@@ -965,11 +1135,10 @@ public class JenaQuerierDB implements IQuerierDB {
                 String mainGraph = entityGraphEntry.getValue();
 
                 if (!mainGraph.equals(graph)) {
-                    JsonObject mainEntity = jsonEntities.get(entityUri);
                     Resource resource = model.getResource(getLongName(entityUri));
                     if (model.containsResource(resource)) {
-                        // Merge the resource (as Json) with the previously found resources
-                        resourceToJson(resource, mainEntity);
+                        // Merge the resource with the previously found resources
+                        binder.bind(model.getGraph(), resource.asNode(), entities.get(entityUri), entityClass);
                     }
                 }
             }
@@ -977,29 +1146,7 @@ public class JenaQuerierDB implements IQuerierDB {
 
         dataset.end();
 
-        // Convert the Json entity to an EntityDB object, and save the graphs it came from
-        for (JsonObject jsonEntity : jsonEntities.values()) {
-            T entity = gson.fromJson(jsonEntity, entityClass);
-            allEntities.put(entity.getUri(), entity);
-            checkedOutEntityGraphs.put(System.identityHashCode(entity), graphs);
-        }
-
-        // Put the entities into the cache if they weren't already included there
-        if (cacheEnabled) {
-            for (String graph : entitiesByGraph.keySet()) {
-                Map<String, EntityDB> cacheEntities = new HashMap<>();
-                for (String entityUri : entitiesByGraph.get(graph)) {
-                    cacheEntities.put(entityUri, allEntities.get(entityUri));
-                }
-                /* Cache these entities. Since this method got all entities of the specified type,
-                 * the cache will be valid for that type, so pass in validateCache = true. 
-                 */
-                cache.cacheEntities(cacheEntities, entityCacheType, true, graph, graphs);
-            }
-        }
-
-        //System.out.println("GOT " + allEntities.size() + " of " + entityType + " in " + Arrays.toString(graphs));
-        return allEntities;
+        return complete;
     }
 
     /**Get all entities of class `entityClass`, and return them as POJOs of type `entityClass`.
@@ -1033,17 +1180,39 @@ public class JenaQuerierDB implements IQuerierDB {
             }
         }
 
-        JsonObject returnJsonObject = getEntityAsJson(uri, graphs);
-        if (returnJsonObject == null) {
+        // Use the shared domain model snapshot if it has this entity, otherwise query the triple store
+        Map<String, EntityDB> snapshotEntities = isDomainOnly(graphs) ? domainSnapshot.getEntities(cacheTypeName) : null;
+        EntityDB snapshotEntity = snapshotEntities != null ? snapshotEntities.get(uri) : null;
+        T entity = null;
+        String mainGraph = null;
+        if (snapshotEntity != null) {
+            entity = binder.copy(snapshotEntity, entityClass);
+        } else {
+            // Merge the resource from each graph, and save the graph in which its type was found
+            String longUri = getLongName(uri);
+            dataset.begin(ReadWrite.READ);
+            for (String graph : graphs) {
+                String graphUri = stack.getGraph(graph);
+                if (graphUri == null) {
+                    continue;
+                }
+                Model model = dataset.getNamedModel(graphUri);
+                Resource resource = model.getResource(longUri);
+                if (model.containsResource(resource)) {
+                    entity = binder.bind(model.getGraph(), resource.asNode(), entity, entityClass);
+                    if (resource.hasProperty(RDF.type)) {
+                        mainGraph = graph;
+                    }
+                }
+            }
+            dataset.end();
+        }
+        if (entity == null) {
             return null;
         }
-        T entity = gson.fromJson(returnJsonObject, entityClass);
         checkedOutEntityGraphs.put(System.identityHashCode(entity), graphs);
 
-        String mainGraph;
-        if (returnJsonObject.has("_graph")) {
-            mainGraph = returnJsonObject.getAsJsonPrimitive("_graph").getAsString();
-        } else {
+        if (mainGraph == null) {
             mainGraph = graphs[0];
         }
 
@@ -1184,8 +1353,18 @@ public class JenaQuerierDB implements IQuerierDB {
     private void parseJsonToResource(JsonObject jsonObject, Resource resource) {
 
         // TODO: May be faster to only remove properties which are different, but JENA may handle this on it's own
-        //  when commit() is called.
+        //  when commit() is called. Now done by sync() if diffSyncEnabled is set, see persistEntity().
         resource.removeProperties();
+        resource.getModel().add(parseJsonToStatements(jsonObject, resource));
+    }
+
+    /**
+     * Convert the given 'jsonObject' to the statements that describe it as the given JENA 'resource'. The
+     * statements are not added to the resource's model.
+     */
+    private List<Statement> parseJsonToStatements(JsonObject jsonObject, Resource resource) {
+        Model model = resource.getModel();
+        List<Statement> statements = new ArrayList<>();
 
         for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
             String propertyName = entry.getKey();
@@ -1214,21 +1393,55 @@ public class JenaQuerierDB implements IQuerierDB {
                     if (objectString.contains("#")) {
                         // Statement object is (probably) a URI
                         Resource objectResource = ResourceFactory.createResource(getLongName(objectString));
-                        resource.addProperty(property, objectResource);
+                        statements.add(model.createStatement(resource, property, objectResource));
                     } else {
                         // TODO: HACK: Escape slashes in strings are added to if saved multiple times, this is a
                         //  temporary hack fix for this.
                         objectString = objectString.replace("\\", "");
 
-                        resource.addProperty(property, objectString);
+                        statements.add(model.createStatement(resource, property, model.createLiteral(objectString)));
                     }
                 } else if (primitive.isBoolean()) {
-                    resource.addLiteral(property, primitive.getAsBoolean());
+                    statements.add(model.createStatement(resource, property, model.createTypedLiteral(primitive.getAsBoolean())));
                 } else if (primitive.isNumber()) {
-                    resource.addLiteral(property, primitive.getAsNumber());
+                    statements.add(model.createStatement(resource, property, model.createTypedLiteral((Object) primitive.getAsNumber())));
                 }
             }
         }
+
+        return statements;
+    }
+
+    /**
+     * Triple changes waiting to be written to one graph by sync(). The changes are written in bulk whenever
+     * the batch size is reached, and when flush() is called. Must be used inside a write transaction.
+     */
+    private static class TripleBatch {
+        private final Graph graph;
+        private final int batchSize;
+        private final List<Triple> removed = new ArrayList<>();
+        private final List<Triple> added = new ArrayList<>();
+
+        TripleBatch(Graph graph, int batchSize) {
+            this.graph = graph;
+            this.batchSize = batchSize;
+        }
+
+        void update(Collection<Triple> removeTriples, Collection<Triple> addTriples) {
+            removed.addAll(removeTriples);
+            added.addAll(addTriples);
+            if (removed.size() + added.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            // Removals first, so a triple removed from one entity can be added to another
+            GraphUtil.delete(graph, removed);
+            GraphUtil.add(graph, added);
+            removed.clear();
+            added.clear();
+        }
     }
 
     /* METHODS FOR RETRIEVING ENTITIES
@@ -2125,6 +2338,13 @@ public class JenaQuerierDB implements IQuerierDB {
      * short form URI 'uri' (allows us to override entity.getUri()).
      */
     private <T extends EntityDB> boolean persistEntity(T entity, String uri, String graph) {
+        return persistEntity(entity, uri, graph, null);
+    }
+
+    /* As above, but if a 'batch' is given, only the triples that differ from the triple store are
+     * written, and they are added to the batch rather than being written immediately.
+     */
+    private <T extends EntityDB> boolean persistEntity(T entity, String uri, String graph, TripleBatch batch) {
         // MUST BE IN TRANSACTION
 
         if(entity == null){
@@ -2201,7 +2421,37 @@ public class JenaQuerierDB implements IQuerierDB {
         }
         Model model = dataset.getNamedModel(graphUri);
         Resource resource = model.createResource(entityUri);
-        parseJsonToResource(jsonObject, resource);
+        if (batch == null) {
+            parseJsonToResource(jsonObject, resource);
+            return true;
+        }
+
+        // Compare the new triples with those in the triple store, and only write the differences
+        Set<Triple> addTriples = new HashSet<>();
+        for (Statement statement : parseJsonToStatements(jsonObject, resource)) {
+            addTriples.add(statement.asTriple());
+        }
+        List<Triple> removeTriples = new ArrayList<>();
+        ExtendedIterator<Triple> it = model.getGraph().find(resource.asNode(), Node.ANY, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple triple = it.next();
+                if (!addTriples.remove(triple)) {
+                    removeTriples.add(triple);
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        if (addTriples.isEmpty() && removeTriples.isEmpty()) {
+            syncSkippedCount++;
+        } else {
+            syncUpdatedCount++;
+            syncAddedTripleCount += addTriples.size();
+            syncRemovedTripleCount += removeTriples.size();
+            batch.update(removeTriples, addTriples);
+        }
 
         return true;
     }
@@ -2210,6 +2460,9 @@ public class JenaQuerierDB implements IQuerierDB {
      * In almost all cases this is what we need to do.
      */
     private <T extends EntityDB> boolean persistEntity(T entity, String graph) {
+        return persistEntity(entity, graph, null);
+    }
+    private <T extends EntityDB> boolean persistEntity(T entity, String graph, TripleBatch batch) {
         /* In almost all cases, an entity can be persisted under its own URI.
          */
         if(entity == null) {
@@ -2220,7 +2473,7 @@ public class JenaQuerierDB implements IQuerierDB {
         }
         try{
             boolean success = true;
-            if(success) success = persistEntity(entity, entity.getUri(), graph);
+            if(success) success = persistEntity(entity, entity.getUri(), graph, batch);
             return success;
 		} catch (Exception e) {
             String message = String.format("Failed to persist entity %s of class %s", entity.getUri(), entity.getClass().getSimpleName());
@@ -2296,7 +2549,7 @@ public class JenaQuerierDB implements IQuerierDB {
 
         // If that was successful, commit the changes
         if(persisted) {
-            dataset.commit();
+            commitChanges();
         } else {
             logger.warn("Aborting transaction");
             dataset.abort();
@@ -2316,6 +2569,17 @@ public class JenaQuerierDB implements IQuerierDB {
         return storeEntity(entity, uri, cacheTypeName, graph);
     }
 
+    /**
+     * Commit the current write transaction, and report that the system model has changed (unless change
+     * notification is disabled).
+     */
+    private void commitChanges() {
+        dataset.commit();
+        if (stack != null && changeNotificationEnabled) {
+            ModelChangeNotifier.modelChanged(stack.getGraph("system"));
+        }
+    }
+
     /* Synchronise the cache, so afterwards the triple store matches the cache contents.
      */
     @Override
@@ -2326,6 +2590,10 @@ public class JenaQuerierDB implements IQuerierDB {
             return;
         }
         logger.info("Synchronising model with triple store");
+        syncUpdatedCount = 0;
+        syncSkippedCount = 0;
+        syncAddedTripleCount = 0;
+        syncRemovedTripleCount = 0;
 
         // Get entities to be deleted and try to delete them from the triple store
         Map<String, Map<String, EntityDB>> deleteEntitiesByType = cache.getDeleteCache();
@@ -2348,7 +2616,7 @@ public class JenaQuerierDB implements IQuerierDB {
             }
 
             // Commit the changes
-            dataset.commit();
+            commitChanges();
             
             // If successful, clear the map of entities to be deleted
             for(String typeKey : deleteEntitiesByType.keySet()){
@@ -2380,6 +2648,13 @@ public class JenaQuerierDB implements IQuerierDB {
                 // Start a transaction per graph
                 dataset.begin(ReadWrite.WRITE);
 
+                // If enabled, collect changed triples in batches rather than rewriting each entity
+                TripleBatch batch = null;
+                String graphUri = stack.getGraph(graph);
+                if (diffSyncEnabled && graphUri != null) {
+                    batch = new TripleBatch(dataset.getNamedModel(graphUri).getGraph(), syncBatchSize);
+                }
+
                 // Important to store assets first
                 String assetTypeKey = getCacheTypeName(AssetDB.class);
                 Map<String, EntityDB> entities = storeEntitiesByType.get(assetTypeKey);
@@ -2388,10 +2663,15 @@ public class JenaQuerierDB implements IQuerierDB {
                         logger.info("Saving {} new/modified entities cached as {} to graph {}", entities.size(), assetTypeKey, graph);
                     }
                     for(EntityDB entity : entities.values()){
-                        persistEntity(entity, graph);
+                        persistEntity(entity, graph, batch);
                     }
                 }
 
+                // Write the asset changes now, as saving links depends on the asset triples
+                if (batch != null) {
+                    batch.flush();
+                }
+
                 // Store/update the entities
                 for(String typeKey : storeEntitiesByType.keySet()){
                     if(typeKey.equals(getCacheTypeName(AssetDB.class))) {
@@ -2410,13 +2690,16 @@ public class JenaQuerierDB implements IQuerierDB {
                                 persistLink(entity, graph);
                             }
                             // Save the entity
-                            persistEntity(entity, graph);
+                            persistEntity(entity, graph, batch);
                         }
                     }
                 }
 
-                // Commit the changes
-                dataset.commit();
+                // Write any remaining changes and commit
+                if (batch != null) {
+                    batch.flush();
+                }
+                commitChanges();
 
                 // If successful, clear the map of entities to be saved
                 for(String typeKey : storeEntitiesByType.keySet()){
@@ -2441,6 +2724,11 @@ public class JenaQuerierDB implements IQuerierDB {
 
         // No need to clear the cache content, as it now matches the triple store
 
+        if (diffSyncEnabled) {
+            logger.info("Saved {} entities ({} triples added, {} removed), skipped {} unchanged entities",
+                    syncUpdatedCount, syncAddedTripleCount, syncRemovedTripleCount, syncSkippedCount);
+        }
+
         final long endTime = System.currentTimeMillis();
         logger.info("JenaQuerierDB.sync(): execution time {} ms", endTime - startTime);
         
@@ -2643,7 +2931,7 @@ public class JenaQuerierDB implements IQuerierDB {
 
             // If that was successful, commit the changes
             if(persisted) {
-                dataset.commit();
+                commitChanges();
             } else {
                 logger.warn("Aborting transaction");
                 dataset.abort();
@@ -2919,7 +3207,7 @@ public class JenaQuerierDB implements IQuerierDB {
             if(deleted) deleted = deleteEntity(asset);
 
             if(deleted) {
-                dataset.commit();
+                commitChanges();
             } else {
                 logger.warn("Aborting transaction");
                 dataset.abort();
@@ -3000,7 +3288,7 @@ public class JenaQuerierDB implements IQuerierDB {
             if(deleted) deleted = deleteEntities(assets);
 
             if(deleted) {
-                dataset.commit();
+                commitChanges();
             } else {
                 logger.warn("Aborting transaction");
                 dataset.abort();
@@ -3056,7 +3344,7 @@ public class JenaQuerierDB implements IQuerierDB {
             if(deleted) deleted = deleteEntity(link);
 
             if(deleted) {
-                dataset.commit();
+                commitChanges();
             } else {
                 logger.warn("Aborting transaction");
                 dataset.abort();
@@ -3116,7 +3404,7 @@ public class JenaQuerierDB implements IQuerierDB {
             if(deleted) deleted = deleteEntities(links);
 
             if(deleted) {
-                dataset.commit();
+                commitChanges();
             } else {
                 logger.warn("Aborting transaction");
                 dataset.abort();
@@ -3228,7 +3516,7 @@ public class JenaQuerierDB implements IQuerierDB {
             resource.removeAll(maxCardinalityProp);
             resource.removeAll(populationProperty);
             resource.addProperty(populationProperty, object);
-            dataset.commit();
+            commitChanges();
         } 
         catch (Exception e) {
             // Abort the changes and signal that there has been an error
@@ -3292,7 +3580,7 @@ public class JenaQuerierDB implements IQuerierDB {
              dataset.begin(ReadWrite.WRITE);
              datasetModel.removeAll(null, sourceCardinalityProp, null);
              datasetModel.removeAll(null, targetCardinalityProp, null);
-             dataset.commit();
+             commitChanges();
          } 
          catch (Exception e) {
              // Abort the changes and signal that there has been an error
@@ -3415,7 +3703,7 @@ public class JenaQuerierDB implements IQuerierDB {
             dataset.begin(ReadWrite.WRITE);
             resource.removeAll(property);
             resource.addProperty(property, object);
-            dataset.commit();
+            commitChanges();
         } 
         catch (Exception e) {
             // Abort the changes and signal that there has been an error
@@ -3470,7 +3758,7 @@ public class JenaQuerierDB implements IQuerierDB {
             dataset.begin(ReadWrite.WRITE);
             resource.removeAll(property);
             resource.addProperty(property, object);
-            dataset.commit();
+            commitChanges();
         } 
         catch (Exception e) {
             // Abort the changes and signal that there has been an error
@@ -3524,7 +3812,7 @@ public class JenaQuerierDB implements IQuerierDB {
             dataset.begin(ReadWrite.WRITE);
             resource.removeAll(property);
             resource.addLiteral(property, status.booleanValue());
-            dataset.commit();
+            commitChanges();
         } 
         catch (Exception e) {
             // Abort the changes and signal that there has been an error
@@ -37,6 +37,8 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.ResourceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -260,16 +262,23 @@ public class SystemModelQuerier extends AModelQuerier {
 		Set<Asset> setVisible = new HashSet<>();
 		Map<String, Asset> assets = new HashMap<>();
 		
+		// The asset URI and ID are bound as parameters, so the same parsed queries are used for every asset
+		QuerySolutionMap bindings = new QuerySolutionMap();
+		if (assetURI != null) {
+			bindings.add("a", ResourceFactory.createResource(assetURI));
+		}
+		if (assetId != null) {
+			bindings.add("aid", ResourceFactory.createStringLiteral(assetId));
+		}
+
 		// ----- Get base asset information -----
 		
 		String sparql = String.format("SELECT * WHERE {\r\n" + 
-				(assetURI != null ? "	BIND(<" + SparqlHelper.escapeURI(assetURI) + "> AS ?a) .\n" : "") +
 				"	GRAPH <%s> {\r\n" + 
 				" 		?type rdfs:subClassOf* core:Asset .\r\n" + 
 				"       OPTIONAL {?type core:isVisible ?vis}" + 
 				"	}\r\n" + 
 				"	?a a ?type .\r\n" + 
-				(assetId != null ? "	?a core:hasID \"" + SparqlHelper.escapeLiteral(assetId) + "\" .\n" : "") +
 				"	?a core:hasID ?aid .\r\n" + 
 				" 	OPTIONAL {?a rdfs:label ?label}\r\n" + 
 				"	OPTIONAL {?a core:minCardinality ?min}\r\n" + 
@@ -286,91 +295,74 @@ public class SystemModelQuerier extends AModelQuerier {
 				"	}\n" +
 				"}", model.getGraph("domain"), model.getGraph("system"), model.getGraph("system-inf"));
 
-		List<Map<String, String>> rows = store.translateSelectResult(store.querySelect(sparql,
-			model.getGraph("core"),
-			model.getGraph("domain"),
-			model.getGraph("system"),
-			model.getGraph("system-inf"),
-			model.getGraph("system-ui")
-		));
-		
-		for (Map<String, String> row : rows) {
+		store.querySelect(sparql, bindings, row -> {
 			Asset asset = new Asset();
-			asset.setUri(row.get("a"));
-			String label = row.get("label");
+			asset.setUri(row.getString("a"));
+			String label = row.getString("label");
 			asset.setLabel(label == null? "" : label);
 
-			String min = row.get("min");
-			String max = row.get("max");
-			min = min != null ? min.replace("^^http://www.w3.org/2001/XMLSchema#integer", "") : min;
-			max = max != null ? max.replace("^^http://www.w3.org/2001/XMLSchema#integer", "") : max;	
-			asset.setMinCardinality(min != null ? Integer.valueOf(min) : -1);
-			asset.setMaxCardinality(min != null ? Integer.valueOf(max) : -1);
+			int min = row.getInt("min", -1);
+			asset.setMinCardinality(min);
+			asset.setMaxCardinality(min != -1 ? row.getInt("max", -1) : -1);
 
-			String assertedPop = row.get("apop");
-			String defaultPop = row.get("dpop");
+			String assertedPop = row.getString("apop");
+			String defaultPop = row.getString("dpop");
 			String population = assertedPop != null ? assertedPop : defaultPop;
 			asset.setPopulation(population);
 
-			String vis = row.get("vis");
+			String vis = row.getString("vis");
 			if (vis != null) {
 				asset.setVisible(StringUtils.containsIgnoreCase(vis, "true")); // Just in case of type prefix.
 			} else {
 				setVisible.add(asset);
 			}
-			asset.setType(row.get("type"));
+			asset.setType(row.getString("type"));
 			asset.setIconPosition(-1, -1);
 			
 			if (assets.put(asset.getUri(), asset) != null) {
 				throw new RuntimeException("Duplicate Asset with URI " + asset.getUri() + " found.");
 			}
-		}
+		},
+			model.getGraph("core"),
+			model.getGraph("domain"),
+			model.getGraph("system"),
+			model.getGraph("system-inf"),
+			model.getGraph("system-ui")
+		);
 		
 		
 		// ----- Get inferred assets -----
 		if (getInferredAssets) {
 		
 			sparql = String.format("SELECT * WHERE {\r\n" + 
-					(assetURI != null ? "	BIND(<" + SparqlHelper.escapeURI(assetURI) + "> AS ?a) .\n" : "") +
 					"	GRAPH <%s> {\r\n" + 
 					"        ?ia core:displayedAtAsset ?a \r\n" + 
 					"    }\r\n" + 
 					"}", model.getGraph("system-inf"));
-			rows = store.translateSelectResult(store.querySelect(sparql,
-					model.getGraph("system-inf")
-				));
-			
-			for (Map<String, String> row : rows) {
-				String assetUri = row.get("a");
-				Asset asset = assets.get(assetUri);
+			store.querySelect(sparql, bindings, row -> {
+				Asset asset = assets.get(row.getString("a"));
 				if (asset != null) {
-					String ia = row.get("ia");
+					String ia = row.getString("ia");
 					if (ia != null) {
 						asset.getInferredAssets().add(ia);
 					}
 				}
-			}
+			}, model.getGraph("system-inf"));
 		}
 		
 		// ----- Get if asset asserted and visible -----
 		
 		sparql = String.format("SELECT * WHERE {\r\n" + 
-				(assetURI != null ? "	BIND(<" + SparqlHelper.escapeURI(assetURI) + "> AS ?a) .\n" : "") +
 				"	GRAPH <%s> {\r\n" + 
 				"        ?a core:createdByPattern ?createdBy\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system-inf"));
-		rows = store.translateSelectResult(store.querySelect(sparql,
-				model.getGraph("system-inf")
-			));
-		
-		for (Map<String, String> row : rows) {
-			String assetUri = row.get("a");
-			Asset asset = assets.get(assetUri);
+		store.querySelect(sparql, bindings, row -> {
+			Asset asset = assets.get(row.getString("a"));
 			if (asset != null) {
 				asset.setAsserted(false);
 			}
-		}
+		}, model.getGraph("system-inf"));
 		
 		for (Asset asset : setVisible) {
 			asset.setVisible(asset.isAsserted());
@@ -380,47 +372,32 @@ public class SystemModelQuerier extends AModelQuerier {
 		if (getAssetPosition) {
 		
 			sparql = String.format("SELECT * WHERE {\r\n" + 
-					(assetURI != null ? "	BIND(<" + SparqlHelper.escapeURI(assetURI) + "> AS ?a) .\n" : "") +
 					"	GRAPH <%s> {\r\n" + 
 					"        ?a core:positionX ?x .\r\n" + 
 					"        ?a core:positionY ?y .\r\n" + 
 					"    }\r\n" + 
 					"}", model.getGraph("system-ui"));
-			rows = store.translateSelectResult(store.querySelect(sparql,
-					model.getGraph("system-ui")
-				));
-			
-			for (Map<String, String> row : rows) {
-				String assetUri = row.get("a");
-				Asset asset = assets.get(assetUri);
+			store.querySelect(sparql, bindings, row -> {
+				Asset asset = assets.get(row.getString("a"));
 				if (asset != null) {
-					String x = row.get("x");
-					String y = row.get("y");
-					x = x.replace("^^http://www.w3.org/2001/XMLSchema#integer", "");
-					y = y.replace("^^http://www.w3.org/2001/XMLSchema#integer", "");
-					asset.setIconPosition(Integer.valueOf(x), Integer.valueOf(y));
+					asset.setIconPosition(row.getInt("x", -1), row.getInt("y", -1));
 				}
-			}
+			}, model.getGraph("system-ui"));
 		}
 		
 		// ----- Get misbehaviours ----
 		if (misbehaviourSets != null) {
 		
 			sparql = String.format("SELECT * WHERE {\r\n" + 
-					(assetURI != null ? "	BIND(<" + SparqlHelper.escapeURI(assetURI) + "> AS ?a) .\n" : "") +
 					"	GRAPH <%s> {\r\n" + 
 					"        ?ms core:locatedAt ?a .\r\n" + 
 					"        ?ms a core:MisbehaviourSet .\r\n" + 
 					"    }\r\n" + 
 					"}", model.getGraph("system-inf"));
-			rows = store.translateSelectResult(store.querySelect(sparql,
-					model.getGraph("system-inf")));
-			
-			for (Map<String, String> row : rows) {
-				String assetUri = row.get("a");
-				Asset asset = assets.get(assetUri);
+			store.querySelect(sparql, bindings, row -> {
+				Asset asset = assets.get(row.getString("a"));
 				if (asset != null) {
-					MisbehaviourSet misbs = misbehaviourSets.get( row.get("ms"));
+					MisbehaviourSet misbs = misbehaviourSets.get(row.getString("ms"));
 					if (misbs != null) {
 						if (asset.getMisbehaviourSets().put(misbs.getUri(), misbs) != null) {
 							 throw new RuntimeException("Duplicate MisbehaviourSet with URI " + misbs.getUri() + 
@@ -428,27 +405,22 @@ public class SystemModelQuerier extends AModelQuerier {
 						}
 					}
 				}
-			}
+			}, model.getGraph("system-inf"));
 		}
 		
 		// ----- Get trustworthiness attribute sets -----
 		if (trustworthinessAttributeSets != null) {
 
 			sparql = String.format("SELECT * WHERE {\r\n" + 
-					(assetURI != null ? "	BIND(<" + SparqlHelper.escapeURI(assetURI) + "> AS ?a) .\n" : "") +
 					"    GRAPH <%s> {\r\n" + 
 					"        ?twas a core:TrustworthinessAttributeSet .\r\n" + 
 					"        ?twas core:locatedAt ?a .\r\n" + 
 					"    }\r\n" + 
 					"}", model.getGraph("system-inf"));
-			rows = store.translateSelectResult(store.querySelect(sparql,
-					model.getGraph("system-inf")));
-			
-			for (Map<String, String> row : rows) {
-				String assetUri = row.get("a");
-				Asset asset = assets.get(assetUri);
+			store.querySelect(sparql, bindings, row -> {
+				Asset asset = assets.get(row.getString("a"));
 				if (asset != null) {
-					TrustworthinessAttributeSet twas = trustworthinessAttributeSets.get(row.get("twas"));
+					TrustworthinessAttributeSet twas = trustworthinessAttributeSets.get(row.getString("twas"));
 					if (twas != null) {
 						if (asset.getTrustworthinessAttributeSets().put(twas.getUri(), twas) != null) {
 							throw new RuntimeException("Duplicate TrustworthinessAttributeSet with URI " + twas.getUri() + 
@@ -456,27 +428,22 @@ public class SystemModelQuerier extends AModelQuerier {
 						}
 					}
 				}
-			}
+			}, model.getGraph("system-inf"));
 		}
 		
 		// ----- Get control sets -----
 		if (controlSets != null) {
 		
 			sparql = String.format("SELECT * WHERE {\r\n" + 
-					(assetURI != null ? "	BIND(<" + SparqlHelper.escapeURI(assetURI) + "> AS ?a) .\n" : "") +
 					"    GRAPH <%s> {\r\n" + 
 					"        ?cs core:locatedAt ?a .\r\n" + 
 					"        ?cs a core:ControlSet .\r\n" + 
 					"    }\r\n" + 
 					"}", model.getGraph("system-inf"));
-			rows = store.translateSelectResult(store.querySelect(sparql,
-					model.getGraph("system-inf")));
-			
-			for (Map<String, String> row : rows) {
-				String assetUri = row.get("a");
-				Asset asset = assets.get(assetUri);
+			store.querySelect(sparql, bindings, row -> {
+				Asset asset = assets.get(row.getString("a"));
 				if (asset != null) {
-					ControlSet cs = controlSets.get(row.get("cs"));
+					ControlSet cs = controlSets.get(row.getString("cs"));
 					if (cs != null) {
 						if (asset.getControlSets().put(cs.getUri(), cs) != null) {
 							throw new RuntimeException("Duplicate ControlSet with URI " + cs.getUri() + 
@@ -484,7 +451,7 @@ public class SystemModelQuerier extends AModelQuerier {
 						}
 					}
 				}
-			}
+			}, model.getGraph("system-inf"));
 		}
 
 		return assets;
@@ -1530,17 +1497,29 @@ public class SystemModelQuerier extends AModelQuerier {
 			Map<String, ControlStrategy> controlStrategies,
 			Map<String, TrustworthinessAttributeSet> trustworthinessAttributeSets) {
 				
+		// The threat URI, threat ID and asset URI are bound as parameters, so the same parsed queries are used for
+		// every threat
+		QuerySolutionMap bindings = new QuerySolutionMap();
+		if (threatURI != null) {
+			bindings.add("t", ResourceFactory.createResource(threatURI));
+		}
+		if (threatId != null) {
+			bindings.add("tid", ResourceFactory.createStringLiteral(threatId));
+		}
+		if (assetURI != null) {
+			bindings.add("a", ResourceFactory.createResource(assetURI));
+		}
+
 		// ----- Get threats -----
 		
 		String query = String.format("SELECT DISTINCT * WHERE {\r\n" + 
-				(threatURI != null ? "    BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
 				"        ?t core:parent ?genThreat .\r\n" + 
 				"        OPTIONAL { ?t core:isSecondaryThreat ?isSecondaryThreat }\r\n" + 
 				"        BIND(IF(BOUND(?isSecondaryThreat),STR(?isSecondaryThreat),\"false\") AS ?isST)\n" +
 				"        OPTIONAL { ?t core:isNormalOp ?isNormalOp }\r\n" + 
 				"        BIND(IF(BOUND(?isNormalOp),STR(?isNormalOp),\"false\") AS ?isNO)\n" +
-				(threatId != null ? "    ?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "    ?t core:hasID ?tid .\n" : "") +
 				"        ?t core:threatens ?a .\r\n" + 
 				"        ?t core:appliesTo ?matchingPattern .\r\n" + 
 				"        OPTIONAL { ?t rdfs:comment ?tDesc }\r\n" + 
@@ -1548,7 +1527,6 @@ public class SystemModelQuerier extends AModelQuerier {
 				"        OPTIONAL { ?t core:isRootCause ?isRootCause }\r\n" + 
 				"        BIND(IF(BOUND(?isRootCause),STR(?isRootCause),\"false\") AS ?isRC)\n" +
 				"    }\r\n" +
-				(assetURI != null ? "    FILTER (?a=<" + SparqlHelper.escapeURI(assetURI) + ">) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
 				"        ?genThreat a ?threat .\r\n" + 
 				"        ?threat rdfs:subClassOf* core:Threat .\r\n" + 
@@ -1557,36 +1535,32 @@ public class SystemModelQuerier extends AModelQuerier {
 				"    }" +
 				"}", model.getGraph("system-inf"), 
 				model.getGraph("domain"));
-		List<Map<String, String>> rows = store.translateSelectResult(store.querySelect(query,
-				model.getGraph("domain"),
-				model.getGraph("system-inf")));
-		
 		Map<String, Threat> threats = new HashMap<String, Threat>();
-		
-		if (rows.isEmpty()) {
-			logger.debug("No threats found");
-			return threats;
-		}
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
 
-			if (!row.containsKey("isSecondaryThreat")) {
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
+
+			if (!row.contains("isSecondaryThreat")) {
 				logger.debug("isSecondaryThreat missing for threat: {}", threatUri);
 			}
 
 			//is threat a secondary threat (otherwise primary)
-			boolean secondaryThreat = Boolean.parseBoolean(row.get("isST"));
+			boolean secondaryThreat = row.getBoolean("isST", false);
 
 			//is threat a normal operation
-			boolean normalOperation = Boolean.parseBoolean(row.get("isNO"));
+			boolean normalOperation = row.getBoolean("isNO", false);
+
+			String description = row.getString("tDesc");
+			if (description == null) {
+				description = row.getString("genDesc");
+			}
 
 			Threat threat = new Threat(threatUri,
-					row.get("l"),
-					row.get("tDesc")!=null?row.get("tDesc"):(row.get("genDesc")!=null?row.get("genDesc"):"No description available"),
-					patterns.get(row.get("matchingPattern")),
-					row.get("a"),
-					row.get("genThreat"),
+					row.getString("l"),
+					description != null ? description : "No description available",
+					patterns.get(row.getString("matchingPattern")),
+					row.getString("a"),
+					row.getString("genThreat"),
 					secondaryThreat,
 					null, 
 					new HashMap<>(), new HashMap<>(), new HashMap<>());
@@ -1594,28 +1568,31 @@ public class SystemModelQuerier extends AModelQuerier {
 			threat.setNormalOperation(normalOperation);
 
 			//is threat a root cause of a misbehaviour set?
-			threat.setRootCause(Boolean.valueOf(row.get("isRC")));
+			threat.setRootCause(row.getBoolean("isRC", false));
 			
 			if (threats.put(threatUri, threat) != null) {
 				throw new RuntimeException("Duplicate Threat with URI " + threatUri + " found.");
 			}
+		},
+				model.getGraph("domain"),
+				model.getGraph("system-inf"));
+		
+		if (threats.isEmpty()) {
+			logger.debug("No threats found");
+			return threats;
 		}
 				
 		// ----- Get indirect misbehaviours -----
 		
 		query = String.format("SELECT DISTINCT * WHERE {\r\n" +
-				(threatURI != null ? "	BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
-				(threatId != null ? "	?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "	?t core:hasID ?tid .\n" : "") +
 				"        ?t core:causesIndirectMisbehaviour ?ms\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system-inf"));
-		rows = store.translateSelectResult(store.querySelect(query, 
-				model.getGraph("system-inf")));
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
-			String effectUri = row.get("ms");
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
+			String effectUri = row.getString("ms");
 			
 			MisbehaviourSet misbs = misbehaviourSets.get(effectUri);
 			if (misbs != null && threats.containsKey(threatUri)) {
@@ -1624,24 +1601,20 @@ public class SystemModelQuerier extends AModelQuerier {
 							 " associated with IndirectEffect with URI " + effectUri + " for Threat with URI " + threatUri);
 				}
 			}
-		}
+		}, model.getGraph("system-inf"));
 			
 		
 		// ----- Get misbehaviours -----
 		
 		query = String.format("SELECT DISTINCT * WHERE {\r\n" + 
-				(threatURI != null ? "	BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"	GRAPH <%s> {\r\n" + 
-				(threatId != null ? "	?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "	?t core:hasID ?tid .\n" : "") +
 				"        ?t core:causesMisbehaviour ?cmisb .\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system-inf"));
-		rows = store.translateSelectResult(store.querySelect(query,
-				model.getGraph("system-inf")));
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
-			MisbehaviourSet cm = misbehaviourSets.get(row.get("cmisb"));
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
+			MisbehaviourSet cm = misbehaviourSets.get(row.getString("cmisb"));
 			if ( threats.containsKey(threatUri)) {
 				if (cm != null) {
 					if (!threats.get(threatUri).getMisbehaviours().containsKey(cm.getUri())) {
@@ -1649,49 +1622,41 @@ public class SystemModelQuerier extends AModelQuerier {
 					}
 				} else {
 					logger.warn("Could not find misbehaviour set {} for threat {}", 
-							row.get("cmisb"), threats.get(threatUri).getLabel());
+							row.getString("cmisb"), threats.get(threatUri).getLabel());
 				}
 			}
-		}
+		}, model.getGraph("system-inf"));
 		
 		// -----  Get acceptance justifications -----
 
 		query = String.format("SELECT DISTINCT * WHERE {\r\n" + 
-				(threatURI != null ? "	BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
-				(threatId != null ? "	?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "	?t core:hasID ?tid .\n" : "") +
 				"        ?t core:acceptanceJustification ?aj .\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system"));
-		rows = store.translateSelectResult(store.querySelect(query,
-				model.getGraph("system")));
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
 			Threat threat = threats.get(threatUri);
 			if (threat != null) {
-				threat.setAcceptanceJustification(row.get("aj"));
+				threat.setAcceptanceJustification(row.getString("aj"));
 			}
 			else {
 				logger.warn("accepted threat does not exist: {}", threatUri);
 			}
-		}
+		}, model.getGraph("system"));
 		
 		// ----- Get secondary effect conditions -----
 		
 		query = String.format("SELECT DISTINCT * WHERE {\r\n" + 
-				(threatURI != null ? "	BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
-				(threatId != null ? "	?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "	?t core:hasID ?tid .\n" : "") +
 				"        ?t core:hasSecondaryEffectCondition ?seceff .\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system-inf"));
-		rows = store.translateSelectResult(store.querySelect(query,
-				model.getGraph("system-inf")));
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
-			String seceffUri = row.get("seceff");
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
+			String seceffUri = row.getString("seceff");
 			Threat threat = threats.get(threatUri);
 			if (threat != null) {
 				if (threat.getSecondaryEffectConditions().put(seceffUri, misbehaviourSets.get(seceffUri)) != null) {
@@ -1699,38 +1664,33 @@ public class SystemModelQuerier extends AModelQuerier {
 							 " associated with SecondaryEffectCondition with URI " + seceffUri + " at Threat " + threatUri);
 				}
 			}
-		}
+		}, model.getGraph("system-inf"));
 		
 		// ----- Get entry points -----
 		
 		query = String.format("SELECT DISTINCT * WHERE {\r\n" + 
-				(threatURI != null ? "	BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
-				(threatId != null ? "	?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "	?t core:hasID ?tid .\n" : "") +
 				"        ?t core:hasEntryPoint ?twas .\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system-inf"));
-		rows = store.translateSelectResult(store.querySelect(query,
-				model.getGraph("system-inf")));
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
-			TrustworthinessAttributeSet twas = trustworthinessAttributeSets.get(row.get("twas"));
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
+			TrustworthinessAttributeSet twas = trustworthinessAttributeSets.get(row.getString("twas"));
 			if (twas != null && threats.containsKey(threatUri)) {
 				if (!threats.get(threatUri).getEntryPoints().containsKey(twas.getUri())) {
 					threats.get(threatUri).getEntryPoints().put(twas.getUri(), twas);
 				} else {
-					logger.warn("Could not find twas {} in the model", row.get("twas"));
+					logger.warn("Could not find twas {} in the model", row.getString("twas"));
 				}
 			}
-		}
+		}, model.getGraph("system-inf"));
 		
 		// ----- Get likelihoods -----
 		
 		query = String.format("SELECT DISTINCT * WHERE {\r\n" + 
-				(threatURI != null ? "	BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
-				(threatId != null ? "	?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "	?t core:hasID ?tid .\n" : "") +
 				"			?t core:hasPrior ?likelihood .\r\n" + 
 				"		}\r\n" + 
 				"    GRAPH <%s> {\r\n" + 
@@ -1740,38 +1700,33 @@ public class SystemModelQuerier extends AModelQuerier {
 				"        BIND(STR(?likelihoodv) AS ?likelihoodval)\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system-inf"), model.getGraph("domain"));
-		rows = store.translateSelectResult(store.querySelect(query,
-				model.getGraph("system-inf"), model.getGraph("domain")));
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
 			Level likelihood = new Level();
-			likelihood.setUri(row.get("likelihood"));	
-			String value = row.get("likelihoodl");
+			likelihood.setUri(row.getString("likelihood"));	
+			String value = row.getString("likelihoodl");
 			if (value != null) {
 				likelihood.setLabel(value);
 			}
-			value = row.get("likelihoodc");
+			value = row.getString("likelihoodc");
 			if (value != null) {
 				likelihood.setDescription(value);
 			}
-			value = row.get("likelihoodval");
-			if (value != null) {
-				likelihood.setValue(Integer.valueOf(value));
+			if (row.contains("likelihoodval")) {
+				likelihood.setValue(row.getInt("likelihoodval", 0));
 			}
 			
 			Threat threat = threats.get(threatUri);
 			if (threat != null) {
 				threat.setLikelihood(likelihood);
 			}
-		}
+		}, model.getGraph("system-inf"), model.getGraph("domain"));
 		
 		// ----- Get risks -----
 		
 		query = String.format("SELECT DISTINCT * WHERE {\r\n" + 
-				(threatURI != null ? "	BIND (<" + SparqlHelper.escapeURI(threatURI) + "> AS ?t) .\n" : "") +
 				"    GRAPH <%s> {\r\n" + 
-				(threatId != null ? "	?t core:hasID \"" + SparqlHelper.escapeLiteral(threatId) + "\" . \n" : "") +
+				(threatId != null ? "	?t core:hasID ?tid .\n" : "") +
 				"			?t core:hasRisk ?risk .\r\n" + 
 				"		}\r\n" + 
 				"    GRAPH <%s> {\r\n" + 
@@ -1781,31 +1736,27 @@ public class SystemModelQuerier extends AModelQuerier {
 				"        BIND(STR(?riskv) AS ?riskval)\r\n" + 
 				"    }\r\n" + 
 				"}", model.getGraph("system-inf"), model.getGraph("domain"));
-		rows = store.translateSelectResult(store.querySelect(query,
-				model.getGraph("system-inf"), model.getGraph("domain")));
-		
-		for (Map<String, String> row : rows) {
-			String threatUri = row.get("t");
+		store.querySelect(query, bindings, row -> {
+			String threatUri = row.getString("t");
 			Level risk = new Level();
-			risk.setUri(row.get("risk"));	
-			String value = row.get("riskl");
+			risk.setUri(row.getString("risk"));	
+			String value = row.getString("riskl");
 			if (value != null) {
 				risk.setLabel(value);
 			}
-			value = row.get("riskc");
+			value = row.getString("riskc");
 			if (value != null) {
 				risk.setDescription(value);
 			}
-			value = row.get("riskval");
-			if (value != null) {
-				risk.setValue(Integer.valueOf(value));
+			if (row.contains("riskval")) {
+				risk.setValue(row.getInt("riskval", 0));
 			}
 			
 			Threat threat = threats.get(threatUri);
 			if (threat != null) {
 				threat.setRiskLevel(risk);
 			}
-		}
+		}, model.getGraph("system-inf"), model.getGraph("domain"));
 		
 		logger.info("Total control strategies: {}", controlStrategies.size());
 
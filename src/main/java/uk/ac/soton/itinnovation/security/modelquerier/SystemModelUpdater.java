@@ -41,6 +41,7 @@ import uk.ac.soton.itinnovation.security.model.system.MetadataPair;
 import uk.ac.soton.itinnovation.security.model.system.Model;
 import uk.ac.soton.itinnovation.security.model.system.Relation;
 import uk.ac.soton.itinnovation.security.model.system.TrustworthinessAttributeSet;
+import uk.ac.soton.itinnovation.security.modelquerier.util.ModelChangeNotifier;
 import uk.ac.soton.itinnovation.security.modelquerier.util.ModelStack;
 import uk.ac.soton.itinnovation.security.modelquerier.util.QuerierUtils;
 import uk.ac.soton.itinnovation.security.semanticstore.AStoreWrapper;
@@ -96,7 +97,7 @@ public class SystemModelUpdater {
 		"	OPTIONAL {?m core:riskCalculationMode ?riskCalculationMode}\n" +
 		//"	OPTIONAL {?m core:hasRisk ?risk}\n" +
 		"}";
-		store.update(sparql);
+		update(store, sparql);
 
 		logger.debug("Stored {} in graph <{}>", model, model.getGraph("system"));
 	}
@@ -151,7 +152,7 @@ public class SystemModelUpdater {
 		"	OPTIONAL {?m1 core:riskCalculationMode ?riskCalculationMode}\n" +
 		//"	OPTIONAL {?m1 core:hasRisk ?risk}\n" +
 		"}";
-		store.update(sparql);
+		update(store, sparql);
 
 		logger.debug("Stored {} in graph <{}>", model, model.getGraph("system"));
 	}
@@ -191,7 +192,7 @@ public class SystemModelUpdater {
             "   }\n" +
             "};\n";
         }
-        store.update(sparql);
+        update(store, sparql);
 
         logger.debug("Updated {} asset positions", assets.size());
     }
@@ -224,7 +225,7 @@ public class SystemModelUpdater {
 		"		OPTIONAL {?a core:positionY ?y}\n" +
 		"	}\n" +
 		"}";
-		store.update(sparql);
+		update(store, sparql);
 
 		logger.debug("Updated position for asset <{}>, new coordinhates: ({}/{})", assetURI, x, y);
     }
@@ -253,7 +254,7 @@ public class SystemModelUpdater {
 		"		OPTIONAL {?a rdfs:label ?l}\n" +
 		"	}\n" +
 		"}";
-		store.update(sparql);
+		update(store, sparql);
 
 		logger.debug("Updated position for asset {} <{}>", assetLabel, assetURI);
     }
@@ -306,7 +307,7 @@ public class SystemModelUpdater {
 		"		}\n" +
 		"	}\n" +
 		"}";
-		store.update(sparql);
+		update(store, sparql);
 
 		logger.debug("Updated type for asset <{}> to {}", assetURI, assetType);
 		
@@ -346,7 +347,7 @@ public class SystemModelUpdater {
 		"	OPTIONAL {?a core:minCardinality ?min}\n" +
 		"	OPTIONAL {?a core:maxCardinality ?max}\n" +
 		"}";
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 
 		logger.debug("Stored <{}>'s new cardinality constraints: {}, {}", assetURI, min, max);
 	}
@@ -377,7 +378,7 @@ public class SystemModelUpdater {
 		"		}\n" +
 		"	}\n" +
 		"}";
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 
 		logger.debug("Stored <{}>'s new population: {}, {}", assetURI, population);
 	}
@@ -472,7 +473,7 @@ public class SystemModelUpdater {
 		"		}\n" +
 		"	}\n" +
 		"}";
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"), model.getGraph("domain"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"), model.getGraph("domain"));
 
 		logger.debug("Stored {} in graph <{}> and UI components in graph <{}>", asset, assetGraph, model.getGraph("system-ui"));
 	}
@@ -547,7 +548,7 @@ public class SystemModelUpdater {
 		"	}\n" +
 		"}";
 
-		store.update(sparql);
+		update(store, sparql);
 	}
 
 	/**
@@ -628,7 +629,7 @@ public class SystemModelUpdater {
 		"	}}\n" +
 		"}";
 
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"));
 	}
 
 	/**
@@ -653,7 +654,7 @@ public class SystemModelUpdater {
 		if (cs.getCoverageLevel() != null) {
 			logger.debug("Setting coverage: {}", cs.getCoverageLevel());
 			String sparql = createUpdateControlSetSparql(cs.getUri(), cs.getAssetUri(), cs.getControl(), cs.isProposed(), cs.isWorkInProgress(), cs.getCoverageLevel());
-			store.update(sparql, model.getGraph("domain"), model.getGraph("system"), model.getGraph("system-inf"));
+			update(store, sparql, model.getGraph("domain"), model.getGraph("system"), model.getGraph("system-inf"));
 		}
 		else {
 			controlSets = this.updateControlSets(store, controlSets, cs.isProposed(), cs.isWorkInProgress());
@@ -684,7 +685,7 @@ public class SystemModelUpdater {
 			logger.debug("control set {}, proposed: {}", cs, proposed);
 
 			String sparql = createUpdateControlSetSparql(cs, null, null, proposed, workInProgress, null);
-			store.update(sparql, model.getGraph("domain"), model.getGraph("system"), model.getGraph("system-inf"));
+			update(store, sparql, model.getGraph("domain"), model.getGraph("system"), model.getGraph("system-inf"));
 		}
 
 		return expandedControlSets;
@@ -703,7 +704,7 @@ public class SystemModelUpdater {
 		String sparql = createRevertControlSetCoverageSparql(cs.getUri());
 		//logger.info(sparql);
 
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	private String createRevertControlSetCoverageSparql(String uri) {
@@ -850,7 +851,7 @@ public class SystemModelUpdater {
 			"	OPTIONAL {?t core:acceptanceJustification ?aj}\n" +
 			"}";
 		}
-		store.update(sparql, model.getGraph("domain"), model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("domain"), model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	/**
@@ -889,7 +890,7 @@ public class SystemModelUpdater {
 		"		}\n" +
 		"	}\n" +
 		"}";
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	/**
@@ -904,7 +905,7 @@ public class SystemModelUpdater {
 
 		String sparql = createRevertTwasSparql(twas.getUri());
 
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	private String createRevertTwasSparql(String uri) {
@@ -958,7 +959,7 @@ public class SystemModelUpdater {
 		"		}\n" +
 		"	}\n" +
 		"}";
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	/**
@@ -974,7 +975,7 @@ public class SystemModelUpdater {
 		String sparql = createRevertImpactSparql(ms.getUri());
 		logger.info(sparql);
 
-		store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	private String createRevertImpactSparql(String uri) {
@@ -1031,7 +1032,7 @@ public class SystemModelUpdater {
 			}
 		}
 		sparql += "}}";
-		store.update(sparql);
+		update(store, sparql);
 	}
 
 	/**
@@ -1086,7 +1087,7 @@ public class SystemModelUpdater {
 			"}\n" + 
 			whereString;
 
-		return store.update(sparql, model.getGraph("system"), model.getGraph("system-ui"));
+		return update(store, sparql, model.getGraph("system"), model.getGraph("system-ui"));
 	}
 
 	/**
@@ -1106,7 +1107,7 @@ public class SystemModelUpdater {
 		"		OPTIONAL { ?cs core:isWorkInProgress ?workInProgress }\n" +
 		"   }";
 
-		return store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		return update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	/**
@@ -1124,7 +1125,7 @@ public class SystemModelUpdater {
 		"		OPTIONAL { ?twas core:hasAssertedLevel ?level }\n" +
 		"   }";
 
-		return store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		return update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	/**
@@ -1142,7 +1143,7 @@ public class SystemModelUpdater {
 		"		OPTIONAL { ?ms core:hasImpactLevel ?level }\n" +
 		"   }";
 
-		return store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"));
+		return update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"));
 	}
 
 	/**
@@ -1175,7 +1176,7 @@ public class SystemModelUpdater {
 		"	OPTIONAL {?thing ?p1 ?o}\n" +
 		"	OPTIONAL {?s ?p2 ?thing}\n" +
 		"}";
-		return store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"));
+		return update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"));
 	}
 
 
@@ -1207,7 +1208,7 @@ public class SystemModelUpdater {
 		"	OPTIONAL {?thing ?p1 ?o}\n" +
 		"	OPTIONAL {?s ?p2 ?thing}\n" +
 		"}";
-		return store.update(sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"));
+		return update(store, sparql, model.getGraph("system"), model.getGraph("system-inf"), model.getGraph("system-ui"));
 	}
 
 	public void setIsValidating(AStoreWrapper store, boolean validating) {
@@ -1232,7 +1233,7 @@ public class SystemModelUpdater {
 
 	private void setModelFlag(AStoreWrapper store, String flag, boolean value) {
 		String modelGraph = model.getGraph("system");
-		store.update("DELETE {\n" +
+		update(store, "DELETE {\n" +
 				"	GRAPH <" + modelGraph + "> { ?model " + flag + " ?v .}\n" +
 				"} INSERT {\n" +
 				"	GRAPH <" + modelGraph + "> { ?model " + flag + " \"" + (value?"true":"false") + "\"^^xsd:boolean .}\n" +
@@ -1258,7 +1259,7 @@ public class SystemModelUpdater {
 
 		String predicate = "<http://purl.org/dc/terms/created>";
 
-		store.update("DELETE {\n" +
+		update(store, "DELETE {\n" +
 				"	GRAPH <" + modelInfGraph + "> { ?model " + predicate + " ?createDate .}\n" +
 				"} INSERT {\n" +
 				"	GRAPH <" + modelInfGraph + "> { ?model " + predicate + " \"" + dateString + "\"^^xsd:string .}\n" +
@@ -1277,7 +1278,7 @@ public class SystemModelUpdater {
 		String dateString = (new SimpleDateFormat("yyyy/MM/dd HH:mm:ss")).format(date);
 		String predicate = "<http://purl.org/dc/terms/modified>";
 
-		store.update("DELETE {\n" +
+		update(store, "DELETE {\n" +
 				"	GRAPH <" + modelInfGraph + "> { ?model " + predicate + " ?createDate .}\n" +
 				"} INSERT {\n" +
 				"	GRAPH <" + modelInfGraph + "> { ?model " + predicate + " \"" + dateString + "\"^^xsd:string .}\n" +
@@ -1344,7 +1345,7 @@ public class SystemModelUpdater {
 			"}",
 			model.getGraph("system-meta"), metaUri, key, metaUri, value, entity.getUri(), metaUri);
 
-		return store.update(query);
+		return update(store, query);
 	}
 
 	/**
@@ -1371,7 +1372,7 @@ public class SystemModelUpdater {
 			"    }\n" +
 			"  }\n" +
 			"}", model.getGraph("system-meta"), model.getGraph("system-meta"),  entity.getUri());
-		store.update(query);
+		update(store, query);
 	}
 
 	/**
@@ -1384,7 +1385,7 @@ public class SystemModelUpdater {
 	public boolean storeAssetGroup(AStoreWrapper store, AssetGroup assetGroup) {
 		String escapedUri = SparqlHelper.escapeURI(assetGroup.getUri());
 
-		boolean updated = store.update(String.format("WITH <%s>\n" +
+		boolean updated = update(store, String.format("WITH <%s>\n" +
 				"DELETE {\n" +
 				"  ?assetGroup ?p ?o\n" +
 				"} WHERE {\n" +
@@ -1424,7 +1425,7 @@ public class SystemModelUpdater {
 		sb.append("  }\n");
 		sb.append("}\n");
 
-		return store.update(sb.toString());
+		return update(store, sb.toString());
 	}
 
 	public boolean addAssetsToAssetGroup(AStoreWrapper store, AssetGroup assetGroup, Set<Asset> assets) {
@@ -1452,7 +1453,7 @@ public class SystemModelUpdater {
 		}
 		sb.append("  }\n");
 		sb.append("}\n");
-		return store.update(sb.toString());
+		return update(store, sb.toString());
 	}
 
 	public boolean removeAssetsFromAssetGroup(AStoreWrapper store, AssetGroup assetGroup, Set<Asset> assets) {
@@ -1469,7 +1470,7 @@ public class SystemModelUpdater {
 		}
 		sb.append("  }\n");
 		sb.append("}\n");
-		return store.update(sb.toString());
+		return update(store, sb.toString());
 	}
 
 	public boolean deleteAssetGroup(AStoreWrapper store, AssetGroup assetGroup, boolean deleteAssets) {
@@ -1496,7 +1497,7 @@ public class SystemModelUpdater {
 				"  ?assetGroup core:positionY ?y .\n" +
 				"}", model.getGraph("system-ui"), x, y, assetGroup.getUri());
 
-		store.update(query);
+		update(store, query);
 		assetGroup.setX(x);
 		assetGroup.setY(y);
 	}
@@ -1516,7 +1517,7 @@ public class SystemModelUpdater {
 				"  OPTIONAL { ?assetGroup core:height ?h }\n" +
 				"}", model.getGraph("system-ui"), width, height, assetGroup.getUri());
 
-		store.update(query);
+		update(store, query);
 		assetGroup.setWidth(width);
 		assetGroup.setHeight(height);
 	}
@@ -1533,7 +1534,7 @@ public class SystemModelUpdater {
 				"  OPTIONAL { ?assetGroup core:isExpanded ?expanded }\n" +
 				"}", model.getGraph("system-ui"), expanded, assetGroup.getUri());
 
-		store.update(query);
+		update(store, query);
 		assetGroup.setExpanded(expanded);
 	}
 
@@ -1549,7 +1550,7 @@ public class SystemModelUpdater {
 				"  ?assetGroup rdfs:label ?label .\n" +
 				"}", model.getGraph("system-ui"), label, assetGroup.getUri());
 
-		store.update(query);
+		update(store, query);
 		assetGroup.setLabel(label);
 	}
 
@@ -1561,4 +1562,15 @@ public class SystemModelUpdater {
 	public ModelStack getModel() {
 		return model;
 	}
+
+	/**
+	 * Run a SPARQL update and report that the system model has changed.
+	 */
+	private boolean update(AStoreWrapper store, String sparql, String... graphs) {
+		try {
+			return store.update(sparql, graphs);
+		} finally {
+			ModelChangeNotifier.modelChanged(model.getGraph("system"));
+		}
+	}
 }
@@ -0,0 +1,142 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the sub-types and super-types of each type in a domain model, including indirect ones.
+ *
+ * The index is built once from the direct sub-types and super-types of each type, and is not changed
+ * afterwards, so it can be shared between queriers and threads. Each type is given an integer ID, and its
+ * super-types are held as a BitSet of IDs, so isSubTypeOf() is a single bit lookup. The lists of sub-types
+ * and super-types are in breadth first order starting from the type itself, and are unmodifiable.
+ */
+public class TypeHierarchy {
+
+    private final Map<String, Integer> ids = new HashMap<>();                   // ID of each type, indexed by type URI
+    private final List<List<String>> subTypes = new ArrayList<>();              // Sub-types of each type including itself, indexed by ID
+    private final List<List<String>> superTypes = new ArrayList<>();            // Super-types of each type including itself, indexed by ID
+    private final List<BitSet> superTypeIds = new ArrayList<>();                // IDs of the super-types of each type including itself, indexed by ID
+
+    /**
+     * Build the index.
+     *
+     * @param subTypeMap the direct sub-types of each type
+     * @param superTypeMap the direct super-types of each type
+     */
+    public TypeHierarchy(Map<String, List<String>> subTypeMap, Map<String, List<String>> superTypeMap) {
+        Set<String> types = new LinkedHashSet<>();
+        addTypes(types, subTypeMap);
+        addTypes(types, superTypeMap);
+        for (String type : types) {
+            ids.put(type, ids.size());
+        }
+
+        for (String type : types) {
+            subTypes.add(closure(type, subTypeMap));
+            List<String> supers = closure(type, superTypeMap);
+            superTypes.add(supers);
+            BitSet superIds = new BitSet(types.size());
+            for (String superType : supers) {
+                superIds.set(ids.get(superType));
+            }
+            superTypeIds.add(superIds);
+        }
+    }
+
+    /**
+     * Get the sub-types of a type, including indirect ones. If `includeSelf` is true, then `type` is the
+     * first item in the list.
+     */
+    public List<String> getSubTypes(String type, boolean includeSelf) {
+        return getTypeList(subTypes, type, includeSelf);
+    }
+
+    /**
+     * Get the super-types of a type, including indirect ones. If `includeSelf` is true, then `type` is the
+     * first item in the list.
+     */
+    public List<String> getSuperTypes(String type, boolean includeSelf) {
+        return getTypeList(superTypes, type, includeSelf);
+    }
+
+    /**
+     * Check whether `type` is `superType` or one of its sub-types, direct or indirect.
+     */
+    public boolean isSubTypeOf(String type, String superType) {
+        Integer id = ids.get(type);
+        Integer superId = ids.get(superType);
+        if (id == null || superId == null) {
+            return type != null && type.equals(superType);
+        }
+        return superTypeIds.get(id).get(superId);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private List<String> getTypeList(List<List<String>> typeLists, String type, boolean includeSelf) {
+        Integer id = ids.get(type);
+        if (id == null) {
+            return includeSelf ? Collections.singletonList(type) : Collections.emptyList();
+        }
+        List<String> types = typeLists.get(id);
+        return includeSelf ? types : types.subList(1, types.size());
+    }
+
+    private static void addTypes(Set<String> types, Map<String, List<String>> typeMap) {
+        for (Map.Entry<String, List<String>> entry : typeMap.entrySet()) {
+            types.add(entry.getKey());
+            types.addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * Get a type and all the types reachable from it through the type map, in breadth first order. Types
+     * reachable by more than one path are only included once.
+     */
+    private static List<String> closure(String type, Map<String, List<String>> typeMap) {
+        Set<String> visited = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        visited.add(type);
+        queue.add(type);
+        while (!queue.isEmpty()) {
+            for (String next : typeMap.getOrDefault(queue.remove(), Collections.emptyList())) {
+                if (visited.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(visited));
+    }
+
+}
@@ -0,0 +1,73 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tells interested parties (e.g. caches of system model data) when a system model has been changed in the
+ * triple store.
+ *
+ * The querier and updater classes are created for each request or job, so they report changes here rather
+ * than holding references to the listeners. Listeners are given the URI of the system model graph.
+ */
+public class ModelChangeNotifier {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelChangeNotifier.class);
+
+	private static final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+	private ModelChangeNotifier() {
+		throw new IllegalStateException("ModelChangeNotifier is a Utility class");
+	}
+
+	public static void addListener(Consumer<String> listener) {
+		listeners.add(listener);
+	}
+
+	public static void removeListener(Consumer<String> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Report that a system model has been changed.
+	 *
+	 * @param systemGraph the URI of the system model graph (or of one of its inferred, UI or meta graphs)
+	 */
+	public static void modelChanged(String systemGraph) {
+		if (systemGraph == null) {
+			return;
+		}
+		for (Consumer<String> listener : listeners) {
+			try {
+				listener.accept(systemGraph);
+			} catch (RuntimeException e) {
+				logger.warn("Model change listener failed for <{}>", systemGraph, e);
+			}
+		}
+	}
+
+}
@@ -31,6 +31,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.soton.itinnovation.security.model.test.TestModel;
+import uk.ac.soton.itinnovation.security.modelquerier.DomainModelCache;
 import uk.ac.soton.itinnovation.security.semanticstore.AStoreWrapper;
 import uk.ac.soton.itinnovation.security.semanticstore.IStoreWrapper.Format;
 import uk.ac.soton.itinnovation.security.semanticstore.JenaTDBStoreWrapper;
@@ -99,6 +100,7 @@ public class TestHelper {
 		store.addPrefixes(model.getNamespaces());
 		model.clearAllGraphs(store);
 		store.clear();
+		DomainModelCache.clear();
 
 		//import core model
 		store.loadIntoGraph(classLoader.getResourceAsStream("core.rdf"), model.getGraph("core"), Format.RDF);
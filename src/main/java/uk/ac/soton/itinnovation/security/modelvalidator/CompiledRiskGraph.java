@@ -0,0 +1,277 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelvalidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact form of the threat graph used by the RiskCalculator to propagate likelihoods.
+ *
+ * Threats, misbehaviour sets (MS), TWAS and CSGs are given dense integer IDs, in the order in which they
+ * are added to the builder. Links between them are held in compressed sparse row (CSR) form: the targets
+ * of links from entity i are targets[start[i]] to targets[start[i+1] - 1]. Likelihood and TW levels are
+ * held as primitive level values, with -1 meaning no level.
+ *
+ * The structure is built once per risk calculation. The level arrays are loaded from the entities before
+ * each propagation, and the calculator writes any changed levels back to the entities as it goes.
+ */
+class CompiledRiskGraph {
+
+    final String[] threatURIs;
+    final String[] msURIs;
+    final String[] twasURIs;
+    final String[] csgURIs;
+
+    private final Map<String, Integer> threatIds;
+    private final Map<String, Integer> msIds;
+    private final Map<String, Integer> twasIds;
+    private final Map<String, Integer> csgIds;
+
+    final int[] causeStart;             // Threat -> MS on which the threat likelihood depends
+    final int[] causes;
+    final int[] dependentStart;         // MS -> threats whose likelihood depends on the MS
+    final int[] dependents;
+    final int[] effectStart;            // Threat -> MS the threat may cause
+    final int[] effects;
+    final int[] causingThreatStart;     // MS -> threats that may cause the MS
+    final int[] causingThreats;
+    final int[] underminedStart;        // MS -> TWAS undermined by the MS
+    final int[] undermined;
+    final int[] csgThreatStart;         // CSG -> threats blocked, mitigated or triggered by the CSG
+    final int[] csgThreats;
+    final int[] entryPointMS;           // TWAS -> MS undermining the TWAS, or -1
+
+    final int[] threatPrior;            // Likelihood level value of each threat
+    final int[] msPrior;                // Likelihood level value of each MS
+    final int[] twasLevel;              // Inferred TW level value of each TWAS
+
+    private CompiledRiskGraph(Builder builder) {
+        threatURIs = builder.threatURIs.toArray(new String[0]);
+        msURIs = builder.msURIs.toArray(new String[0]);
+        twasURIs = builder.twasURIs.toArray(new String[0]);
+        csgURIs = builder.csgURIs.toArray(new String[0]);
+
+        threatIds = builder.threatIds;
+        msIds = builder.msIds;
+        twasIds = builder.twasIds;
+        csgIds = builder.csgIds;
+
+        int[][] csr = builder.causeLinks.toCsr(threatURIs.length);
+        causeStart = csr[0];
+        causes = csr[1];
+        csr = builder.causeLinks.reverse().toCsr(msURIs.length);
+        dependentStart = csr[0];
+        dependents = csr[1];
+        csr = builder.effectLinks.toCsr(threatURIs.length);
+        effectStart = csr[0];
+        effects = csr[1];
+        csr = builder.effectLinks.reverse().toCsr(msURIs.length);
+        causingThreatStart = csr[0];
+        causingThreats = csr[1];
+        csr = builder.undermineLinks.toCsr(msURIs.length);
+        underminedStart = csr[0];
+        undermined = csr[1];
+        csr = builder.csgLinks.toCsr(csgURIs.length);
+        csgThreatStart = csr[0];
+        csgThreats = csr[1];
+
+        entryPointMS = new int[twasURIs.length];
+        Arrays.fill(entryPointMS, -1);
+        int[] from = builder.undermineLinks.from.toArray();
+        int[] to = builder.undermineLinks.to.toArray();
+        for (int i = 0; i < from.length; i++) {
+            entryPointMS[to[i]] = from[i];
+        }
+
+        threatPrior = new int[threatURIs.length];
+        msPrior = new int[msURIs.length];
+        twasLevel = new int[twasURIs.length];
+    }
+
+    int getThreatId(String uri) {
+        return threatIds.getOrDefault(uri, -1);
+    }
+
+    int getMisbehaviourSetId(String uri) {
+        return msIds.getOrDefault(uri, -1);
+    }
+
+    int getTwasId(String uri) {
+        return twasIds.getOrDefault(uri, -1);
+    }
+
+    int getCsgId(String uri) {
+        return csgIds.getOrDefault(uri, -1);
+    }
+
+    int getThreatCount() {
+        return threatURIs.length;
+    }
+
+    int getMisbehaviourSetCount() {
+        return msURIs.length;
+    }
+
+    int getTwasCount() {
+        return twasURIs.length;
+    }
+
+    /**
+     * Builder used to intern entity URIs and collect links. All entities must be added before any links.
+     */
+    static class Builder {
+        private final List<String> threatURIs = new ArrayList<>();
+        private final List<String> msURIs = new ArrayList<>();
+        private final List<String> twasURIs = new ArrayList<>();
+        private final List<String> csgURIs = new ArrayList<>();
+
+        private final Map<String, Integer> threatIds = new HashMap<>();
+        private final Map<String, Integer> msIds = new HashMap<>();
+        private final Map<String, Integer> twasIds = new HashMap<>();
+        private final Map<String, Integer> csgIds = new HashMap<>();
+
+        private final LinkList causeLinks = new LinkList();
+        private final LinkList effectLinks = new LinkList();
+        private final LinkList undermineLinks = new LinkList();
+        private final LinkList csgLinks = new LinkList();
+
+        void addThreat(String uri) {
+            intern(uri, threatURIs, threatIds);
+        }
+
+        void addMisbehaviourSet(String uri) {
+            intern(uri, msURIs, msIds);
+        }
+
+        void addTwas(String uri) {
+            intern(uri, twasURIs, twasIds);
+        }
+
+        void addCsg(String uri) {
+            intern(uri, csgURIs, csgIds);
+        }
+
+        /**
+         * Add a link from a threat to an MS on which its likelihood depends. Unknown URIs are ignored.
+         */
+        void addCause(String threatURI, String msURI) {
+            causeLinks.add(threatIds.get(threatURI), msIds.get(msURI));
+        }
+
+        /**
+         * Add a link from a threat to an MS that it may cause. Unknown URIs are ignored.
+         */
+        void addEffect(String threatURI, String msURI) {
+            effectLinks.add(threatIds.get(threatURI), msIds.get(msURI));
+        }
+
+        /**
+         * Add a link from an MS to the TWAS it undermines. Unknown URIs are ignored.
+         */
+        void addUndermines(String msURI, String twasURI) {
+            undermineLinks.add(msIds.get(msURI), twasIds.get(twasURI));
+        }
+
+        /**
+         * Add a link from a CSG to a threat that it blocks, mitigates or triggers. Unknown URIs are ignored.
+         */
+        void addCsgThreat(String csgURI, String threatURI) {
+            csgLinks.add(csgIds.get(csgURI), threatIds.get(threatURI));
+        }
+
+        CompiledRiskGraph build() {
+            return new CompiledRiskGraph(this);
+        }
+
+        private static void intern(String uri, List<String> uris, Map<String, Integer> ids) {
+            if (!ids.containsKey(uri)) {
+                ids.put(uri, uris.size());
+                uris.add(uri);
+            }
+        }
+    }
+
+    /**
+     * List of links between entities, held as two growable int arrays.
+     */
+    private static class LinkList {
+        private final IntList from = new IntList();
+        private final IntList to = new IntList();
+
+        void add(Integer fromId, Integer toId) {
+            if (fromId != null && toId != null) {
+                from.add(fromId);
+                to.add(toId);
+            }
+        }
+
+        LinkList reverse() {
+            LinkList reversed = new LinkList();
+            for (int i = 0; i < from.size; i++) {
+                reversed.add(to.values[i], from.values[i]);
+            }
+            return reversed;
+        }
+
+        /**
+         * Convert to CSR form, keeping links from each entity in the order they were added.
+         *
+         * @param n the number of entities at the start of links
+         * @return the start offsets (length n + 1) and the targets
+         */
+        int[][] toCsr(int n) {
+            int[] start = new int[n + 1];
+            for (int i = 0; i < from.size; i++) {
+                start[from.values[i] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                start[i + 1] += start[i];
+            }
+            int[] next = Arrays.copyOf(start, n);
+            int[] targets = new int[from.size];
+            for (int i = 0; i < from.size; i++) {
+                targets[next[from.values[i]]++] = to.values[i];
+            }
+            return new int[][] {start, targets};
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+}
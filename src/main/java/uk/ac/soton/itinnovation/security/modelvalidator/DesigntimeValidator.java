@@ -49,6 +49,8 @@ public class DesigntimeValidator extends AValidator {
 
 	private static final Logger logger = LoggerFactory.getLogger(DesigntimeValidator.class);
 
+	private int matchingParallelism = 1;
+
 	/**
 	 * Creates a DesigntimeValidator using the given store
 	 *
@@ -61,6 +63,16 @@ public class DesigntimeValidator extends AValidator {
 		super(store, model, reasoner);
 	}
 
+	/**
+	 * Set the number of threads used to find matches for threat matching patterns. The default of 1 means
+	 * pattern matching runs only on the calling thread.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setMatchingParallelism(int parallelism) {
+		this.matchingParallelism = parallelism;
+	}
+
 	// Design-time validation /////////////////////////////////////////////////////////////////////////////////////////
 
 	public boolean validateDesigntimeModel(Progress progress) throws MissingArgumentException {
@@ -97,6 +109,7 @@ public class DesigntimeValidator extends AValidator {
 
 			// We no longer have a domain specific 'reasoner', so we can do this in one call
 			Validator validator = new Validator(querierDB);
+			validator.setMatchingParallelism(matchingParallelism);
 			validator.validate(progress);
 
 			//write metadata information
@@ -54,6 +54,8 @@ public class ModelValidator extends AValidator {
 
 	private final DesigntimeValidator designtimeValidator;
 
+	private int riskCalculationParallelism = 1;
+
 	/**
 	 * Creates a ModelValidator using the given store
 	 *
@@ -67,6 +69,26 @@ public class ModelValidator extends AValidator {
 		designtimeValidator = new DesigntimeValidator(store, model, reasoner);
 	}
 
+	/**
+	 * Set the number of threads used by the risk calculator. The default of 1 means the risk calculation
+	 * runs only on the calling thread.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setRiskCalculationParallelism(int parallelism) {
+		this.riskCalculationParallelism = parallelism;
+	}
+
+	/**
+	 * Set the number of threads used to find matches for threat matching patterns during validation. The
+	 * default of 1 means pattern matching runs only on the calling thread.
+	 *
+	 * @param parallelism the number of threads
+	 */
+	public void setValidationParallelism(int parallelism) {
+		designtimeValidator.setMatchingParallelism(parallelism);
+	}
+
 	// API methods ////////////////////////////////////////////////////////////////////////////////
 
 	/**
@@ -114,6 +136,7 @@ public class ModelValidator extends AValidator {
 			//TODO: check when this should be run, as it may also be done elseqhere
 			querier.initForRiskCalculation();
 			RiskCalculator rc = new RiskCalculator(querier);
+			rc.setParallelism(riskCalculationParallelism);
 			boolean success = rc.calculateRiskLevels(mode, saveResults, progress);
 			RiskCalcResultsDB riskCalcResults = rc.getRiskCalcResults();
 
@@ -56,6 +56,7 @@ import uk.ac.soton.itinnovation.security.modelquerier.dto.TrustworthinessAttribu
 import uk.ac.soton.itinnovation.security.modelquerier.dto.TrustworthinessImpactSetDB;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -63,6 +64,9 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 
 public class RiskCalculator {
     private static final Logger logger = LoggerFactory.getLogger(RiskCalculator.class);
@@ -127,6 +131,92 @@ public class RiskCalculator {
 
     Map<String, Map<String, Integer>> causeSuppressionByThreat = new HashMap<>();                       // Map of threat cause optional control suppression factors, indexed by threat URI and then by cause URI
 
+    private PropagationMode propagationMode = PropagationMode.WORKLIST;                                 // How likelihoods are propagated between threats, MS and TWAS
+    private List<IterationStats> iterationStats = new ArrayList<>();                                    // Counters for each iteration of the last likelihood propagation
+
+    private Map<String, Set<String>> threatsByCause = new HashMap<>();                                  // Map of system model threat URIs whose likelihood depends on each MS, indexed by the MS URI
+    private Map<String, Set<String>> effectsByThreat = new HashMap<>();                                 // Map of system model MS URIs that may be caused by each threat, indexed by the threat URI
+    private Map<String, List<String>> twasByMisbehaviour = new HashMap<>();                             // Map of system model TWAS URIs undermined by each MS, indexed by the MS URI
+
+    private RiskCalculationMode lastMode = null;                                                        // Mode used in the last full calculation, or null if there has been none
+
+    private Map<String, List<String>> pseudorootAssetsByThreat = new HashMap<>();                       // Map of system model pseudoroot asset URIs for each threat, indexed by the threat URI
+
+    private CompiledRiskGraph graph = null;                                                             // Integer form of the threat graph, built with the dependency maps
+    private boolean compiledGraphEnabled = true;                                                        // Whether the WORKLIST propagation runs on the compiled graph
+
+    private int parallelism = 1;                                                                        // Number of threads used for per-threat and per-MS calculations (1 = calling thread only)
+    private ForkJoinPool pool = null;                                                                   // Pool of worker threads, only exists during a calculation if parallelism > 1
+
+    /**
+     * Outcome of a threat likelihood calculation.
+     */
+    private enum LikelihoodUpdate {
+        NOT_CALCULATED,     // The threat is untriggered or has no causes, so its likelihood was not set
+        UNCHANGED,          // The likelihood was set to the same level as before
+        CHANGED             // The likelihood was set to a different level
+    }
+
+    /**
+     * Strategies for finding the fixed point of threat, MS and TWAS likelihoods.
+     */
+    public enum PropagationMode {
+        SWEEP,      // Recalculate every threat, MS and TWAS in each iteration
+        WORKLIST    // Recalculate only those whose causes changed in the previous iteration
+    }
+
+    /**
+     * Counters recorded for each iteration of the likelihood propagation.
+     */
+    public static class IterationStats {
+        private final int iteration;
+        private final int threatsCalculated;
+        private final int threatsChanged;
+        private final int misbehavioursCalculated;
+        private final int misbehavioursChanged;
+        private final int twasChanged;
+
+        public IterationStats(int iteration, int threatsCalculated, int threatsChanged,
+                int misbehavioursCalculated, int misbehavioursChanged, int twasChanged) {
+            this.iteration = iteration;
+            this.threatsCalculated = threatsCalculated;
+            this.threatsChanged = threatsChanged;
+            this.misbehavioursCalculated = misbehavioursCalculated;
+            this.misbehavioursChanged = misbehavioursChanged;
+            this.twasChanged = twasChanged;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public int getThreatsCalculated() {
+            return threatsCalculated;
+        }
+
+        public int getThreatsChanged() {
+            return threatsChanged;
+        }
+
+        public int getMisbehavioursCalculated() {
+            return misbehavioursCalculated;
+        }
+
+        public int getMisbehavioursChanged() {
+            return misbehavioursChanged;
+        }
+
+        public int getTwasChanged() {
+            return twasChanged;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("iteration %d: calculated %d threats (%d changed), %d MS (%d changed), %d TWAS changed",
+                    iteration, threatsCalculated, threatsChanged, misbehavioursCalculated, misbehavioursChanged, twasChanged);
+        }
+    }
+
     public RiskCalculator(IQuerierDB querier) {
 
         final long startTime = System.currentTimeMillis();
@@ -447,6 +537,9 @@ public class RiskCalculator {
                 rolesThisAsset.add(roleURI);
             }
 
+            // Find the pseudoroot assets now, so the querier isn't needed when calculating threat likelihoods
+            pseudorootAssetsByThreat.put(threat.getUri(), querier.getPseudorootAssets(mp));
+
         }
 
         final long endTime = System.currentTimeMillis();
@@ -485,6 +578,7 @@ public class RiskCalculator {
             // TODO: Remove prints
             progress.updateProgress(0.1, "Creating maps");
             createMaps();
+            createDependencyMaps();
             progress.updateProgress(0.2, "Initialising risk levels");
             initialiseLevels(mode);
             progress.updateProgress(0.3, "Calculating misbehaviour threat likelihoods");
@@ -513,13 +607,238 @@ public class RiskCalculator {
                 logger.info("NOT saving risk calculation results");
             }
 
+            lastMode = mode;
+
             return true;
 
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            shutdownPool();
         }
     }
 
+    /**
+     * Recalculate risk levels after a change in the status or coverage level of some control sets, where this
+     * calculator has already been used to calculate risk levels on the same system model.
+     * 
+     * Only the CSGs and threats that use the changed CS are reinitialised. Threat, MS and TWAS likelihoods are
+     * then recalculated only in the part of the threat graph downstream of those threats. Everything outside
+     * that part is unaffected by the change, so the results are the same as from calculateRiskLevels. The
+     * causation, risk level and attack path stages are then rerun in full, as they depend on the whole graph.
+     * 
+     * If there has been no previous calculation using the same mode, a full calculation is done instead.
+     * 
+     * @param changedControlSets the URIs of control sets whose status or coverage level has changed in the
+     *        asserted graph (any member of a CS triplet may be given)
+     * @param mode the risk calculation mode to use
+     * @param saveResults indicates whether results should be stored
+     * @param progress
+     * @return
+     */
+    public boolean recalculateRiskLevels(Set<String> changedControlSets, RiskCalculationMode mode, boolean saveResults, Progress progress) throws RuntimeException {
+        if (lastMode != mode) {
+            logger.info("RiskCalculator.recalculateRiskLevels(): no previous {} risk calculation, so doing a full calculation", mode);
+            return calculateRiskLevels(mode, saveResults, progress);
+        }
+
+        try {
+            final long startTime = System.currentTimeMillis();
+
+            progress.updateProgress(0.2, "Initialising changed control sets");
+
+            // Reinitialise each changed CS triplet, starting from the average member
+            Set<String> changedTriplets = new HashSet<>();
+            for (String csURI : changedControlSets) {
+                ControlSetDB cs = controlSets.get(csURI);
+                if (cs == null) {
+                    logger.warn("RiskCalculator.recalculateRiskLevels(): unknown control set {}", csURI);
+                    continue;
+                }
+                ControlSetDB csavg = cs;
+                if (cs.getMinOf() != null) {
+                    csavg = controlSets.get(cs.getMinOf());
+                } else if (cs.getMaxOf() != null) {
+                    csavg = controlSets.get(cs.getMaxOf());
+                }
+                if (changedTriplets.add(csavg.getUri())) {
+                    initialiseControlSet(csavg);
+                }
+            }
+
+            // Find all members of the changed CS triplets
+            Set<String> changedCS = new HashSet<>();
+            for (String csURI : changedTriplets) {
+                ControlSetDB csavg = controlSets.get(csURI);
+                changedCS.add(csURI);
+                if (csavg.getHasMin() != null) changedCS.add(csavg.getHasMin());
+                if (csavg.getHasMax() != null) changedCS.add(csavg.getHasMax());
+            }
+
+            // Reinitialise CSGs containing any changed CS
+            Set<String> changedCSGs = new HashSet<>();
+            for (ControlStrategyDB csg : controlStrategies.values()) {
+                if (csg.getMandatoryCS().stream().anyMatch(changedCS::contains) ||
+                    csg.getOptionalCS().stream().anyMatch(changedCS::contains)) {
+                    initialiseControlStrategy(csg, mode);
+                    changedCSGs.add(csg.getUri());
+                }
+            }
+
+            // Reinitialise cause suppression for threats blocked, mitigated or triggered by those CSGs
+            Set<String> changedThreats = new HashSet<>();
+            for (String csgURI : changedCSGs) {
+                int csg = graph.getCsgId(csgURI);
+                for (int i = graph.csgThreatStart[csg]; i < graph.csgThreatStart[csg + 1]; i++) {
+                    changedThreats.add(graph.threatURIs[graph.csgThreats[i]]);
+                }
+            }
+            for (String threatURI : changedThreats) {
+                initialiseCauseSuppression(threats.get(threatURI), mode);
+            }
+
+            // Find the threats, MS and TWAS whose likelihoods may depend on those threats
+            Set<String> coneThreats = new HashSet<>();
+            Set<String> coneMS = new HashSet<>();
+            Set<String> coneTWAS = new HashSet<>();
+            findDownstream(changedThreats, coneThreats, coneMS, coneTWAS);
+            logger.info("RiskCalculator.recalculateRiskLevels(): {} CS changed, affecting {} CSGs and {} threats",
+                    changedCS.size(), changedCSGs.size(), changedThreats.size());
+            logger.info("RiskCalculator.recalculateRiskLevels(): recalculating {} of {} threats, {} of {} MS and {} of {} TWAS",
+                    coneThreats.size(), threats.size(), coneMS.size(), misbehaviourSets.size(),
+                    coneTWAS.size(), trustworthinessAttributeSets.size());
+
+            // Reset likelihoods in the affected part of the graph only, as nothing outside it can change
+            for (String twasURI : coneTWAS) {
+                TrustworthinessAttributeSetDB twas = trustworthinessAttributeSets.get(twasURI);
+                twas.setInferredLevel(twas.getAssertedLevel());
+                querier.store(twas, "system-inf");
+            }
+            initialiseMisbehaviourSets(coneMS);
+            initialiseMisbehaviourLikelihoods(coneMS);
+            resetThreats(coneThreats);
+
+            // The causation properties are found again from scratch, so they must still be reset everywhere
+            resetCausationLinks();
+
+            progress.updateProgress(0.3, "Calculating misbehaviour threat likelihoods");
+            iterationStats.clear();
+            List<ThreatDB> threatWorklist = new ArrayList<>();
+            for (String threatURI : coneThreats) {
+                threatWorklist.add(threats.get(threatURI));
+            }
+            List<MisbehaviourSetDB> msWorklist = new ArrayList<>();
+            for (String msURI : coneMS) {
+                msWorklist.add(misbehaviourSets.get(msURI));
+            }
+            if (compiledGraphEnabled) {
+                propagateLikelihoodsOnGraph(mode, coneThreats, coneMS, coneTWAS);
+            } else {
+                propagateLikelihoodsByWorklist(mode, threatWorklist, msWorklist, coneTWAS);
+            }
+
+            progress.updateProgress(0.4, "Calculating causation relationships");
+            calculateCausationLinks();
+            progress.updateProgress(0.5, "Calculating misbehaviour risk levels");
+            calculateMisbehaviourRiskLevels();
+            progress.updateProgress(0.6, "Calculating threat risk levels");
+            calculateThreatRiskLevels();
+            progress.updateProgress(0.7, "Calculating normal operational effects");
+            calculateNormalOperationPaths();
+            progress.updateProgress(0.8, "Calculating attack paths and effects");
+            calculateAttackPaths();
+
+            // Restore default levels to the inferred graph
+            restoreDefaultLevels();
+
+            // Save to the triple store if the user/client asked for that to be done
+            if (saveResults) {
+                progress.updateProgress(0.9, "Saving risk calculation results");
+                logger.info("Saving risk calculation results");
+                querier.sync("system-inf");
+            }
+            else {
+                logger.info("NOT saving risk calculation results");
+            }
+
+            final long endTime = System.currentTimeMillis();
+            logger.info("RiskCalculator.recalculateRiskLevels(): execution time {} ms", endTime - startTime);
+
+            return true;
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            shutdownPool();
+        }
+    }
+
+    /**
+     * Find the threats, MS and TWAS downstream of the specified threats, i.e. those whose likelihood may be
+     * changed by a change in the likelihood of the specified threats. The specified threats are included.
+     */
+    private void findDownstream(Set<String> startThreats, Set<String> coneThreats, Set<String> coneMS, Set<String> coneTWAS) {
+        List<String> threatQueue = new ArrayList<>(startThreats);
+        coneThreats.addAll(startThreats);
+        while (!threatQueue.isEmpty()) {
+            String threatURI = threatQueue.remove(threatQueue.size() - 1);
+            for (String msURI : effectsByThreat.getOrDefault(threatURI, new HashSet<>())) {
+                if (!coneMS.add(msURI)) {
+                    continue;
+                }
+                coneTWAS.addAll(twasByMisbehaviour.getOrDefault(msURI, new ArrayList<>()));
+                for (String dependentURI : threatsByCause.getOrDefault(msURI, new HashSet<>())) {
+                    if (coneThreats.add(dependentURI)) {
+                        threatQueue.add(dependentURI);
+                    }
+                }
+            }
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the number of threads used to calculate threat likelihoods and MS and threat risk levels. The
+     * default of 1 means everything is done on the calling thread. The results do not depend on this.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism < 1 ? 1 : parallelism;
+    }
+
+    public boolean isCompiledGraphEnabled() {
+        return compiledGraphEnabled;
+    }
+
+    /**
+     * Set whether the WORKLIST propagation uses the compiled integer form of the threat graph (the default),
+     * or the original map-based form. Both give the same results.
+     */
+    public void setCompiledGraphEnabled(boolean compiledGraphEnabled) {
+        this.compiledGraphEnabled = compiledGraphEnabled;
+    }
+
+    public PropagationMode getPropagationMode() {
+        return propagationMode;
+    }
+
+    /**
+     * Set the strategy used to propagate likelihoods. Both modes give the same results, but the
+     * WORKLIST mode avoids recalculating threats whose causes have not changed.
+     */
+    public void setPropagationMode(PropagationMode propagationMode) {
+        this.propagationMode = propagationMode;
+    }
+
+    /**
+     * Get the counters recorded for each iteration of the last likelihood propagation.
+     */
+    public List<IterationStats> getIterationStats() {
+        return iterationStats;
+    }
+
     /**
      * Gathers up the results from the risk calculation into a single object that can be serialised and sent 
      * back to clients via the system modeller API.
@@ -666,399 +985,869 @@ public class RiskCalculator {
         for (ControlSetDB csavg : controlSets.values()){
             // Make sure we only start from an average level CS
             if((csavg.getMinOf() == null) && (csavg.getMaxOf() == null)) {
-                // Get the associated asset info
-                AssetDB asset = assets.get(csavg.getLocatedAt());
-                LevelDB popLevel = poLevels.get(asset.getPopulation());
-                
-                // Get the associated default settings
-                Boolean independentLevels = true;
-                Integer defaultLevel = twLevels.size() - 1;
-                CASettingDB setting = querier.getCASetting(asset, csavg.getControl());
-                if(setting != null) {
-                    // Old domain models have no levels, so check for that
-                    if(setting.getLevel() != null) {
-                        defaultLevel = twLevels.get(setting.getLevel()).getLevelValue();
-                        independentLevels = setting.getIndependentLevels();
-                    } else {
-                        independentLevels = false;
-                    }
-                }
+                initialiseControlSet(csavg);
+            }
+        }
 
-                // Get data from the asserted graph for this CS
-                ControlSetDB csavgInput = querier.getControlSet(csavg.getUri(), "system");
-
-                if(csavg.getHasMin() != null && csavg.getHasMax() != null){         // In a population triplet both min and max exist
-                    // Get the lowest coverage member of the triplet, plus any properties from the asserted graph 
-                    ControlSetDB csmin = controlSets.get(csavg.getHasMin());
-                    ControlSetDB csminInput = querier.getControlSet(csmin.getUri(), "system");
-
-                    // This is a population, find the other members of the CS triplet
-                    ControlSetDB csmax = controlSets.get(csavg.getHasMax());
-                    ControlSetDB csmaxInput = querier.getControlSet(csmax.getUri(), "system");
-
-                    // Assemble a triplet of asserted graph proposed status values
-                    Boolean[] proposedValues = {false, false, false};
-                    if(csminInput != null)
-                        proposedValues[0] = csminInput.isProposed();
-                    if(csavgInput != null)
-                        proposedValues[1] = csavgInput.isProposed();
-                    if(csmaxInput != null)
-                        proposedValues[2] = csmaxInput.isProposed();
-
-                    // Log any inconsistencies in control status
-                    if( (proposedValues[0] && proposedValues[1] && proposedValues[2]) !=
-                        (proposedValues[0] || proposedValues[1] || proposedValues[2])) {
-                            logger.warn("Client/User input status for control {} at asset {} was inconsistent",
-                                    csavg.getControl(), csavg.getLocatedAt());
-                            logger.warn("...asserted graph levels (min, avg, max) were ({},{},{}), used {}",
-                                    proposedValues[0], proposedValues[1], proposedValues[2],
-                                    proposedValues[0] || proposedValues[1] || proposedValues[2]);
-                    }
+        // Determine status and coverage level of each CSG based on its mandatory CS
+        for (ControlStrategyDB csg : controlStrategies.values()) {
+            initialiseControlStrategy(csg, mode);
+        }
 
-                    // Now set the inferred graph control status
-                    csmin.setProposed(proposedValues[0] || proposedValues[1] || proposedValues[2]);
-                    csavg.setProposed(proposedValues[0] || proposedValues[1] || proposedValues[2]);
-                    csmax.setProposed(proposedValues[0] || proposedValues[1] || proposedValues[2]);
+        // Find effect of optional control sets that suppress causation of each threat
+        for(ThreatDB threat : threats.values()){
+            initialiseCauseSuppression(threat, mode);
+        }
 
-                    // Assemble a triplet of asserted graph coverage levels
-                    Integer[] assertedValues = {null, null, null};
-                    if(csminInput != null && csminInput.getCoverageLevel() != null)
-                        assertedValues[0] = twLevels.get(csminInput.getCoverageLevel()).getLevelValue();
-                    if(csavgInput != null && csavgInput.getCoverageLevel() != null)
-                        assertedValues[1] = twLevels.get(csavgInput.getCoverageLevel()).getLevelValue();
-                    if(csmaxInput != null && csmaxInput.getCoverageLevel() != null)
-                        assertedValues[2] = twLevels.get(csmaxInput.getCoverageLevel()).getLevelValue();
+        // Reset MS likelihoods to the lowest possible level, and empty their lists of caused threats
+        initialiseMisbehaviourSets(misbehaviourSets.keySet());
 
-                    // Find a consistent set of levels obtained by adjusting the asserted graph levels
-                    Integer[] adjustedValues = querier.getAdjustedLevels(asset, defaultLevel, assertedValues);
+        // If this is an old domain model, initialise MS likelihoods from the associated TWAS levels
+        initialiseMisbehaviourLikelihoods(misbehaviourSets.keySet());
 
-                    // Log any inconsistencies in coverage levels
-                    if( (assertedValues[0] != null && assertedValues[0] != adjustedValues[0]) ||
-                        (assertedValues[1] != null && assertedValues[1] != adjustedValues[1]) ||
-                        (assertedValues[2] != null && assertedValues[2] != adjustedValues[2]) ) {
-                        logger.warn("Client/User input coverage levels for control {} at asset {} needed adjustment",
-                                    csavg.getControl(), csavg.getLocatedAt());
-                        logger.warn("...asserted graph levels (min, avg, max) were ({},{},{}), adjusted to ({},{},{})",
-                                    assertedValues[0], assertedValues[1], assertedValues[2],
-                                    adjustedValues[0], adjustedValues[1], adjustedValues[2]);
-                    }
+        // Reset threat likelihood and risk level
+        resetThreats(threats.keySet());
 
-                    // If there is no lowest or highest level, calculate them from the average
-                    LevelDB averageLevel = trustworthinessLevels.get(adjustedValues[1]); 
-                    if(adjustedValues[0] == null)
-                        adjustedValues[0] = querier.lookupLowestTWLevel(averageLevel, popLevel, independentLevels).getLevelValue();
-                    if(adjustedValues[2] == null)
-                        adjustedValues[2] = querier.lookupHighestTWLevel(averageLevel, popLevel, independentLevels).getLevelValue();
+        // Reset the causation properties of threats, MS and TWAS to null / empty lists
+        resetCausationLinks();
 
-                    // Now set the inferred graph asserted levels based on this
-                    csmin.setCoverageLevel(trustworthinessLevels.get(adjustedValues[0]).getUri());
-                    csavg.setCoverageLevel(trustworthinessLevels.get(adjustedValues[1]).getUri());
-                    csmax.setCoverageLevel(trustworthinessLevels.get(adjustedValues[2]).getUri());
+        final long endTime = System.currentTimeMillis();
+        logger.info("RiskCalculator.initialiseLevels(): execution time {} ms", endTime - startTime);
 
-                    // Store the reinitialised CS in the inferred graph
-                    querier.store(csmin, "system-inf");
-                    querier.store(csavg, "system-inf");
-                    querier.store(csmax, "system-inf");
+    }
 
-                } else {                                                            // With an old domain model neither min nor max exists
-                    // This is an old domain model, just initialise from the asserted graph if required
-                    if(csavgInput != null) {
-                        csavg.setProposed(csavgInput.isProposed());                    
-                        if(csavgInput.getCoverageLevel() != null)
-                            csavg.setCoverageLevel(csavgInput.getCoverageLevel());
+    /**
+     * Reinitialise the status and coverage level of a CS triplet in the inferred graph, taking account of any
+     * changes in the asserted graph. Must be called with the average member of the triplet.
+     */
+    private void initialiseControlSet(ControlSetDB csavg) {
+        // Get the associated asset info
+        AssetDB asset = assets.get(csavg.getLocatedAt());
+        LevelDB popLevel = poLevels.get(asset.getPopulation());
+        
+        // Get the associated default settings
+        Boolean independentLevels = true;
+        Integer defaultLevel = twLevels.size() - 1;
+        CASettingDB setting = querier.getCASetting(asset, csavg.getControl());
+        if(setting != null) {
+            // Old domain models have no levels, so check for that
+            if(setting.getLevel() != null) {
+                defaultLevel = twLevels.get(setting.getLevel()).getLevelValue();
+                independentLevels = setting.getIndependentLevels();
+            } else {
+                independentLevels = false;
+            }
+        }
+
+        // Get data from the asserted graph for this CS
+        ControlSetDB csavgInput = querier.getControlSet(csavg.getUri(), "system");
+
+        if(csavg.getHasMin() != null && csavg.getHasMax() != null){         // In a population triplet both min and max exist
+            // Get the lowest coverage member of the triplet, plus any properties from the asserted graph 
+            ControlSetDB csmin = controlSets.get(csavg.getHasMin());
+            ControlSetDB csminInput = querier.getControlSet(csmin.getUri(), "system");
+
+            // This is a population, find the other members of the CS triplet
+            ControlSetDB csmax = controlSets.get(csavg.getHasMax());
+            ControlSetDB csmaxInput = querier.getControlSet(csmax.getUri(), "system");
+
+            // Assemble a triplet of asserted graph proposed status values
+            Boolean[] proposedValues = {false, false, false};
+            if(csminInput != null)
+                proposedValues[0] = csminInput.isProposed();
+            if(csavgInput != null)
+                proposedValues[1] = csavgInput.isProposed();
+            if(csmaxInput != null)
+                proposedValues[2] = csmaxInput.isProposed();
+
+            // Log any inconsistencies in control status
+            if( (proposedValues[0] && proposedValues[1] && proposedValues[2]) !=
+                (proposedValues[0] || proposedValues[1] || proposedValues[2])) {
+                    logger.warn("Client/User input status for control {} at asset {} was inconsistent",
+                            csavg.getControl(), csavg.getLocatedAt());
+                    logger.warn("...asserted graph levels (min, avg, max) were ({},{},{}), used {}",
+                            proposedValues[0], proposedValues[1], proposedValues[2],
+                            proposedValues[0] || proposedValues[1] || proposedValues[2]);
+            }
+
+            // Now set the inferred graph control status
+            csmin.setProposed(proposedValues[0] || proposedValues[1] || proposedValues[2]);
+            csavg.setProposed(proposedValues[0] || proposedValues[1] || proposedValues[2]);
+            csmax.setProposed(proposedValues[0] || proposedValues[1] || proposedValues[2]);
+
+            // Assemble a triplet of asserted graph coverage levels
+            Integer[] assertedValues = {null, null, null};
+            if(csminInput != null && csminInput.getCoverageLevel() != null)
+                assertedValues[0] = twLevels.get(csminInput.getCoverageLevel()).getLevelValue();
+            if(csavgInput != null && csavgInput.getCoverageLevel() != null)
+                assertedValues[1] = twLevels.get(csavgInput.getCoverageLevel()).getLevelValue();
+            if(csmaxInput != null && csmaxInput.getCoverageLevel() != null)
+                assertedValues[2] = twLevels.get(csmaxInput.getCoverageLevel()).getLevelValue();
+
+            // Find a consistent set of levels obtained by adjusting the asserted graph levels
+            Integer[] adjustedValues = querier.getAdjustedLevels(asset, defaultLevel, assertedValues);
+
+            // Log any inconsistencies in coverage levels
+            if( (assertedValues[0] != null && assertedValues[0] != adjustedValues[0]) ||
+                (assertedValues[1] != null && assertedValues[1] != adjustedValues[1]) ||
+                (assertedValues[2] != null && assertedValues[2] != adjustedValues[2]) ) {
+                logger.warn("Client/User input coverage levels for control {} at asset {} needed adjustment",
+                            csavg.getControl(), csavg.getLocatedAt());
+                logger.warn("...asserted graph levels (min, avg, max) were ({},{},{}), adjusted to ({},{},{})",
+                            assertedValues[0], assertedValues[1], assertedValues[2],
+                            adjustedValues[0], adjustedValues[1], adjustedValues[2]);
+            }
+
+            // If there is no lowest or highest level, calculate them from the average
+            LevelDB averageLevel = trustworthinessLevels.get(adjustedValues[1]); 
+            if(adjustedValues[0] == null)
+                adjustedValues[0] = querier.lookupLowestTWLevel(averageLevel, popLevel, independentLevels).getLevelValue();
+            if(adjustedValues[2] == null)
+                adjustedValues[2] = querier.lookupHighestTWLevel(averageLevel, popLevel, independentLevels).getLevelValue();
+
+            // Now set the inferred graph asserted levels based on this
+            csmin.setCoverageLevel(trustworthinessLevels.get(adjustedValues[0]).getUri());
+            csavg.setCoverageLevel(trustworthinessLevels.get(adjustedValues[1]).getUri());
+            csmax.setCoverageLevel(trustworthinessLevels.get(adjustedValues[2]).getUri());
+
+            // Store the reinitialised CS in the inferred graph
+            querier.store(csmin, "system-inf");
+            querier.store(csavg, "system-inf");
+            querier.store(csmax, "system-inf");
+
+        } else {                                                            // With an old domain model neither min nor max exists
+            // This is an old domain model, just initialise from the asserted graph if required
+            if(csavgInput != null) {
+                csavg.setProposed(csavgInput.isProposed());                    
+                if(csavgInput.getCoverageLevel() != null)
+                    csavg.setCoverageLevel(csavgInput.getCoverageLevel());
+            }
+
+            // Store the reinitialised CS in the inferred graph
+            querier.store(csavg, "system-inf");
+
+        }
+
+    }
+
+    /**
+     * Determine the status and coverage level of a CSG based on its mandatory CS.
+     */
+    private void initialiseControlStrategy(ControlStrategyDB csg, RiskCalculationMode mode) {
+        ControlStrategyDB dcsg = dcsgs.get(csg.getParent());
+        Integer csgCoverage = twLevels.get(dcsg.getBlockingEffect()).getLevelValue();
+        boolean enabled = true;
+        switch(mode) {
+            case CURRENT:
+                enabled = dcsg.isCurrentRisk();
+                break;
+            case FUTURE:
+                enabled = dcsg.isFutureRisk();
+                break;
+        }
+        if(enabled) {
+            Collection<String> css = csg.getMandatoryCS();
+            for (String csURI : css) {
+                ControlSetDB cs = controlSets.get(csURI);
+                if(!cs.isProposed()) {
+                    // CSG cannot be enabled, so skip the remaining mandatory CS
+                    enabled = false;
+                    break;
+                } else if(cs.getCoverageLevel() != null) {
+                    Integer csCoverage = twLevels.get(cs.getCoverageLevel()).getLevelValue();
+                    if(csgCoverage > csCoverage)
+                        csgCoverage = csCoverage;
+                }
+            }
+            if(!enabled) csgCoverage = 0;
+        }
+
+        csg.setEnabled(enabled);
+        csg.setCoverageLevel(trustworthinessLevels.get(csgCoverage).getUri());
+
+        querier.store(csg, "system-inf");
+
+    }
+
+    /**
+     * Find the effect of optional control sets in enabled CSGs that suppress causation of a threat.
+     */
+    private void initialiseCauseSuppression(ThreatDB threat, RiskCalculationMode mode) {
+        // Start by setting each cause to have a minimum TW level set to the lowest level
+        Map<String, Integer> causeSuppressionThisThreat = new HashMap<>();
+        for(String epURI : threat.getEntryPoints()){
+            causeSuppressionThisThreat.put(epURI, 0);
+        }
+        for(String secURI : threat.getSecondaryEffectConditions()){
+            causeSuppressionThisThreat.put(secURI, 0);
+        }
+
+        // Find enabled CSGs with optional controls related to each cause
+        Set<String> allCSGs = new HashSet<>();
+        allCSGs.addAll(threat.getBlockedByCSG());
+        if(mode == RiskCalculationMode.FUTURE) allCSGs.addAll(threat.getMitigatedByCSG());
+        for(String csgURI : allCSGs){
+            ControlStrategyDB csg = controlStrategies.get(csgURI);
+            if(csg.isEnabled()){
+                Integer csgCoverageLevel = twLevels.get(csg.getCoverageLevel()).getLevelValue();
+                for(String csURI : csg.getOptionalCS()){
+                    // Get the optional CS and find its effective coverage level
+                    ControlSetDB cs = controlSets.get(csURI);
+                    Integer effectiveLevel = twLevels.get(cs.getCoverageLevel()).getLevelValue();
+                    if(effectiveLevel > csgCoverageLevel)
+                        effectiveLevel = csgCoverageLevel;
+
+                    // Apply this to any threat causes suppressed by the optional CS
+                    Set<String> suppressedByCS = suppressedMisbehaviours.getOrDefault(csURI, new HashSet<>());
+                    for(String msURI : suppressedByCS) {
+                        // Check if this MS is a secondary threat cause
+                        if(causeSuppressionThisThreat.containsKey(msURI)){
+                            // If yes, impose the CS level
+                            Integer oldLevel = causeSuppressionThisThreat.get(msURI);
+                            if(oldLevel < effectiveLevel)
+                                causeSuppressionThisThreat.replace(msURI, oldLevel, effectiveLevel);
+                        }
+
+                        // Check if the associated TWAS is a primary threat cause
+                        String twasURI = misbehaviourTWAS.get(msURI);
+                        if(twasURI != null && causeSuppressionThisThreat.containsKey(twasURI)){
+                            // If yes, impose the CS level
+                            Integer oldLevel = causeSuppressionThisThreat.get(twasURI);
+                            if(oldLevel < effectiveLevel)
+                                causeSuppressionThisThreat.replace(twasURI, oldLevel, effectiveLevel);
+                        }
                     }
+                }
+            }
+        }
+        causeSuppressionByThreat.put(threat.getUri(), causeSuppressionThisThreat);
 
-                    // Store the reinitialised CS in the inferred graph
-                    querier.store(csavg, "system-inf");
+    }
 
+    /** If this is an old domain model, we may also need to raise the initial MS likelihood to a level
+     * equivalent to the TW level of the associated TWAS (if any). This was the case before SSM could
+     * handle secondary threats with primary causes (and vice versa).
+     * 
+     * We can find this out by checking if the domain model has a feature string "MixedThreatCauses".
+     * 
+     * Only MS in the specified set are initialised.
+     */
+    private void initialiseMisbehaviourLikelihoods(Set<String> msToInitialise) {
+        String lowestLikelihood = likelihoodLevels.get(0).getUri();
+        Boolean mixedThreatCauses = domainFeatures.containsKey("domain#Feature-MixedThreatCauses");
+        if(mixedThreatCauses) {
+            logger.info("Domain model supports mixed threat causes, so MS likelihood initialised to zero");
+        } else {
+            logger.info("Domain model does not support mixed threat causes, so MS likelihood initialised from TWAS levels");
+            for(String msURI : msToInitialise){
+                String twasURI = misbehaviourTWAS.get(msURI);
+                if(twasURI == null) {
+                    continue;
+                }
+                MisbehaviourSetDB ms = misbehaviourSets.get(msURI);
+                String twasLevelURI = trustworthinessAttributeSets.get(twasURI).getInferredLevel();
+                if (twasLevelURI == null) {
+                    logger.warn("Found a TWAS with no inferred TWL");
                 }
+                LevelDB twasLevel = twLevels.get(twasLevelURI);
+                LevelDB msLevel = invertToLikelihood(twasLevel);
+                String msLevelUri = msLevel.getUri();
+                if(!msLevelUri.equals(lowestLikelihood)){
+                    ms.setPrior(msLevelUri);
+                    querier.store(ms, "system-inf"); 
+                }    
+            }
+        }
+    }
 
+    /**
+     * Reinitialise the impact level of each MS in the specified set, taking account of any changes in the
+     * asserted graph, and reset its likelihood to the lowest level. Other MS are left untouched.
+     */
+    private void initialiseMisbehaviourSets(Set<String> msToInitialise) {
+        String lowestImpact = impactLevels.get(0).getUri();
+        for (String msURI : msToInitialise) {
+            MisbehaviourSetDB ms = misbehaviourSets.get(msURI);
+            if((ms.getMinOf() == null) && (ms.getMaxOf() == null)) {
+                // This is an average level MS, so get the associated asset and default setting
+                AssetDB asset = assets.get(ms.getLocatedAt());
+                MADefaultSettingDB setting = querier.getMADefaultSetting(asset, ms.getMisbehaviour());
+
+                // If there is no previous inferred graph value, use the default setting or the lowest impact level
+                String defaultLevel = setting != null ? setting.getLevel() : lowestImpact;
+                initialiseMisbehaviourSet(ms, defaultLevel);
+            } else {
+                // This is the lowest or highest likelihood member of a triplet, so check the triplet is complete
+                MisbehaviourSetDB msavg = misbehaviourSets.get(ms.getMinOf() != null ? ms.getMinOf() : ms.getMaxOf());
+                if(msavg != null && msavg.getMinOf() == null && msavg.getMaxOf() == null
+                        && msavg.getHasMin() != null && msavg.getHasMax() != null) {    // In a population triplet both min and max exist
+                    initialiseMisbehaviourSet(ms, lowestImpact);
+                }
             }
+        }
+    }
 
+    private void initialiseMisbehaviourSet(MisbehaviourSetDB ms, String defaultLevel) {
+        // Temporarily save the inferred impact level
+        if(ms.getImpactLevel() != null) {
+            // Save the previous inferred graph value if there is one
+            ms.setDefaultLevel(ms.getImpactLevel());
+        }
+        else {
+            ms.setDefaultLevel(defaultLevel);
         }
 
-        // Determine status and coverage level of each CSG based on its mandatory CS
-        for (ControlStrategyDB csg : controlStrategies.values()) {
-            ControlStrategyDB dcsg = dcsgs.get(csg.getParent());
-            Integer csgCoverage = twLevels.get(dcsg.getBlockingEffect()).getLevelValue();
-            boolean enabled = true;
-            switch(mode) {
-                case CURRENT:
-                    enabled = dcsg.isCurrentRisk();
-                    break;
-                case FUTURE:
-                    enabled = dcsg.isFutureRisk();
-                    break;
+        // Check if there is an impact level in the asserted graph, and if so, use it 
+        MisbehaviourSetDB msInput = querier.getMisbehaviourSet(ms.getUri(), "system");
+        if(msInput != null && msInput.getImpactLevel() != null){
+            ms.setImpactLevel(msInput.getImpactLevel());
+        } else {
+            // If there is no level in the asserted graph, restore the saved level
+            ms.setImpactLevel(ms.getDefaultLevel());
+            ms.setDefaultLevel(null);
+        }
+
+        // Initialise the live object and save to the inferred graph
+        ms.setPrior(likelihoodLevels.get(0).getUri());
+        querier.store(ms, "system-inf");
+    }
+
+    /**
+     * Reset the likelihood and risk level of each threat in the specified set. Other threats are left untouched.
+     */
+    private void resetThreats(Set<String> threatsToReset) {
+        for (String threatURI : threatsToReset) {
+            ThreatDB threat = threats.get(threatURI);
+            threat.setPrior(null);
+            threat.setRisk(null);
+            querier.store(threat, "system-inf");
+        }
+    }
+
+    /**
+     * Reset the causation properties of each threat, MS and TWAS to null / empty lists, so they can be found
+     * again by calculateCausationLinks and the attack path calculations, which only ever add to them. This only
+     * changes the live objects, so an entity is saved to the inferred graph only if it had something to reset.
+     */
+    private void resetCausationLinks() {
+        for (ThreatDB threat : threats.values()) {
+            boolean changed = threat.isRootCause() || threat.isInitialCause()
+                    || !threat.getDirectMisbehaviours().isEmpty() || !threat.getIndirectMisbehaviours().isEmpty()
+                    || !threat.getIndirectThreats().isEmpty() || !threat.getCausedBy().isEmpty();
+            threat.setRootCause(null);
+            threat.setInitialCause(null);
+            threat.getDirectMisbehaviours().clear();
+            threat.getIndirectMisbehaviours().clear();
+            threat.getIndirectThreats().clear();
+            threat.getCausedBy().clear();
+            if (changed) {
+                querier.store(threat, "system-inf");
             }
-            if(enabled) {
-                Collection<String> css = csg.getMandatoryCS();
-                for (String csURI : css) {
-                    ControlSetDB cs = controlSets.get(csURI);
-                    if(!cs.isProposed()) {
-                        // CSG cannot be enabled, so skip the remaining mandatory CS
-                        enabled = false;
-                        break;
-                    } else if(cs.getCoverageLevel() != null) {
-                        Integer csCoverage = twLevels.get(cs.getCoverageLevel()).getLevelValue();
-                        if(csgCoverage > csCoverage)
-                            csgCoverage = csCoverage;
+        }
+        for (TrustworthinessAttributeSetDB twas : trustworthinessAttributeSets.values()) {
+            boolean changed = twas.isExternalCause() || !twas.getCausedThreats().isEmpty();
+            twas.setExternalCause(null);
+            twas.getCausedThreats().clear();
+            if (changed) {
+                querier.store(twas, "system-inf");
+            }
+        }
+        for (MisbehaviourSetDB ms : misbehaviourSets.values()) {
+            boolean changed = ms.isExternalCause() || !ms.getCausedThreats().isEmpty() || !ms.getCausedBy().isEmpty();
+            ms.setExternalCause(null);
+            ms.getCausedThreats().clear();
+            ms.getCausedBy().clear();
+            if (changed) {
+                querier.store(ms, "system-inf");
+            }
+        }
+    }
+
+    /**
+     * Restore default levels to the inferred graph, where they had to be overridden in initialiseLevels.
+     */
+    private void restoreDefaultLevels(){
+        for(MisbehaviourSetDB ms : misbehaviourSets.values()){
+            if(ms.getDefaultLevel() != null) {
+                ms.setImpactLevel(ms.getDefaultLevel());
+                ms.setDefaultLevel(null);
+            }
+        }
+    }
+
+    /**
+     * Propagate likelihoods between threats, misbehaviour sets and TWAS until a fixed point is reached.
+     * 
+     * In SWEEP mode every threat, MS and TWAS is recalculated in each iteration. In WORKLIST mode only
+     * those whose causes changed in the previous iteration are recalculated. The first iteration of the
+     * WORKLIST mode is the same as a sweep, and thereafter it uses the threatsByEffect, causesByThreat and
+     * entryPointMisbehaviour maps to find the dependents of anything that changed. Since a threat likelihood
+     * only depends on the likelihood of its causes, the two modes give exactly the same results.
+     */
+    private void calculateThreatLikelihood(RiskCalculationMode mode) {
+        final long startTime = System.currentTimeMillis();
+
+        iterationStats.clear();
+
+        if (propagationMode == PropagationMode.WORKLIST && compiledGraphEnabled) {
+            // The first iteration must consider everything, as initialised levels may not yet be consistent
+            propagateLikelihoodsOnGraph(mode, threats.keySet(), misbehaviourSets.keySet(), entryPointMisbehaviour.keySet());
+        } else if (propagationMode == PropagationMode.WORKLIST) {
+            propagateLikelihoodsByWorklist(mode, threats.values(), misbehaviourSets.values(), entryPointMisbehaviour.keySet());
+        } else {
+            propagateLikelihoodsBySweep(mode);
+        }
+
+        int threatsCalculated = 0;
+        for (IterationStats stats : iterationStats) {
+            threatsCalculated += stats.getThreatsCalculated();
+        }
+        logger.info("RiskCalculator.calculateThreatLikelihood(): {} mode used {} iterations and {} threat calculations",
+                propagationMode, iterationStats.size(), threatsCalculated);
+
+        final long endTime = System.currentTimeMillis();
+        logger.info("RiskCalculator.calculateThreatLikelihood(): execution time {} ms", endTime - startTime);
+        
+    }
+
+    /**
+     * Recalculate every threat, MS and TWAS in each iteration, until no MS likelihood changes.
+     */
+    private void propagateLikelihoodsBySweep(RiskCalculationMode mode) {
+        boolean finished = false;
+
+        while (!finished) {
+            // we assume this is the last iteration until a MS has to be changed
+            Set<String> changedThreats = calculateThreatLikelihoods(threats.values(), mode);
+            Set<String> changedMS = updateMSLikelihoods(misbehaviourSets.values());
+            Set<String> changedTWAS = updateTWASLevels(entryPointMisbehaviour.keySet());
+            recordIteration(threats.size(), changedThreats.size(), misbehaviourSets.size(), changedMS.size(), changedTWAS.size());
+            finished = changedMS.isEmpty();
+        }
+
+    }
+
+    /**
+     * Create maps from each threat, MS and TWAS to those whose likelihood depends on it.
+     */
+    private void createDependencyMaps() {
+        threatsByCause.clear();
+        effectsByThreat.clear();
+        twasByMisbehaviour.clear();
+
+        // Map from each MS to the URIs of threats whose likelihood depends on it
+        for (ThreatDB threat : threats.values()) {
+            for (String msURI : causesByThreat.getOrDefault(threat.getUri(), new ArrayList<>())) {
+                threatsByCause.computeIfAbsent(msURI, k -> new HashSet<>()).add(threat.getUri());
+            }
+
+            // Triggered threats also depend on MS suppressed by optional CS in their triggering CSGs
+            for (String triggerURI : threat.getTriggeredByCSG()) {
+                ControlStrategyDB trigger = controlStrategies.get(triggerURI);
+                if (trigger == null) {
+                    continue;
+                }
+                for (String csURI : trigger.getOptionalCS()) {
+                    for (String msURI : getTriggeringMisbehaviours(csURI)) {
+                        threatsByCause.computeIfAbsent(msURI, k -> new HashSet<>()).add(threat.getUri());
                     }
                 }
-                if(!enabled) csgCoverage = 0;
             }
+        }
+
+        // Map from each threat to the URIs of MS it may cause
+        for (Map.Entry<String, List<ThreatDB>> entry : threatsByEffect.entrySet()) {
+            if (!misbehaviourSets.containsKey(entry.getKey())) {
+                continue;
+            }
+            for (ThreatDB threat : entry.getValue()) {
+                effectsByThreat.computeIfAbsent(threat.getUri(), k -> new HashSet<>()).add(entry.getKey());
+            }
+        }
+
+        // Map from each MS to the TWAS it undermines
+        for (Map.Entry<String, MisbehaviourSetDB> entry : entryPointMisbehaviour.entrySet()) {
+            if (entry.getValue() != null) {
+                twasByMisbehaviour.computeIfAbsent(entry.getValue().getUri(), k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        // Compile the same links into integer form for the likelihood propagation
+        CompiledRiskGraph.Builder builder = new CompiledRiskGraph.Builder();
+        threats.keySet().forEach(builder::addThreat);
+        misbehaviourSets.keySet().forEach(builder::addMisbehaviourSet);
+        trustworthinessAttributeSets.keySet().forEach(builder::addTwas);
+        controlStrategies.keySet().forEach(builder::addCsg);
+        for (Map.Entry<String, Set<String>> entry : threatsByCause.entrySet()) {
+            for (String threatURI : entry.getValue()) {
+                builder.addCause(threatURI, entry.getKey());
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : effectsByThreat.entrySet()) {
+            for (String msURI : entry.getValue()) {
+                builder.addEffect(entry.getKey(), msURI);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : twasByMisbehaviour.entrySet()) {
+            for (String twasURI : entry.getValue()) {
+                builder.addUndermines(entry.getKey(), twasURI);
+            }
+        }
+        for (ThreatDB threat : threats.values()) {
+            Set<String> csgURIs = new HashSet<>(threat.getBlockedByCSG());
+            csgURIs.addAll(threat.getMitigatedByCSG());
+            csgURIs.addAll(threat.getTriggeredByCSG());
+            for (String csgURI : csgURIs) {
+                builder.addCsgThreat(csgURI, threat.getUri());
+            }
+        }
+        graph = builder.build();
+    }
+
+    /**
+     * Recalculate the specified threats, MS and TWAS, and thereafter only threats whose causes changed, and
+     * only MS and TWAS affected by those threats, until no MS likelihood changes. The stopping condition is
+     * the same as for a sweep.
+     */
+    private void propagateLikelihoodsByWorklist(RiskCalculationMode mode, Collection<ThreatDB> threatWorklist,
+            Collection<MisbehaviourSetDB> msWorklist, Collection<String> twasWorklist) {
+        boolean firstIteration = true;
+        boolean finished = false;
+
+        while (!finished) {
+            Set<String> changedThreats = calculateThreatLikelihoods(threatWorklist, mode);
+
+            if (!firstIteration) {
+                Set<String> msURIs = new HashSet<>();
+                for (String threatURI : changedThreats) {
+                    msURIs.addAll(effectsByThreat.getOrDefault(threatURI, new HashSet<>()));
+                }
+                msWorklist = new ArrayList<>();
+                for (String msURI : msURIs) {
+                    msWorklist.add(misbehaviourSets.get(msURI));
+                }
+            }
+            Set<String> changedMS = updateMSLikelihoods(msWorklist);
 
-            csg.setEnabled(enabled);
-            csg.setCoverageLevel(trustworthinessLevels.get(csgCoverage).getUri());
+            if (!firstIteration) {
+                twasWorklist = new HashSet<>();
+                for (String msURI : changedMS) {
+                    twasWorklist.addAll(twasByMisbehaviour.getOrDefault(msURI, new ArrayList<>()));
+                }
+            }
+            Set<String> changedTWAS = updateTWASLevels(twasWorklist);
 
-            querier.store(csg, "system-inf");
+            recordIteration(threatWorklist.size(), changedThreats.size(), msWorklist.size(), changedMS.size(), changedTWAS.size());
+            finished = changedMS.isEmpty();
+            firstIteration = false;
 
+            // Threats must be recalculated if a cause MS changed, or if an entry point TWAS changed
+            Set<String> changedCauses = new HashSet<>(changedMS);
+            for (String twasURI : changedTWAS) {
+                changedCauses.add(entryPointMisbehaviour.get(twasURI).getUri());
+            }
+            Set<String> threatURIs = new HashSet<>();
+            for (String msURI : changedCauses) {
+                threatURIs.addAll(threatsByCause.getOrDefault(msURI, new HashSet<>()));
+            }
+            threatWorklist = new ArrayList<>();
+            for (String threatURI : threatURIs) {
+                threatWorklist.add(threats.get(threatURI));
+            }
         }
 
-        // Find effect of optional control sets that suppress causation of each threat
-        for(ThreatDB threat : threats.values()){
-            // Start by setting each cause to have a minimum TW level set to the lowest level
-            Map<String, Integer> causeSuppressionThisThreat = new HashMap<>();
-            for(String epURI : threat.getEntryPoints()){
-                causeSuppressionThisThreat.put(epURI, 0);
-            }
-            for(String secURI : threat.getSecondaryEffectConditions()){
-                causeSuppressionThisThreat.put(secURI, 0);
-            }
-  
-            // Find enabled CSGs with optional controls related to each cause
-            Set<String> allCSGs = new HashSet<>();
-            allCSGs.addAll(threat.getBlockedByCSG());
-            if(mode == RiskCalculationMode.FUTURE) allCSGs.addAll(threat.getMitigatedByCSG());
-            for(String csgURI : allCSGs){
-                ControlStrategyDB csg = controlStrategies.get(csgURI);
-                if(csg.isEnabled()){
-                    Integer csgCoverageLevel = twLevels.get(csg.getCoverageLevel()).getLevelValue();
-                    for(String csURI : csg.getOptionalCS()){
-                        // Get the optional CS and find its effective coverage level
-                        ControlSetDB cs = controlSets.get(csURI);
-                        Integer effectiveLevel = twLevels.get(cs.getCoverageLevel()).getLevelValue();
-                        if(effectiveLevel > csgCoverageLevel)
-                            effectiveLevel = csgCoverageLevel;
-
-                        // Apply this to any threat causes suppressed by the optional CS
-                        Set<String> suppressedByCS = suppressedMisbehaviours.getOrDefault(csURI, new HashSet<>());
-                        for(String msURI : suppressedByCS) {
-                            // Check if this MS is a secondary threat cause
-                            if(causeSuppressionThisThreat.containsKey(msURI)){
-                                // If yes, impose the CS level
-                                Integer oldLevel = causeSuppressionThisThreat.get(msURI);
-                                if(oldLevel < effectiveLevel)
-                                    causeSuppressionThisThreat.replace(msURI, oldLevel, effectiveLevel);
-                            }
+    }
 
-                            // Check if the associated TWAS is a primary threat cause
-                            String twasURI = misbehaviourTWAS.get(msURI);
-                            if(twasURI != null && causeSuppressionThisThreat.containsKey(twasURI)){
-                                // If yes, impose the CS level
-                                Integer oldLevel = causeSuppressionThisThreat.get(twasURI);
-                                if(oldLevel < effectiveLevel)
-                                    causeSuppressionThisThreat.replace(twasURI, oldLevel, effectiveLevel);
-                            }
-                        }
-                    }
+    /**
+     * Equivalent to propagateLikelihoodsByWorklist, but using the compiled graph. Threat likelihoods are still
+     * calculated from the entities, but finding the MS, TWAS and threats affected by each change, and updating
+     * MS likelihoods and TWAS levels, only uses integer IDs and level values.
+     */
+    private void propagateLikelihoodsOnGraph(RiskCalculationMode mode, Collection<String> initialThreats,
+            Collection<String> initialMS, Collection<String> initialTWAS) {
+        loadGraphLevels();
+
+        int[] threatWorklist = initialThreats.stream().mapToInt(graph::getThreatId).filter(id -> id >= 0).toArray();
+        int[] msWorklist = initialMS.stream().mapToInt(graph::getMisbehaviourSetId).filter(id -> id >= 0).toArray();
+        int[] twasWorklist = initialTWAS.stream().mapToInt(graph::getTwasId).filter(id -> id >= 0).toArray();
+
+        // Markers used to avoid duplicates in each worklist, set to the number of the worklist being built
+        int[] threatMarks = new int[graph.getThreatCount()];
+        int[] msMarks = new int[graph.getMisbehaviourSetCount()];
+        int[] twasMarks = new int[graph.getTwasCount()];
+        int worklistNumber = 0;
+
+        int topTWLevel = trustworthinessLevels.size() - 1;
+        boolean firstIteration = true;
+        boolean finished = false;
+
+        while (!finished) {
+            // Calculate threat likelihoods, and record the new levels of those that changed
+            List<ThreatDB> threatList = new ArrayList<>(threatWorklist.length);
+            for (int t : threatWorklist) {
+                threatList.add(threats.get(graph.threatURIs[t]));
+            }
+            List<LikelihoodUpdate> updates = calculateAndStoreThreatLikelihoods(threatList, mode);
+            int[] changedThreats = new int[threatWorklist.length];
+            int changedThreatCount = 0;
+            for (int i = 0; i < threatWorklist.length; i++) {
+                if (updates.get(i) == LikelihoodUpdate.CHANGED) {
+                    int t = threatWorklist[i];
+                    String prior = threatList.get(i).getPrior();
+                    graph.threatPrior[t] = prior != null ? liLevels.get(prior).getLevelValue() : -1;
+                    changedThreats[changedThreatCount++] = t;
                 }
             }
-            causeSuppressionByThreat.put(threat.getUri(), causeSuppressionThisThreat);
-        }
 
-        // Reset MS likelihoods to the lowest possible level, and empty their lists of caused threats
-        String lowestLikelihood = likelihoodLevels.get(0).getUri();
-        String lowestImpact = impactLevels.get(0).getUri();
-        for (MisbehaviourSetDB msavg : misbehaviourSets.values()) {
-            // Make sure we only start from an average level CS
-            if((msavg.getMinOf() == null) && (msavg.getMaxOf() == null)) {
-                // Get the associated asset and default setting
-                AssetDB asset = assets.get(msavg.getLocatedAt());
-                MADefaultSettingDB setting = querier.getMADefaultSetting(asset, msavg.getMisbehaviour());
-
-                // Temporarily save the inferred impact level
-                if(msavg.getImpactLevel() != null) {
-                    // Save the previous inferred graph value if there is one
-                    msavg.setDefaultLevel(msavg.getImpactLevel());
-                }
-                else if(setting != null) {
-                    // Save the default setting if there is one
-                    msavg.setDefaultLevel(setting.getLevel());
+            // Find MS caused by changed threats, and raise their likelihoods if necessary
+            if (!firstIteration) {
+                worklistNumber++;
+                IntWorklist next = new IntWorklist(changedThreatCount);
+                for (int i = 0; i < changedThreatCount; i++) {
+                    int t = changedThreats[i];
+                    for (int j = graph.effectStart[t]; j < graph.effectStart[t + 1]; j++) {
+                        next.addOnce(graph.effects[j], msMarks, worklistNumber);
+                    }
                 }
-                else {
-                    // Save the lowest impact level as a last resort
-                    msavg.setDefaultLevel(lowestImpact);
+                msWorklist = next.toArray();
+            }
+            IntWorklist changedMS = new IntWorklist(msWorklist.length);
+            for (int m : msWorklist) {
+                int maxLevel = graph.msPrior[m];
+                for (int j = graph.causingThreatStart[m]; j < graph.causingThreatStart[m + 1]; j++) {
+                    maxLevel = Math.max(maxLevel, graph.threatPrior[graph.causingThreats[j]]);
                 }
-
-                // Check if there is an impact level in the asserted graph, and if so, use it 
-                MisbehaviourSetDB msavgInput = querier.getMisbehaviourSet(msavg.getUri(), "system");
-                if(msavgInput != null && msavgInput.getImpactLevel() != null){
-                    msavg.setImpactLevel(msavgInput.getImpactLevel());
-                } else {
-                    // If there is no level in the asserted graph, restore the saved level
-                    msavg.setImpactLevel(msavg.getDefaultLevel());
-                    msavg.setDefaultLevel(null);
+                if (maxLevel != graph.msPrior[m]) {
+                    graph.msPrior[m] = maxLevel;
+                    MisbehaviourSetDB ms = misbehaviourSets.get(graph.msURIs[m]);
+                    ms.setPrior(likelihoodLevels.get(maxLevel).getUri());
+                    querier.store(ms, "system-inf");
+                    changedMS.add(m);
                 }
+            }
 
-                // Initialise the live object and save to the inferred graph
-                msavg.setPrior(lowestLikelihood);
-                msavg.setExternalCause(null);
-                msavg.getCausedThreats().clear();
-                querier.store(msavg, "system-inf");
-        
-                // Check for other members of the same triplet
-                if(msavg.getHasMin() != null && msavg.getHasMax() != null){         // In a population triplet both min and max exist
-                    // Get the lowest likelihood member of the triplet
-                    MisbehaviourSetDB msmin = misbehaviourSets.get(msavg.getHasMin());
-
-                    // Temporarily save the inferred impact level
-                    if(msmin.getImpactLevel() != null) {
-                        // Save the previous inferred graph value if there is one
-                        msmin.setDefaultLevel(msmin.getImpactLevel());
-                    }
-                    else {
-                        // Save the lowest impact level otherwise
-                        msmin.setDefaultLevel(lowestImpact);
+            // Find TWAS undermined by changed MS, and lower their levels if necessary
+            if (!firstIteration) {
+                worklistNumber++;
+                IntWorklist next = new IntWorklist(changedMS.size());
+                for (int i = 0; i < changedMS.size(); i++) {
+                    int m = changedMS.get(i);
+                    for (int j = graph.underminedStart[m]; j < graph.underminedStart[m + 1]; j++) {
+                        next.addOnce(graph.undermined[j], twasMarks, worklistNumber);
                     }
+                }
+                twasWorklist = next.toArray();
+            }
+            IntWorklist changedTWAS = new IntWorklist(twasWorklist.length);
+            for (int tw : twasWorklist) {
+                int m = graph.entryPointMS[tw];
+                if (m < 0 || graph.msPrior[m] < 0 || graph.twasLevel[tw] < 0) {
+                    continue;
+                }
+                int invertedLevel = topTWLevel - graph.msPrior[m];
+                if (invertedLevel < graph.twasLevel[tw]) {
+                    graph.twasLevel[tw] = invertedLevel;
+                    TrustworthinessAttributeSetDB twas = trustworthinessAttributeSets.get(graph.twasURIs[tw]);
+                    twas.setInferredLevel(trustworthinessLevels.get(invertedLevel).getUri());
+                    querier.store(twas, "system-inf");
+                    changedTWAS.add(tw);
+                }
+            }
 
-                    // Check if there is an impact level in the asserted graph, and if so, use it 
-                    MisbehaviourSetDB msminInput = querier.getMisbehaviourSet(msmin.getUri(), "system");
+            recordIteration(threatWorklist.length, changedThreatCount, msWorklist.length, changedMS.size(), changedTWAS.size());
+            finished = changedMS.size() == 0;
+            firstIteration = false;
 
-                    // Get the impact level from the asserted graph, or using a default value
-                    if(msminInput != null && msminInput.getImpactLevel() != null) {
-                        msmin.setImpactLevel(msminInput.getImpactLevel());
-                    }
-                    else {
-                        // If there is no level in the asserted graph, restore the saved level
-                        msmin.setImpactLevel(msmin.getDefaultLevel());
-                        msmin.setDefaultLevel(null);
-                    }
+            // Threats must be recalculated if a cause MS changed, or if an entry point TWAS changed
+            worklistNumber++;
+            IntWorklist next = new IntWorklist(changedMS.size());
+            for (int i = 0; i < changedMS.size() + changedTWAS.size(); i++) {
+                int m = i < changedMS.size() ? changedMS.get(i) : graph.entryPointMS[changedTWAS.get(i - changedMS.size())];
+                for (int j = graph.dependentStart[m]; j < graph.dependentStart[m + 1]; j++) {
+                    next.addOnce(graph.dependents[j], threatMarks, worklistNumber);
+                }
+            }
+            threatWorklist = next.toArray();
+        }
 
-                    // Initialise the live object and save to the inferred graph
-                    msmin.setPrior(lowestLikelihood);
-                    msmin.setExternalCause(null);
-                    msmin.getCausedThreats().clear();
-                    querier.store(msmin, "system-inf");
+    }
 
-                    // Get the highest likelihood member of the triplet
-                    MisbehaviourSetDB msmax = misbehaviourSets.get(msavg.getHasMax());
+    /**
+     * Load the current threat and MS likelihoods and TWAS levels into the compiled graph.
+     */
+    private void loadGraphLevels() {
+        for (int t = 0; t < graph.getThreatCount(); t++) {
+            String prior = threats.get(graph.threatURIs[t]).getPrior();
+            graph.threatPrior[t] = prior != null ? liLevels.get(prior).getLevelValue() : -1;
+        }
+        for (int m = 0; m < graph.getMisbehaviourSetCount(); m++) {
+            String prior = misbehaviourSets.get(graph.msURIs[m]).getPrior();
+            graph.msPrior[m] = prior != null ? liLevels.get(prior).getLevelValue() : -1;
+        }
+        for (int tw = 0; tw < graph.getTwasCount(); tw++) {
+            String level = trustworthinessAttributeSets.get(graph.twasURIs[tw]).getInferredLevel();
+            graph.twasLevel[tw] = level != null ? twLevels.get(level).getLevelValue() : -1;
+        }
+    }
 
-                    // Temporarily save the inferred impact level
-                    if(msmax.getImpactLevel() != null) {
-                        // Save the previous inferred graph value if there is one
-                        msmax.setDefaultLevel(msmax.getImpactLevel());
-                    }
-                    else {
-                        // Save the lowest impact level otherwise
-                        msmax.setDefaultLevel(lowestImpact);
-                    }
-                    
-                    // Check if there is an impact level in the asserted graph, and if so, use it 
-                    MisbehaviourSetDB msmaxInput = querier.getMisbehaviourSet(msmax.getUri(), "system");
-                    if(msmaxInput != null && msmaxInput.getImpactLevel() != null) {
-                        msmax.setImpactLevel(msmaxInput.getImpactLevel());
-                    }
-                    else {
-                        // If there is no level in the asserted graph, restore the saved level
-                        msmax.setImpactLevel(msmax.getDefaultLevel());
-                        msmax.setDefaultLevel(null);
-                    }
+    /**
+     * Growable list of int IDs, used for worklists in the compiled graph propagation.
+     */
+    private static class IntWorklist {
+        private int[] ids;
+        private int size = 0;
 
-                    // Initialise the live object and save to the inferred graph
-                    msmax.setPrior(lowestLikelihood);
-                    msmax.setExternalCause(null);
-                    msmax.getCausedThreats().clear();
-                    querier.store(msmax, "system-inf");
-                }
+        IntWorklist(int capacity) {
+            ids = new int[Math.max(capacity, 16)];
+        }
 
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
             }
-
+            ids[size++] = id;
         }
 
-        /* If this is an old domain model, we may also need to raise the initial MS likelihood to a level
-         * equivalent to the TW level of the associated TWAS (if any). This was the case before SSM could
-         * handle secondary threats with primary causes (and vice versa).
-         * 
-         * We can find this out by checking if the domain model has a feature string "MixedThreatCauses".
+        /**
+         * Add an ID unless it has already been added to this worklist, as shown by the marker array.
          */
-        Boolean mixedThreatCauses = domainFeatures.containsKey("domain#Feature-MixedThreatCauses");
-        if(mixedThreatCauses) {
-            logger.info("Domain model supports mixed threat causes, so MS likelihood initialised to zero");
-        } else {
-            logger.info("Domain model does not support mixed threat causes, so MS likelihood initialised from TWAS levels");
-            for(TrustworthinessAttributeSetDB twas : trustworthinessAttributeSets.values()){
-                String twasURI = twas.getUri();
-                String twasLevelURI = twas.getInferredLevel();
-                if (twasLevelURI == null) {
-                    logger.warn("Found a TWAS with no inferred TWL");
-                }
-                MisbehaviourSetDB ms = entryPointMisbehaviour.get(twasURI);
-                LevelDB twasLevel = twLevels.get(twasLevelURI);
-                LevelDB msLevel = invertToLikelihood(twasLevel);
-                String msLevelUri = msLevel.getUri();
-                if(!msLevelUri.equals(lowestLikelihood)){
-                    ms.setPrior(msLevelUri);
-                    querier.store(ms, "system-inf"); 
-                }    
+        void addOnce(int id, int[] marks, int worklistNumber) {
+            if (marks[id] != worklistNumber) {
+                marks[id] = worklistNumber;
+                add(id);
             }
         }
 
-        // Reset threat likelihood and risk level, and reset other properties to null / empty lists
-        for (ThreatDB threat : threats.values()){
-            threat.setPrior(null);
-            threat.setRisk(null);
-            threat.setRootCause(null);
-            threat.setInitialCause(null);
-            threat.getDirectMisbehaviours().clear();
-            threat.getIndirectMisbehaviours().clear();
-            threat.getIndirectThreats().clear();
-            threat.getCausedBy().clear();
-            querier.store(threat, "system-inf");
+        int get(int i) {
+            return ids[i];
         }
-        for(TrustworthinessAttributeSetDB twas : trustworthinessAttributeSets.values()){
-            twas.getCausedThreats().clear();
+
+        int size() {
+            return size;
         }
-        for(MisbehaviourSetDB ms : misbehaviourSets.values()){
-            ms.getCausedThreats().clear();
-            ms.getCausedBy().clear();
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
         }
+    }
 
-        final long endTime = System.currentTimeMillis();
-        logger.info("RiskCalculator.initialiseLevels(): execution time {} ms", endTime - startTime);
+    /**
+     * Get the MS that may affect the likelihood of threats triggered by a CSG containing the specified
+     * optional CS. This includes MS suppressed by the other members of the CS triplet, since the threat
+     * likelihood calculation may flip between the min and max coverage CS.
+     */
+    private Set<String> getTriggeringMisbehaviours(String csURI) {
+        Set<String> msURIs = new HashSet<>(triggeringMisbehaviours.getOrDefault(csURI, new HashSet<>()));
+        ControlSetDB cs = controlSets.get(csURI);
+        if (cs != null) {
+            if (cs.getMaxOf() != null && controlSets.get(cs.getMaxOf()) != null) {
+                msURIs.addAll(triggeringMisbehaviours.getOrDefault(controlSets.get(cs.getMaxOf()).getHasMin(), new HashSet<>()));
+            }
+            if (cs.getMinOf() != null && controlSets.get(cs.getMinOf()) != null) {
+                msURIs.addAll(triggeringMisbehaviours.getOrDefault(controlSets.get(cs.getMinOf()).getHasMax(), new HashSet<>()));
+            }
+        }
+        return msURIs;
+    }
 
+    private void recordIteration(int threatsCalculated, int threatsChanged, int misbehavioursCalculated, int misbehavioursChanged, int twasChanged) {
+        IterationStats stats = new IterationStats(iterationStats.size() + 1, threatsCalculated, threatsChanged,
+                misbehavioursCalculated, misbehavioursChanged, twasChanged);
+        iterationStats.add(stats);
+        logger.debug("RiskCalculator.calculateThreatLikelihood(): {}", stats);
     }
 
     /**
-     * Restore default levels to the inferred graph, where they had to be overridden in initialiseLevels.
+     * Calculate the likelihood of each of the specified threats.
+     *
+     * @param threatsToCalculate the threats to be recalculated
+     * @param mode the risk calculation mode to use
+     * @return the URIs of threats whose likelihood changed
      */
-    private void restoreDefaultLevels(){
-        for(MisbehaviourSetDB ms : misbehaviourSets.values()){
-            if(ms.getDefaultLevel() != null) {
-                ms.setImpactLevel(ms.getDefaultLevel());
-                ms.setDefaultLevel(null);
+    private Set<String> calculateThreatLikelihoods(Collection<ThreatDB> threatsToCalculate, RiskCalculationMode mode) {
+        List<ThreatDB> threatList = new ArrayList<>(threatsToCalculate);
+        List<LikelihoodUpdate> updates = calculateAndStoreThreatLikelihoods(threatList, mode);
+
+        Set<String> changedThreats = new HashSet<>();
+        for (int i = 0; i < threatList.size(); i++) {
+            if (updates.get(i) == LikelihoodUpdate.CHANGED) {
+                changedThreats.add(threatList.get(i).getUri());
             }
         }
+        return changedThreats;
     }
 
-    private void calculateThreatLikelihood(RiskCalculationMode mode) {
-        final long startTime = System.currentTimeMillis();
+    /**
+     * Calculate the likelihood of each of the specified threats, and store those that were calculated.
+     *
+     * @return the outcome for each threat, in the same order as the threats
+     */
+    private List<LikelihoodUpdate> calculateAndStoreThreatLikelihoods(List<ThreatDB> threatList, RiskCalculationMode mode) {
+        List<LikelihoodUpdate> updates = mapItems(threatList, threat -> calculateThreatLikelihood(threat, mode));
 
-        boolean finished = false;
+        // Store the results from this thread, in the same order as the threats were given
+        for (int i = 0; i < threatList.size(); i++) {
+            if (updates.get(i) != LikelihoodUpdate.NOT_CALCULATED) {
+                querier.store(threatList.get(i), "system-inf");
+            }
+        }
+        return updates;
+    }
 
-        while (!finished) {
-            // we assume this is the last iteration until a MS has to be changed
-            calculateThreatLikelihoods(mode);
-            finished = updateMSLikelihoods();
-            updateTWASLevels();
+    /**
+     * Apply a function to each item, returning the results in the same order as the items.
+     * 
+     * If the parallelism is more than 1, the items are split into contiguous chunks, each of which is processed
+     * by a separate ForkJoinPool task that collects its results in its own list. The lists are then joined in
+     * chunk order, so the results are the same as from a sequential calculation.
+     * 
+     * The function must not use the querier, because the EntityCache is not thread safe. Any querier.store()
+     * calls must be made by the caller, using the returned results.
+     */
+    private <T, R> List<R> mapItems(List<T> items, Function<T, R> function) {
+        if (parallelism <= 1 || items.size() < 2) {
+            List<R> results = new ArrayList<>(items.size());
+            for (T item : items) {
+                results.add(function.apply(item));
+            }
+            return results;
         }
 
-        final long endTime = System.currentTimeMillis();
-        logger.info("RiskCalculator.calculateThreatLikelihood(): execution time {} ms", endTime - startTime);
-        
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        // Use a few chunks per thread, so uneven chunks can be balanced between threads
+        int chunks = 4 * parallelism;
+        int chunkSize = (items.size() + chunks - 1) / chunks;
+        List<ForkJoinTask<List<R>>> tasks = new ArrayList<>();
+        for (int start = 0; start < items.size(); start += chunkSize) {
+            List<T> chunk = items.subList(start, Math.min(start + chunkSize, items.size()));
+            tasks.add(pool.submit(() -> {
+                List<R> chunkResults = new ArrayList<>(chunk.size());
+                for (T item : chunk) {
+                    chunkResults.add(function.apply(item));
+                }
+                return chunkResults;
+            }));
+        }
+
+        List<R> results = new ArrayList<>(items.size());
+        for (ForkJoinTask<List<R>> task : tasks) {
+            results.addAll(task.join());
+        }
+        return results;
+    }
+
+    private void shutdownPool() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
     }
 
     /**
-     * Set each triggered threat's likelihood set to either
+     * Set a triggered threat's likelihood set to either
      *    a) the inverse of the most trustworthy TWAS among its entry points, if it is a primary threat
      *    b) the least likely MS among its secondary effect conditions, if it is a secondary threat
      * up to a maximum equal to the inverse of the most trustworthy fully-asserted CSG.
@@ -1066,11 +1855,16 @@ public class RiskCalculator {
      * If a threat is untriggered (i.e. has one or more triggering CSGs which are unasserted) then its
      * likelihood is set to the minimum level.
      *
+     * This may be called from a worker thread, so it must not use the querier. The caller is responsible
+     * for storing the threat if its likelihood was calculated.
+     *
+     * @param threat the threat whose likelihood should be calculated
      * @param mode the risk calculation mode to use
+     * @return whether the likelihood of the threat was calculated, and if so whether it changed
      */
-    private void calculateThreatLikelihoods(RiskCalculationMode mode) {
+    private LikelihoodUpdate calculateThreatLikelihood(ThreatDB threat, RiskCalculationMode mode) {
 
-        // Calculate the likelihood of each threat, given the likelihood of each cause and the status of CSGs.
+        // Calculate the likelihood of the threat, given the likelihood of each cause and the status of CSGs.
         /* TODO: change this code to implement the algorithms needed to support populations. The main changes are:
          * 
          * - Threat causes should be computed per asset, then combined per node (depending on node type), and
@@ -1078,319 +1872,315 @@ public class RiskCalculator {
          * - The effect of optional control sets in enabled CSGs should be inserted per asset during the threat
          *   causation calculation. Only CSGs with no optional control sets should work in the current manner.
          */
-        for (ThreatDB threat : threats.values()) {
-            // Get the threat URI and Label, not used but helps with debugging
-            String threatURI = threat.getUri();
-            String threatLabel = threat.getLabel();
-            String dthreatURI = threat.getParent();
-            if(dthreatURI == null) {
-                // Threat type cannot be determined, which is an error
-                String message = String.format("Threat %s has no domain model parent type", threatURI);
-                throw new RuntimeException(message);
-            }
-            ThreatDB dthreat = dthreats.get(dthreatURI);
-            if(dthreat == null){
-                // Domain model parent threat cannot be found, which is an error
-                String message = String.format("Threat %s has parent type %s, but this cannot be found", threatURI, dthreatURI);
-                throw new RuntimeException(message);
-            }
+        // Get the threat URI and Label, not used but helps with debugging
+        String threatURI = threat.getUri();
+        String threatLabel = threat.getLabel();
+        String dthreatURI = threat.getParent();
+        if(dthreatURI == null) {
+            // Threat type cannot be determined, which is an error
+            String message = String.format("Threat %s has no domain model parent type", threatURI);
+            throw new RuntimeException(message);
+        }
+        ThreatDB dthreat = dthreats.get(dthreatURI);
+        if(dthreat == null){
+            // Domain model parent threat cannot be found, which is an error
+            String message = String.format("Threat %s has parent type %s, but this cannot be found", threatURI, dthreatURI);
+            throw new RuntimeException(message);
+        }
 
-            // STAGE 0: Check whether we need to calculate a likelihood for this threat
+        // STAGE 0: Check whether we need to calculate a likelihood for this threat
 
-            // If this is a compliance threat with no causes, we skip it
-            if (threat.getEntryPoints().isEmpty() && threat.getSecondaryEffectConditions().isEmpty()){
-                continue;
-            }
+        // If this is a compliance threat with no causes, we skip it
+        if (threat.getEntryPoints().isEmpty() && threat.getSecondaryEffectConditions().isEmpty()){
+            return LikelihoodUpdate.NOT_CALCULATED;
+        }
 
-            // If this threat should not be considered in this type of risk calculation, we skip it 
-            boolean enabled = false;
-            switch(mode) {
-                case CURRENT:
-                    enabled = dthreat.isCurrentRisk();
-                    break;
-                case FUTURE:
-                    enabled = dthreat.isFutureRisk();
-                    break;
-            }
-            if(!enabled){
-                continue;
-            }
+        // If this threat should not be considered in this type of risk calculation, we skip it 
+        boolean enabled = false;
+        switch(mode) {
+            case CURRENT:
+                enabled = dthreat.isCurrentRisk();
+                break;
+            case FUTURE:
+                enabled = dthreat.isFutureRisk();
+                break;
+        }
+        if(!enabled){
+            return LikelihoodUpdate.NOT_CALCULATED;
+        }
 
-            // If this is a triggered threat with no triggers, we log it (a possible error) and skip it
-            if(threat.isTriggered() && threat.getTriggeredByCSG().isEmpty()){
-                logger.warn("Threat {} is a triggered threat with no triggering CSGs", threat.getUri());
-                continue;
-            }
+        // If this is a triggered threat with no triggers, we log it (a possible error) and skip it
+        if(threat.isTriggered() && threat.getTriggeredByCSG().isEmpty()){
+            logger.warn("Threat {} is a triggered threat with no triggering CSGs", threat.getUri());
+            return LikelihoodUpdate.NOT_CALCULATED;
+        }
 
-            // If this is a triggered threat with no enabled triggers (not an error), we skip it
-            if(threat.isTriggered()){
-                boolean untriggered = true;
-                for(String triggerURI : threat.getTriggeredByCSG()) {
-                    ControlStrategyDB trigger = controlStrategies.get(triggerURI);
-                    if(trigger.isEnabled()) {
-                        // The threat is triggered, so we can skip the remaining triggers
-                        untriggered = false;
-                        break;
-                    }
-                }
-                if(untriggered){
-                    continue;
+        // If this is a triggered threat with no enabled triggers (not an error), we skip it
+        if(threat.isTriggered()){
+            boolean untriggered = true;
+            for(String triggerURI : threat.getTriggeredByCSG()) {
+                ControlStrategyDB trigger = controlStrategies.get(triggerURI);
+                if(trigger.isEnabled()) {
+                    // The threat is triggered, so we can skip the remaining triggers
+                    untriggered = false;
+                    break;
                 }
             }
+            if(untriggered){
+                return LikelihoodUpdate.NOT_CALCULATED;
+            }
+        }
 
-            // The threat is either non-triggered (needs no trigger) or triggered, so find its likelihood
+        // The threat is either non-triggered (needs no trigger) or triggered, so find its likelihood
 
-            // Start by grabbing some data concerning roles and assets and the effect of optional controls
-            MatchingPatternDB matchingPattern = querier.getMatchingPattern(threat.getAppliesTo(), "system-inf");
-            List<String> pseudorootAssets = querier.getPseudorootAssets(matchingPattern);
-            List<String> sufficientRoles = sufficientRolesByThreat.get(dthreatURI);
-            List<String> necessaryRoles = necessaryRolesByThreat.get(dthreatURI);
-            Map<String, List<String>> assetsByRole = assetsByThreatByRole.get(threat.getUri());
-            Map<String, List<String>> rolesByAsset = rolesByThreatByAsset.get(threat.getUri());
-            Map<String, Integer> causeSuppressionThisThreat = causeSuppressionByThreat.get(threat.getUri());
+        // Start by grabbing some data concerning roles and assets and the effect of optional controls
+        List<String> pseudorootAssets = pseudorootAssetsByThreat.get(threat.getUri());
+        List<String> sufficientRoles = sufficientRolesByThreat.get(dthreatURI);
+        List<String> necessaryRoles = necessaryRolesByThreat.get(dthreatURI);
+        Map<String, List<String>> assetsByRole = assetsByThreatByRole.get(threat.getUri());
+        Map<String, List<String>> rolesByAsset = rolesByThreatByAsset.get(threat.getUri());
+        Map<String, Integer> causeSuppressionThisThreat = causeSuppressionByThreat.get(threat.getUri());
 
-            // STAGE 1: find the effective threat causation TW level for each asset
-            Map<String, Integer> assetLevels = new HashMap<>();
+        // STAGE 1: find the effective threat causation TW level for each asset
+        Map<String, Integer> assetLevels = new HashMap<>();
 
-            /* Set an initial TW level per asset based on the coverage levels of any optional CS that
-             * is part of an enabled triggering CSG? See Issue #1340.
-             * 
-             * This is the first step, covered by Issue #1350, which uses suppressed threat cause
-             * likelihood but not yet control coverage levels.
-             * 
-             * TODO : modify the 'effective level' so it also depends on control coverage level.
-             */
-            if(threat.isTriggered()) {
-                for(String triggerURI : threat.getTriggeredByCSG()) {
-                    ControlStrategyDB trigger = controlStrategies.get(triggerURI);
-                    if(trigger.isEnabled()){
-                        Integer csgCoverageLevel = twLevels.get(trigger.getCoverageLevel()).getLevelValue();
-                        Map<String, Integer> csgLevels = new HashMap<>();
-                        for(String csURI : trigger.getOptionalCS()){
-                            // Initialise the effective triggering level
-                            Integer effectiveLevel = twLevels.size() - 1;
-
-                            // Get the triggering optional control set and its asset
-                            ControlSetDB cs = controlSets.get(csURI);
-                            String assetURI = cs.getLocatedAt();
-
-                            /* Flip between min and max coverage CS at necessary/sufficient nodes. See
-                             * 
-                             * https://iglab.it-innovation.soton.ac.uk/Security/system-modeller/-/issues/1360#note_32462
-                             */
-                            // This is a max coverage control set, should flip if it is at a necessary node
-                            if(cs.getMaxOf() != null) {
-                                Boolean necessary = !pseudorootAssets.contains(assetURI);
-                                if(necessary) for(String roleURI : rolesByAsset.get(assetURI)){
-                                    necessary = necessary || necessaryRoles.contains(roleURI);
-                                }
-                                if(necessary) {
-                                    cs = controlSets.get(controlSets.get(cs.getMaxOf()).getHasMin());
-                                }
+        /* Set an initial TW level per asset based on the coverage levels of any optional CS that
+         * is part of an enabled triggering CSG? See Issue #1340.
+         * 
+         * This is the first step, covered by Issue #1350, which uses suppressed threat cause
+         * likelihood but not yet control coverage levels.
+         * 
+         * TODO : modify the 'effective level' so it also depends on control coverage level.
+         */
+        if(threat.isTriggered()) {
+            for(String triggerURI : threat.getTriggeredByCSG()) {
+                ControlStrategyDB trigger = controlStrategies.get(triggerURI);
+                if(trigger.isEnabled()){
+                    Integer csgCoverageLevel = twLevels.get(trigger.getCoverageLevel()).getLevelValue();
+                    Map<String, Integer> csgLevels = new HashMap<>();
+                    for(String csURI : trigger.getOptionalCS()){
+                        // Initialise the effective triggering level
+                        Integer effectiveLevel = twLevels.size() - 1;
+
+                        // Get the triggering optional control set and its asset
+                        ControlSetDB cs = controlSets.get(csURI);
+                        String assetURI = cs.getLocatedAt();
+
+                        /* Flip between min and max coverage CS at necessary/sufficient nodes. See
+                         * 
+                         * https://iglab.it-innovation.soton.ac.uk/Security/system-modeller/-/issues/1360#note_32462
+                         */
+                        // This is a max coverage control set, should flip if it is at a necessary node
+                        if(cs.getMaxOf() != null) {
+                            Boolean necessary = !pseudorootAssets.contains(assetURI);
+                            if(necessary) for(String roleURI : rolesByAsset.get(assetURI)){
+                                necessary = necessary || necessaryRoles.contains(roleURI);
                             }
-                            else if(cs.getMinOf() != null) {
-                                // This is a min coverage control set, should flip if it is at a sufficient node
-                                Boolean sufficient = !pseudorootAssets.contains(assetURI);
-                                if(sufficient) for(String roleURI : rolesByAsset.get(assetURI)){
-                                    sufficient = sufficient || sufficientRoles.contains(roleURI);
-                                }
-                                if(sufficient) {
-                                    cs = controlSets.get(controlSets.get(cs.getMinOf()).getHasMax());
-                                }
+                            if(necessary) {
+                                cs = controlSets.get(controlSets.get(cs.getMaxOf()).getHasMin());
                             }
+                        }
+                        else if(cs.getMinOf() != null) {
+                            // This is a min coverage control set, should flip if it is at a sufficient node
+                            Boolean sufficient = !pseudorootAssets.contains(assetURI);
+                            if(sufficient) for(String roleURI : rolesByAsset.get(assetURI)){
+                                sufficient = sufficient || sufficientRoles.contains(roleURI);
+                            }
+                            if(sufficient) {
+                                cs = controlSets.get(controlSets.get(cs.getMinOf()).getHasMax());
+                            }
+                        }
 
-                            if(cs.isProposed()){
-                                // If the CS is present and enabled, get its effective coverage level
-                                Integer coverageLevel = twLevels.get(cs.getCoverageLevel()).getLevelValue();
-                                if(coverageLevel > csgCoverageLevel) coverageLevel = csgCoverageLevel;
-
-                                // Find the highest likelihood of any MS suppressed as a threat cause by this CS
-                                Integer misbehaviourLevel = twLevels.size() - 1;
-                                for (String msURI : triggeringMisbehaviours.getOrDefault(cs.getUri(), new HashSet<>())){
-                                    MisbehaviourSetDB ms = misbehaviourSets.get(msURI);
-                                    if(ms == null) {
-                                        logger.warn("Optional control {} in CSG {} does not suppress any behaviour", cs.getControl(), triggerURI);
-                                    }
-                                    Integer level = invertToTrustworthiness(liLevels.get(ms.getPrior())).getLevelValue();
-                                    if (misbehaviourLevel > level) misbehaviourLevel = level;
-
+                        if(cs.isProposed()){
+                            // If the CS is present and enabled, get its effective coverage level
+                            Integer coverageLevel = twLevels.get(cs.getCoverageLevel()).getLevelValue();
+                            if(coverageLevel > csgCoverageLevel) coverageLevel = csgCoverageLevel;
+
+                            // Find the highest likelihood of any MS suppressed as a threat cause by this CS
+                            Integer misbehaviourLevel = twLevels.size() - 1;
+                            for (String msURI : triggeringMisbehaviours.getOrDefault(cs.getUri(), new HashSet<>())){
+                                MisbehaviourSetDB ms = misbehaviourSets.get(msURI);
+                                if(ms == null) {
+                                    logger.warn("Optional control {} in CSG {} does not suppress any behaviour", cs.getControl(), triggerURI);
                                 }
+                                Integer level = invertToTrustworthiness(liLevels.get(ms.getPrior())).getLevelValue();
+                                if (misbehaviourLevel > level) misbehaviourLevel = level;
 
-                                /* Find the side effect causation likelihood (as a TW level)
-                                 * Here we're assuming that if misbehaviour M has likelihood L_m at asset A, and control C
-                                 * has coverage level T_c at asset A, in which case:
-                                 * - likelihood of control failing to cover A is L_c = N - 1 - T_c
-                                 * - likelihood of threat causation at A due to M is L_t = min(L_m, L_c)
-                                 * - likelihood of side effect causation at A due to C is L_s = L_m - L_t
-                                 * The corresponding TW level T_s = N - 1 - L_s, which after rearrangement turns out to be
-                                 * T_s = N - 1 + T_m - max(T_m, T_c), where N is the number of levels in the likelihood/TW scales
-                                 */
-                                if(coverageLevel > misbehaviourLevel){
-                                    effectiveLevel = effectiveLevel + misbehaviourLevel - coverageLevel;
-                                }
-    
                             }
-                            
-                            // Side effect causation at this asset from this CSG is from the asset's least likely CS
-                            if(!csgLevels.containsKey(assetURI)){
-                                csgLevels.put(assetURI, effectiveLevel);
-                            } else if(csgLevels.get(assetURI) < effectiveLevel) {
-                                csgLevels.replace(assetURI, effectiveLevel);
+
+                            /* Find the side effect causation likelihood (as a TW level)
+                             * Here we're assuming that if misbehaviour M has likelihood L_m at asset A, and control C
+                             * has coverage level T_c at asset A, in which case:
+                             * - likelihood of control failing to cover A is L_c = N - 1 - T_c
+                             * - likelihood of threat causation at A due to M is L_t = min(L_m, L_c)
+                             * - likelihood of side effect causation at A due to C is L_s = L_m - L_t
+                             * The corresponding TW level T_s = N - 1 - L_s, which after rearrangement turns out to be
+                             * T_s = N - 1 + T_m - max(T_m, T_c), where N is the number of levels in the likelihood/TW scales
+                             */
+                            if(coverageLevel > misbehaviourLevel){
+                                effectiveLevel = effectiveLevel + misbehaviourLevel - coverageLevel;
                             }
 
                         }
+                        
+                        // Side effect causation at this asset from this CSG is from the asset's least likely CS
+                        if(!csgLevels.containsKey(assetURI)){
+                            csgLevels.put(assetURI, effectiveLevel);
+                        } else if(csgLevels.get(assetURI) < effectiveLevel) {
+                            csgLevels.replace(assetURI, effectiveLevel);
+                        }
 
-                        // Side effect trigger causation at this asset is from the most likely CSG
-                        for(String assetURI : csgLevels.keySet()){
-                            Integer effectiveLevel = csgLevels.get(assetURI);
-                            if(assetLevels.containsKey(assetURI)){
-                                if(effectiveLevel < assetLevels.get(assetURI)) {
-                                    assetLevels.replace(assetURI, effectiveLevel);
-                                }            
-                            } else {
-                                assetLevels.put(assetURI, effectiveLevel);
-                            }
+                    }
+
+                    // Side effect trigger causation at this asset is from the most likely CSG
+                    for(String assetURI : csgLevels.keySet()){
+                        Integer effectiveLevel = csgLevels.get(assetURI);
+                        if(assetLevels.containsKey(assetURI)){
+                            if(effectiveLevel < assetLevels.get(assetURI)) {
+                                assetLevels.replace(assetURI, effectiveLevel);
+                            }            
+                        } else {
+                            assetLevels.put(assetURI, effectiveLevel);
                         }
                     }
                 }
             }
+        }
 
-            // Next, calculate the effective TW level of each asset based on any primary threat causes
-            for(String twasURI : threat.getEntryPoints()){
-                // Find the entry point TWAS and get its TW level
-                TrustworthinessAttributeSetDB twas = trustworthinessAttributeSets.get(twasURI);
-                Integer effectiveLevel = twLevels.get(twas.getInferredLevel()).getLevelValue();
-
-                // Apply the limit coming from optional CS
-                Integer lowerLimit = causeSuppressionThisThreat.get(twasURI);
-                if(effectiveLevel < lowerLimit)
-                    effectiveLevel = lowerLimit;
-
-                // Apply this level to the causation TW level of the asset
-                String assetURI = twas.getLocatedAt();
-                if(assetLevels.containsKey(assetURI)) {
-                    // There is already a cause at this asset
-                    if(assetLevels.get(assetURI) < effectiveLevel) {
-                        // Replace it if this cause is less likely (more trustworthy)
-                        assetLevels.replace(assetURI, effectiveLevel);
-                    }
-                } else {
-                    // First cause at this asset, so just save it
-                    assetLevels.put(assetURI, effectiveLevel);
+        // Next, calculate the effective TW level of each asset based on any primary threat causes
+        for(String twasURI : threat.getEntryPoints()){
+            // Find the entry point TWAS and get its TW level
+            TrustworthinessAttributeSetDB twas = trustworthinessAttributeSets.get(twasURI);
+            Integer effectiveLevel = twLevels.get(twas.getInferredLevel()).getLevelValue();
+
+            // Apply the limit coming from optional CS
+            Integer lowerLimit = causeSuppressionThisThreat.get(twasURI);
+            if(effectiveLevel < lowerLimit)
+                effectiveLevel = lowerLimit;
+
+            // Apply this level to the causation TW level of the asset
+            String assetURI = twas.getLocatedAt();
+            if(assetLevels.containsKey(assetURI)) {
+                // There is already a cause at this asset
+                if(assetLevels.get(assetURI) < effectiveLevel) {
+                    // Replace it if this cause is less likely (more trustworthy)
+                    assetLevels.replace(assetURI, effectiveLevel);
                 }
+            } else {
+                // First cause at this asset, so just save it
+                assetLevels.put(assetURI, effectiveLevel);
             }
+        }
 
-            /* Next, include any secondary effect causes.
-             *
-             * NOTE : previously there was an 'else' here, so threats with primary causes could not
-             * also have secondary causes. I removed the 'else', so we can now have primary threats
-             * that also depend on the presence of misbehaviours, although until now we don't have 
-             * any domain models that use this.
-             */
-            for(String msURI : threat.getSecondaryEffectConditions()){
-                // Find the secondary effect cause MS and get its TW level
-                MisbehaviourSetDB ms = misbehaviourSets.get(msURI);
-                Integer effectiveLevel = invertToTrustworthiness(liLevels.get(ms.getPrior())).getLevelValue();
-
-                // Apply the limit coming from optional CS
-                Integer lowerLimit = causeSuppressionThisThreat.get(msURI);
-                if(effectiveLevel < lowerLimit)
-                    effectiveLevel = lowerLimit;
-
-                // Apply this level to the causation TW level of the asset
-                String assetURI = ms.getLocatedAt();
-                if(assetLevels.containsKey(assetURI)) {
-                    // There is already a cause at this asset
-                    if(assetLevels.get(assetURI) < effectiveLevel) {
-                        // Replace it if this cause is less likely (more trustworthy)
-                        assetLevels.replace(assetURI, effectiveLevel);
-                    }
-                } else {
-                    // First cause at this asset, so just save it
-                    assetLevels.put(assetURI, effectiveLevel);
+        /* Next, include any secondary effect causes.
+         *
+         * NOTE : previously there was an 'else' here, so threats with primary causes could not
+         * also have secondary causes. I removed the 'else', so we can now have primary threats
+         * that also depend on the presence of misbehaviours, although until now we don't have 
+         * any domain models that use this.
+         */
+        for(String msURI : threat.getSecondaryEffectConditions()){
+            // Find the secondary effect cause MS and get its TW level
+            MisbehaviourSetDB ms = misbehaviourSets.get(msURI);
+            Integer effectiveLevel = invertToTrustworthiness(liLevels.get(ms.getPrior())).getLevelValue();
+
+            // Apply the limit coming from optional CS
+            Integer lowerLimit = causeSuppressionThisThreat.get(msURI);
+            if(effectiveLevel < lowerLimit)
+                effectiveLevel = lowerLimit;
+
+            // Apply this level to the causation TW level of the asset
+            String assetURI = ms.getLocatedAt();
+            if(assetLevels.containsKey(assetURI)) {
+                // There is already a cause at this asset
+                if(assetLevels.get(assetURI) < effectiveLevel) {
+                    // Replace it if this cause is less likely (more trustworthy)
+                    assetLevels.replace(assetURI, effectiveLevel);
                 }
+            } else {
+                // First cause at this asset, so just save it
+                assetLevels.put(assetURI, effectiveLevel);
             }
+        }
 
-            // STAGE 2: find the effective threat causation TW level for each role, based on node type
-            Map<String, Integer> roleLevels = new HashMap<>();
-            for(String roleURI : assetsByRole.keySet()) {
-                List<String> assetsThisRole = assetsByRole.get(roleURI);
-                for(String assetURI : assetsThisRole) {
-                    if(assetLevels.containsKey(assetURI)) {
-                        Integer effectiveLevel = assetLevels.get(assetURI);
-                        if(roleLevels.containsKey(roleURI)) {
-                            // Update depending whether we're looking for the highest/lowest TW asset
-                            if(sufficientRoles != null && sufficientRoles.contains(roleURI)) {
-                                // We need the lowest TW asset, so update if this level is lower
-                                if(effectiveLevel < roleLevels.get(roleURI)) {
-                                    roleLevels.replace(roleURI, effectiveLevel);
-                                }
-                            } else {
-                                // We need the highest TW asset, so update if this level is higher
-                                if(effectiveLevel > roleLevels.get(roleURI)) {
-                                    roleLevels.replace(roleURI, effectiveLevel);
-                                }
+        // STAGE 2: find the effective threat causation TW level for each role, based on node type
+        Map<String, Integer> roleLevels = new HashMap<>();
+        for(String roleURI : assetsByRole.keySet()) {
+            List<String> assetsThisRole = assetsByRole.get(roleURI);
+            for(String assetURI : assetsThisRole) {
+                if(assetLevels.containsKey(assetURI)) {
+                    Integer effectiveLevel = assetLevels.get(assetURI);
+                    if(roleLevels.containsKey(roleURI)) {
+                        // Update depending whether we're looking for the highest/lowest TW asset
+                        if(sufficientRoles != null && sufficientRoles.contains(roleURI)) {
+                            // We need the lowest TW asset, so update if this level is lower
+                            if(effectiveLevel < roleLevels.get(roleURI)) {
+                                roleLevels.replace(roleURI, effectiveLevel);
                             }
                         } else {
-                            roleLevels.put(roleURI, effectiveLevel);
-                        }                        
-                    }
+                            // We need the highest TW asset, so update if this level is higher
+                            if(effectiveLevel > roleLevels.get(roleURI)) {
+                                roleLevels.replace(roleURI, effectiveLevel);
+                            }
+                        }
+                    } else {
+                        roleLevels.put(roleURI, effectiveLevel);
+                    }                        
                 }
             }
+        }
 
-            // STAGE 3: assemble causation levels from different roles
-            Integer maxLevel = 0;
-            for(String roleURI : roleLevels.keySet()) {
-                Integer effectiveLevel = roleLevels.get(roleURI);
-                if(maxLevel < effectiveLevel) {
-                    maxLevel = effectiveLevel;
-                }
+        // STAGE 3: assemble causation levels from different roles
+        Integer maxLevel = 0;
+        for(String roleURI : roleLevels.keySet()) {
+            Integer effectiveLevel = roleLevels.get(roleURI);
+            if(maxLevel < effectiveLevel) {
+                maxLevel = effectiveLevel;
             }
+        }
 
-            // STAGE 4: constrain based on the most effective enabled CSG that has no optional CS
-            Integer maxCsgLevel = 0;
-            Set<String> allCSGs = new HashSet<>();
-            allCSGs.addAll(threat.getBlockedByCSG());
-            if(mode == RiskCalculationMode.FUTURE) allCSGs.addAll(threat.getMitigatedByCSG());
-
-            for(String csgURI : allCSGs) {
-                ControlStrategyDB csg = controlStrategies.get(csgURI);
-                if(csg.isEnabled() && csg.getOptionalCS().isEmpty()){
-                    ControlStrategyDB domainCSG = dcsgs.get(csg.getParent());
-                    Integer domainCsgLevel = twLevels.get(domainCSG.getBlockingEffect()).getLevelValue();
-                    Integer csgCoverageLevel = twLevels.get(csg.getCoverageLevel()).getLevelValue();
-                    if (domainCsgLevel > maxCsgLevel) {
-                        maxCsgLevel = domainCsgLevel;
-                    }
+        // STAGE 4: constrain based on the most effective enabled CSG that has no optional CS
+        Integer maxCsgLevel = 0;
+        Set<String> allCSGs = new HashSet<>();
+        allCSGs.addAll(threat.getBlockedByCSG());
+        if(mode == RiskCalculationMode.FUTURE) allCSGs.addAll(threat.getMitigatedByCSG());
+
+        for(String csgURI : allCSGs) {
+            ControlStrategyDB csg = controlStrategies.get(csgURI);
+            if(csg.isEnabled() && csg.getOptionalCS().isEmpty()){
+                ControlStrategyDB domainCSG = dcsgs.get(csg.getParent());
+                Integer domainCsgLevel = twLevels.get(domainCSG.getBlockingEffect()).getLevelValue();
+                Integer csgCoverageLevel = twLevels.get(csg.getCoverageLevel()).getLevelValue();
+                if (domainCsgLevel > maxCsgLevel) {
+                    maxCsgLevel = domainCsgLevel;
                 }
             }
-            maxLevel = maxLevel > maxCsgLevel ? maxLevel : maxCsgLevel;
-
-            // Convert to likelihood, and impose threat frequency limit if still above that limit
-            LevelDB likelihood =  invertToLikelihood(trustworthinessLevels.get(maxLevel));
-            if (threat.getFrequency() != null) {
-                LevelDB frequency = liLevels.get(threat.getFrequency());
-                likelihood = frequency.getLevelValue() < likelihood.getLevelValue() ? frequency : likelihood;
-            }
+        }
+        maxLevel = maxLevel > maxCsgLevel ? maxLevel : maxCsgLevel;
 
-            threat.setPrior(likelihood.getUri());
+        // Convert to likelihood, and impose threat frequency limit if still above that limit
+        LevelDB likelihood =  invertToLikelihood(trustworthinessLevels.get(maxLevel));
+        if (threat.getFrequency() != null) {
+            LevelDB frequency = liLevels.get(threat.getFrequency());
+            likelihood = frequency.getLevelValue() < likelihood.getLevelValue() ? frequency : likelihood;
+        }
 
-            // TODO: Only store at end of whole threat calculation (is this possible?)
-            querier.store(threat, "system-inf");
+        String previousPrior = threat.getPrior();
+        threat.setPrior(likelihood.getUri());
 
-        }
+        return likelihood.getUri().equals(previousPrior) ? LikelihoodUpdate.UNCHANGED : LikelihoodUpdate.CHANGED;
 
     }
 
-    /** Set the likelihood of each MS to the likelihood of the most likely among the Threats that are 
-     *  potential causes of that MS.
-     * @return True, if any MS likelihoods were changed. Otherwise false.
+    /** Set the likelihood of each specified MS to the likelihood of the most likely among the Threats that
+     *  are potential causes of that MS.
+     * @return The URIs of MS whose likelihoods were changed.
      */
-    private boolean updateMSLikelihoods() {
-        boolean finished = true;
+    private Set<String> updateMSLikelihoods(Collection<MisbehaviourSetDB> misbehaviourSetsToUpdate) {
+        Set<String> changedMS = new HashSet<>();
 
         // Update MS likelihoods based on those of causing threats
-        for (MisbehaviourSetDB ms : misbehaviourSets.values()) {
+        for (MisbehaviourSetDB ms : misbehaviourSetsToUpdate) {
             LevelDB maxLevel = liLevels.get(ms.getPrior());
             for (ThreatDB threat: threatsByEffect.getOrDefault(ms.getUri(), new ArrayList<>())) {
                 if (threat.getPrior() != null) {
@@ -1404,20 +2194,22 @@ public class RiskCalculator {
             if (!maxLevel.getUri().equals(ms.getPrior())) {
                 ms.setPrior(maxLevel.getUri());
                 querier.store(ms, "system-inf");
-                finished = false;
+                changedMS.add(ms.getUri());
             }
             
         }
 
-        return finished;
+        return changedMS;
     }
 
-    /** Lower the TW of each TWAS to the inverse of the associated MS likelihood (from 
+    /** Lower the TW of each specified TWAS to the inverse of the associated MS likelihood (from 
      *  the TWIS) if the TW is higher than the inverse MS likelihood.
+     * @return The URIs of TWAS whose levels were changed.
      */
-    private void updateTWASLevels() {
+    private Set<String> updateTWASLevels(Collection<String> twasToUpdate) {
+        Set<String> changedTWAS = new HashSet<>();
 
-        for(String twasURI : entryPointMisbehaviour.keySet()){
+        for(String twasURI : twasToUpdate){
             MisbehaviourSetDB ms = entryPointMisbehaviour.get(twasURI);
             LevelDB msLikelihoodInvert = invertToTrustworthiness(liLevels.get(ms.getPrior()));
             TrustworthinessAttributeSetDB twas = trustworthinessAttributeSets.get(twasURI);
@@ -1425,8 +2217,11 @@ public class RiskCalculator {
             if (msLikelihoodInvert.getLevelValue() < twLevel.getLevelValue()) {
                 twas.setInferredLevel(msLikelihoodInvert.getUri());
                 querier.store(twas, "system-inf");
+                changedTWAS.add(twasURI);
             }
         }
+
+        return changedTWAS;
     }
 
     /** Calculate the risk level of each MS using a look-up table on its likelihood and impact levels
@@ -1437,17 +2232,25 @@ public class RiskCalculator {
 
         LevelDB worstRiskLevel = null;
 
-        for (MisbehaviourSetDB ms : misbehaviourSets.values()) {
-            // Get misbehaviour URI for this misbehaviour set
-            String mUri = ms.getMisbehaviour();
-
+        // Find the risk level of each MS that has a likelihood and impact level
+        List<MisbehaviourSetDB> msList = new ArrayList<>(misbehaviourSets.values());
+        List<LevelDB> msRiskLevels = mapItems(msList, ms -> {
             if (ms.getPrior() != null && ms.getImpactLevel() != null) {
                 LevelDB newLevel = lookupRiskLevel(imLevels.get(ms.getImpactLevel()), liLevels.get(ms.getPrior()));
+                ms.setRisk(newLevel.getUri());
+                return newLevel;
+            }
+            return null;
+        });
+
+        // Store the results and find the highest risk level
+        for (int i = 0; i < msList.size(); i++) {
+            LevelDB newLevel = msRiskLevels.get(i);
+            if (newLevel != null) {
                 if (worstRiskLevel == null || newLevel.getLevelValue() > worstRiskLevel.getLevelValue()) {
                     worstRiskLevel = newLevel;
                 }
-                ms.setRisk(newLevel.getUri());
-                querier.store(ms, "system-inf");
+                querier.store(msList.get(i), "system-inf");
             }
         }
 
@@ -2064,10 +2867,10 @@ public class RiskCalculator {
          * Thus it makes sense to define the threat risk level as that reached if the likelihood of all direct
          * potential effects were equal to the threat likelihood (not the effect likelihood).
          */
-        for(ThreatDB threat : threats.values()){
+        mapItems(new ArrayList<>(threats.values()), threat -> {
             // If the threat doesn't have a likelihood, then it doesn't have a risk level
             if (threat.getPrior() == null) {
-                continue;
+                return null;
             }
 
             // If the threat does have a likelihood then initialise the risk level to the lowest possible level
@@ -2092,8 +2895,9 @@ public class RiskCalculator {
 
             // Now set the risk level for this threat
             threat.setRisk(threatRisk.getUri());
+            return threatRisk;
 
-        }
+        });
 
         /**
          * Now for each threat, check which other threats are caused by it (directly or indirectly), and further
@@ -42,6 +42,8 @@ import uk.ac.soton.itinnovation.security.modelvalidator.java.GraphPattern;
 import uk.ac.soton.itinnovation.security.modelvalidator.java.PatternLink;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.ws.rs.DefaultValue;
 
@@ -52,6 +54,8 @@ public class Validator {
     private static final Logger logger = LoggerFactory.getLogger(Validator.class);
 
     private IQuerierDB querier;
+    private int matchingParallelism = 1;                                        // Number of threads used to match threat patterns (1 = calling thread only)
+    private boolean backwardPruningEnabled = true;                              // Whether pattern matching also removes candidates no candidate links to
 
     // Domain model data
     private ModelDB domainModel;                                                // Basic information about the domain model
@@ -97,6 +101,8 @@ public class Validator {
     private Map<String, TrustworthinessAttributeSetDB> domainTWASs = new HashMap<>();   // Domain model TWAS
 
     private Map<String, GraphNode> graphNodeMap;                                        // Graph representation of system assets and links
+    private List<GraphNode> graphNodes;                                                 // Graph nodes indexed by GraphNode.getIndex(), including any that were removed
+    private Map<String, BitSet> graphNodesByType;                                       // Indices of the graph nodes of each asset type
     private Map<String, Set<CardinalityConstraintDB>> missingAssetLinksFrom;            // Map of links from missing (possibly inferred) assets
     private Map<String, Set<CardinalityConstraintDB>> missingAssetLinksTo;              // Map of links to missing (possibly inferred) assets
 
@@ -138,11 +144,34 @@ public class Validator {
 
     }
 
+    public int getMatchingParallelism() {
+        return matchingParallelism;
+    }
+
+    /**
+     * Set the number of threads used to find matches for threat matching patterns. The default of 1 means
+     * everything is done on the calling thread. The results do not depend on this.
+     */
+    public void setMatchingParallelism(int matchingParallelism) {
+        this.matchingParallelism = matchingParallelism < 1 ? 1 : matchingParallelism;
+    }
+
+    /**
+     * Set whether pattern matching removes candidates for the target role of a link when no candidate for
+     * the source role links to them, as well as the other way round. The matches found do not depend on
+     * this, but the search is smaller with it enabled (the default).
+     */
+    public void setBackwardPruningEnabled(boolean backwardPruningEnabled) {
+        this.backwardPruningEnabled = backwardPruningEnabled;
+    }
+
     /* Gets the asserted graph (assets and relationships) after any repairs
      */
     public void getAssertedGraph(){
         this.missingAssetLinksFrom = new HashMap<>();
         this.missingAssetLinksTo = new HashMap<>();
+        this.graphNodes = new ArrayList<>();
+        this.graphNodesByType = new HashMap<>();
         this.graphNodeMap = getGraphNodeMap();
     }
 
@@ -368,9 +397,10 @@ public class Validator {
         Map<String, Set<String>> assetRoles = getAssetRoles();
 
         for (AssetDB asset : assets.values()) {
-            GraphNode node = new GraphNode(asset.getUri(), assetRoles.get(asset.getType()));
+            GraphNode node = createGraphNode(asset.getUri(), assetRoles.get(asset.getType()));
             node.setType(asset.getType());
             graphNodeMap.put(asset.getUri(), node);
+            graphNodesByType.computeIfAbsent(node.getType(), k -> new BitSet()).set(node.getIndex());
         }
 
         /*
@@ -416,6 +446,15 @@ public class Validator {
         return graphNodeMap;
     }
 
+    /** Creates a graph node with the next unused index. The caller must add it to graphNodeMap and
+     *  graphNodesByType once its type is set.
+     */
+    private GraphNode createGraphNode(String asset, Set<String> roles) {
+        GraphNode node = new GraphNode(graphNodes.size(), asset, roles);
+        graphNodes.add(node);
+        return node;
+    }
+
     public void createControlSets() {
         final long startTime = System.currentTimeMillis();
 
@@ -985,12 +1024,19 @@ public class Validator {
             threatMatchingPatterns.add(s.getAppliesTo());
         }
 
+        // Find matches to the threat matching patterns, which may be done in parallel as nothing is stored yet
+        List<String> threatMatchingPatternUris = new ArrayList<>(threatMatchingPatterns);
+        List<MatchingPatternDB> domainMatchingPatterns = new ArrayList<>();
+        for (String threatMatchingPatternUri : threatMatchingPatternUris) {
+            domainMatchingPatterns.add(querier.getMatchingPattern(threatMatchingPatternUri, "domain"));
+        }
+        List<List<GraphMatchedPattern>> matches = findMatches(domainMatchingPatterns);
+
         // Generate system model threat matching patterns - unlike construction matching patterns these must be stored
         Map<String, List<MatchingPatternDB>> matchingPatternsByParent = new HashMap<>();
-        for (String threatMatchingPatternUri : threatMatchingPatterns) {
-            MatchingPatternDB domainMatchingPattern = querier.getMatchingPattern(threatMatchingPatternUri, "domain");
-            List<MatchingPatternDB> systemMatchingPatterns = createAndStoreMatchingPatterns(domainMatchingPattern);
-            matchingPatternsByParent.put(threatMatchingPatternUri, systemMatchingPatterns);
+        for (int i = 0; i < threatMatchingPatternUris.size(); i++) {
+            List<MatchingPatternDB> systemMatchingPatterns = createAndStoreMatchingPatterns(domainMatchingPatterns.get(i), matches.get(i));
+            matchingPatternsByParent.put(threatMatchingPatternUris.get(i), systemMatchingPatterns);
         }
 
         // Generate system model cardinality constraints organised by source asset URI
@@ -1906,11 +1952,10 @@ public class Validator {
             // Create a representation of the newly inferred asset, now including its cardinality based on INS includes
             InferredAssetDB inferredAsset = getInferredAssetBase(inferredNodeSetting, inferredAssetTemplate, matchedPattern);
 
-            matchedPattern.addRoleAsset(inferredNodeTemplate.getRole(), inferredAsset.getUri());
-
             // Check if inferred asset already exists
             AssetDB existingAsset = querier.getAsset(inferredAsset.getUri(), "system-inf");
             if (existingAsset != null) {
+                matchedPattern.addRoleAsset(inferredNodeTemplate.getRole(), graphNodeMap.get(inferredAsset.getUri()));
                 continue;
             }
 
@@ -1925,7 +1970,8 @@ public class Validator {
             }
 
             //GraphNode node = new GraphNode(inferredAsset.getUri(), assetRoles.get(inferredAsset.getType()));
-            GraphNode node = new GraphNode(inferredAsset.getUri(), allRoles);
+            GraphNode node = createGraphNode(inferredAsset.getUri(), allRoles);
+            matchedPattern.addRoleAsset(inferredNodeTemplate.getRole(), node);
 
             // Combine created asset with any links from the node which may exist from before validation
             Set<CardinalityConstraintDB> linksFrom = missingAssetLinksFrom.getOrDefault(inferredAsset.getUri(), new HashSet<>());
@@ -1976,6 +2022,7 @@ public class Validator {
             inferredAssets.add(inferredAsset);
             node.setType(inferredAsset.getType());
             graphNodeMap.put(inferredAsset.getUri(), node);
+            graphNodesByType.computeIfAbsent(node.getType(), k -> new BitSet()).set(node.getIndex());
         }
 
         return inferredAssets;
@@ -2092,7 +2139,8 @@ public class Validator {
 
         // Now remove the graphnodes corresponding to the deleted assets
         for(String assetUri : deleteAssets.keySet()){
-            graphNodeMap.remove(assetUri);
+            GraphNode gnode = graphNodeMap.remove(assetUri);
+            graphNodesByType.get(gnode.getType()).clear(gnode.getIndex());
         }
 
         logger.info("Found {} assets and {} links for removal as construction state", deleteAssets.size(), deleteLinks.size());
@@ -2145,26 +2193,87 @@ public class Validator {
     public List<MatchingPatternDB> createAndStoreMatchingPatterns(MatchingPatternDB matchingPattern) {
         final long startTime = System.currentTimeMillis();
 
-        List<MatchingPatternDB> systemMatchingPatterns = new ArrayList<>();
+        List<MatchingPatternDB> systemMatchingPatterns = createAndStoreMatchingPatterns(matchingPattern, findMatches(matchingPattern));
 
-        GraphPattern graphPattern = matchingPatternToGraphPattern(matchingPattern);
+        final long endTime = System.currentTimeMillis();
+        logger.debug("Validator.createAndStoreMatchingPatterns({}): found {} patterns in {} ms", 
+                    matchingPattern.getLabel(), systemMatchingPatterns.size(), endTime - startTime);
 
-        if (graphPattern == null) {
-            return new ArrayList<>();
+        return systemMatchingPatterns;
+
+    }
+
+    /** Creates system matching patterns with associated system nodes from matches found by findMatches().
+     *  A null list of matches means the matching pattern could not be converted to a graph pattern.
+     */
+    private List<MatchingPatternDB> createAndStoreMatchingPatterns(MatchingPatternDB matchingPattern, List<GraphMatchedPattern> matchedPatterns) {
+        List<MatchingPatternDB> systemMatchingPatterns = new ArrayList<>();
+
+        if (matchedPatterns == null) {
+            return systemMatchingPatterns;
         }
 
-        for (GraphMatchedPattern matchedPattern : matchPattern(graphPattern)) {
+        for (GraphMatchedPattern matchedPattern : matchedPatterns) {
             MatchingPatternDB systemMatchingPattern = createMatchingPattern(matchingPattern, matchedPattern);
             querier.store(systemMatchingPattern, "system-inf");
             systemMatchingPatterns.add(systemMatchingPattern);
         }
 
-        final long endTime = System.currentTimeMillis();
-        logger.debug("Validator.createAndStoreMatchingPatterns({}): found {} patterns in {} ms", 
-                    matchingPattern.getLabel(), systemMatchingPatterns.size(), endTime - startTime);
-
         return systemMatchingPatterns;
+    }
+
+    /** Finds all matches to a domain model matching pattern in the asset graph, or returns null if the
+     *  matching pattern could not be converted to a graph pattern. Nothing is stored.
+     */
+    private List<GraphMatchedPattern> findMatches(MatchingPatternDB matchingPattern) {
+        GraphPattern graphPattern = matchingPatternToGraphPattern(matchingPattern);
 
+        if (graphPattern == null) {
+            return null;
+        }
+
+        return matchPattern(graphPattern);
+    }
+
+    /** Finds all matches to each of a list of domain model matching patterns, returning them in the same
+     *  order as the matching patterns.
+     *
+     *  If the matching parallelism is more than 1, each matching pattern is matched by a separate task in a
+     *  ForkJoinPool, so threads that finish with small patterns can take on the remaining ones. Matching only
+     *  reads the asset graph and querier, but the EntityCache is not thread safe, so the domain model entities
+     *  used in matching are loaded into the cache first and the tasks never cause it to be updated. System
+     *  model entities must be created and stored by the caller, after all the tasks have finished.
+     */
+    private List<List<GraphMatchedPattern>> findMatches(List<MatchingPatternDB> matchingPatterns) {
+        List<List<GraphMatchedPattern>> results = new ArrayList<>(matchingPatterns.size());
+
+        if (matchingParallelism <= 1 || matchingPatterns.size() < 2) {
+            for (MatchingPatternDB matchingPattern : matchingPatterns) {
+                results.add(findMatches(matchingPattern));
+            }
+            return results;
+        }
+
+        // Make sure the tasks only get cached entities (assets are already cached by getGraphNodeMap)
+        querier.getRootPatterns("domain");
+        querier.getNodes("domain");
+        querier.getRoleLinks("domain");
+        querier.getDistinctNodeGroups("domain");
+
+        ForkJoinPool pool = new ForkJoinPool(matchingParallelism);
+        try {
+            List<ForkJoinTask<List<GraphMatchedPattern>>> tasks = new ArrayList<>();
+            for (MatchingPatternDB matchingPattern : matchingPatterns) {
+                tasks.add(pool.submit(() -> findMatches(matchingPattern)));
+            }
+            for (ForkJoinTask<List<GraphMatchedPattern>> task : tasks) {
+                results.add(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return results;
     }
 
     /** Creates a system matching pattern with domain template `matchingPattern` corresponding to the
@@ -2215,7 +2324,7 @@ public class Validator {
         Integer populationLevel = 0;
         for (String nodeUri : nodeUris) {
             NodeDB domainNode = querier.getNode(nodeUri, "domain");
-            for (String assetUri : matchedPattern.getAllFeasible().getOrDefault(domainNode.getRole(), new HashSet<>())) {
+            for (String assetUri : matchedPattern.getRoleAssets(domainNode.getRole())) {
                 // Get the list of nodes at this asset
                 Map<String,NodeDB> thisAssetNodes = systemNodeMap.computeIfAbsent(assetUri, k -> new HashMap<>());
 
@@ -2400,12 +2509,17 @@ public class Validator {
     private List<GraphMatchedPattern> matchPattern(GraphPattern graphPattern) {
         List<GraphMatchedPattern> matchedPatterns = new ArrayList<>();
 
-        GraphMatchedPattern initialPattern = new GraphMatchedPattern(graphPattern);
+        // Get the sub-types of each link type once, rather than for each candidate asset
+        for (PatternLink patternLink : graphPattern.getLinks()) {
+            patternLink.setLinkTypes(querier.getSubTypes(patternLink.getLinkType(), true));
+        }
+
+        GraphMatchedPattern initialPattern = new GraphMatchedPattern(graphPattern, graphNodes);
         for (String patternNode : graphPattern.getNodes()) {
             NodeDB node = querier.getNode(patternNode, "domain");
             String role = node.getRole();
             String assetType = node.getAsset();
-            initialPattern.getAllFeasible().put(role, findFeasible(assetType));
+            initialPattern.setFeasibleFrom(role, findFeasible(assetType));
         }
         simpleSim(graphPattern, initialPattern);
         search(matchedPatterns, graphPattern, initialPattern, 0);
@@ -2429,7 +2543,7 @@ public class Validator {
             Map<String, List<String>> secondaryNodeMatches = matchExternalNodes(matchedPattern, graphPattern, secondaryNodes);
             for (String secondaryRole : secondaryNodeMatches.keySet()) {
                 for (String secondaryAsset : secondaryNodeMatches.get(secondaryRole)) {
-                    matchedPattern.addFeasibleFrom(secondaryRole, secondaryAsset);
+                    matchedPattern.addFeasibleFrom(secondaryRole, graphNodeMap.get(secondaryAsset));
                 }
             }
 
@@ -2521,11 +2635,7 @@ public class Validator {
     }
 
     private boolean checkNodeAssetType(NodeDB node, String assetType) {
-        List<String> allowedAssetTypes = querier.getSubTypes(node.getAsset(), true);
-        if (!allowedAssetTypes.contains(assetType)) {
-            return false;
-        }
-        return true;
+        return querier.isSubTypeOf(assetType, node.getAsset());
     }
 
     /** Matches external nodes to the given `matchedPattern`. External nodes can be any nodes which are
@@ -2647,37 +2757,41 @@ public class Validator {
     }
 
     /** Remove feasible nodes which are not actually feasible. A node is unfeasible if it does not link
-     *  to another feasible node through a link specified in the `graphPattern`.
+     *  to another feasible node through a link specified in the `graphPattern`, or if no feasible node
+     *  links to it through a link ending at its role. Removing the latter doesn't change the matches
+     *  found, but makes the search smaller.
      */
     private void simpleSim(GraphPattern graphPattern, GraphMatchedPattern matchedPattern) {
+        List<PatternLink> patternLinks = graphPattern.getLinks();
         boolean changed = true;
 
         while (changed) {
             changed = false;
 
-            // Collect all pattern links which we have to check
-            List<PatternLink> patternLinks = new ArrayList<>();
-            for (String patternNode : graphPattern.getRoles()) {
-                patternLinks.addAll(graphPattern.getLinksFrom(patternNode));
-            }
-
             for (PatternLink patternLink : patternLinks) {
-                Set<String> fromFeasibleNodes = matchedPattern.getFeasibleFrom(patternLink.getFromNode());
-
-                Iterator<String> fromFeasibleIterator = fromFeasibleNodes.iterator();
-                while (fromFeasibleIterator.hasNext()) {
-                    String fromFeasibleNode = fromFeasibleIterator.next();
-                    boolean match = checkMatch(patternLink, fromFeasibleNode, matchedPattern);
-                    if (!match) {
-                        fromFeasibleIterator.remove();
+                BitSet fromFeasibleNodes = matchedPattern.getFeasibleFrom(patternLink.getFromNode());
+                BitSet toFeasibleNodes = matchedPattern.getFeasibleFrom(patternLink.getToNode());
+
+                for (int i = fromFeasibleNodes.nextSetBit(0); i >= 0; i = fromFeasibleNodes.nextSetBit(i + 1)) {
+                    if (!graphNodes.get(i).hasForwardLinkTo(patternLink.getLinkTypes(), toFeasibleNodes)) {
+                        fromFeasibleNodes.clear(i);
                         changed = true;
                     }
+                }
 
-                    // Stop early if a role in the pattern no longer has any feasible nodes
-                    if (fromFeasibleNodes.isEmpty()) {
-                        return;
+                if (backwardPruningEnabled) {
+                    for (int i = toFeasibleNodes.nextSetBit(0); i >= 0; i = toFeasibleNodes.nextSetBit(i + 1)) {
+                        if (!graphNodes.get(i).hasBackwardLinkFrom(patternLink.getLinkTypes(), fromFeasibleNodes)) {
+                            toFeasibleNodes.clear(i);
+                            changed = true;
+                        }
                     }
                 }
+
+                // Stop early if a role in the pattern no longer has any feasible nodes
+                if (fromFeasibleNodes.isEmpty() || toFeasibleNodes.isEmpty()) {
+                    return;
+                }
             }
         }
     }
@@ -2692,11 +2806,12 @@ public class Validator {
             matches.add(matchedPattern);
         } else {
             String fromNode = graphPattern.getRoles().get(depth);
-            for (String nodeV : matchedPattern.getFeasibleFrom(fromNode)) {
+            BitSet feasibleNodes = matchedPattern.getFeasibleFrom(fromNode);
+            for (int nodeV = feasibleNodes.nextSetBit(0); nodeV >= 0; nodeV = feasibleNodes.nextSetBit(nodeV + 1)) {
                 GraphMatchedPattern copyMatched = matchedPattern.clone();
-                Set<String> set = new HashSet<>();
-                set.add(nodeV);
-                copyMatched.getAllFeasible().put(fromNode, set);
+                BitSet set = new BitSet();
+                set.set(nodeV);
+                copyMatched.setFeasibleFrom(fromNode, set);
                 simpleSim(graphPattern, copyMatched);
                 if (!copyMatched.checkInvalidMatch()) {
                     search(matches, graphPattern, copyMatched, depth+1);
@@ -2705,21 +2820,6 @@ public class Validator {
         }
     }
 
-    /** Check whether a feasible node `fromFeasibleNode` remains feasible when matched against `patternLink` 
-     *  from `matchedPattern`.
-     */
-    private boolean checkMatch(PatternLink patternLink, String fromFeasibleNode, GraphMatchedPattern matchedPattern) {
-        Set<String> toFeasibleNodes = matchedPattern.getFeasibleFrom(patternLink.getToNode());
-
-        for (GraphNode graphNode : getNodesFromLink(graphNodeMap.get(fromFeasibleNode), patternLink.getLinkType())) {
-            if (toFeasibleNodes.contains(graphNode.getAsset())) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     private Set<GraphNode> getNodesFromLink(GraphNode node, String linkType) {
         List<String> subTypes = querier.getSubTypes(linkType, true);
         return node.getNodesFromLinks(subTypes);
@@ -2732,8 +2832,8 @@ public class Validator {
 
     /** Find all assets which may match a given `node`, based on the required asset type.
      */
-    private Set<String> findFeasible(String assetType) {
-        Set<String> feasibleNodes = new HashSet<>();
+    private BitSet findFeasible(String assetType) {
+        BitSet feasibleNodes = new BitSet();
 
         /*
          * Originally the argument was a role, and the method returned all system assets that could
@@ -2741,11 +2841,10 @@ public class Validator {
          * but in some patterns the asset type is more restricted than in others. For those patterns
          * we should use the type restriction to get a smaller set of potential candidates.
          */
-        List<String> assetSubtypes = querier.getSubTypes(assetType, true);
-        for (GraphNode graphNode : graphNodeMap.values()) {
-            String nodeType = graphNode.getType();
-            if(assetSubtypes.contains(nodeType)){
-                feasibleNodes.add(graphNode.getAsset());
+        for (String assetSubtype : querier.getSubTypes(assetType, true)) {
+            BitSet typeNodes = graphNodesByType.get(assetSubtype);
+            if (typeNodes != null) {
+                feasibleNodes.or(typeNodes);
             }
         }
 
@@ -57,6 +57,8 @@ public class AttackNode {
 
     private List<String> allDirectCauseUris = null;
 
+    private Map<String, Set<String>> inactiveControlSets = null; // inactive CS of each CSG of a threat, indexed by CSG URI
+
     private Set<String> directCauseUris = new HashSet<>();
     private Set<String> directEffectUris = new HashSet<>();
 
@@ -182,11 +184,50 @@ public class AttackNode {
             this.allDirectCauseUris.retainAll(this.nodes.getBoundingUriRefs());
         }
 
+        this.inactiveControlSets = this.getInactiveControlSets();
         this.controlStrategies = this.getControlStrategies();
         this.controls = this.getControls();
         this.uriSymbol = this.makeSymbol(uri);
     }
 
+    /**
+     * Check whether the cached results of this node are out of date, i.e. whether its direct causes (within the
+     * bounding set of the AttackTree) or the inactive control sets of its control strategies have changed since the
+     * node was created.
+     *
+     * @return {@code true} if the node must be created again
+     */
+    public boolean isStale() {
+        List<String> causeUris = this.getAllDirectCauseUris();
+
+        if (!this.nodes.getBoundingUriRefs().isEmpty()) {
+            causeUris.retainAll(this.nodes.getBoundingUriRefs());
+        }
+
+        return !new HashSet<>(causeUris).equals(new HashSet<>(this.allDirectCauseUris))
+                || !this.getInactiveControlSets().equals(this.inactiveControlSets);
+    }
+
+    /**
+     * Get the direct cause URIs followed by the backtrace, i.e. those within the bounding set of the AttackTree
+     * @return 
+     */
+    public List<String> getTracedCauseUris() {
+        return this.allDirectCauseUris;
+    }
+
+    private Map<String, Set<String>> getInactiveControlSets() {
+        Map<String, Set<String>> csByCsg = new HashMap<>();
+
+        if (this.isThreat()) {
+            for (String csgUri : this.apd.getThreatControlStrategyUris(this.uri, this.nodes.getIsFutureRisk())) {
+                csByCsg.put(csgUri, new HashSet<>(this.apd.getCsgInactiveControlSets(csgUri)));
+            }
+        }
+
+        return csByCsg;
+    }
+
     public LogicalExpression getAttackTreeMitigationCSG() {
         return this.attackTreeMitigationCSG;
     }
@@ -221,6 +262,10 @@ public class AttackNode {
         return this.maxDistanceFromTargetByTarget.getOrDefault(uri, -1);
     }
 
+    public void clearMaxDistanceFromTarget() {
+        this.maxDistanceFromTargetByTarget.clear();
+    }
+
     public int maxDistanceFromTarget() {
         return Collections.max(this.maxDistanceFromTargetByTarget.values());
     }
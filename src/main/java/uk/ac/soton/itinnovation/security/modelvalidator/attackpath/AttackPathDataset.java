@@ -90,6 +90,9 @@ public class AttackPathDataset {
     private Map<String, String> likelihoods = new HashMap<>(); // Map of likelihoods for threats and misbehaviours
     private Set<String> normalOps = new HashSet<>(); // Set of normal ops
 
+    private RiskCalculator riskCalculator = null; // Risk calculator used for the last calculation, reused for incremental recalculation
+    private Set<String> changedControlSets = new HashSet<>(); // URIs of CS changed since the last risk calculation
+
     public AttackPathDataset(IQuerierDB querier) {
 
         final long startTime = System.currentTimeMillis();
@@ -599,6 +602,7 @@ public class AttackPathDataset {
             for (String csURI : csTriplet) {
                 logger.debug("     Set triplet {}: proposed -> {}", csURI, proposed);
                 querier.updateProposedStatus(proposed, csURI, "system");
+                changedControlSets.add(csURI);
             }
 
         }
@@ -608,8 +612,14 @@ public class AttackPathDataset {
     public RiskVector calculateRisk(String modelId, RiskCalculationMode riskMode) throws RuntimeException {
         try {
 
-            RiskCalculator rc = new RiskCalculator(querier);
-            rc.calculateRiskLevels(riskMode, false, new Progress(modelId));
+            // Only CS changed since the last calculation need to be taken into account
+            if (riskCalculator == null) {
+                riskCalculator = new RiskCalculator(querier);
+                riskCalculator.calculateRiskLevels(riskMode, false, new Progress(modelId));
+            } else {
+                riskCalculator.recalculateRiskLevels(changedControlSets, riskMode, false, new Progress(modelId));
+            }
+            changedControlSets.clear();
 
             updateDatasets();
 
@@ -24,9 +24,11 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.modelvalidator.attackpath;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -49,6 +51,7 @@ public class AttackTree {
     private Map<String, AttackNode> nodeByUri = new HashMap<>();
     private List<String> targetUris = new ArrayList<>();
     private boolean isFutureRisk = false;
+    private boolean shortestPath = false;
     private Set<String> boundingUriRefs = new HashSet<>();
 
     private int nodeCounter = 0;
@@ -113,6 +116,8 @@ public class AttackTree {
 
         this.isFutureRisk = futureRisk;
 
+        this.shortestPath = shortestPath;
+
         if (!shortestPath) {
             logger.info("***********************");
             logger.info("Running backtrace");
@@ -146,6 +151,132 @@ public class AttackTree {
             this.backtrace(true);
         }
 
+        this.addDistancesFromTargets();
+
+        final long endTime = System.currentTimeMillis();
+        logger.info("AttackTree.AttackTree(IQuerierDB querier): execution time {} ms", endTime - startTime);
+    }
+
+    /**
+     * Updates the AttackTree after control sets have been changed and the risk calculation has been run again on the
+     * AttackPathDataset, e.g. between the steps of a recommendations search.
+     *
+     * Nodes whose direct causes or inactive control sets have changed are discarded, along with every node they
+     * (indirectly) cause and the target nodes, and the backtrace is run again. Other nodes keep their cached results,
+     * so only the affected part of the tree is recalculated. If the shortest path is required, the first backtrace
+     * is still run in full, as the shortest path nodes depend on distances accumulated over every path to a node.
+     *
+     * @param targetUris A list of target URIs, which may differ from the previous targets.
+     */
+    public void update(List<String> targetUris) {
+
+        final long startTime = System.currentTimeMillis();
+
+        logger.info("Updating ThreatTree with {} target MS", targetUris);
+
+        Map<String, AttackNode> previousNodeByUri = this.nodeByUri;
+
+        this.targetUris = targetUris;
+
+        if (this.shortestPath) {
+            logger.info("***********************");
+            logger.info("RUNNING FIRST backtrace");
+            logger.info("***********************");
+
+            this.boundingUriRefs = new HashSet<>();
+            this.nodeByUri = new HashMap<>();
+
+            this.backtrace(false);
+
+            this.boundingUriRefs = new HashSet<>();
+            for (AttackNode node : this.shortestPathNodes()) {
+                this.boundingUriRefs.add(node.getUri());
+            }
+        }
+
+        // Find the nodes with changed causes or controls, and the nodes they cause
+        Set<String> staleUris = new HashSet<>();
+        Map<String, Set<String>> effectUrisByCause = new HashMap<>();
+        for (AttackNode node : previousNodeByUri.values()) {
+            if (node.isStale()) {
+                staleUris.add(node.getUri());
+            }
+            for (String causeUri : node.getTracedCauseUris()) {
+                effectUrisByCause.computeIfAbsent(causeUri, k -> new HashSet<>()).add(node.getUri());
+            }
+        }
+
+        Deque<String> uris = new ArrayDeque<>(staleUris);
+        while (!uris.isEmpty()) {
+            for (String effectUri : effectUrisByCause.getOrDefault(uris.pop(), Collections.emptySet())) {
+                if (staleUris.add(effectUri)) {
+                    uris.push(effectUri);
+                }
+            }
+        }
+
+        // The targets accumulate the mitigations over each visit, so they are always recalculated
+        staleUris.addAll(this.targetUris);
+
+        this.nodeByUri = new HashMap<>(previousNodeByUri);
+        this.removeNodes(staleUris);
+
+        int reusedNodes = this.nodeByUri.size();
+        for (AttackNode node : this.nodeByUri.values()) {
+            node.setIsTargetMS(false);
+            node.clearMaxDistanceFromTarget();
+        }
+
+        logger.info("***********************");
+        logger.info("RUNNING backtrace, reusing {} nodes", reusedNodes);
+        logger.info("***********************");
+
+        this.backtrace(true);
+
+        // Discard reused nodes that are no longer reached from the targets
+        Set<String> reachedUris = new HashSet<>();
+        uris = new ArrayDeque<>(this.targetUris);
+        while (!uris.isEmpty()) {
+            AttackNode node = this.nodeByUri.get(uris.pop());
+            if (node != null && reachedUris.add(node.getUri())) {
+                uris.addAll(node.getTracedCauseUris());
+            }
+        }
+        Set<String> unreachedUris = new HashSet<>(this.nodeByUri.keySet());
+        unreachedUris.removeAll(reachedUris);
+        this.removeNodes(unreachedUris);
+
+        // Restore the links from recalculated causes to reused effects
+        for (AttackNode node : this.nodeByUri.values()) {
+            for (String causeUri : node.getDirectCauseUris()) {
+                AttackNode causeNode = this.nodeByUri.get(causeUri);
+                if (causeNode != null) {
+                    causeNode.getDirectEffectUris().add(node.getUri());
+                }
+            }
+        }
+
+        this.rankByUri = new HashMap<>();
+        this.pathNodes = new HashMap<>();
+        this.addDistancesFromTargets();
+
+        final long endTime = System.currentTimeMillis();
+        logger.info("AttackTree.update: execution time {} ms", endTime - startTime);
+    }
+
+    /**
+     * Removes nodes from the AttackTree, including the links to them from the remaining nodes.
+     *
+     * @param uris The URIs of the nodes to remove.
+     */
+    private void removeNodes(Set<String> uris) {
+        this.nodeByUri.keySet().removeAll(uris);
+        for (AttackNode node : this.nodeByUri.values()) {
+            node.getDirectEffectUris().removeAll(uris);
+        }
+    }
+
+    private void addDistancesFromTargets() {
         logger.info("Adding distance for each node from each target MS");
         for (String targetMSUri : this.targetUris) {
             this.addMaxDistanceFromTarget(targetMSUri, null);
@@ -154,9 +285,6 @@ public class AttackTree {
             this.pathNodes.put(targetMSUri, pNodes);
         }
         logger.info("Final ThreatTree now has {} nodes", this.nodes().size());
-
-        final long endTime = System.currentTimeMillis();
-        logger.info("AttackTree.AttackTree(IQuerierDB querier): execution time {} ms", endTime - startTime);
     }
 
     public boolean getIsFutureRisk() {
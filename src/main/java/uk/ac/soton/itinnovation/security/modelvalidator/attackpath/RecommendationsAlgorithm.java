@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import java.time.LocalDateTime;
 
@@ -76,9 +77,15 @@ public class RecommendationsAlgorithm {
     private String jobId;
     private RecommendationJobState finalState;
 
+    // runs each change to the CS in the model, so the caller can lock the model only while it changes
+    private Consumer<Runnable> modelWriter;
+
     // allPaths flag for single or double backtrace
     private boolean shortestPath = true;
 
+    // attack tree, updated after each change to the CS rather than calculated again
+    private AttackTree attackTree = null;
+
     // used to implement timeout
     private Integer maxSecs;
     private long maxEndTime;
@@ -91,6 +98,7 @@ public class RecommendationsAlgorithm {
         this.targetMS = config.getTargetMS();
         this.report = new RecommendationReportDTO();
         this.localSearch = config.getLocalSearch();
+        this.modelWriter = config.getModelWriter();
         this.maxSecs = maxSecs;
 
         initializeAttackPathDataset();
@@ -165,7 +173,9 @@ public class RecommendationsAlgorithm {
     }
 
     /**
-     * Calculate the attack tree
+     * Calculate the attack tree, or update the attack tree from a previous
+     * step of the search, so only nodes affected by the CS changes since then
+     * are recalculated
      * @param targetUris
      * @return the attack graph
      * @throws RuntimeException 
@@ -175,11 +185,14 @@ public class RecommendationsAlgorithm {
         logger.debug("target URIs: {}", targetUris);
 
         boolean isFutureRisk = apd.isFutureRisk(riskMode);
-        AttackTree attackTree = null;
 
         try {
             final long startTime = System.currentTimeMillis();
-            attackTree = new AttackTree(targetUris, isFutureRisk, shortestPath, apd);
+            if (attackTree == null) {
+                attackTree = new AttackTree(targetUris, isFutureRisk, shortestPath, apd);
+            } else {
+                attackTree.update(targetUris);
+            }
             attackTree.stats();
             final long endTime = System.currentTimeMillis();
             logger.info("AttackPathAlgorithm.calculateAttackTree: execution time {} ms", endTime - startTime);
@@ -217,7 +230,7 @@ public class RecommendationsAlgorithm {
             logger.error("failed to get risk calculation, restore model");
 
             // restore model ...
-            apd.changeCS(csSet, false);
+            changeCS(csSet, false);
 
             // raise exception since failed to run risk calculation
             throw new RuntimeException(e);
@@ -226,6 +239,10 @@ public class RecommendationsAlgorithm {
         return riskResponse;
     }
 
+    private void changeCS(Set<String> csSet, boolean proposed) {
+        modelWriter.accept(() -> apd.changeCS(csSet, proposed));
+    }
+
     private Set<String> extractCS(List<String> csgList) {
 
         Set<String> csSet = new HashSet<>();
@@ -349,7 +366,7 @@ public class RecommendationsAlgorithm {
                 logger.warn("EMPTY csSet is found, skipping this CSG option");
                 continue;
             }
-            apd.changeCS(csSet, true);
+            changeCS(csSet, true);
 
             // Re-calculate risk now and create a potential recommendation
             RiskVector riskResponse = processOption(csgList, csSet, childNode);
@@ -387,7 +404,7 @@ public class RecommendationsAlgorithm {
 
             // undo CS changes in CS_set
             logger.debug("Undo CS controls ({})", csSet.size());
-            apd.changeCS(csSet, false);
+            changeCS(csSet, false);
             logger.debug("Re-run risk calculation after CS changes have been revoked");
             // TODO: optimise this
             // This does more work than is necessary as we are going to run the risk calculation again in the next iteration.
@@ -26,6 +26,7 @@ package uk.ac.soton.itinnovation.security.modelvalidator.attackpath;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
 
@@ -36,6 +37,7 @@ public class RecommendationsAlgorithmConfig {
     private String acceptableRiskLevel;
     private List<String> targetMS;
     private boolean localSearch;
+    private Consumer<Runnable> modelWriter = Runnable::run;    // Runs each change to the model, e.g. holding a model lock
 
     public RecommendationsAlgorithmConfig(IQuerierDB querier, String modelId, String riskMode, boolean localSearch, String level, List<String> targets) {
         this.querier = querier;
@@ -97,4 +99,12 @@ public class RecommendationsAlgorithmConfig {
     public void setLocalSearch(Boolean flag) {
         this.localSearch = flag;
     }
+
+    public Consumer<Runnable> getModelWriter() {
+        return this.modelWriter;
+    }
+
+    public void setModelWriter(Consumer<Runnable> modelWriter) {
+        this.modelWriter = modelWriter;
+    }
 }
@@ -24,74 +24,81 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.modelvalidator.java;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
+/**
+ * Candidate assets for each role in a GraphPattern.
+ *
+ * The candidates are held as a BitSet of GraphNode indices for each role, so a copy only needs an array copy
+ * per role, and feasibility checks can use BitSet operations. The list of GraphNodes is used to get the asset
+ * URI for an index, and is shared with the Validator.
+ */
 @Data
 public class GraphMatchedPattern {
 	private GraphPattern parent;
+	@EqualsAndHashCode.Exclude
+	private List<GraphNode> graphNodes;     // Shared by all matches, so not part of their equality
 	
-	private Map<String, Set<String>> allFeasible = new HashMap<>();
+	private Map<String, BitSet> allFeasible = new HashMap<>();
 	
-	public GraphMatchedPattern(GraphPattern parent) {
+	public GraphMatchedPattern(GraphPattern parent, List<GraphNode> graphNodes) {
 		this.parent = parent;
+		this.graphNodes = graphNodes;
 	}
 	
-	public void removeFeasible(String role, String asset) {
-		allFeasible.get(role).remove(asset);
+	public BitSet getFeasibleFrom(String fromNode) {
+		return allFeasible.computeIfAbsent(fromNode, k -> new BitSet());
 	}
 	
-	public Set<String> getFeasibleFrom(String fromNode) {
-		Set<String> feasible = allFeasible.get(fromNode);
-		if (feasible == null) {
-			feasible = new HashSet<>();
-			allFeasible.put(fromNode, feasible);
-		}
-		return feasible;
+	public void setFeasibleFrom(String fromNode, BitSet feasible) {
+		allFeasible.put(fromNode, feasible);
 	}
 	
-	public void addFeasibleFrom(String fromRole, String asset) {
-		Set<String> assets = allFeasible.get(fromRole);
-		if (assets == null) {
-			assets = new HashSet<>();
-			allFeasible.put(fromRole, assets);
-		}
-		assets.add(asset);
+	public void addFeasibleFrom(String fromRole, GraphNode node) {
+		getFeasibleFrom(fromRole).set(node.getIndex());
 	}
 	
 	public GraphMatchedPattern clone() {
-		GraphMatchedPattern clone = new GraphMatchedPattern(parent);
+		GraphMatchedPattern clone = new GraphMatchedPattern(parent, graphNodes);
 		
-		for (Map.Entry<String, Set<String>> entry : allFeasible.entrySet()) {
-			Set<String> copySet = new HashSet<>();
-			copySet.addAll(entry.getValue());
-			clone.getAllFeasible().put(entry.getKey(), copySet);
+		for (Map.Entry<String, BitSet> entry : allFeasible.entrySet()) {
+			clone.getAllFeasible().put(entry.getKey(), (BitSet) entry.getValue().clone());
 		}
 		
 		return clone;
 	}
 	
 	public String getRoleAsset(String role) {
-		Set<String> assets = allFeasible.get(role);
-		return assets != null ? assets.iterator().next() : null;
+		BitSet assets = allFeasible.get(role);
+		int index = assets != null ? assets.nextSetBit(0) : -1;
+		return index >= 0 ? graphNodes.get(index).getAsset() : null;
 	}
 	
 	public Set<String> getRoleAssets(String role) {
-		Set<String> assets = allFeasible.get(role);
-		return assets != null ? assets : new HashSet<>();
+		Set<String> assets = new HashSet<>();
+		BitSet feasible = allFeasible.get(role);
+		if (feasible != null) {
+			for (int i = feasible.nextSetBit(0); i >= 0; i = feasible.nextSetBit(i + 1)) {
+				assets.add(graphNodes.get(i).getAsset());
+			}
+		}
+		return assets;
 	}
 
-	public void addRoleAsset(String role, String asset) {
-		Set<String> assets = allFeasible.computeIfAbsent(role, k -> new HashSet<>());
-		assets.add(asset);
+	public void addRoleAsset(String role, GraphNode node) {
+		addFeasibleFrom(role, node);
 	}
 	
 	public boolean checkInvalidMatch() {
-		for (Set<String> feasible : allFeasible.values()) {
+		for (BitSet feasible : allFeasible.values()) {
 			if (feasible.isEmpty()) {
 				return true;
 			}
@@ -100,6 +107,10 @@ public class GraphMatchedPattern {
 	}
 	
 	public String toString() {
-		return parent.getUri().toString() + ":" + allFeasible.toString();
+		Map<String, Set<String>> roleAssets = new HashMap<>();
+		for (String role : allFeasible.keySet()) {
+			roleAssets.put(role, getRoleAssets(role));
+		}
+		return parent.getUri().toString() + ":" + roleAssets.toString();
 	}
 }
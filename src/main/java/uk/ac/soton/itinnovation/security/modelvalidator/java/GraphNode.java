@@ -24,20 +24,31 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.modelvalidator.java;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * An asset in the graph used for pattern matching.
+ *
+ * Each node has a dense index, unique within the graph, so sets of nodes can be held as BitSets. The linked
+ * nodes are kept both as sets of GraphNodes and as BitSets of their indices, for each link type.
+ */
 public class GraphNode {
+	private int index;
 	private String asset;
 	private Set<String> roles;
 	private Map<String, Set<GraphNode>> forwardLinks = new HashMap<>();
 	private Map<String, Set<GraphNode>> backwardLinks = new HashMap<>();
+	private Map<String, BitSet> forwardIndices = new HashMap<>();
+	private Map<String, BitSet> backwardIndices = new HashMap<>();
 	private String type;
 
-	public GraphNode(String asset, Set<String> roles) {
+	public GraphNode(int index, String asset, Set<String> roles) {
+		this.index = index;
 		this.asset = asset;
 		this.roles = roles;
 	}
@@ -48,6 +59,7 @@ public class GraphNode {
 			linkNodes = new HashSet<>();
 			forwardLinks.put(linkType, linkNodes);
 		}
+		forwardIndices.computeIfAbsent(linkType, k -> new BitSet()).set(nodeTo.getIndex());
 		return linkNodes.add(nodeTo);
 	}
 	
@@ -55,6 +67,7 @@ public class GraphNode {
 		Set<GraphNode> linkNodes = forwardLinks.get(linkType);
 		if (linkNodes != null) {
 			linkNodes.remove(nodeTo);
+			forwardIndices.get(linkType).clear(nodeTo.getIndex());
 			return true;
 		}
 		return false;
@@ -66,6 +79,7 @@ public class GraphNode {
 			linkNodes = new HashSet<>();
 			backwardLinks.put(linkType, linkNodes);
 		}
+		backwardIndices.computeIfAbsent(linkType, k -> new BitSet()).set(nodeFrom.getIndex());
 		return linkNodes.add(nodeFrom);
 	}
 	
@@ -73,11 +87,16 @@ public class GraphNode {
 		Set<GraphNode> linkNodes = backwardLinks.get(linkType);
 		if (linkNodes != null) {
 			linkNodes.remove(nodeFrom);
+			backwardIndices.get(linkType).clear(nodeFrom.getIndex());
 			return true;
 		}
 		return false;
 	}
 
+	public int getIndex() {
+		return index;
+	}
+
 	public void setType(String type) {
 		this.type = type;
 	}
@@ -105,6 +124,38 @@ public class GraphNode {
 		return nodes != null ? nodes : new HashSet<>();
 	}
 
+	/**
+	 * Check whether this node links to any of the given nodes through a link of any of the given types.
+	 *
+	 * @param types the link types
+	 * @param nodes the indices of the nodes
+	 */
+	public boolean hasForwardLinkTo(Collection<String> types, BitSet nodes) {
+		for (String subType : types) {
+			BitSet linkIndices = forwardIndices.get(subType);
+			if (linkIndices != null && linkIndices.intersects(nodes)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether any of the given nodes links to this node through a link of any of the given types.
+	 *
+	 * @param types the link types
+	 * @param nodes the indices of the nodes
+	 */
+	public boolean hasBackwardLinkFrom(Collection<String> types, BitSet nodes) {
+		for (String subType : types) {
+			BitSet linkIndices = backwardIndices.get(subType);
+			if (linkIndices != null && linkIndices.intersects(nodes)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public Set<GraphNode> getNodesToLinks(Collection<String> types) {
 		Set<GraphNode> nodes = new HashSet<>();
 		for (String subType : types) {
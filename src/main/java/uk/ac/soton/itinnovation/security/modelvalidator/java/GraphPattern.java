@@ -36,6 +36,7 @@ public class GraphPattern {
 	private List<String> roles = new ArrayList<>();
 	private List<String> nodes = new ArrayList<>();
 	private Map<String, Map<String, Set<String>>> adjacent = new HashMap<>();
+	private List<PatternLink> links = null;
 	private List<PatternLink> prohibitedLinks = new ArrayList<>();
 	private List<String> prohibitedNodes = new ArrayList<>();
 	private List<PatternLink> matchLinks = new ArrayList<>();
@@ -116,6 +117,7 @@ public class GraphPattern {
 			typeToNodes.put(linkType, toNodes);
 		}
 		toNodes.add(toNode);
+		links = null;
 	}
 	
 	public Set<String> getAdjacentFrom(String fromNode, String linkType) {
@@ -140,6 +142,20 @@ public class GraphPattern {
 		return links;
 	}
 	
+	/**
+	 * Get the links from all roles, in role order. The list is kept until another link is added, so
+	 * any changes to its links are seen by later callers.
+	 */
+	public List<PatternLink> getLinks() {
+		if (links == null) {
+			links = new ArrayList<>();
+			for (String role : roles) {
+				links.addAll(getLinksFrom(role));
+			}
+		}
+		return links;
+	}
+	
 	public List<String> getRoles() {
 		return roles;
 	}
@@ -147,6 +163,7 @@ public class GraphPattern {
 	public void addRole(String role) {
 		if (!roles.contains(role)) {
 			roles.add(role);
+			links = null;
 		}
 	}
 	
@@ -24,6 +24,8 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.modelvalidator.java;
 
+import java.util.Collection;
+
 import lombok.Data;
 
 @Data
@@ -31,6 +33,7 @@ public class PatternLink {
 	private String fromNode;
 	private String toNode;
 	private String linkType;
+	private Collection<String> linkTypes;	// The link type and its sub-types, if set by the Validator before matching
 	
 	public PatternLink(String fromNode, String toNode, String linkType) {
 		this.fromNode = fromNode;
@@ -26,12 +26,26 @@
 package uk.ac.soton.itinnovation.security.semanticstore;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.sparql.core.Quad;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.soton.itinnovation.security.semanticstore.util.SparqlHelper;
@@ -50,6 +64,18 @@ public abstract class AStoreWrapper implements IStoreWrapper {
 	protected String sparqlPrefixes;
 	protected boolean connected;
 
+	private static final int QUERY_CACHE_SIZE = 512;       // Maximum number of parsed queries kept by getParsedQuery
+
+	private final Map<List<Object>, Query> queryCache = Collections.synchronizedMap(
+			new LinkedHashMap<List<Object>, Query>(64, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>, Query> eldest) {
+					return size() > QUERY_CACHE_SIZE;
+				}
+			});
+	private final AtomicLong queryCacheHits = new AtomicLong();
+	private final AtomicLong queryCacheMisses = new AtomicLong();
+
 	/**
 	 * It is highly recommended to call this constructor in any implementing classes' constructor. This preloads a
 	 * number of commonly used prefixes for easier querying.
@@ -130,6 +156,43 @@ public abstract class AStoreWrapper implements IStoreWrapper {
 		return sparql;
 	}
 
+	// Query preparation ////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Get the parsed form of a query, including the prefixes and graphs. Parsed queries are cached by the query
+	 * text and graphs, so a query that is run repeatedly (e.g. with different parameters bound by a
+	 * QuerySolutionMap rather than formatted into the text) is only parsed once.
+	 *
+	 * The returned query is shared, so it must not be modified.
+	 *
+	 * @param sparql the SPARQL query without prefixes or graphs
+	 * @param graph the graph(s) if any
+	 * @return the parsed query
+	 */
+	protected Query getParsedQuery(String sparql, String... graph) {
+		List<Object> key = Arrays.asList(sparql, Arrays.asList(graph));
+		Query query = queryCache.get(key);
+		if (query != null) {
+			queryCacheHits.incrementAndGet();
+			return query;
+		}
+		queryCacheMisses.incrementAndGet();
+
+		query = QueryFactory.create(getSPARQLPrefixes() + addGraphsToSparql(sparql, SparqlType.QUERY, graph),
+				Syntax.syntaxARQ);
+		// The result variables are otherwise set lazily by the first query execution
+		query.setResultVars();
+		queryCache.put(key, query);
+		return query;
+	}
+
+	public long getQueryCacheHits() {
+		return queryCacheHits.get();
+	}
+
+	public long getQueryCacheMisses() {
+		return queryCacheMisses.get();
+	}
+
 	// Graph management ///////////////////////////////////////////////////////////////////////////
 	@Override
 	public void copyGraph(String from, String to) {
@@ -160,6 +223,35 @@ public abstract class AStoreWrapper implements IStoreWrapper {
 		return null;
 	}
 
+	@Override
+	public void querySelect(String sparql, Consumer<SelectRow> handler, String... graph) {
+		querySelect(sparql, null, handler, graph);
+	}
+
+	/**
+	 * Default implementation for stores whose querySelect(...) returns a Jena ResultSet. Any bindings are
+	 * substituted into the query text.
+	 */
+	@Override
+	public void querySelect(String sparql, QuerySolution bindings, Consumer<SelectRow> handler, String... graph) {
+		if (bindings != null) {
+			ParameterizedSparqlString pss = new ParameterizedSparqlString(sparql);
+			pss.setParams(bindings);
+			sparql = pss.toString();
+		}
+		Object results = querySelect(sparql, graph);
+		if (results instanceof ResultSet) {
+			ResultSet rs = (ResultSet) results;
+			SelectRow row = new SelectRow();
+			while (rs.hasNext()) {
+				row.setSolution(rs.nextSolution());
+				handler.accept(row);
+			}
+		} else if (results != null) {
+			logger.error("Streaming SELECT results not currently supported for store of type {}", this.getClass());
+		}
+	}
+
 	@Override
 	public Object queryConstruct(String sparql, String... graph) {
 		logger.error("CONSTRUCT queries currently not supported for store of type {}", this.getClass());
@@ -232,12 +324,27 @@ public abstract class AStoreWrapper implements IStoreWrapper {
 		logger.error("Importing multi-graph models with updating graph URIs from input streams not currently supported for store of type {}", this.getClass());
 	}
 
+	@Override
+	public void load(InputStream input, String oldURI, String newURI, Consumer<Quad> observer) {
+		logger.error("Importing multi-graph models with updating graph URIs from input streams not currently supported for store of type {}", this.getClass());
+	}
+
 	@Override
 	public String export(Format format, String xmlBase, String... graph) {
 		logger.error("Exporting store contents not currently supported for store of type {}", this.getClass());
 		return null;
 	}
 
+	@Override
+	public void export(OutputStream out, Format format, String xmlBase, String... graph) {
+		logger.error("Exporting store contents not currently supported for store of type {}", this.getClass());
+	}
+
+	@Override
+	public void exportQuads(OutputStream out, UnaryOperator<Quad> map, String... graph) {
+		logger.error("Exporting store contents not currently supported for store of type {}", this.getClass());
+	}
+
 	@Override
 	public void save(String filename, Format format, String xmlBase, boolean compressed, String... graph) {
 		logger.error("Exporting store contents not currently supported for store of type {}", this.getClass());
@@ -287,6 +394,7 @@ public abstract class AStoreWrapper implements IStoreWrapper {
 		sparqlPrefixes = "";
 		prefixURIMap.entrySet().stream().filter(e -> e.getKey() != null && e.getValue() != null).forEach(
 				e -> sparqlPrefixes += "PREFIX " + e.getKey() + ":<" + e.getValue() + ">\n");
+		queryCache.clear();
 	}
 
 	// ENUM ///////////////////////////////////////////////////////////////////////////////////////
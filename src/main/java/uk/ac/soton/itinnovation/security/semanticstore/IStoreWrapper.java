@@ -25,11 +25,16 @@
 package uk.ac.soton.itinnovation.security.semanticstore;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.sparql.core.Quad;
 
 /**
  * This interface specifies a triple store, in which ontology models can be saved for further processing. It can either
@@ -148,6 +153,28 @@ public interface IStoreWrapper {
 	 */
 	Object querySelect(String sparql, String ... graph);
 
+	/**
+	 * Queries the store and passes each row of the results to a handler as it is read, without first copying
+	 * the results into memory. The handler must not keep the row, and must not modify the store.
+	 *
+	 * @param sparql the SPARQL SELECT query (doesn't need prefix statements if previously specified)
+	 * @param handler called for each row of the results
+	 * @param graph the graph on which to execute the query or null if no graph specified
+	 */
+	void querySelect(String sparql, Consumer<SelectRow> handler, String ... graph);
+
+	/**
+	 * Queries the store with some variables bound to given values, and passes each row of the results to a
+	 * handler as it is read. Binding values rather than formatting them into the query text allows the parsed
+	 * query to be reused.
+	 *
+	 * @param sparql the SPARQL SELECT query (doesn't need prefix statements if previously specified)
+	 * @param bindings the values of variables in the query, or null
+	 * @param handler called for each row of the results
+	 * @param graph the graph on which to execute the query or null if no graph specified
+	 */
+	void querySelect(String sparql, QuerySolution bindings, Consumer<SelectRow> handler, String ... graph);
+
 	/**
 	 * Queries the store
 	 *
@@ -259,6 +286,18 @@ public interface IStoreWrapper {
 	 */
 	void load(InputStream input, String oldURI, String newURI);
 
+	/**
+	 * As above, but each quad is also passed to an observer as it is parsed (before any URIs are replaced), so
+	 * information can be taken from the document without parsing it again. No URIs are replaced if the old and
+	 * new URIs are the same.
+	 *
+	 * @param input InputStream to import (automatically closed on return)
+	 * @param oldURI a URI to replace when found as part of a graph URI
+	 * @param newURI what to replace it with
+	 * @param observer called with each quad in the document
+	 */
+	void load(InputStream input, String oldURI, String newURI, Consumer<Quad> observer);
+
 	/**
 	 * Get a serialised representation of the contents of the repository. The implementation decides about the format
 	 *
@@ -269,6 +308,27 @@ public interface IStoreWrapper {
 	 */
 	String export(Format format, String xmlBase, String ... graph);
 
+	/**
+	 * Write a serialised representation of the contents of the repository to a stream. N-Quads are written as
+	 * they are read from the store, so the export is never held in memory.
+	 *
+	 * @param out the stream to write to (not closed on return)
+	 * @param format the export format (rdf, turtle or nquads)
+	 * @param xmlBase the xml:base for this ontology or null if none. this is only needed for RDF
+	 * @param graph the URI of the graph(s) to export; all graphs if none are given
+	 */
+	void export(OutputStream out, Format format, String xmlBase, String ... graph);
+
+	/**
+	 * Write graphs to a stream as N-Quads, passing each quad through a function as it is read from the store.
+	 * The function may return a different quad to write instead, or null to leave the quad out.
+	 *
+	 * @param out the stream to write to (not closed on return)
+	 * @param map called for each quad, or null to write the quads unchanged
+	 * @param graph the URI of the graph(s) to export; all graphs if none are given
+	 */
+	void exportQuads(OutputStream out, UnaryOperator<Quad> map, String ... graph);
+
 	/**
 	 * Save a data export to file
 	 *
@@ -26,19 +26,19 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.semanticstore;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.function.Function;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -48,12 +48,13 @@ import java.util.Set;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
-import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ReadWrite;
 import org.apache.jena.query.ResultSet;
@@ -65,6 +66,12 @@ import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.RDFWriter;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
 import org.apache.jena.sparql.resultset.ResultSetMem;
 import org.apache.jena.tdb.TDB;
 import org.apache.jena.tdb.TDBFactory;
@@ -87,6 +94,8 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 	
 	public static final String DEFAULT_GRAPH = "DEFAULT_GRAPH";
 
+	private static final int LOAD_BATCH_SIZE = 50000;     // Number of quads added in each transaction when loading N-Quads
+
 	public JenaTDBStoreWrapper(String repodir) {
 
 		super();
@@ -409,7 +418,6 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 			exceptionToThrow.initCause(e);
 			dataset.abort();
 		} finally {
-			TDB.getContext().set(TDB.symUnionDefaultGraph, false);
 			closeTransaction();
 			if (exceptionToThrow != null) {
 				throw exceptionToThrow;
@@ -418,6 +426,47 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 		return result;
 	}
 
+	@Override
+	public void querySelect(String sparql, QuerySolution bindings, Consumer<SelectRow> handler, String... graph) {
+		RuntimeException exceptionToThrow = null;
+		QueryExecution qexec = null;
+
+		openTransaction(ReadWrite.READ);
+		try {
+			qexec = createQueryExecution(sparql, graph);
+			if (bindings != null) {
+				qexec.setInitialBinding(bindings);
+			}
+			ResultSet results = qexec.execSelect();
+			SelectRow row = new SelectRow();
+			while (results.hasNext()) {
+				row.setSolution(results.nextSolution());
+				try {
+					handler.accept(row);
+				} catch (RuntimeException e) {
+					// Exceptions from the handler are passed on unchanged
+					exceptionToThrow = e;
+					break;
+				}
+			}
+		} catch (Exception e) {
+			String queryString = qexec != null? qexec.getQuery().serialize(Syntax.syntaxSPARQL) : sparql;
+			String message = String.format("Could not execute query\n%s\n against graph(s) %s", queryString, graph);
+			logger.error(message, e);
+			exceptionToThrow = new RuntimeException(message);
+			exceptionToThrow.initCause(e);
+			dataset.abort();
+		} finally {
+			if (qexec != null) {
+				qexec.close();
+			}
+			closeTransaction();
+			if (exceptionToThrow != null) {
+				throw exceptionToThrow;
+			}
+		}
+	}
+
 	@Override
 	public Model queryConstruct(String sparql, String... graph) {
 		RuntimeException exceptionToThrow = null;
@@ -437,7 +486,6 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 			exceptionToThrow.initCause(e);
 			dataset.abort();
 		} finally {
-			TDB.getContext().set(TDB.symUnionDefaultGraph, false);
 			closeTransaction();
 			if (exceptionToThrow != null) {
 				throw exceptionToThrow;
@@ -464,7 +512,6 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 			exceptionToThrow.initCause(e);
 			dataset.abort();
 		} finally {
-			TDB.getContext().set(TDB.symUnionDefaultGraph, false);
 			closeTransaction();
 			if (exceptionToThrow != null) {
 				throw exceptionToThrow;
@@ -562,6 +609,10 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 	 * Use Jena pre-filtering for the query execution to optimise query speed.
 	 * It is assumed that when this method is called, a transaction is already open.
 	 *
+	 * If no graphs are given, the default graph of the query is the union of all graphs. This is set in the
+	 * context of the query execution rather than the global TDB context, so it doesn't affect other queries
+	 * running at the same time.
+	 *
 	 * @param query the query to execute
 	 * @param graph the originalGraph(s) to execute the query on, null or no arguments = execute on the entire dataset
 	 * @return the query execution object
@@ -574,16 +625,14 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 			throw new IllegalArgumentException("'null' not a valid graph.");
 		}
 		
-		String sparqlG = sparql;		
-		if (graphs.length < 1) {
-			TDB.getContext().set(TDB.symUnionDefaultGraph, true);
-		} else {
-			sparqlG = addGraphsToSparql(sparql, SparqlType.QUERY, graphs);
+		Query query = getParsedQuery(sparql, graphs);
+		if (logger.isDebugEnabled()) {
+			logger.debug("{}", query.toString());
 		}
-		
-		Query query = QueryFactory.create(getSPARQLPrefixes() + sparqlG, Syntax.syntaxARQ);
-		logger.debug("{}", query.toString());
 		QueryExecution queryExecution = QueryExecutionFactory.create(query, dataset);
+		if (graphs.length < 1) {
+			queryExecution.getContext().set(TDB.symUnionDefaultGraph, true);
+		}
 		
 		return queryExecution;
 	}
@@ -741,6 +790,14 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 			.loadFromStream(input);
 	}
 
+	@Override
+	public void load(InputStream input, String oldURI, String newURI, Consumer<Quad> observer) {
+		logger.info("Loading from input stream into store ( {}  ->  {} )", oldURI, newURI);
+
+		loadDatasetAndRenameHandler(oldURI, newURI, observer)
+			.loadFromStream(input);
+	}
+
 	private LoadHandler loadModelHandler(String graph, Format format) {
 		return new LoadHandler(
 			stream -> {
@@ -771,20 +828,15 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 
 	private LoadHandler loadDatasetHandler() {
 		return new LoadHandler(
-			stream -> loadDatasetTransaction(
-				stream,
-				graph -> new GraphAction() {
-					public String getNewGraphName() {
-						return graph;
-					}
-
-					public void doAction() {}
-				}
-			)
+			stream -> loadQuads(stream, null, null)
 		);
 	}
 
 	private LoadHandler loadDatasetAndRenameHandler(String oldURI, String newURI) {
+		return loadDatasetAndRenameHandler(oldURI, newURI, null);
+	}
+
+	private LoadHandler loadDatasetAndRenameHandler(String oldURI, String newURI, Consumer<Quad> observer) {
 		return new LoadHandler(
 			stream -> {
 				if (oldURI == null || oldURI.isEmpty()) {
@@ -794,54 +846,38 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 					throw new IllegalArgumentException("New URI null or empty");
 				}
 
-				loadDatasetTransaction(
-					stream,
-					graph -> new GraphAction() {
-						public String getNewGraphName() {
-							return graph.replace(oldURI, newURI);
-						}
-
-						public void doAction() {
-							String newGraph = getNewGraphName();
-							renameURIsInGraph(newGraph, oldURI, newURI);
-							logger.debug("Updated references to old URI in graph {}", newGraph);
-						}
-					}
-				);
+				if (oldURI.equals(newURI)) {
+					loadQuads(stream, null, observer);
+				} else {
+					loadQuads(stream, quad -> renameURIs(quad, oldURI, newURI), observer);
+				}
 			}
 		);
 	}
 
-	private void renameURIsInGraph(String graph, String oldURI, String newURI) {
-		update(String.format("DELETE { \n" +
-			"  GRAPH <%s> {\n" +
-			"    ?old ?ps ?o .\n" +
-			"    ?s ?po ?old \n" +
-			"  }\n" +
-			"}\n" +
-			"INSERT { \n" +
-			"  GRAPH <%s> {\n" +
-			"    ?new ?ps ?o .\n" +
-			"    ?s ?po ?new \n" +
-			"  }\n" +
-			"} WHERE {\n" +
-			"  GRAPH <%s> {\n" +
-			"    OPTIONAL { ?old ?ps ?o } . \n" +
-			"    OPTIONAL { ?s ?po ?old } . \n" +
-			"    FILTER CONTAINS(str(?old), '%s') .\n" +
-			"    BIND(URI(REPLACE(str(?old), '%s', '%s')) as ?new) . \n" +
-			"  }\n" +
-			"}", graph, graph, graph, oldURI, oldURI, newURI));
-	}
+	/**
+	 * Replace part of the graph, subject and object URIs of a quad (predicates are left unchanged).
+	 */
+	private static Quad renameURIs(Quad quad, String oldURI, String newURI) {
+		Node graph = renameURI(quad.getGraph(), oldURI, newURI);
+		Node subject = renameURI(quad.getSubject(), oldURI, newURI);
+		Node object = renameURI(quad.getObject(), oldURI, newURI);
 
-	private interface LoadAction {
-		void load(InputStream input);
+		if (graph == quad.getGraph() && subject == quad.getSubject() && object == quad.getObject()) {
+			return quad;
+		}
+		return new Quad(graph, subject, quad.getPredicate(), object);
 	}
 
-	private interface GraphAction {
-		String getNewGraphName();
+	private static Node renameURI(Node node, String oldURI, String newURI) {
+		if (node.isURI() && node.getURI().contains(oldURI)) {
+			return NodeFactory.createURI(node.getURI().replace(oldURI, newURI));
+		}
+		return node;
+	}
 
-		void doAction();
+	private interface LoadAction {
+		void load(InputStream input);
 	}
 
 	private class LoadHandler {
@@ -909,47 +945,150 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 		}
 	}
 
-	private void loadDatasetTransaction(InputStream input, Function<String, GraphAction> generator) {
-		RuntimeException exceptionToThrow = null;
-
-		List<GraphAction> actions = new ArrayList<>();
+	/**
+	 * Load N-Quads into the store in a single pass. Each quad is passed to an observer and then through a function
+	 * (if either is not null) as it is parsed, and the quads are added to the store in batches, each in its own transaction, so the input is
+	 * never held in memory. Triples which are not in a named graph are ignored.
+	 *
+	 * If the input cannot be loaded, the store is put back as it was: graphs which were empty before the load are
+	 * cleared again, and quads added to other graphs are removed. Those quads are kept in memory until the load
+	 * is complete, but an import normally only adds quads to new graphs.
+	 */
+	private void loadQuads(InputStream input, UnaryOperator<Quad> map, Consumer<Quad> observer) {
+		QuadLoader loader = new QuadLoader(map, observer);
 
-		openTransaction(ReadWrite.WRITE);
 		try {
-			Dataset toLoad = DatasetFactory.create();
-			RDFDataMgr.read(toLoad, input, Lang.NQUADS);
-			Iterator<String> it = toLoad.listNames();
-			while (it.hasNext()) {
-				String graph = it.next();
-				Model model = toLoad.getNamedModel(graph);
-
-				GraphAction graphAction = generator.apply(graph);
-				actions.add(graphAction);
-
-				String newGraph = graphAction.getNewGraphName();
-				dataset.addNamedModel(newGraph, model);
-				logger.info("Loaded {} triples into graph {}", model.size(), newGraph);
-			}
-			commitTransaction();
+			RDFDataMgr.parse(loader, input, Lang.NQUADS);
 		} catch (Exception e) {
 			String message = String.format("Could not load input stream into store");
 			logger.error(message, e);
-			exceptionToThrow = new RuntimeException(message, e);
-			dataset.abort();
-		} finally {
-			closeTransaction();
-			if (exceptionToThrow != null) {
-				throw exceptionToThrow;
+			loader.undo();
+			throw new RuntimeException(message, e);
+		}
+
+		loader.counts.forEach((graph, count) -> logger.info("Loaded {} triples into graph {}", count, graph));
+	}
+
+	/**
+	 * Adds parsed quads to the store in batches.
+	 */
+	private class QuadLoader extends StreamRDFBase {
+		private final UnaryOperator<Quad> map;
+		private final Consumer<Quad> observer;
+		private final List<Quad> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+		private final Map<String, Long> counts = new HashMap<>();      // Number of quads loaded into each graph
+		private final Set<String> newGraphs = new HashSet<>();         // Graphs which were empty before loading
+		private final List<Quad> addedQuads = new ArrayList<>();       // Quads added to graphs which were not empty
+
+		private QuadLoader(UnaryOperator<Quad> map, Consumer<Quad> observer) {
+			this.map = map;
+			this.observer = observer;
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			if (quad.getGraph() == null || !quad.getGraph().isURI() || quad.isDefaultGraph()) {
+				return;
+			}
+			if (observer != null) {
+				observer.accept(quad);
+			}
+			if (map != null) {
+				quad = map.apply(quad);
 			}
+			batch.add(quad);
+			if (batch.size() >= LOAD_BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		@Override
+		public void finish() {
+			flush();
 		}
 
-		//perform actions afterwards to avoid nesting transactions
-		actions.forEach(action -> action.doAction());
+		private void flush() {
+			if (batch.isEmpty()) {
+				return;
+			}
+
+			RuntimeException exceptionToThrow = null;
+
+			openTransaction(ReadWrite.WRITE);
+			try {
+				DatasetGraph dsg = dataset.asDatasetGraph();
+				for (Quad quad : batch) {
+					String graph = quad.getGraph().getURI();
+					if (!counts.containsKey(graph) && dsg.getGraph(quad.getGraph()).isEmpty()) {
+						newGraphs.add(graph);
+					}
+					counts.merge(graph, 1L, Long::sum);
+					if (!newGraphs.contains(graph) && !dsg.contains(quad)) {
+						addedQuads.add(quad);
+					}
+					dsg.add(quad);
+				}
+				commitTransaction();
+				logger.debug("Loaded batch of {} quads", batch.size());
+			} catch (Exception e) {
+				exceptionToThrow = new RuntimeException("Could not add quads to the store", e);
+				dataset.abort();
+			} finally {
+				closeTransaction();
+				batch.clear();
+				if (exceptionToThrow != null) {
+					throw exceptionToThrow;
+				}
+			}
+		}
+
+		/**
+		 * Remove everything added by a failed load.
+		 */
+		private void undo() {
+			for (String graph : newGraphs) {
+				try {
+					clearGraph(graph);
+				} catch (RuntimeException e) {
+					logger.error("Could not clear graph <{}> after failed load", graph, e);
+				}
+			}
+
+			if (addedQuads.isEmpty()) {
+				return;
+			}
+
+			openTransaction(ReadWrite.WRITE);
+			try {
+				DatasetGraph dsg = dataset.asDatasetGraph();
+				addedQuads.forEach(dsg::delete);
+				commitTransaction();
+				logger.debug("Removed {} quads after failed load", addedQuads.size());
+			} catch (Exception e) {
+				logger.error("Could not remove quads after failed load", e);
+				dataset.abort();
+			} finally {
+				closeTransaction();
+				addedQuads.clear();
+			}
+		}
 	}
 
 	@Override
 	public String export(Format format, String xmlBase, String... graph) {
 		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		export(os, format, xmlBase, graph);
+		return os.toString();
+	}
+
+	@Override
+	public void export(OutputStream out, Format format, String xmlBase, String... graph) {
+		if (Format.NQ.equals(format)) {
+			//quads can be written as they are read
+			exportQuads(out, null, graph);
+			return;
+		}
+
 		Dataset union;
 		RuntimeException exceptionToThrow = null;
 		openTransaction(ReadWrite.READ);
@@ -972,35 +1111,29 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 				logger.info("Exported {} triples from {} graphs", size, graph.length);
 			}
 
-			//export it, depending on the format
-			if (format.equals(Format.NQ)) {
-				//export quads directly
-				RDFDataMgr.write(os, union, Lang.NQUADS);
+			//for triples we need to get rid of the originalGraph part of the quad
+			Model tmp = ModelFactory.createDefaultModel();
+			Iterator<String> it = union.listNames();
+			while (it.hasNext()) {
+				tmp.add(union.getNamedModel(it.next()));
+			}
+			tmp.setNsPrefixes(getPrefixURIMap());
+			if (format.equals(Format.RDF)) {
+
+				RDFWriter writer = tmp.getWriter("RDF/XML-ABBREV");
+				writer.setProperty("allowBadURIs", "false");
+				writer.setProperty("xmlbase", xmlBase);
+				//relative URIs seem to be a problem for import statements
+				writer.setProperty("relativeURIs", "");
+				writer.setProperty("showDoctypeDeclaration", "false");
+				writer.setProperty("showXmlDeclaration", "false");
+				//set baseURI to null for absolute URIs throughout
+				writer.write(tmp, out, null);
+			} else if (format.equals(Format.TTL)) {
+				RDFDataMgr.write(out, tmp, Lang.TTL);
 			} else {
-				//for triples we need to get rid of the originalGraph part of the quad
-				Model tmp = ModelFactory.createDefaultModel();
-				Iterator<String> it = union.listNames();
-				while (it.hasNext()) {
-					tmp.add(union.getNamedModel(it.next()));
-				}
-				tmp.setNsPrefixes(getPrefixURIMap());
-				if (format.equals(Format.RDF)) {
-
-					RDFWriter writer = tmp.getWriter("RDF/XML-ABBREV");
-					writer.setProperty("allowBadURIs", "false");
-					writer.setProperty("xmlbase", xmlBase);
-					//relative URIs seem to be a problem for import statements
-					writer.setProperty("relativeURIs", "");
-					writer.setProperty("showDoctypeDeclaration", "false");
-					writer.setProperty("showXmlDeclaration", "false");
-					//set baseURI to null for absolute URIs throughout
-					writer.write(tmp, os, null);
-				} else if (format.equals(Format.TTL)) {
-					RDFDataMgr.write(os, tmp, Lang.TTL);
-				} else {
-					logger.error("Invalid export format. Please select one of: {}",
-							Arrays.asList(IStoreWrapper.Format.values()));
-				}
+				logger.error("Invalid export format. Please select one of: {}",
+						Arrays.asList(IStoreWrapper.Format.values()));
 			}
 		} catch (RuntimeException e) {
 			String message = String.format("Failed to export graphs to format %s", format);		
@@ -1014,25 +1147,74 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 				throw exceptionToThrow;
 			}
 		}
+	}
 
-		return os.toString();
+	@Override
+	public void exportQuads(OutputStream out, UnaryOperator<Quad> map, String... graph) {
+		RuntimeException exceptionToThrow = null;
+		long size = 0;
+		openTransaction(ReadWrite.READ);
+
+		try {
+			//write each quad as it is read from the store, so the export is never held in memory
+			StreamRDF writer = StreamRDFWriter.getWriterStream(out, RDFFormat.NQUADS);
+			writer.start();
+			DatasetGraph dsg = dataset.asDatasetGraph();
+			if (graph.length == 0) {
+				size += writeQuads(writer, dsg.find(), map);
+			} else {
+				for (String g : graph) {
+					long next = writeQuads(writer, dsg.find(NodeFactory.createURI(g), Node.ANY, Node.ANY, Node.ANY), map);
+					logger.debug("Found {} triples in graph <{}>", next, g);
+					size += next;
+				}
+			}
+			writer.finish();
+
+			logger.info("Exported {} quads from {} graphs", size, graph.length > 0 ? graph.length : "all");
+		} catch (RuntimeException e) {
+			String message = String.format("Failed to export graphs to format %s", Format.NQ);
+			logger.error(message, e);
+			exceptionToThrow = new RuntimeException(message);
+			exceptionToThrow.initCause(e);
+			dataset.abort();
+		} finally {
+			closeTransaction();
+			if (exceptionToThrow != null) {
+				throw exceptionToThrow;
+			}
+		}
+	}
+
+	private static long writeQuads(StreamRDF writer, Iterator<Quad> quads, UnaryOperator<Quad> map) {
+		long count = 0;
+		while (quads.hasNext()) {
+			Quad quad = quads.next();
+			if (map != null) {
+				quad = map.apply(quad);
+			}
+			if (quad != null) {
+				writer.quad(quad);
+				count++;
+			}
+		}
+		return count;
 	}
 
 	@Override
 	public void save(String filename, Format format, String xmlBase, boolean compressed, String... graph) {
 		RuntimeException exceptionToThrow = null;
 		File file = new File(filename + "." + format.toString().toLowerCase() + (compressed?".gz":""));
-		String content = export(format, xmlBase, graph);
 
-		BufferedWriter writer = null;
+		OutputStream stream = null;
 		try {
+			stream = new BufferedOutputStream(new FileOutputStream(file, false));
 			if (compressed) {
-				GZIPOutputStream stream = new GZIPOutputStream(new FileOutputStream(file, false));
-				writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
-				writer.append(content);
-			} else {
-				(new FileOutputStream(file, false)).write(content.getBytes(Charset.forName("UTF-8")));
+				stream = new GZIPOutputStream(stream);
 			}
+			export(stream, format, xmlBase, graph);
+			stream.close();
+			stream = null;
 			logger.info("Saved data in {}compressed file {}", compressed?"":"un", file.getAbsolutePath());
 		} catch (IOException e) {	
 			String message = String.format("Could not write data to %scompressed file %s", compressed?"":"un", file.getAbsolutePath());
@@ -1040,9 +1222,9 @@ public class JenaTDBStoreWrapper extends AStoreWrapper {
 			exceptionToThrow = new RuntimeException(message);
 			exceptionToThrow.initCause(e);
 		} finally {
-			if(writer != null){
+			if(stream != null){
 				try {
-					writer.close();
+					stream.close();
 				} catch (IOException ex) {
 					logger.error("Could not close stream", ex);
 				}
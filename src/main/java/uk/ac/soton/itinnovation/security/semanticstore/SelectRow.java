@@ -0,0 +1,120 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.semanticstore;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.RDFNode;
+import uk.ac.soton.itinnovation.security.semanticstore.util.SparqlHelper;
+
+/**
+ * A view of one row of a SELECT query result, as passed to the handler given to
+ * IStoreWrapper.querySelect(String, Consumer, String...).
+ *
+ * The same object may be reused for each row, and it is only valid during the call to the handler, so
+ * values must be copied out of it rather than keeping a reference to the row.
+ */
+public class SelectRow {
+
+	private QuerySolution solution;
+
+	public SelectRow() {
+	}
+
+	public SelectRow(QuerySolution solution) {
+		this.solution = solution;
+	}
+
+	void setSolution(QuerySolution solution) {
+		this.solution = solution;
+	}
+
+	/**
+	 * @param var the variable name, without the "?"
+	 * @return whether the variable is bound in this row
+	 */
+	public boolean contains(String var) {
+		return solution.contains(var);
+	}
+
+	/**
+	 * @param var the variable name, without the "?"
+	 * @return the RDF node bound to the variable, or null if it is unbound
+	 */
+	public RDFNode get(String var) {
+		return solution.get(var);
+	}
+
+	/**
+	 * Get the value of a variable as a string, in the same form as translateSelectResult: URIs as they are,
+	 * plain literals as their lexical form and typed literals as "value^^datatypeURI".
+	 *
+	 * @param var the variable name, without the "?"
+	 * @return the value, or null if the variable is unbound
+	 */
+	public String getString(String var) {
+		RDFNode node = solution.get(var);
+		return node != null ? SparqlHelper.unescapeLiteral(node.toString()) : null;
+	}
+
+	/**
+	 * @param var the variable name, without the "?"
+	 * @return the URI of the resource bound to the variable, or null if it is unbound or not a URI
+	 */
+	public String getURI(String var) {
+		RDFNode node = solution.get(var);
+		return node != null && node.isURIResource() ? node.asResource().getURI() : null;
+	}
+
+	/**
+	 * Get the value of a numeric literal, or of a plain literal containing a number.
+	 *
+	 * @param var the variable name, without the "?"
+	 * @param defaultValue the value to return if the variable is unbound or is not a literal
+	 * @return the value
+	 */
+	public int getInt(String var, int defaultValue) {
+		Literal literal = getLiteral(var);
+		if (literal == null) {
+			return defaultValue;
+		}
+		Object value = literal.getValue();
+		return value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(literal.getLexicalForm().trim());
+	}
+
+	/**
+	 * Get the value of a boolean literal, or of a plain literal containing "true" or "false".
+	 *
+	 * @param var the variable name, without the "?"
+	 * @param defaultValue the value to return if the variable is unbound or is not a literal
+	 * @return the value
+	 */
+	public boolean getBoolean(String var, boolean defaultValue) {
+		Literal literal = getLiteral(var);
+		return literal != null ? Boolean.parseBoolean(literal.getLexicalForm().trim()) : defaultValue;
+	}
+
+	private Literal getLiteral(String var) {
+		RDFNode node = solution.get(var);
+		return node != null && node.isLiteral() ? node.asLiteral() : null;
+	}
+
+}
@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,6 +86,9 @@ public class Model {
 
 	private SystemModelUpdater updater;
 
+	//Not set in unit tests that create the model directly
+	private ModelSnapshotCache snapshots;
+
 	//Not public
 	Model(
 		ModelACL modelACL,
@@ -148,6 +152,7 @@ public class Model {
 	void saveModelACL() {
 		setModified(new Date());
 		modelRepository.save(modelACL);
+		bumpRevision();
 	}
 
 	//Not public
@@ -343,9 +348,47 @@ public class Model {
 		}
 	}
 
+	//Not public
+	void setSnapshotCache(ModelSnapshotCache snapshots) {
+		this.snapshots = snapshots;
+	}
+
+	private boolean isCached() {
+		return snapshots != null && getId() != null;
+	}
+
+	//Increase the model revision after saving changes, so cached copies are not used again
+	private void bumpRevision() {
+		if (isCached()) {
+			snapshots.bump(getId());
+		}
+	}
+
 	public void loadModelInfo() {
+		//The revision must be obtained before loading, in case the model is changed meanwhile
+		long revision = isCached() ? snapshots.getRevision(getId()) : 0;
+
+		if (isCached()) {
+			snapshots.register(getId(), getUri());
+			ModelInfo cachedInfo = snapshots.getModelInfo(getId(), revision);
+			if (cachedInfo != null) {
+				modelInfo = cachedInfo;
+				checkModelInfo();
+				this.setDomainVersion(snapshots.getDomainVersion(getId(), revision));
+				return;
+			}
+		}
+
 		modelInfo = new ModelInfo(getQuerier().getModelInfo(store));
+		checkModelInfo();
+		loadDomainVersion();
+
+		if (isCached()) {
+			snapshots.putModelInfo(getId(), revision, modelInfo, getDomainVersion());
+		}
+	}
 
+	private void checkModelInfo() {
 		if (!modelACL.getUri().equals(modelInfo.getUri())) {
 			throw new RuntimeException(
 				"Inconsistent URIs in modelACL <" +
@@ -365,7 +408,9 @@ public class Model {
 				">"
 			);
 		}
+	}
 
+	private void loadDomainVersion() {
 		/*
 		 * TODO : work out why this section is needed. It seems to load a set of domain model
 		 * object purely in order to write some messages to the logger.
@@ -411,11 +456,13 @@ public class Model {
 
 	public void updateCopiedModelInfo(uk.ac.soton.itinnovation.security.model.system.Model sourceModel) {
 		getUpdater().updateModelInfoInCopiedModel(store, sourceModel, this.getUri());
+		bumpRevision();
 	}
 
 	private void saveModelInfo() {
 		assertHasModelInfo();
 		getUpdater().updateModelInfo(store, modelInfo.getModel());
+		bumpRevision();
 	}
 
 	public String getName() {
@@ -533,6 +580,20 @@ public class Model {
 		this.modelData = new ModelData(this, modelObjectsHelper, loadingProgress);
 	}
 
+	/**
+	 * Get all model data, running independent loading stages on the given executor
+	 * @param modelObjectsHelper
+	 * @param loadingProgress
+	 * @param executor
+	 */
+	public void loadModelData(
+		ModelObjectsHelper modelObjectsHelper,
+		LoadingProgress loadingProgress,
+		Executor executor
+	) {
+		this.modelData = new ModelData(this, modelObjectsHelper, loadingProgress, executor);
+	}
+
 	/**
 	 * Get basic model details only
 	 * @param modelObjectsHelper
@@ -720,6 +781,20 @@ public class Model {
 		saveModelACL();
 	}
 
+	/**
+	 * Check out the model for an editor, and save the ModelACL. The revision is only increased if the editor has
+	 * changed, so repeated requests from the same editor (e.g. progress polls) keep cached copies of the model.
+	 */
+	public void checkout(String editorId) {
+		boolean editorChanged = !editorId.equals(getEditorId());
+		setEditorId(editorId);
+		setModified(new Date());
+		modelRepository.save(modelACL);
+		if (editorChanged) {
+			bumpRevision();
+		}
+	}
+
 	//Should not be called directly by unit tests
 	public void delete() {
 		logger.debug("Deleting model: {}", getUri());
@@ -727,6 +802,10 @@ public class Model {
 
 		//In unit tests storeModelManager can be null
 		storeModelManager.deleteSystemModel(getUri());
+
+		if (isCached()) {
+			snapshots.remove(getId());
+		}
 	}
 
 	public ModelStack getModelStack() {
@@ -30,6 +30,11 @@ import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.soton.itinnovation.security.model.Level;
@@ -80,27 +85,72 @@ class ModelData {
 	private final RiskVector riskVector;
 
 	public ModelData(Model model, ModelObjectsHelper modelObjectsHelper, LoadingProgress loadingProgress) {
-		loadingProgress.updateProgress(0.0, "Loading model properties");
-		levels = modelObjectsHelper.getLevelsForModel(model);
+		this(model, modelObjectsHelper, loadingProgress, Runnable::run);
+	}
 
-		loadingProgress.updateProgress(0.1, "Loading control sets");
-		Map<String, ControlSet> controlSetsMap = modelObjectsHelper.getControlSetsForModel(model);
-		controlSets = new HashSet<>(controlSetsMap.values());
+	/**
+	 * Load all model data. The data is loaded in stages, and stages that don't depend on each other are run at
+	 * the same time using the given executor. The time taken by each stage is recorded in the loading progress.
+	 * Relations, threats and compliance data are only loaded once the assets are loaded, and only if there are any.
+	 *
+	 * @param model
+	 * @param modelObjectsHelper
+	 * @param loadingProgress
+	 * @param executor used to run the stages (a direct executor loads the stages one after another)
+	 */
+	public ModelData(Model model, ModelObjectsHelper modelObjectsHelper, LoadingProgress loadingProgress, Executor executor) {
+		long start = System.currentTimeMillis();
+		StagedLoader loader = new StagedLoader(loadingProgress, executor);
+		loadingProgress.updateProgress(0.0, "Loading model properties");
 
-		loadingProgress.updateProgress(0.2, "Loading misbehaviour sets");
-		boolean includeCauseAndEffects = true;
+		// Stages that only need the store
+		CompletableFuture<Map<String, Collection<Level>>> levelsStage = loader.stage("levels",
+				() -> modelObjectsHelper.getLevelsForModel(model));
+		CompletableFuture<Map<String, ControlSet>> controlSetsStage = loader.stage("control sets",
+				() -> modelObjectsHelper.getControlSetsForModel(model));
 		//Get misbehaviour sets including cause and effects
-		misbehaviourSets = modelObjectsHelper.getMisbehavioursForModel(model, includeCauseAndEffects);
-
-		loadingProgress.updateProgress(0.3, "Loading trustworthiness attributes");
-		twas = modelObjectsHelper.getTWASForModel(model);
+		CompletableFuture<Map<String, MisbehaviourSet>> misbehaviourSetsStage = loader.stage("misbehaviour sets",
+				() -> modelObjectsHelper.getMisbehavioursForModel(model, true));
+		CompletableFuture<Map<String, TrustworthinessAttributeSet>> twasStage = loader.stage("trustworthiness attributes",
+				() -> modelObjectsHelper.getTWASForModel(model));
+
+		// Stages that need the results of earlier stages
+		CompletableFuture<Set<Asset>> assetsStage = loader.stage("assets",
+				() -> modelObjectsHelper.getAssetsForModel(model, true, join(controlSetsStage), join(misbehaviourSetsStage), join(twasStage)), // refresh cache
+				controlSetsStage, misbehaviourSetsStage, twasStage);
+		// Groups use the asset URIs cached by the assets stage
+		CompletableFuture<Set<AssetGroup>> assetGroupsStage = loader.stage("groups",
+				() -> modelObjectsHelper.getAssetGroups(model),
+				assetsStage);
 
-		loadingProgress.updateProgress(0.4, "Loading assets");
-		assets = modelObjectsHelper.getAssetsForModel(model, true, controlSetsMap, misbehaviourSets, twas); // refresh cache
+		// only load relations, threats, etc, if there are any assets!
+		BooleanSupplier noAssets = () -> join(assetsStage).isEmpty();
+		CompletableFuture<Set<Relation>> relationsStage = loader.stage("relations",
+				() -> noAssets.getAsBoolean() ? Collections.<Relation>emptySet() : new HashSet<>(modelObjectsHelper.getRelationsForModel(model)),
+				assetsStage);
+		CompletableFuture<Map<String, Pattern>> patternsStage = loader.stage("patterns",
+				() -> noAssets.getAsBoolean() ? Collections.<String, Pattern>emptyMap() : modelObjectsHelper.getPatternsForModel(model),
+				assetsStage);
+		CompletableFuture<Map<String, ControlStrategy>> controlStrategiesStage = loader.stage("control strategies",
+				() -> noAssets.getAsBoolean() ? Collections.<String, ControlStrategy>emptyMap() : modelObjectsHelper.getControlStrategiesForModel(model, join(controlSetsStage)),
+				assetsStage);
+		CompletableFuture<Set<Threat>> threatsStage = loader.stage("threats",
+				() -> noAssets.getAsBoolean() ? Collections.<Threat>emptySet() : modelObjectsHelper.getThreatsForModel(model, true, join(patternsStage), join(misbehaviourSetsStage), join(controlStrategiesStage), join(twasStage)),
+				patternsStage, controlStrategiesStage);
+		CompletableFuture<Map<String, ComplianceThreat>> complianceThreatsStage = loader.stage("compliance threats",
+				() -> noAssets.getAsBoolean() ? Collections.<String, ComplianceThreat>emptyMap() : modelObjectsHelper.getComplianceThreatsForModel(model, join(patternsStage), join(controlStrategiesStage)),
+				patternsStage, controlStrategiesStage);
+		CompletableFuture<Set<ComplianceSet>> complianceSetsStage = loader.stage("compliance sets",
+				() -> noAssets.getAsBoolean() ? Collections.<ComplianceSet>emptySet() : modelObjectsHelper.getComplianceSetsForModel(model, join(complianceThreatsStage)),
+				complianceThreatsStage);
+
+		levels = join(levelsStage);
+		controlSets = new HashSet<>(join(controlSetsStage).values());
+		misbehaviourSets = join(misbehaviourSetsStage);
+		twas = join(twasStage);
+		assets = join(assetsStage);
+		assetGroups = join(assetGroupsStage);
 
-		// loadingProgress.updateProgress(0.45, "Loading groups");
-		assetGroups = modelObjectsHelper.getAssetGroups(model);
-			
 		if (model.riskLevelsValid()) {
 			logger.debug("Getting model risk vector");
 			riskVector = modelObjectsHelper.getModelRiskVector(model, levels.get("RiskLevel"), misbehaviourSets);
@@ -109,31 +159,15 @@ class ModelData {
 			logger.debug("Risk levels not valid: returning null risk vector");
 			riskVector = null;
 		}
-		
-		// only load relations, threats, etc, if there are any assets!
-		if (assets.size() > 0) {
-			loadingProgress.updateProgress(0.5, "Loading relations");
-			relations = new HashSet<>(modelObjectsHelper.getRelationsForModel(model));
 
-			loadingProgress.updateProgress(0.6, "Loading threats");
-			controlStrategies = modelObjectsHelper.getControlStrategiesForModel(model, controlSetsMap);
+		relations = join(relationsStage);
+		controlStrategies = join(controlStrategiesStage);
+		threats = join(threatsStage);
+		complianceThreats = new HashSet<>(join(complianceThreatsStage).values());
+		complianceSets = join(complianceSetsStage);
 
-			Map<String, Pattern> patterns = modelObjectsHelper.getPatternsForModel(model);
-			threats = modelObjectsHelper.getThreatsForModel(model, true, patterns, misbehaviourSets, controlStrategies, twas);
-
-			loadingProgress.updateProgress(0.7, "Loading compliance threats");
-			Map<String, ComplianceThreat> complianceThreatsMap = modelObjectsHelper.getComplianceThreatsForModel(model, patterns, controlStrategies);
-			complianceThreats = new HashSet<>(complianceThreatsMap.values());
-
-			loadingProgress.updateProgress(0.8, "Loading compliance sets");
-			complianceSets = modelObjectsHelper.getComplianceSetsForModel(model, complianceThreatsMap);
-		} else {
-			relations = Collections.emptySet();
-			controlStrategies = Collections.emptyMap();
-			threats = Collections.emptySet();
-			complianceThreats = Collections.emptySet();
-			complianceSets = Collections.emptySet();
-		}
+		logger.info("ModelData(): execution time {} ms, stage times (ms): {}", System.currentTimeMillis() - start,
+				loadingProgress.getStageTimes());
 	}
 
 	/**
@@ -243,4 +277,56 @@ class ModelData {
 		INFO,
 		RISKS
 	}
+
+	/**
+	 * Wait for a stage, passing on any exception it threw.
+	 */
+	private static <T> T join(CompletableFuture<T> stage) {
+		try {
+			return stage.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs loading stages once the stages they depend on have finished, and reports their progress.
+	 */
+	private static class StagedLoader {
+		private static final int STAGES = 12;       // Number of stages, used to report progress
+
+		private final LoadingProgress loadingProgress;
+		private final Executor executor;
+		private int finished = 0;                   // Number of stages that have finished
+
+		StagedLoader(LoadingProgress loadingProgress, Executor executor) {
+			this.loadingProgress = loadingProgress;
+			this.executor = executor;
+		}
+
+		<T> CompletableFuture<T> stage(String name, Supplier<T> loader, CompletableFuture<?>... dependencies) {
+			if (dependencies.length == 0) {
+				return CompletableFuture.supplyAsync(() -> run(name, loader), executor);
+			}
+			return CompletableFuture.allOf(dependencies).thenApplyAsync(v -> run(name, loader), executor);
+		}
+
+		private <T> T run(String name, Supplier<T> loader) {
+			long start = System.currentTimeMillis();
+			T result = loader.get();
+			long time = System.currentTimeMillis() - start;
+
+			// Stages may finish at the same time, but the reported progress must not go backwards
+			synchronized (this) {
+				finished++;
+				loadingProgress.recordStageTime(name, time);
+				loadingProgress.updateProgress(0.9 * finished / STAGES, "Loaded " + name);
+			}
+			logger.debug("Loaded {} in {} ms", name, time);
+			return result;
+		}
+	}
 }
@@ -52,9 +52,14 @@ public class ModelFactory {
 	@Autowired
 	private SecureUrlHelper secureUrlHelper;
 
+	@Autowired
+	private ModelSnapshotCache modelSnapshots;
+
 	public Model createModel(String domainGraph, String userId) {
 		logger.info("Creating model for user '{}' with ontology <{}>", userId, domainGraph);
 
+		checkDomainGraph(domainGraph);
+
 		Model model = createModelWithoutModelInfo(null, null, domainGraph, userId);
 
 		//Load default ModelInfo from Jena
@@ -66,6 +71,10 @@ public class ModelFactory {
 		return model;
 	}
 
+	/**
+	 * Create a model to import into. The domain graph may be null if it is not known until the model has been
+	 * loaded, in which case it must then be set with setImportedDomainGraph().
+	 */
 	public Model createModelForImport(String uri, String domainGraph, String userId) {
 		logger.info("Creating model <{}> for user '{}' with ontology <{}>", uri, userId, domainGraph);
 
@@ -75,10 +84,26 @@ public class ModelFactory {
 		if (uri.isEmpty()) {
 			throw new IllegalArgumentException("Attempting to create Model with empty uri");
 		}
+		if (domainGraph != null) {
+			checkDomainGraph(domainGraph);
+		}
 
 		return createModelWithoutModelInfo(uri, null, domainGraph, userId);
 	}
 
+	/**
+	 * Set the domain graph of an imported model, once it has been found in the loaded model.
+	 */
+	public void setImportedDomainGraph(Model model, String domainGraph) {
+		logger.info("Setting ontology of imported model <{}> to <{}>", model.getUri(), domainGraph);
+
+		checkDomainGraph(domainGraph);
+
+		storeModelManager.addImport(model.getUri(), domainGraph);
+		model.setDomainGraph(domainGraph);
+		model.saveModelACL();
+	}
+
 	public Model createModelForCopy(String fromUri, String domainGraph, String userId) {
 		logger.info("Creating copy of model <{}> for user '{}' with ontology <{}>", fromUri, userId, domainGraph);
 
@@ -88,18 +113,13 @@ public class ModelFactory {
 		if (fromUri.isEmpty()) {
 			throw new IllegalArgumentException("Attempting to copy from Model with empty uri");
 		}
+		checkDomainGraph(domainGraph);
 
 		return createModelWithoutModelInfo(null, fromUri, domainGraph, userId);
 	}
 
 	private Model createModelWithoutModelInfo(String toUri, String fromUri, String domainGraph, String userId) {
 		logger.debug("createModelWithoutModelInfo fromUri:{}, toUri:{}, domainGraph: {}", fromUri, toUri, domainGraph);
-		if (domainGraph == null) {
-			throw new IllegalArgumentException("Attempting to create Model with null domainGraph");
-		}
-		if (domainGraph.isEmpty()) {
-			throw new IllegalArgumentException("Attempting to create Model with empty domainGraph");
-		}
 		if (userId == null) {
 			throw new IllegalArgumentException("Attempting to create Model with null userId");
 		}
@@ -116,6 +136,7 @@ public class ModelFactory {
 		modelACL.setModifiedBy(userId);
 
 		Model model = new Model(modelACL, modelRepository, storeModelManager);
+		model.setSnapshotCache(modelSnapshots);
 
 		//Save in Mongo to generate the model ID.
 		model.saveModelACL();
@@ -151,6 +172,15 @@ public class ModelFactory {
 		return model;
 	}
 
+	private static void checkDomainGraph(String domainGraph) {
+		if (domainGraph == null) {
+			throw new IllegalArgumentException("Attempting to create Model with null domainGraph");
+		}
+		if (domainGraph.isEmpty()) {
+			throw new IllegalArgumentException("Attempting to create Model with empty domainGraph");
+		}
+	}
+
 	public Model getModel(ModelACL modelACL) {
 		if (modelACL == null) {
 			throw new IllegalArgumentException("Attempting to get Model for null modelACL");
@@ -169,8 +199,9 @@ public class ModelFactory {
 
 	private Model getModelFromStore(ModelACL modelACL) {
 		Model model = new Model(modelACL, modelRepository, storeModelManager);
+		model.setSnapshotCache(modelSnapshots);
 
-		//Load ModelInfo from Jena
+		//Load ModelInfo from Jena, unless it is cached and the model has not changed since
 		model.loadModelInfo();
 
 		return model;
@@ -46,6 +46,21 @@ class ModelInfo {
 		return model;
 	}
 
+	/**
+	 * Copy of this ModelInfo, which may be changed without affecting the original.
+	 */
+	public ModelInfo copy() {
+		Model m = new Model(model.getLabel(), model.getDescription(), model.getDomain(), model.getDomainVersion(),
+			model.getValidatedDomainVersion(), model.getValid(), model.getUser(), model.getCreated(), model.getModified());
+		m.setUri(model.getUri());
+		m.setRisksValid(model.isRisksValid());
+		m.setRiskCalculationMode(model.getRiskCalculationMode());
+		m.setValidating(model.isValidating());
+		m.setCalculatingRisk(model.isCalculatingRisk());
+		m.setRisk(model.getRisk());
+		return new ModelInfo(m);
+	}
+
 	public String getUri() {
 		return model.getUri();
 	}
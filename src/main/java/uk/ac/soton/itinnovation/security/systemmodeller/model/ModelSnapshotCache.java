@@ -0,0 +1,363 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.model;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import uk.ac.soton.itinnovation.security.modelquerier.util.ModelChangeNotifier;
+
+/**
+ * In-memory cache of model snapshots, so that repeated requests for an unchanged model need not query the
+ * triple store again.
+ *
+ * Each model has a revision number, which starts at zero when the server starts and is increased by bump()
+ * whenever the model is changed (e.g. by a REST request that checks out the model for writing, by saving the
+ * model, or at the end of validation and risk calculation). Cached entries are stored with the revision they
+ * were loaded from, and are only returned if the model revision has not changed since. A revision must be
+ * obtained before the data are loaded, and the revision bumped after the data are changed, so an entry
+ * loaded while the model was being changed is never returned.
+ *
+ * Two things are cached for each model: the ModelInfo (with the domain version), and the JSON payload of the
+ * fully loaded model. The payloads are kept in files in the cache directory rather than in memory, so they can
+ * be copied to a response without holding the whole model as a String. The cache is bounded both by the number
+ * of models and by the total size of the payload files: the least recently used models are discarded first.
+ *
+ * The revision is also used to make ETags for REST responses, so clients can avoid fetching data that have
+ * not changed. Changes made to a system model graph in the triple store (reported via ModelChangeNotifier) also
+ * increase the revision, once the model has been registered by loading its ModelInfo.
+ */
+@Component
+public class ModelSnapshotCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelSnapshotCache.class);
+
+	private final Map<String, AtomicLong> revisions = new ConcurrentHashMap<>();     // Revision of each model, indexed by model ID
+
+	private final Map<String, String> modelIds = new ConcurrentHashMap<>();     // Model ID, indexed by system model graph URI
+
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);     // Distinguishes revisions from before a restart
+
+	private final Consumer<String> changeListener = this::graphChanged;
+
+	private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);     // In access order, so the eldest is the least recently used
+
+	private final int maxEntries;
+	private final long maxPayloadBytes;
+	private final Path payloadDir;
+	private long payloadBytes = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	@Autowired
+	public ModelSnapshotCache(
+		@Value("${model.cache.entries:1000}") int maxEntries,
+		@Value("${model.cache.payload.mb:256}") long maxPayloadMB,
+		@Value("${model.cache.dir:}") String payloadDir
+	) {
+		this.maxEntries = maxEntries;
+		this.maxPayloadBytes = maxPayloadMB * 1024 * 1024;
+		try {
+			if (payloadDir.isEmpty()) {
+				this.payloadDir = Files.createTempDirectory("model-cache");
+			} else {
+				this.payloadDir = Files.createDirectories(Paths.get(payloadDir));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create the model cache directory", e);
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		ModelChangeNotifier.addListener(changeListener);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		ModelChangeNotifier.removeListener(changeListener);
+		clear();
+	}
+
+	/**
+	 * Record the system model graph of a model, so changes to the graph increase the model revision.
+	 */
+	public void register(String modelId, String systemGraph) {
+		if (modelId != null && systemGraph != null) {
+			modelIds.put(systemGraph, modelId);
+		}
+	}
+
+	/**
+	 * Increase the revision of the model using a system model graph (or one of its inferred, UI or meta graphs).
+	 * Graphs of unknown models are ignored.
+	 */
+	public void graphChanged(String graph) {
+		String modelId = modelIds.get(graph);
+		if (modelId == null && graph.lastIndexOf('/') > 0) {
+			modelId = modelIds.get(graph.substring(0, graph.lastIndexOf('/')));
+		}
+		if (modelId != null) {
+			bump(modelId);
+		}
+	}
+
+	/**
+	 * Get the current revision of a model.
+	 */
+	public long getRevision(String modelId) {
+		return getCounter(modelId).get();
+	}
+
+	/**
+	 * Increase the revision of a model after it has been changed, and discard its cached data.
+	 *
+	 * @return the new revision
+	 */
+	public long bump(String modelId) {
+		long revision = getCounter(modelId).incrementAndGet();
+		synchronized (this) {
+			discard(snapshots.remove(modelId));
+		}
+		return revision;
+	}
+
+	/**
+	 * Get a strong ETag for a representation of a model at its current revision.
+	 *
+	 * @param modelId the model ID
+	 * @param variant anything else the representation depends on (e.g. query parameters)
+	 */
+	public String getETag(String modelId, String variant) {
+		return "\"" + epoch + "-" + getRevision(modelId) + "-" + Integer.toHexString(variant.hashCode()) + "\"";
+	}
+
+	/**
+	 * Forget a model, e.g. once it has been deleted.
+	 */
+	public void remove(String modelId) {
+		bump(modelId);
+		revisions.remove(modelId);
+		modelIds.values().remove(modelId);
+	}
+
+	/**
+	 * Discard all cached data, e.g. after a domain model has been changed. All revisions are increased, so
+	 * data being loaded at the time are not cached either.
+	 */
+	public synchronized void clear() {
+		revisions.values().forEach(AtomicLong::incrementAndGet);
+		snapshots.values().forEach(this::discard);
+		snapshots.clear();
+	}
+
+	/**
+	 * Get a copy of the cached ModelInfo for a model, or null if it has not been cached at this revision.
+	 */
+	synchronized ModelInfo getModelInfo(String modelId, long revision) {
+		Snapshot snapshot = get(modelId, revision);
+		return snapshot != null && snapshot.info != null ? snapshot.info.copy() : null;
+	}
+
+	/**
+	 * Get the domain version cached with the ModelInfo for a model.
+	 */
+	synchronized String getDomainVersion(String modelId, long revision) {
+		Snapshot snapshot = snapshots.get(modelId);
+		return snapshot != null && snapshot.revision == revision ? snapshot.domainVersion : null;
+	}
+
+	synchronized void putModelInfo(String modelId, long revision, ModelInfo info, String domainVersion) {
+		Snapshot snapshot = getForUpdate(modelId, revision);
+		if (snapshot != null) {
+			snapshot.info = info.copy();
+			snapshot.domainVersion = domainVersion;
+		}
+	}
+
+	/**
+	 * Check if the JSON payload of the fully loaded model has been cached at this revision.
+	 */
+	public synchronized boolean hasModelPayload(String modelId, long revision) {
+		Snapshot snapshot = get(modelId, revision);
+		return snapshot != null && snapshot.payload != null;
+	}
+
+	/**
+	 * Open the JSON payload of the fully loaded model, or return null if it has not been cached at this revision.
+	 * The payload can still be read if it is discarded from the cache before the reader is closed.
+	 */
+	public synchronized Reader openModelPayload(String modelId, long revision) {
+		Snapshot snapshot = get(modelId, revision);
+		if (snapshot == null || snapshot.payload == null) {
+			return null;
+		}
+		try {
+			return new InputStreamReader(new FileInputStream(snapshot.payload.toFile()), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			logger.warn("Cannot read cached model {}", modelId, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Create a new file for the JSON payload of a model, to be written and then passed to putModelPayload().
+	 */
+	public Path createPayloadFile(String modelId) throws IOException {
+		return Files.createTempFile(payloadDir, modelId + "-", ".json");
+	}
+
+	/**
+	 * Cache the JSON payload of the fully loaded model, written to a file from createPayloadFile(). The cache
+	 * takes over the file, and deletes it straight away if the payload is larger than the whole cache or was
+	 * loaded before the model was last changed.
+	 */
+	public synchronized void putModelPayload(String modelId, long revision, Path payload) {
+		long size;
+		try {
+			size = Files.size(payload);
+		} catch (IOException e) {
+			logger.warn("Cannot cache model {}", modelId, e);
+			delete(payload);
+			return;
+		}
+		Snapshot snapshot = size <= maxPayloadBytes ? getForUpdate(modelId, revision) : null;
+		if (snapshot == null) {
+			delete(payload);
+			return;
+		}
+		Path previous = snapshot.payload;
+		payloadBytes += size - snapshot.payloadSize;
+		snapshot.payload = payload;
+		snapshot.payloadSize = size;
+		delete(previous);
+		evict();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public synchronized int size() {
+		return snapshots.size();
+	}
+
+	public synchronized long getPayloadBytes() {
+		return payloadBytes;
+	}
+
+	private AtomicLong getCounter(String modelId) {
+		return revisions.computeIfAbsent(modelId, k -> new AtomicLong());
+	}
+
+	private Snapshot get(String modelId, long revision) {
+		Snapshot snapshot = snapshots.get(modelId);
+		if (snapshot != null && snapshot.revision == revision) {
+			hits.incrementAndGet();
+			return snapshot;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Get the entry to update for a model, or null if the revision is out of date (i.e. the data were loaded
+	 * before the model was last changed).
+	 */
+	private Snapshot getForUpdate(String modelId, long revision) {
+		if (revision != getRevision(modelId)) {
+			return null;
+		}
+		Snapshot snapshot = snapshots.get(modelId);
+		if (snapshot == null || snapshot.revision != revision) {
+			discard(snapshot);
+			snapshot = new Snapshot(revision);
+			snapshots.put(modelId, snapshot);
+			evict();
+		}
+		return snapshot;
+	}
+
+	private void evict() {
+		Iterator<Snapshot> it = snapshots.values().iterator();
+		while (it.hasNext() && (snapshots.size() > maxEntries || payloadBytes > maxPayloadBytes)) {
+			discard(it.next());
+			it.remove();
+		}
+	}
+
+	private void discard(Snapshot snapshot) {
+		if (snapshot != null) {
+			payloadBytes -= snapshot.payloadSize;
+			delete(snapshot.payload);
+		}
+	}
+
+	private static void delete(Path payload) {
+		if (payload != null) {
+			try {
+				Files.deleteIfExists(payload);
+			} catch (IOException e) {
+				logger.warn("Cannot delete cached model file {}", payload, e);
+			}
+		}
+	}
+
+	private static class Snapshot {
+		private final long revision;
+		private ModelInfo info;
+		private String domainVersion;
+		private Path payload;
+		private long payloadSize;
+
+		private Snapshot(long revision) {
+			this.revision = revision;
+		}
+	}
+
+}
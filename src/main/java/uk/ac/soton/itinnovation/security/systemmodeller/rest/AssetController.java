@@ -70,6 +70,8 @@ import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.UpdateControlsR
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.UpdateControlsResponse;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.AssetInvalidException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.BadRequestErrorException;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry.ModelLock;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelObjectsHelper;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.StoreModelManager;
 import uk.ac.soton.itinnovation.security.systemmodeller.util.SecureUrlHelper;
@@ -87,6 +89,9 @@ public class AssetController {
 	@Autowired
 	private ModelObjectsHelper modelHelper;
 
+	@Autowired
+	private ModelLockRegistry modelLocks;
+
 	@Autowired
 	private SecureUrlHelper secureUrlHelper;
 
@@ -97,6 +102,7 @@ public class AssetController {
 	 * 
 	 * @return a list of models' assets owned by the user
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/assets", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Set<Asset>> getAssets(@PathVariable String modelId) {
@@ -153,6 +159,7 @@ public class AssetController {
 	 * @param assetId ID of the asset
 	 * @return an Asset object (as JSON) describing the asset
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/assets/{assetId}", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Asset> getAssetInModel(@PathVariable String modelId, @PathVariable String assetId) {
@@ -180,6 +187,7 @@ public class AssetController {
 	 * @param assetId ID of the asset
 	 * @return a map of the TWAS data
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/assets/{assetId}/twas", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Map<String, TrustworthinessAttributeSet>> getAssetTwas(@PathVariable String modelId, @PathVariable String assetId) {
@@ -213,6 +221,7 @@ public class AssetController {
 	 * @param assetId ID of the asset
 	 * @return A map of the control sets
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/assets/{assetId}/controlsets", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Map<String, ControlSet>> getAssetControlSets(@PathVariable String modelId, @PathVariable String assetId) {
@@ -314,10 +323,9 @@ public class AssetController {
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
 
-		// get lock for model and synchronize on this
-		Object modelLock = modelHelper.getModelLock(model);
+		// get write lock for model
 		//logger.debug("updateAssetInModel: waiting for lock on model: {}...", model.getId());
-		synchronized(modelLock) {
+		try (ModelLock lock = modelLocks.writeLock(model)) {
 			//logger.debug("updateAssetInModel: aquired lock on model: {}", model.getId());
 
 			// look up asset by ID
@@ -374,9 +382,8 @@ public class AssetController {
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
 
-		// get lock for model and synchronize on this
-		Object modelLock = modelHelper.getModelLock(model);
-		synchronized(modelLock) {
+		// get write lock for model
+		try (ModelLock lock = modelLocks.writeLock(model)) {
 
 			// look up asset by ID
 			logger.debug("Looking up asset with ID: {}", assetId);
@@ -449,10 +456,9 @@ public class AssetController {
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
 
-		// get lock for model and synchronize on this
-		Object modelLock = modelHelper.getModelLock(model);
+		// get write lock for model
 		//logger.debug("updateAssetInModel: waiting for lock on model: {}...", model.getId());
-		synchronized(modelLock) {
+		try (ModelLock lock = modelLocks.writeLock(model)) {
 			//logger.debug("updateAssetInModel: aquired lock on model: {}", model.getId());
 
 			// look up asset by ID
@@ -514,9 +520,8 @@ public class AssetController {
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
 
-		// get lock for model and synchronize on this
-		Object modelLock = modelHelper.getModelLock(model);
-		synchronized(modelLock) {
+		// get write lock for model
+		try (ModelLock lock = modelLocks.writeLock(model)) {
 			// look up asset by ID
 			logger.debug("Looking up asset with ID: {}", assetId);
 			Asset updatedAsset = modelHelper.getAssetById(assetId, model, false); //just do basic lookup
@@ -555,10 +560,9 @@ public class AssetController {
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
 
-		// get lock for model and synchronize on this
-		Object modelLock = modelHelper.getModelLock(model);
+		// get write lock for model
 		logger.debug("deleteAssetInModel: waiting for lock on model: {}...", model.getId());
-		synchronized(modelLock) {
+		try (ModelLock lock = modelLocks.writeLock(model)) {
 			logger.debug("deleteAssetInModel: aquired lock on model: {}", model.getId());
 
 			// look up asset by ID
@@ -605,6 +609,7 @@ public class AssetController {
 	 * @param assetId ID of the asset
 	 * @return a JSON object describing the controls and threats for a given asset
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/assets/{assetId}/controls_and_threats", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<ControlsAndThreatsResponse> getControlsAndThreatsForAsset(@PathVariable String modelId, @PathVariable String assetId) {
@@ -824,6 +829,7 @@ public class AssetController {
 	 * @param assetId ID of the asset
 	 * @return Request response with a body containing a list of metadata pairs
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/assets/{assetId}/meta", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<List<MetadataPair>> getMetadataOnAsset(@PathVariable String modelId, @PathVariable String assetId) {
@@ -850,6 +856,7 @@ public class AssetController {
 	 * @param metadataJson A JSON array, the request body, specifying a list of metadata pairs (e.g. "[{"key":"k1", "value":"v1"}]")
 	 * @return Request response with a body containing a list of assets
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/assets/meta", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Set<Asset>> getAssetsByMetadata(@PathVariable String modelId, @RequestParam String metadataJson) {
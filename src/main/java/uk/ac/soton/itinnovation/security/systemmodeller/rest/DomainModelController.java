@@ -59,6 +59,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import uk.ac.soton.itinnovation.security.modelquerier.DomainModelCache;
 import uk.ac.soton.itinnovation.security.semanticstore.IStoreWrapper;
 import uk.ac.soton.itinnovation.security.systemmodeller.auth.KeycloakAdminClient;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelObjectsHelper;
@@ -204,6 +205,9 @@ public class DomainModelController {
 		logger.debug("domain model file: {}", f.getAbsolutePath());
 		logger.debug("icon mapping file: {}", iconMappingFile.getAbsolutePath());
 		storeModelManager.loadModel(domainModelName, domainUri, f.getAbsolutePath());
+
+		// Any domain model content cached for an earlier version is now out of date
+		DomainModelCache.invalidate(domainUri);
    
 		boolean paletteCreated = false;
 
@@ -246,6 +250,7 @@ public class DomainModelController {
 		if (! storeModelManager.deleteModel(modelGraph)) {
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown domain model: " + domain);
 		}
+		DomainModelCache.invalidate(modelGraph);
 
 		logger.info("Domain model deleted from triplestore: {}", domain);
 
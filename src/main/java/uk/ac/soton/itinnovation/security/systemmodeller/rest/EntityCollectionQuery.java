@@ -0,0 +1,245 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import uk.ac.soton.itinnovation.security.modelquerier.dto.EntityDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.LevelDB;
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.BadRequestErrorException;
+
+/**
+ * Paging, filtering and field selection for the entity collection endpoints of EntityController.
+ *
+ * Entities that pass all the filters are put in order, by URI or (if a sort order is given) by decreasing level
+ * and then by URI. At most `limit` entities are returned, starting after the position given by `cursor`. If
+ * there are more, the cursor for the next page is returned in the X-Next-Cursor response header. The number of
+ * entities that pass the filters is returned in the X-Total-Count header. A cursor identifies a position in the
+ * ordering rather than an offset, so pages do not shift if the model is changed between requests.
+ *
+ * If fields are given, each entity is returned with only those properties (and its URI).
+ *
+ * With no parameters, all entities are returned, as before.
+ */
+public class EntityCollectionQuery<T extends EntityDB> {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    private static final TypeReference<Map<String, Object>> PROPERTIES = new TypeReference<Map<String, Object>>() {};
+
+    private final Integer limit;
+    private final String sort;
+    private final Set<String> fields;
+
+    private int afterRank = Integer.MAX_VALUE;      // Position of the cursor, if any
+    private String afterUri = null;
+
+    private Predicate<T> filter = entity -> true;
+    private ToIntFunction<T> rank = entity -> 0;
+    private boolean sorted = false;
+
+    /**
+     * @param limit the maximum number of entities to return, or null for all of them
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param sort the name of the sort order, or null to sort by URI
+     * @param fields comma separated names of the properties to return, or null for all of them
+     * @throws BadRequestErrorException if the limit or cursor are invalid
+     */
+    public EntityCollectionQuery(Integer limit, String cursor, String sort, String fields) {
+        if (limit != null && limit < 1) {
+            throw new BadRequestErrorException("Limit must be at least 1");
+        }
+        this.limit = limit;
+        this.sort = sort;
+
+        if (cursor != null) {
+            try {
+                String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = position.indexOf(':');
+                afterRank = Integer.parseInt(position.substring(0, separator));
+                afterUri = position.substring(separator + 1);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new BadRequestErrorException("Invalid cursor");
+            }
+        }
+
+        if (fields != null) {
+            this.fields = new HashSet<>();
+            for (String field : fields.split(",")) {
+                if (!field.trim().isEmpty()) {
+                    this.fields.add(field.trim());
+                }
+            }
+            this.fields.add("uri");
+        } else {
+            this.fields = null;
+        }
+    }
+
+    /**
+     * Only return entities for which a property has the given value (if it is not null).
+     */
+    public EntityCollectionQuery<T> filterEquals(String value, Function<T, String> property) {
+        if (value != null) {
+            filter = filter.and(entity -> value.equals(property.apply(entity)));
+        }
+        return this;
+    }
+
+    /**
+     * Only return entities for which a flag has the given value (if it is not null).
+     */
+    public EntityCollectionQuery<T> filterFlag(Boolean value, Predicate<T> flag) {
+        if (value != null) {
+            filter = filter.and(entity -> flag.test(entity) == value);
+        }
+        return this;
+    }
+
+    /**
+     * Only return entities for which a level is at least the given level (if it is not null).
+     *
+     * @throws BadRequestErrorException if the level is not in the scale
+     */
+    public EntityCollectionQuery<T> filterMinLevel(String minLevel, Map<String, LevelDB> levels,
+            Function<T, String> level) {
+        if (minLevel != null) {
+            LevelDB min = levels.get(minLevel);
+            if (min == null) {
+                throw new BadRequestErrorException("Unknown level " + minLevel);
+            }
+            filter = filter.and(entity -> levelValue(levels, level.apply(entity)) >= min.getLevelValue());
+        }
+        return this;
+    }
+
+    /**
+     * Define a sort order, which puts entities with the highest level first. It is used if its name is the
+     * requested sort order.
+     */
+    public EntityCollectionQuery<T> sortOrder(String name, Map<String, LevelDB> levels, Function<T, String> level) {
+        if (name.equals(sort)) {
+            rank = entity -> levelValue(levels, level.apply(entity));
+            sorted = true;
+        }
+        return this;
+    }
+
+    /**
+     * Select the page of entities from a collection.
+     *
+     * @param entities the collection of entities, indexed by URI
+     * @param jsonMapper used to select the fields of each entity
+     * @throws BadRequestErrorException if the requested sort order is not defined
+     */
+    public ResponseEntity<Map<String, Object>> apply(Map<String, T> entities, ObjectMapper jsonMapper) {
+        if (sort != null && !sorted) {
+            throw new BadRequestErrorException("Unknown sort order " + sort);
+        }
+
+        // Find the entities that pass the filters, with their position in the ordering
+        List<Ranked<T>> matches = new ArrayList<>();
+        for (T entity : entities.values()) {
+            if (filter.test(entity)) {
+                matches.add(new Ranked<>(rank.applyAsInt(entity), entity));
+            }
+        }
+        matches.sort(Comparator.<Ranked<T>>comparingInt(r -> -r.rank).thenComparing(r -> r.entity.getUri()));
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        Ranked<T> last = null;
+        boolean more = false;
+        for (Ranked<T> match : matches) {
+            if (!isAfterCursor(match)) {
+                continue;
+            }
+            if (limit != null && page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.put(match.entity.getUri(), select(match.entity, jsonMapper));
+            last = match;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(TOTAL_COUNT_HEADER, Integer.toString(matches.size()));
+        if (more) {
+            response.header(NEXT_CURSOR_HEADER, toCursor(last));
+        }
+        return response.body(page);
+    }
+
+    private boolean isAfterCursor(Ranked<T> match) {
+        if (afterUri == null || match.rank < afterRank) {
+            return true;
+        }
+        return match.rank == afterRank && match.entity.getUri().compareTo(afterUri) > 0;
+    }
+
+    private Object select(T entity, ObjectMapper jsonMapper) {
+        if (fields == null) {
+            return entity;
+        }
+        Map<String, Object> properties = jsonMapper.convertValue(entity, PROPERTIES);
+        properties.keySet().retainAll(fields);
+        return properties;
+    }
+
+    private static String toCursor(Ranked<?> position) {
+        String cursor = position.rank + ":" + position.entity.getUri();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int levelValue(Map<String, LevelDB> levels, String uri) {
+        LevelDB level = uri != null ? levels.get(uri) : null;
+        return level != null ? level.getLevelValue() : -1;
+    }
+
+    private static class Ranked<T extends EntityDB> {
+        private final int rank;
+        private final T entity;
+
+        private Ranked(int rank, T entity) {
+            this.rank = rank;
+            this.entity = entity;
+        }
+    }
+
+}
@@ -26,6 +26,8 @@ package uk.ac.soton.itinnovation.security.systemmodeller.rest;
 
 import java.util.Map;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +37,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
@@ -48,12 +51,14 @@ import uk.ac.soton.itinnovation.security.modelquerier.dto.MisbehaviourSetDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.ThreatDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.TrustworthinessAttributeDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.TrustworthinessAttributeSetDB;
-import uk.ac.soton.itinnovation.security.semanticstore.AStoreWrapper;
-import uk.ac.soton.itinnovation.security.semanticstore.JenaTDBStoreWrapper;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.WebKeyRole;
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.BadRequestErrorException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.InternalServerErrorException;
-import uk.ac.soton.itinnovation.security.systemmodeller.semantics.StoreModelManager;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry.ModelLock;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelQuerierPool;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelQuerierPool.PooledQuerier;
 import uk.ac.soton.itinnovation.security.systemmodeller.util.SecureUrlHelper;
 
 /**
@@ -65,11 +70,17 @@ public class EntityController {
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     @Autowired
-    private StoreModelManager storeModelManager;
+    private ModelLockRegistry modelLocks;
+
+    @Autowired
+    private ModelQuerierPool querierPool;
 
     @Autowired
     private SecureUrlHelper secureUrlHelper;
 
+    @Autowired
+    private ObjectMapper jsonMapper;
+
     @Value("${admin-role}")
     public String adminRole;
 
@@ -82,6 +93,7 @@ public class EntityController {
     * @return A JSON representation of a threat object.
     * @throws InternalServerErrorException if an error occurs during report generation.
     */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/threats/{uri}", method = RequestMethod.GET)
     public ResponseEntity<ThreatDB> getEntitySystemThreat(@PathVariable String modelId, @PathVariable String uri) {
 
@@ -89,13 +101,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting threat");
 
@@ -116,33 +124,64 @@ public class EntityController {
 
     /**
      * Retrieves a list of JSON documents describing all threats associated with
-     * a specific system model.
+     * a specific system model. The threats may be filtered, sorted and returned
+     * a page at a time (see EntityCollectionQuery).
       *
      * @param modelId the String representation of the model object to seacrh
+     * @param limit the maximum number of entities to return (optional)
+     * @param cursor the cursor returned in the X-Next-Cursor header of the previous page (optional)
+     * @param sort "risk" or "likelihood" to return the highest risk or likelihood threats first (optional)
+     * @param fields comma separated names of the properties to return for each entity (optional)
+     * @param asset only return threats to this asset (optional)
+     * @param parent only return threats of this domain model type (optional)
+     * @param minRisk only return threats with at least this risk level (optional)
+     * @param minLikelihood only return threats with at least this likelihood (optional)
+     * @param rootCause only return threats that are (or are not) root causes (optional)
      * @return A JSON representation of threat objects map
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/threats", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, ThreatDB>> getEntitySystemThreats(@PathVariable String modelId) {
+    public ResponseEntity<Map<String, Object>> getEntitySystemThreats(@PathVariable String modelId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String asset,
+            @RequestParam(required = false) String parent,
+            @RequestParam(required = false) String minRisk,
+            @RequestParam(required = false) String minLikelihood,
+            @RequestParam(required = false) Boolean rootCause) {
 
         logger.info("Get system threats for model {}", modelId);
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
+        EntityCollectionQuery<ThreatDB> query = new EntityCollectionQuery<>(limit, cursor, sort, fields);
 
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting system threats");
 
             Map<String, ThreatDB> threats = querierDB.getThreats("system-inf");
 
-            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(threats);
-
+            Map<String, LevelDB> riskLevels = querierDB.getRiskLevels();
+            Map<String, LevelDB> likelihoodLevels = querierDB.getLikelihoodLevels();
+
+            return query
+                    .filterEquals(asset, ThreatDB::getThreatens)
+                    .filterEquals(parent, ThreatDB::getParent)
+                    .filterMinLevel(minRisk, riskLevels, ThreatDB::getRisk)
+                    .filterMinLevel(minLikelihood, likelihoodLevels, ThreatDB::getPrior)
+                    .filterFlag(rootCause, ThreatDB::isRootCause)
+                    .sortOrder("risk", riskLevels, ThreatDB::getRisk)
+                    .sortOrder("likelihood", likelihoodLevels, ThreatDB::getPrior)
+                    .apply(threats, jsonMapper);
+
+        } catch (BadRequestErrorException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Simple API get threats failed due to an error", e);
             throw new InternalServerErrorException(
@@ -159,6 +198,7 @@ public class EntityController {
      * @return A JSON representation of a misbehaviour set object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/misbehaviourSets/{uri}", method = RequestMethod.GET)
     public ResponseEntity<MisbehaviourSetDB> getEntitySystemMisbehaviourSet(@PathVariable String modelId,
             @PathVariable String uri) {
@@ -167,13 +207,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting misbehaviour set: {}", uri);
 
@@ -198,24 +234,39 @@ public class EntityController {
      * system model.
      *
      * @param modelId the String representation of the model object to seacrh
+     * @param limit the maximum number of entities to return (optional)
+     * @param cursor the cursor returned in the X-Next-Cursor header of the previous page (optional)
+     * @param sort "risk" or "likelihood" to return the highest risk or likelihood misbehaviour sets first (optional)
+     * @param fields comma separated names of the properties to return for each entity (optional)
+     * @param asset only return misbehaviour sets located at this asset (optional)
+     * @param parent only return misbehaviour sets of this domain model misbehaviour (optional)
+     * @param minRisk only return misbehaviour sets with at least this risk level (optional)
+     * @param minLikelihood only return misbehaviour sets with at least this likelihood (optional)
      * @return A JSON representation of misbehaviour set objects map
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/misbehaviourSets", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, MisbehaviourSetDB>> getEntitySystemMisbehaviourSets(
-            @PathVariable String modelId) {
+    public ResponseEntity<Map<String, Object>> getEntitySystemMisbehaviourSets(
+            @PathVariable String modelId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String asset,
+            @RequestParam(required = false) String parent,
+            @RequestParam(required = false) String minRisk,
+            @RequestParam(required = false) String minLikelihood) {
 
         logger.info("Get system misbehaviour sets for model {}", modelId);
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
+        EntityCollectionQuery<MisbehaviourSetDB> query = new EntityCollectionQuery<>(limit, cursor, sort, fields);
 
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting misbehaviour sets");
 
@@ -230,8 +281,20 @@ public class EntityController {
                 }
             }
 
-            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(msMap);
+            Map<String, LevelDB> riskLevels = querierDB.getRiskLevels();
+            Map<String, LevelDB> likelihoodLevels = querierDB.getLikelihoodLevels();
+
+            return query
+                    .filterEquals(asset, MisbehaviourSetDB::getLocatedAt)
+                    .filterEquals(parent, MisbehaviourSetDB::getMisbehaviour)
+                    .filterMinLevel(minRisk, riskLevels, MisbehaviourSetDB::getRisk)
+                    .filterMinLevel(minLikelihood, likelihoodLevels, MisbehaviourSetDB::getPrior)
+                    .sortOrder("risk", riskLevels, MisbehaviourSetDB::getRisk)
+                    .sortOrder("likelihood", likelihoodLevels, MisbehaviourSetDB::getPrior)
+                    .apply(msMap, jsonMapper);
 
+        } catch (BadRequestErrorException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Simple API get misbehaviours failed due to an error", e);
             throw new InternalServerErrorException(
@@ -248,6 +311,7 @@ public class EntityController {
     * @return A JSON representation of a control strategies object.
     * @throws InternalServerErrorException if an error occurs during report generation.
     */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/controlStrategies/{uri}", method = RequestMethod.GET)
     public ResponseEntity<ControlStrategyDB> getEntitySystemControlStrategy(@PathVariable String modelId,
             @PathVariable String uri) {
@@ -256,13 +320,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting control strategy");
 
@@ -285,31 +345,42 @@ public class EntityController {
      * Retrieves all control strategies (CSG) for a specific system model.
      *
      * @param modelId the String representation of the model object to seacrh
+     * @param limit the maximum number of entities to return (optional)
+     * @param cursor the cursor returned in the X-Next-Cursor header of the previous page (optional)
+     * @param fields comma separated names of the properties to return for each entity (optional)
+     * @param parent only return control strategies of this domain model type (optional)
      * @return A JSON representation of control strategies object map
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/controlStrategies", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, ControlStrategyDB>> getEntitySystemControlStrategies(
-            @PathVariable String modelId) {
+    public ResponseEntity<Map<String, Object>> getEntitySystemControlStrategies(
+            @PathVariable String modelId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String parent) {
 
         logger.info("Get system ControlStrategies for model {}", modelId);
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
+        EntityCollectionQuery<ControlStrategyDB> query = new EntityCollectionQuery<>(limit, cursor, null, fields);
 
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting control strategies");
 
             Map<String, ControlStrategyDB> csgs = querierDB.getControlStrategies("system-inf");
 
-            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(csgs);
+            return query
+                    .filterEquals(parent, ControlStrategyDB::getParent)
+                    .apply(csgs, jsonMapper);
 
+        } catch (BadRequestErrorException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Simple API get control strategies failed due to an error", e);
             throw new InternalServerErrorException(
@@ -326,6 +397,7 @@ public class EntityController {
      * @return A JSON representation of a control set object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/controlSets/{uri}", method = RequestMethod.GET)
     public ResponseEntity<ControlSetDB> getEntitySystemControlSet(@PathVariable String modelId,
             @PathVariable String uri) {
@@ -334,13 +406,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting control set: {}", uri);
 
@@ -364,31 +432,45 @@ public class EntityController {
      * Retrieves all control sets (CS) from a specific system model.
      *
      * @param modelId the String representation of the model object to seacrh
+     * @param limit the maximum number of entities to return (optional)
+     * @param cursor the cursor returned in the X-Next-Cursor header of the previous page (optional)
+     * @param fields comma separated names of the properties to return for each entity (optional)
+     * @param asset only return control sets located at this asset (optional)
+     * @param parent only return control sets of this domain model control (optional)
      * @return A JSON representation of a map of system model control sets
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/controlSets", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, ControlSetDB>> getEntitySystemControlSets(@PathVariable String modelId) {
+    public ResponseEntity<Map<String, Object>> getEntitySystemControlSets(@PathVariable String modelId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String asset,
+            @RequestParam(required = false) String parent) {
 
         logger.info("Get system ControlSets for model {}", modelId);
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
+        EntityCollectionQuery<ControlSetDB> query = new EntityCollectionQuery<>(limit, cursor, null, fields);
 
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting control sets");
 
             // Get control sets mainly from inferred graph, but include any proposed flag and coverage level from asserted graph
             Map<String, ControlSetDB> css = querierDB.getControlSets("system-inf", "system");
 
-            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(css);
+            return query
+                    .filterEquals(asset, ControlSetDB::getLocatedAt)
+                    .filterEquals(parent, ControlSetDB::getControl)
+                    .apply(css, jsonMapper);
 
+        } catch (BadRequestErrorException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Simple API get control sets failed due to an error", e);
             throw new InternalServerErrorException(
@@ -405,6 +487,7 @@ public class EntityController {
      * @return A JSON representation of an asset object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/assets/{uri}", method = RequestMethod.GET)
     public ResponseEntity<AssetDB> getEntitySystemAsset(@PathVariable String modelId, @PathVariable String uri) {
 
@@ -412,13 +495,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting asset: {}", uri);
 
@@ -444,6 +523,7 @@ public class EntityController {
      * @return A JSON representation of an asset object map
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/assets", method = RequestMethod.GET)
     public ResponseEntity<Map<String, AssetDB>> getEntitySystemAssets(@PathVariable String modelId) {
 
@@ -451,13 +531,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting assets");
 
@@ -481,6 +557,7 @@ public class EntityController {
      * @return A JSON representation of a trustworthiness attribute set object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/trustworthinessAttributeSets/{uri}", method = RequestMethod.GET)
     public ResponseEntity<TrustworthinessAttributeSetDB> getEntitySystemTWAS(@PathVariable String modelId,
             @PathVariable String uri) {
@@ -489,13 +566,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting TWAS: {}", uri);
 
@@ -518,31 +591,45 @@ public class EntityController {
      * Retrieves all trustworthiness attribute sets (TWAS) from a system model.
      *
      * @param modelId the String representation of the model object to seacrh
+     * @param limit the maximum number of entities to return (optional)
+     * @param cursor the cursor returned in the X-Next-Cursor header of the previous page (optional)
+     * @param fields comma separated names of the properties to return for each entity (optional)
+     * @param asset only return TWAS located at this asset (optional)
+     * @param parent only return TWAS of this domain model trustworthiness attribute (optional)
      * @return A JSON representation of a map of system model trustworthiness attribute set (TWAS)
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/system/trustworthinessAttributeSets", method = RequestMethod.GET)
-    public ResponseEntity<Map<String, TrustworthinessAttributeSetDB>> getEntitySystemTWAs(
-            @PathVariable String modelId) {
+    public ResponseEntity<Map<String, Object>> getEntitySystemTWAs(
+            @PathVariable String modelId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String asset,
+            @RequestParam(required = false) String parent) {
 
         logger.info("Get system TWAS for model {}", modelId);
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
+        EntityCollectionQuery<TrustworthinessAttributeSetDB> query = new EntityCollectionQuery<>(limit, cursor, null, fields);
 
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting TWAS");
 
             Map<String, TrustworthinessAttributeSetDB> twas = querierDB.getTrustworthinessAttributeSets("system-inf", "system");
 
-            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(twas);
+            return query
+                    .filterEquals(asset, TrustworthinessAttributeSetDB::getLocatedAt)
+                    .filterEquals(parent, TrustworthinessAttributeSetDB::getTrustworthinessAttribute)
+                    .apply(twas, jsonMapper);
 
+        } catch (BadRequestErrorException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Simple API get TWAs failed due to an error", e);
             throw new InternalServerErrorException("TWAs fetch failed. Please contact support for further assistance.");
@@ -558,6 +645,7 @@ public class EntityController {
      * @return A JSON representation of a trustworthiness attribute object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/trustworthinessAttributes/{uri}", method = RequestMethod.GET)
     public ResponseEntity<TrustworthinessAttributeDB> getEntityDomainTWA(@PathVariable String modelId,
             @PathVariable String uri) {
@@ -566,13 +654,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting TWAS");
 
@@ -597,6 +681,7 @@ public class EntityController {
      * @return A JSON representation of a map of system model trustworthiness attribute (TWA)
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/trustworthinessAttributes", method = RequestMethod.GET)
     public ResponseEntity<Map<String, TrustworthinessAttributeDB>> getEntityDomainTWAs(
             @PathVariable String modelId) {
@@ -605,13 +690,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting TWAs");
 
@@ -635,6 +716,7 @@ public class EntityController {
      * @return A JSON representation of a control object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/controls/{uri}", method = RequestMethod.GET)
     public ResponseEntity<ControlDB> getEntityDomainControl(@PathVariable String modelId, @PathVariable String uri) {
 
@@ -642,13 +724,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting domain control");
 
@@ -674,6 +752,7 @@ public class EntityController {
      * @return A JSON representation of a control object map
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/controls", method = RequestMethod.GET)
     public ResponseEntity<Map<String, ControlDB>> getEntityDomainControls(@PathVariable String modelId) {
 
@@ -681,13 +760,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting domain controls");
 
@@ -711,6 +786,7 @@ public class EntityController {
      * @return A JSON representation of a misbehaviour object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/misbehaviours/{uri}", method = RequestMethod.GET)
     public ResponseEntity<MisbehaviourDB> getEntityDomainMisbehaviour(@PathVariable String modelId,
             @PathVariable String uri) {
@@ -719,13 +795,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting domain misbehaviour");
 
@@ -752,6 +824,7 @@ public class EntityController {
      * @return A JSON representation of a misbehaviours object map
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/misbehaviours", method = RequestMethod.GET)
     public ResponseEntity<Map<String, MisbehaviourDB>> getEntityDomainMisbehaviours(@PathVariable String modelId) {
 
@@ -759,13 +832,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             logger.info("Getting domain misbehaviours");
 
@@ -789,6 +858,7 @@ public class EntityController {
      * @return A JSON representation of a level object
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/levels/{metric}/{uri}", method = RequestMethod.GET)
     public ResponseEntity<LevelDB> getEntityDomainLevel(@PathVariable String modelId, @PathVariable String metric,
             @PathVariable String uri) {
@@ -797,13 +867,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             LevelDB level = null;
 
@@ -849,6 +915,7 @@ public class EntityController {
      * @return A JSON representation of a level object map
      * @throws InternalServerErrorException if an error occurs during report generation
      */
+    @ModelRevisionETag
     @RequestMapping(value = "/models/{modelId}/entity/domain/levels/{metric}", method = RequestMethod.GET)
     public ResponseEntity<Map<String, LevelDB>> getEntityDomainLevels(@PathVariable String modelId,
             @PathVariable String metric) {
@@ -857,13 +924,9 @@ public class EntityController {
 
         final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-        AStoreWrapper store = storeModelManager.getStore();
-
-        try {
-            JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                    model.getModelStack(), false);
-
-            querierDB.init();
+        try (ModelLock lock = modelLocks.readLock(model);
+                PooledQuerier querier = querierPool.borrow(model)) {
+            JenaQuerierDB querierDB = querier.get();
 
             Map<String, LevelDB> levels;
 
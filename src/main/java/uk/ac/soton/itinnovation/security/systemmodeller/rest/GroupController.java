@@ -56,6 +56,8 @@ import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.DeleteGroupResp
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.AssetGroupInvalidException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.AssetInvalidException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.BadRequestErrorException;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry.ModelLock;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelObjectsHelper;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.StoreModelManager;
 import uk.ac.soton.itinnovation.security.systemmodeller.util.SecureUrlHelper;
@@ -71,6 +73,9 @@ public class GroupController {
 	@Autowired
 	private ModelObjectsHelper modelHelper;
 
+	@Autowired
+	private ModelLockRegistry modelLocks;
+
 	@Autowired
 	private SecureUrlHelper secureUrlHelper;
 	
@@ -418,10 +423,9 @@ public class GroupController {
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
 
-		// get lock for model and synchronize on this
-		Object modelLock = modelHelper.getModelLock(model);
+		// get write lock for model
 		logger.debug("deleteGroupInModel: waiting for lock on model: {}...", model.getId());
-		synchronized(modelLock) {
+		try (ModelLock lock = modelLocks.writeLock(model)) {
 			logger.debug("deleteGroupInModel: aquired lock on model: {}", model.getId());
 
 			logger.debug("Getting asset group {}", groupId);
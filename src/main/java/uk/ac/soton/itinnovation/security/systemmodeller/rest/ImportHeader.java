@@ -0,0 +1,134 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.rest;
+
+import java.io.InputStream;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.NotAcceptableErrorException;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.StoreModelManager;
+
+/**
+ * The start of an uploaded system model in N-Quads format, which gives the URI of the system model graph and
+ * the domain model it uses.
+ *
+ * The graph URI is taken from the first quad, which must be about a Spyderisk resource. The file is only
+ * parsed until the graph and domain model have been found, or for at most MAX_QUADS quads, so the domain model
+ * can usually be checked before the file is loaded. If the domain model comes later in the file, it is found
+ * by observing the quads while the file is loaded into the store, so the file is never parsed twice.
+ */
+class ImportHeader extends StreamRDFBase {
+
+	private static final String RESOURCE_PREFIX = "http://it-innovation.soton.ac.uk";
+	private static final Node DOMAIN_GRAPH = NodeFactory.createURI("http://it-innovation.soton.ac.uk/ontologies/trustworthiness/core#domainGraph");
+	private static final int MAX_QUADS = 10000;       // Number of quads searched for the domain model before loading
+
+	private int quads;
+
+	private String graphURI;
+	private String domainURI;
+
+	private ImportHeader() {
+	}
+
+	/**
+	 * Parse the start of an N-Quads stream. The stream is left part way through, and should be closed by the
+	 * caller.
+	 *
+	 * @throws NotAcceptableErrorException if the first quad is not about a Spyderisk resource
+	 * @throws org.apache.jena.riot.RiotException if the stream cannot be parsed
+	 */
+	static ImportHeader read(InputStream input) {
+		ImportHeader header = new ImportHeader();
+		try {
+			RDFDataMgr.parse(header, input, Lang.NQUADS);
+		} catch (HeaderComplete e) {
+			//found everything needed
+		}
+		return header;
+	}
+
+	/**
+	 * The URI of the system model graph (without any suffix for the UI, inferred or meta graphs), or null if
+	 * the file has no quads.
+	 */
+	String getGraphURI() {
+		return graphURI;
+	}
+
+	/**
+	 * The URI of the domain model graph, or null if it has not been found yet.
+	 */
+	String getDomainURI() {
+		return domainURI;
+	}
+
+	@Override
+	public void quad(Quad quad) {
+		if (graphURI == null) {
+			Node subject = quad.getSubject();
+			if (!subject.isURI() || !subject.getURI().startsWith(RESOURCE_PREFIX) || quad.getGraph() == null || !quad.getGraph().isURI()) {
+				throw new NotAcceptableErrorException("Incompatible file uploaded");
+			}
+			graphURI = removeSuffix(quad.getGraph().getURI());
+		}
+
+		observe(quad);
+
+		if (domainURI != null || ++quads >= MAX_QUADS) {
+			throw new HeaderComplete();
+		}
+	}
+
+	/**
+	 * Look for the domain model in a quad from the rest of the file, as it is loaded.
+	 */
+	void observe(Quad quad) {
+		if (domainURI == null && quad.getPredicate().equals(DOMAIN_GRAPH) && quad.getObject().isURI()) {
+			domainURI = quad.getObject().getURI();
+		}
+	}
+
+	private static String removeSuffix(String graph) {
+		for (String suffix : new String[] {StoreModelManager.UI_GRAPH, StoreModelManager.INF_GRAPH, StoreModelManager.META_GRAPH}) {
+			if (graph.endsWith(suffix)) {
+				return graph.substring(0, graph.length() - suffix.length());
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Stops the parser once the header has been read.
+	 */
+	private static class HeaderComplete extends RuntimeException {
+		private HeaderComplete() {
+			super(null, null, false, false);
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.JobMetricsDTO;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler.JobType;
+
+@RestController
+public class JobController {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Autowired
+	private ModelJobScheduler jobScheduler;
+
+	/**
+	 * REST method to GET the queue lengths and metrics of the background jobs for each job type
+	 * (admin only).
+	 *
+	 * @return a list of JobMetricsDTO objects, one for each job type
+	 */
+	@GetMapping(value = "/administration/jobs")
+	public ResponseEntity<List<JobMetricsDTO>> getJobMetrics() {
+
+		logger.info("Called REST method to GET job metrics");
+
+		List<JobMetricsDTO> jobs = new ArrayList<>();
+		for (JobType type : JobType.values()) {
+			jobs.add(new JobMetricsDTO(type.name(), jobScheduler.getQueueLength(type),
+					jobScheduler.getActiveCount(type), jobScheduler.getMetrics(type)));
+		}
+
+		return ResponseEntity.ok().body(jobs);
+	}
+}
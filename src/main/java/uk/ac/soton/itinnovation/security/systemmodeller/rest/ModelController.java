@@ -25,14 +25,14 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.systemmodeller.rest;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -46,9 +46,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -56,17 +55,22 @@ import java.util.zip.GZIPOutputStream;
 import javax.naming.SizeLimitExceededException;
 import javax.servlet.http.HttpServletRequest;
 
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.sparql.core.Quad;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -77,6 +81,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -94,12 +99,12 @@ import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.Recommendatio
 import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.RecommendationsAlgorithmConfig;
 import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.dto.TreeJsonDoc;
 import uk.ac.soton.itinnovation.security.semanticstore.AStoreWrapper;
-import uk.ac.soton.itinnovation.security.semanticstore.IStoreWrapper;
 import uk.ac.soton.itinnovation.security.semanticstore.JenaTDBStoreWrapper;
 import uk.ac.soton.itinnovation.security.semanticstore.util.SparqlHelper;
 import uk.ac.soton.itinnovation.security.systemmodeller.auth.KeycloakAdminClient;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.ModelFactory;
+import uk.ac.soton.itinnovation.security.systemmodeller.model.ModelSnapshotCache;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.WebKeyRole;
 import uk.ac.soton.itinnovation.security.systemmodeller.mongodb.IModelRepository;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.JobResponseDTO;
@@ -117,9 +122,15 @@ import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.ModelInv
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.NotAcceptableErrorException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.NotFoundErrorException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.RiskModeMismatchException;
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.ServiceUnavailableException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.UnprocessableEntityException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.UserForbiddenFromDomainException;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler.JobType;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry.ModelLock;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelObjectsHelper;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelQuerierPool;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.StoreModelManager;
 import uk.ac.soton.itinnovation.security.systemmodeller.util.ReportGenerator;
 import uk.ac.soton.itinnovation.security.systemmodeller.util.SecureUrlHelper;
@@ -148,9 +159,24 @@ public class ModelController {
 	@Autowired
 	private ModelObjectsHelper modelObjectsHelper;
 
+	@Autowired
+	private ModelJobScheduler jobScheduler;
+
+	@Autowired
+	private ModelLockRegistry modelLocks;
+
+	@Autowired
+	private ModelQuerierPool querierPool;
+
 	@Autowired
 	private ModelFactory modelFactory;
 
+	@Autowired
+	private ModelSnapshotCache modelSnapshots;
+
+	@Autowired
+	private ObjectMapper jsonMapper;
+
 	@Autowired
 	private SecureUrlHelper secureUrlHelper;
 
@@ -171,6 +197,12 @@ public class ModelController {
 	private static final String RECOMMENDATIONS = "Recommendations";
 	private static final String STARTING = "starting";
 
+	private static final String CORE = "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/core#";
+	private static final Node IS_VALID = NodeFactory.createURI(CORE + "isValid");
+	private static final Node RISKS_VALID = NodeFactory.createURI(CORE + "risksValid");
+
+	private static final int EXPORT_BUFFER_SIZE = 64 * 1024;     // Size of the gzip buffer for model exports
+
 	/**
 	 * Take the user IDs of the model owner, editor and modifier and look up the current username for them
 	 */
@@ -278,6 +310,37 @@ public class ModelController {
 		logger.warn("Model {} is already calculating risks - ignoring request {}", modelId, modelWebkey);
 	}
 
+	/**
+	 * Claim a model for a validation, risk calculation or recommendations task, unless it is already being validated
+	 * or having its risks calculated. Checking and claiming the model is atomic, so two such tasks never start on the
+	 * same model at once.
+	 *
+	 * @param model the model
+	 * @param modelWebkey the model ID or webkey used in the request
+	 * @param task the name of the task
+	 * @return true if the model has been claimed, in which case it must be released when the task has finished
+	 */
+	private boolean claimModel(Model model, String modelWebkey, String task) {
+		String modelId = model.getId();
+		String claimedBy = modelLocks.claim(modelId, task);
+
+		if (claimedBy == null && !model.isValidating() && !model.isCalculatingRisks()) {
+			return true;
+		}
+
+		if (claimedBy == null) {
+			modelLocks.release(modelId);
+		}
+
+		if (VALIDATION.equals(claimedBy) || (claimedBy == null && model.isValidating())) {
+			warnIsValidating(modelId, modelWebkey);
+		} else {
+			warnIsCalculatingRisks(modelId, modelWebkey);
+		}
+
+		return false;
+	}
+
 	/**
 	 * Returns a list of models for the current user. 
 	 *
@@ -430,9 +493,22 @@ public class ModelController {
 		LoadingProgress loadingProgress = modelObjectsHelper.createLoadingProgressOfModel(model, loadingID);
 		loadingProgress.updateProgress(0.0, "Loading model");
 
-		ScheduledFuture<?> future = Executors.newScheduledThreadPool(1).schedule(() -> {
+		//The revision must be obtained before loading, so that the loaded model is not cached if it changes meanwhile
+		final long revision = modelSnapshots.getRevision(model.getId());
+		loadingProgress.setRevision(revision);
 
-			model.loadModelData(modelObjectsHelper, loadingProgress);
+		//If this is coalesced with a loading job already waiting, the loading ID follows the progress of that job
+		modelObjectsHelper.submitLoadingExecution(loadingID, model.getId(), () -> {
+
+			//Use the serialised model from a previous request, if the model has not changed since
+			if (modelSnapshots.hasModelPayload(model.getId(), revision)) {
+				logger.info("Using cached model {} at revision {}", model.getId(), revision);
+				return model;
+			}
+
+			try (ModelLock lock = modelLocks.readLock(model)) {
+				model.loadModelData(modelObjectsHelper, loadingProgress, jobScheduler.getLoadingStageExecutor());
+			}
 
 			if (model.getAssets().size() > 0) {
 				// finally, check if misbahaviours are missing
@@ -443,10 +519,13 @@ public class ModelController {
 
 			setModelNamesFromIds(model);
 
-			return model;
-		}, 0, TimeUnit.SECONDS);
+			//Write the serialised model to the cache file, so it is not held in memory as a whole
+			Path payload = modelSnapshots.createPayloadFile(model.getId());
+			jsonMapper.writeValue(payload.toFile(), new ModelDTO(model));
+			modelSnapshots.putModelPayload(model.getId(), revision, payload);
 
-		modelObjectsHelper.registerLoadingExecution(loadingUUID.toString(), future);
+			return model;
+		});
 
 		ModelDTO responseModel = new ModelDTO(model);
 		responseModel.setLoadingId(loadingID); // return the loading id to the client, for subsequent progress checks
@@ -464,6 +543,7 @@ public class ModelController {
 	 * @return the FullModel instance
 	 * @throws java.rmi.UnexpectedException
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/info", method = RequestMethod.GET)
 	public ResponseEntity<ModelDTO> getModelInfo(@PathVariable String modelId, HttpServletRequest servletRequest) throws UnexpectedException {
 
@@ -492,6 +572,7 @@ public class ModelController {
 	 * @return the FullModel instance
 	 * @throws java.rmi.UnexpectedException
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/risks", method = RequestMethod.GET)
 	public ResponseEntity<ModelDTO> getModelAndRisks(@PathVariable String modelId, HttpServletRequest servletRequest) throws UnexpectedException {
 
@@ -519,6 +600,7 @@ public class ModelController {
 	 * @return the RiskVector instance (map of risk URI to RiskLevelCount objects)
 	 * @throws java.rmi.UnexpectedException
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/riskvector", method = RequestMethod.GET)
 	public ResponseEntity<Map<String, RiskLevelCount>> getModelRiskVector(@PathVariable String modelId, HttpServletRequest servletRequest) throws UnexpectedException {
 
@@ -664,13 +746,7 @@ public class ModelController {
 
 		String modelId = model.getId();
 
-		if (model.isValidating()) {
-			warnIsValidating(modelId, modelWriteId);
-			return new ResponseEntity<>(HttpStatus.ACCEPTED);
-		}
-
-		if (model.isCalculatingRisks()) {
-			warnIsCalculatingRisks(modelId, modelWriteId);
+		if (!claimModel(model, modelWriteId, VALIDATION)) {
 			return new ResponseEntity<>(HttpStatus.ACCEPTED);
 		}
 
@@ -678,36 +754,58 @@ public class ModelController {
 		validationProgress.updateProgress(0d, VALIDATION + " " + STARTING);
 
 		logger.debug("Marking as validating model [{}] {}", modelId, model.getName());
-		model.markAsValidating();
-
-		ScheduledFuture<?> future = Executors.newScheduledThreadPool(1).schedule(() -> {
-			boolean valid = false;
+		try (ModelLock lock = modelLocks.writeLock(model)) {
+			model.markAsValidating();
+		} catch (RuntimeException e) {
+			modelLocks.release(modelId);
+			throw e;
+		}
 
-			try {
-				//drop previous inference model:
-				//required because it might contain references to assets/relations that no longer exist
-				logger.debug("Deleting inferred model model");
-				validationProgress.updateProgress(0.1, "Deleting inferred model");
-				storeModelManager.deleteInferredModel(model.getUri());
-
-				//run validation
-				logger.debug("Calling model validator");
-				validationProgress.updateProgress(0.2, "Validating design time model");
-				ModelValidator validator = modelObjectsHelper.getModelValidatorForModel(model);
-				validator.validateDesigntimeModel(validationProgress);
+		Future<?> future;
+		try {
+			future = jobScheduler.submit(JobType.VALIDATION, modelId, () -> {
+				boolean valid = false;
+
+				try (ModelLock lock = modelLocks.writeLock(model)) {
+					//drop previous inference model:
+					//required because it might contain references to assets/relations that no longer exist
+					logger.debug("Deleting inferred model model");
+					validationProgress.updateProgress(0.1, "Deleting inferred model");
+					storeModelManager.deleteInferredModel(model.getUri());
+
+					//run validation
+					logger.debug("Calling model validator");
+					validationProgress.updateProgress(0.2, "Validating design time model");
+					ModelValidator validator = modelObjectsHelper.getModelValidatorForModel(model);
+					validator.validateDesigntimeModel(validationProgress);
+
+					valid = true;
+				} catch(Throwable t) {
+					logger.error("Validation failed:", t);
+					throw new Exception("Validation failed. Please contact support for further assistance.");
+				} finally {
+					//the inferred graph has changed, even if validation failed
+					modelSnapshots.bump(modelId);
+					//always reset the flags even if validation crashes
+					try (ModelLock lock = modelLocks.writeLock(model)) {
+						model.finishedValidating(valid);
+					} finally {
+						modelLocks.release(modelId);
+					}
+					validationProgress.updateProgress(1.0, "Validation complete");
+				}
 
-				valid = true;
-			} catch(Throwable t) {
-				logger.error("Validation failed:", t);
-				throw new Exception("Validation failed. Please contact support for further assistance.");
+				return true;
+			});
+		} catch (ServiceUnavailableException e) {
+			try (ModelLock lock = modelLocks.writeLock(model)) {
+				model.finishedValidating(false);
 			} finally {
-				//always reset the flags even if validation crashes
-				model.finishedValidating(valid);
-				validationProgress.updateProgress(1.0, "Validation complete");
+				modelLocks.release(modelId);
 			}
-
-			return true;
-		}, 0, TimeUnit.SECONDS);
+			validationProgress.updateProgress(1.0, "Validation failed", "failed", e.getMessage());
+			throw e;
+		}
 
 		modelObjectsHelper.registerTaskExecution(modelId, future);
 
@@ -726,11 +824,13 @@ public class ModelController {
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelWriteId, WebKeyRole.WRITE);
 
-		//clear inferred graph
-		modelObjectsHelper.clearInferredGraph(model);
+		try (ModelLock lock = modelLocks.writeLock(model)) {
+			//clear inferred graph
+			modelObjectsHelper.clearInferredGraph(model);
 
-		//clear validity flags
-		model.invalidate();
+			//clear validity flags
+			model.invalidate();
+		}
 
 		return ResponseEntity.status(HttpStatus.OK).build();
 	}
@@ -752,16 +852,6 @@ public class ModelController {
 
 		String modelId = model.getId();
 
-		if (model.isValidating()) {
-			warnIsValidating(modelId, modelWriteId);
-			return new ResponseEntity<>(HttpStatus.ACCEPTED);
-		}
-
-		if (model.isCalculatingRisks()) {
-			warnIsCalculatingRisks(modelId, modelWriteId);
-			return new ResponseEntity<>(HttpStatus.ACCEPTED);
-		}
-
 		RiskCalculationMode rcMode;
 		mode = mode != null ? mode.toUpperCase() : "FUTURE";
 		try {
@@ -773,30 +863,56 @@ public class ModelController {
 					"Invalid 'mode' parameter value " + mode + " , valid values are: " +
 							RiskCalculationMode.values());
 		}
+
+		if (!claimModel(model, modelWriteId, RISK_CALCULATION)) {
+			return new ResponseEntity<>(HttpStatus.ACCEPTED);
+		}
 		
         Progress validationProgress = modelObjectsHelper.getTaskProgressOfModel(RISK_CALCULATION, model);
 		validationProgress.updateProgress(0d, RISK_CALCULATION + " " + STARTING);
-		model.markAsCalculatingRisks(rcMode, true);
+		try (ModelLock lock = modelLocks.writeLock(model)) {
+			model.markAsCalculatingRisks(rcMode, true);
+		} catch (RuntimeException e) {
+			modelLocks.release(modelId);
+			throw e;
+		}
 
-		ScheduledFuture<?> future = Executors.newScheduledThreadPool(1).schedule(() -> {
-			//boolean valid = false;
-			RiskCalcResultsDB results = null;
+		Future<?> future;
+		try {
+			future = jobScheduler.submit(JobType.RISK_CALCULATION, modelId, () -> {
+				//boolean valid = false;
+				RiskCalcResultsDB results = null;
+
+				try (ModelLock lock = modelLocks.writeLock(model)) {
+					ModelValidator validator = modelObjectsHelper.getModelValidatorForModel(model);
+					logger.info("Calculating risks [{}] {}", modelId, model.getName());
+					results = validator.calculateRiskLevels(rcMode, true, validationProgress); //save results
+				} catch(Throwable t) {
+					logger.error("Risk calculation failed:", t);
+					throw new Exception("Risk calculation failed. Please contact support for further assistance.");
+				} finally {
+					//the saved risk levels have changed, even if the risk calculation failed
+					modelSnapshots.bump(modelId);
+					//always reset the flags even if the risk calculation crashes
+					try (ModelLock lock = modelLocks.writeLock(model)) {
+						model.finishedCalculatingRisks(results != null, rcMode, true);
+					} finally {
+						modelLocks.release(modelId);
+					}
+					validationProgress.updateProgress(1.0, "Risk calculation complete");
+				}
 
-			try {
-				ModelValidator validator = modelObjectsHelper.getModelValidatorForModel(model);
-				logger.info("Calculating risks [{}] {}", modelId, model.getName());
-				results = validator.calculateRiskLevels(rcMode, true, validationProgress); //save results
-			} catch(Throwable t) {
-				logger.error("Risk calculation failed:", t);
-				throw new Exception("Risk calculation failed. Please contact support for further assistance.");
+				return true;
+			});
+		} catch (ServiceUnavailableException e) {
+			try (ModelLock lock = modelLocks.writeLock(model)) {
+				model.finishedCalculatingRisks(false, rcMode, true);
 			} finally {
-				//always reset the flags even if the risk calculation crashes
-				model.finishedCalculatingRisks(results != null, rcMode, true);
-				validationProgress.updateProgress(1.0, "Risk calculation complete");
+				modelLocks.release(modelId);
 			}
-
-			return true;
-		}, 0, TimeUnit.SECONDS);
+			validationProgress.updateProgress(1.0, "Risk calculation failed", "failed", e.getMessage());
+			throw e;
+		}
 
 		modelObjectsHelper.registerTaskExecution(modelId, future);
 
@@ -836,47 +952,50 @@ public class ModelController {
 		final Model model;
 		Progress validationProgress;
 
-		synchronized(this) {
-			if (save) {
-				model = secureUrlHelper.getModelFromUrlThrowingException(modelWriteId, WebKeyRole.WRITE);
-			} else {
-				// If we are not saving the risk calculation then we permit it with read-only AuthZ
-				// It's not completely clear that this is correct as there may be some side-effect that we've overlooked but it will do for now.
-				model = secureUrlHelper.getModelFromUrlThrowingException(modelWriteId, WebKeyRole.READ);
-			}
+		if (save) {
+			model = secureUrlHelper.getModelFromUrlThrowingException(modelWriteId, WebKeyRole.WRITE);
+		} else {
+			// If we are not saving the risk calculation then we permit it with read-only AuthZ
+			// It's not completely clear that this is correct as there may be some side-effect that we've overlooked but it will do for now.
+			model = secureUrlHelper.getModelFromUrlThrowingException(modelWriteId, WebKeyRole.READ);
+		}
 
-			String modelId = model.getId();
+		String modelId = model.getId();
 
-			if (model.isValidating()) {
-				warnIsValidating(modelId, modelWriteId);
-				return ResponseEntity.status(HttpStatus.OK).body(new RiskCalcResultsDB());
-			}
+		if (!claimModel(model, modelWriteId, RISK_CALCULATION)) {
+			return ResponseEntity.status(HttpStatus.OK).body(new RiskCalcResultsDB());
+		}
 
-			if (model.isCalculatingRisks()) {
-				warnIsCalculatingRisks(modelId, modelWriteId);
-				return ResponseEntity.status(HttpStatus.OK).body(new RiskCalcResultsDB());
-			}
+		RiskCalcResultsDB results = null;
 
+		try {
 			validationProgress = modelObjectsHelper.getTaskProgressOfModel(RISK_CALCULATION, model);
-			validationProgress.updateProgress(0d, RISK_CALCULATION + " " + STARTING);			
-			model.markAsCalculatingRisks(rcMode, save);
-		} //synchronized block
+			validationProgress.updateProgress(0d, RISK_CALCULATION + " " + STARTING);
 
-		RiskCalcResultsDB results = null;
+			// Setting the flags changes the model info, so needs the write lock even if the results are not saved
+			try (ModelLock lock = modelLocks.writeLock(model)) {
+				model.markAsCalculatingRisks(rcMode, save);
+			}
 
-		try {
-			ModelValidator validator = modelObjectsHelper.getModelValidatorForModel(model);
-			logger.info("Calculating risks [{}] {}", model.getId(), model.getName());
-			results = validator.calculateRiskLevels(rcMode, save, validationProgress);
-		} catch(Throwable t) {
-			logger.error("Risk calculation failed:", t);
-			throw new InternalServerErrorException("Risk calculation failed. Please contact support for further assistance.");
+			// Saving the results changes the model, otherwise other readers may run at the same time
+			try (ModelLock lock = save ? modelLocks.writeLock(model) : modelLocks.readLock(model)) {
+				ModelValidator validator = modelObjectsHelper.getModelValidatorForModel(model);
+				logger.info("Calculating risks [{}] {}", model.getId(), model.getName());
+				results = validator.calculateRiskLevels(rcMode, save, validationProgress);
+			} catch(Throwable t) {
+				logger.error("Risk calculation failed:", t);
+				throw new InternalServerErrorException("Risk calculation failed. Please contact support for further assistance.");
+			} finally {
+				//always reset the flags even if the risk calculation crashes
+				try (ModelLock lock = modelLocks.writeLock(model)) {
+					model.finishedCalculatingRisks(results != null, rcMode, save);
+				}
+				validationProgress.updateProgress(1.0, "Risk calculation complete");
+			}
 		} finally {
-			//always reset the flags even if the risk calculation crashes
-			model.finishedCalculatingRisks(results != null, rcMode, save);
-			validationProgress.updateProgress(1.0, "Risk calculation complete");
+			modelLocks.release(modelId);
 		}
-		
+
 		return ResponseEntity.status(HttpStatus.OK).body(results);
 	}
 
@@ -896,7 +1015,11 @@ public class ModelController {
 
 		logger.warn("Deleting model [{}] with uri <{}>", modelid, model.getUri());
 
-		model.delete();
+		try (ModelLock lock = modelLocks.writeLock(model)) {
+			model.delete();
+		}
+		modelLocks.remove(model.getId());
+		querierPool.remove(model.getId());
 
 		return ResponseEntity.status(HttpStatus.OK).build();
 	}
@@ -904,54 +1027,26 @@ public class ModelController {
 	/**
 	 * This REST method exports all graphs for a model as n-quads (.nq.gz format)
 	 *
+	 * The quads are compressed and sent as they are read from the store, so the export is never held in memory.
+	 *
 	 * @param modelId the String representation of the validated model object to fetch
 	 * @return the serialised model
 	 * @throws java.rmi.UnexpectedException
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/export", method = RequestMethod.GET)
-	public ResponseEntity<ByteArrayResource> export(@PathVariable String modelId) throws UnexpectedException {
+	public ResponseEntity<StreamingResponseBody> export(@PathVariable String modelId) throws UnexpectedException {
 
 		logger.info("Called REST method to GET serialised model {}", modelId);
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
-		//get quads from store
-		String quads = storeModelManager.getStore().export(
-				IStoreWrapper.Format.NQ,
-				null,
+		return exportQuads(model, model.getName() + " ", null,
 				model.getUri(),
 				storeModelManager.getInferredModel(model.getUri()),
 				storeModelManager.getUIModel(model.getUri()),
 				storeModelManager.getMetaModel(model.getUri())
 		);
-
-		ByteArrayResource resource = null;
-
-		//ZIP the quads file into gzipped data
-		try{
-			ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-			GZIPOutputStream zippedOutput = new GZIPOutputStream(byteOutput);
-
-			zippedOutput.write(quads.getBytes("UTF-8"));
-			zippedOutput.close();
-
-			//prepare response (zipped quads in textfile to download)
-			resource = new ByteArrayResource(byteOutput.toByteArray());
-
-		} catch (IOException e){
-
-			logger.error(e.getMessage());
-
-		}
-
-		HttpHeaders headers = new HttpHeaders();
-		headers.add("Cache-Control", "no-cache, no-store, must-revalidate");
-		headers.add("Pragma", "no-cache");
-		headers.add("Expires", "0");
-		headers.add("Content-disposition", "attachment;filename=" + model.getName() + " " +
-				(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm")).format(new Date()) + ".nq.gz");
-
-		return ResponseEntity.status(HttpStatus.OK).headers(headers).contentType(MediaType.TEXT_PLAIN).body(resource);
 	}
 
 	/**
@@ -961,74 +1056,68 @@ public class ModelController {
 	 * @return the serialised model
 	 * @throws java.rmi.UnexpectedException
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/exportAsserted", method = RequestMethod.GET)
-	public ResponseEntity<ByteArrayResource> exportAsserted(@PathVariable String modelId) throws UnexpectedException {
+	public ResponseEntity<StreamingResponseBody> exportAsserted(@PathVariable String modelId) throws UnexpectedException {
 
 		logger.info("Called REST method to GET serialised model {} (asserted facts only)", modelId);
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 		
-		//As the exported model will not have inferred data, we need to set the valid flag to false
-		//therefore, we set this temporarily (if necessaey), then set it back again after the export
+		//As the exported model will not have inferred data, the valid flags must be false in the export.
+		//These are changed as the quads are written, so the stored model is not changed.
 
 		logger.debug("Model valid: {}", model.isValid());
-		
-		boolean resetValidFlag = false;
-		boolean resetRiskLevelsFlag = false;
-		
+
+		UnaryOperator<Quad> invalidate = null;
+
 		if (model.isValid()) {
-			logger.debug("Model is valid (temporarily invalidating for export)");
-			resetValidFlag = true;
-			if (model.riskLevelsValid()) {
-				resetRiskLevelsFlag = true;
-			}
-			model.invalidate();
+			logger.debug("Model is valid (invalidating in export)");
+			Node modelNode = NodeFactory.createURI(model.getUri());
+			Node notValid = NodeFactory.createLiteral("false", XSDDatatype.XSDboolean);
+			invalidate = quad -> {
+				if (quad.getSubject().equals(modelNode) &&
+						(quad.getPredicate().equals(IS_VALID) || quad.getPredicate().equals(RISKS_VALID))) {
+					return new Quad(quad.getGraph(), quad.getSubject(), quad.getPredicate(), notValid);
+				}
+				return quad;
+			};
 		}
 		else {
 			logger.debug("Model is already invalid");
 		}
 
-		//get quads from store
-		String quads = storeModelManager.getStore().export(
-				IStoreWrapper.Format.NQ,
-				null,
+		return exportQuads(model, model.getName() + " asserted ", invalidate,
 				model.getUri(),
 				storeModelManager.getUIModel(model.getUri())
 		);
+	}
 
-		ByteArrayResource resource = null;
-
-		//ZIP the quads file into gzipped data
-		try{
-			ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-			GZIPOutputStream zippedOutput = new GZIPOutputStream(byteOutput);
+	/**
+	 * Builds a response which writes graphs of a model as gzipped n-quads. The model's read lock is held while
+	 * the quads are written, which happens after the request handler has returned.
+	 */
+	private ResponseEntity<StreamingResponseBody> exportQuads(Model model, String filenamePrefix,
+			UnaryOperator<Quad> map, String... graphs) {
 
-			zippedOutput.write(quads.getBytes("UTF-8"));
-			zippedOutput.close();
-			//prepare response (quads in textfile to download)
-			resource = new ByteArrayResource(byteOutput.toByteArray());
+		final String modelId = model.getId();
+		final AStoreWrapper store = storeModelManager.getStore();
 
-		} catch (IOException e){
-			logger.error(e.getMessage());
-		}
+		StreamingResponseBody body = out -> {
+			try (ModelLock lock = modelLocks.readLock(modelId);
+					GZIPOutputStream zippedOutput = new GZIPOutputStream(StreamUtils.nonClosing(out), EXPORT_BUFFER_SIZE)) {
+				store.exportQuads(zippedOutput, map, graphs);
+			}
+		};
 
 		HttpHeaders headers = new HttpHeaders();
 		headers.add("Cache-Control", "no-cache, no-store, must-revalidate");
 		headers.add("Pragma", "no-cache");
 		headers.add("Expires", "0");
-		headers.add("Content-disposition", "attachment;filename=" + model.getName() + " asserted " +
+		headers.add("Content-disposition", "attachment;filename=" + filenamePrefix +
 				(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm")).format(new Date()) + ".nq.gz");
-		
-		//If we have temporarily invalidated the model above, reset the flag to true
-		if (resetValidFlag) {
-			model.setValid(true);
-			if (resetRiskLevelsFlag) {
-				model.setRiskLevelsValid(true);
-			}
-			model.save();
-		}
 
-		return ResponseEntity.status(HttpStatus.OK).headers(headers).contentType(MediaType.TEXT_PLAIN).body(resource);
+		return ResponseEntity.status(HttpStatus.OK).headers(headers).contentType(MediaType.TEXT_PLAIN).body(body);
 	}
 
 	/*
@@ -1093,111 +1182,44 @@ public class ModelController {
 		if (!file.isEmpty()) {
 			logger.debug("Uploaded file {}, size {}", file.getOriginalFilename(), file.getSize());
 
-			//parse quads to find URIs for system, ui and inf graphs
-			String oldGraphURI = null;
-			try {
-				InputStream inputStream;
-				BufferedReader bufferedReader;
-
-				//need to decompress before parsing!
-				if (file.getOriginalFilename().endsWith("gz")) {
-					inputStream = new GZIPInputStream(file.getInputStream());
-					Reader decoder = new InputStreamReader(inputStream, "UTF-8");
-					bufferedReader = new BufferedReader(decoder);
-				} else {
-					inputStream = file.getInputStream();
-					bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
-				}
-
-				//every line line contains one of the system model graphs at the end
-				String line = bufferedReader.readLine();
-
-				boolean validDomain = false;
-				boolean canAccessAllDomains = keycloakAdminClient.currentUserHasRole(adminRole);
-
-				if (!line.startsWith("<http://it-innovation.soton.ac.uk")) {
-					throw new NotAcceptableErrorException("Incompatible file uploaded");
-				}
-				do {
-					if (oldGraphURI==null) {
-						oldGraphURI = line.substring(line.lastIndexOf("<") + 1).replace("> .", "");
-						if (oldGraphURI.endsWith(StoreModelManager.UI_GRAPH)) {
-							oldGraphURI = oldGraphURI.replace(StoreModelManager.UI_GRAPH, "");
-						}
-						if (oldGraphURI.endsWith(StoreModelManager.INF_GRAPH)) {
-							oldGraphURI = oldGraphURI.replace(StoreModelManager.INF_GRAPH, "");
-						}
-						if (oldGraphURI.endsWith(StoreModelManager.META_GRAPH)) {
-							oldGraphURI = oldGraphURI.replace(StoreModelManager.META_GRAPH, "");
-						}
-					}
-					
-					if (!validDomain && line.contains("<http://it-innovation.soton.ac.uk/ontologies/trustworthiness/core#domainGraph>")) {
-						String domainURI = line.substring(0, line.lastIndexOf("<")-1);
-						domainURI = domainURI.substring(domainURI.lastIndexOf("<") + 1, domainURI.lastIndexOf(">"));
-						logger.debug("Model domain: {}", domainURI);
-
-						boolean domainModelExists = storeModelManager.domainModelExists(domainURI);
-
-						if (!domainModelExists) {
-							logger.error("The system model attempted to use non-existent domain: {}", domainURI);
-							throw new UnprocessableEntityException("The system model requires a knowledgebase that is not installed: " + domainURI);
-						}
-
-						if (!canAccessAllDomains && !modelObjectsHelper.canUserAccessDomain(domainURI, user.getUsername())) {
-							logger.info("User: {} blocked from importing model with domain {}", user.getUsername(), domainURI);
-							throw new UserForbiddenFromDomainException();
-						}
-
-						validDomain = true;
-						domainGraph = domainURI;
-					}
-
-					if (oldGraphURI!=null && validDomain){
-						break;
-					}
-				} while ((line = bufferedReader.readLine()) != null);
-			} catch (IOException e) {
+			//parse the start of the file to find the URI of the system graph and the domain model
+			//(only the start of the file is read, as parsing stops once these are found or after a fixed number of quads)
+			ImportHeader header;
+			try (InputStream input = openUpload(file)) {
+				header = ImportHeader.read(input);
+			} catch (IOException | RiotException e) {
 				logger.error("Could not parse uploaded file", e);
 				throw new NotAcceptableErrorException("Incompatible file uploaded");
 			}
 
+			String oldGraphURI = header.getGraphURI();
+
 			if (oldGraphURI==null) {
 				logger.error("Could not find graph URI in uploaded file");
 				throw new NotAcceptableErrorException("Incompatible graph type");
 			}
 
+			//check the domain model before loading the file, if it is at the start of the file
+			if (header.getDomainURI() != null) {
+				domainGraph = header.getDomainURI();
+				checkImportDomain(domainGraph, user);
+			}
+
+			//the domain model may still be null here, if it is set below once found in the rest of the file
 			Model model = modelFactory.createModelForImport(oldGraphURI, domainGraph, user.getId());
 
 			String newGraphURI = model.getUri();
 
-			//create temporary file to load model into triple store from
+			//load the quads into the triple store in one pass, changing the graph and model URIs as they are parsed
+			//(and looking for the domain model in them, if it was not at the start of the file)
 			try {
-				//write string to file
-				File toImport = File.createTempFile("system-modeller-system-", file.getOriginalFilename().endsWith(".gz")?".nq.gz":".nq");
-				try {
-					file.transferTo(toImport);
-				} catch (IOException e) {
-					logger.error("Could not upload domain model", e);
-				}
-
-				//call import method
 				logger.debug("Loading model into triple store");
-				if (oldGraphURI.equals(newGraphURI)) {
-					storeModelManager.getStore().load(toImport.getAbsolutePath());
-				} else {
-					storeModelManager.getStore().load(toImport.getAbsolutePath(), oldGraphURI, newGraphURI);
-				}
-				logger.debug("Done loading model into triple store");
-				//delete temporary file
-				toImport.delete();
-
-				//update graph URI if it has changed
 				if (!oldGraphURI.equals(newGraphURI)) {
 					logger.info("Changing imported model URI from {} to {}", oldGraphURI, newGraphURI);
-					storeModelManager.changeSystemModelURI(newGraphURI, oldGraphURI, newGraphURI);
 				}
-			} catch (IOException | IllegalStateException ex) {
+				storeModelManager.getStore().load(openUpload(file), oldGraphURI, newGraphURI, header::observe);
+				logger.debug("Done loading model into triple store");
+			} catch (IOException | RuntimeException ex) {
 				logger.error("Could not load file contents into store", ex);
 
 				//tidy up
@@ -1206,6 +1228,24 @@ public class ModelController {
 				throw new InternalServerErrorException("Failed to load model into RDF store");
 			}
 
+			if (domainGraph == null) {
+				domainGraph = header.getDomainURI();
+
+				//the loaded model must be deleted if its domain model cannot be used
+				try {
+					if (domainGraph == null) {
+						logger.error("Could not find domain model in uploaded file");
+						throw new NotAcceptableErrorException("Incompatible file uploaded");
+					}
+					checkImportDomain(domainGraph, user);
+				} catch (RuntimeException ex) {
+					model.delete();
+					throw ex;
+				}
+
+				modelFactory.setImportedDomainGraph(model, domainGraph);
+			}
+
 			//now that the model graphs have been stored in Jena read the model info (status flags etc) from Jena
 			model.loadModelInfo();
 
@@ -1241,6 +1281,37 @@ public class ModelController {
 		return listModels();
 	}
 
+	/**
+	 * Check that the domain model of an imported model is installed, and that the user can use it.
+	 */
+	private void checkImportDomain(String domainURI, UserRepresentation user) {
+		logger.debug("Model domain: {}", domainURI);
+
+		boolean domainModelExists = storeModelManager.domainModelExists(domainURI);
+
+		if (!domainModelExists) {
+			logger.error("The system model attempted to use non-existent domain: {}", domainURI);
+			throw new UnprocessableEntityException("The system model requires a knowledgebase that is not installed: " + domainURI);
+		}
+
+		boolean canAccessAllDomains = keycloakAdminClient.currentUserHasRole(adminRole);
+
+		if (!canAccessAllDomains && !modelObjectsHelper.canUserAccessDomain(domainURI, user.getUsername())) {
+			logger.info("User: {} blocked from importing model with domain {}", user.getUsername(), domainURI);
+			throw new UserForbiddenFromDomainException();
+		}
+	}
+
+	/**
+	 * Open an uploaded model file, which may be gzipped.
+	 */
+	private static InputStream openUpload(MultipartFile file) throws IOException {
+		if (file.getOriginalFilename().endsWith("gz")) {
+			return new GZIPInputStream(file.getInputStream());
+		}
+		return file.getInputStream();
+	}
+
 	/**
 	 *  Get an update on the validation operation running the model given the ID of the model.
 	 *
@@ -1267,10 +1338,9 @@ public class ModelController {
 	public ResponseEntity<Progress> getRiskCalcProgress(@PathVariable String modelId) throws UnexpectedException {
 		logger.info("Called REST method to GET risk calculation progress for model {}", modelId);
 
-		synchronized(this) {
-			final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
-			return ResponseEntity.status(HttpStatus.OK).body(modelObjectsHelper.getTaskProgressOfModel(RISK_CALCULATION, model));
-		}
+		// No model lock, as progress must be available while the risk calculation has the model locked
+		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
+		return ResponseEntity.status(HttpStatus.OK).body(modelObjectsHelper.getTaskProgressOfModel(RISK_CALCULATION, model));
 	}
 
 	/**
@@ -1284,12 +1354,11 @@ public class ModelController {
 	public ResponseEntity<Progress> getRecommendationsProgress(@PathVariable String modelId) throws UnexpectedException {
 		logger.info("Called REST method to GET recommendations progress for model {}", modelId);
 
-		synchronized(this) {
-			final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
-			Progress progress = modelObjectsHelper.getTaskProgressOfModel(RECOMMENDATIONS, model);
-			logger.info("{}", progress);
-			return ResponseEntity.status(HttpStatus.OK).body(progress);
-		}
+		// No model lock, as progress must be available while the recommendations job has the model locked
+		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
+		Progress progress = modelObjectsHelper.getTaskProgressOfModel(RECOMMENDATIONS, model);
+		logger.info("{}", progress);
+		return ResponseEntity.status(HttpStatus.OK).body(progress);
 	}
 
 	/**
@@ -1321,34 +1390,53 @@ public class ModelController {
 		}
 
 		ModelDTO responseModel = null;
+		Reader modelPayload = null;
 
-		// get updated model (if available)
+		// get updated model (if available), which is written straight to the response from the cached JSON if possible
 		Model model = loadingProgress.getModel();
 
 		if (model != null) {
-			responseModel = new ModelDTO(model);
+			modelPayload = modelSnapshots.openModelPayload(model.getId(), loadingProgress.getRevision());
+			if (modelPayload == null) {
+				if (!model.hasModelData()) {
+					// The loading job used the cached JSON, which has since been discarded, so load the model now
+					try (ModelLock lock = modelLocks.readLock(model)) {
+						model.loadModelData(modelObjectsHelper, new LoadingProgress(model.getId()), jobScheduler.getLoadingStageExecutor());
+					}
+					setModelNamesFromIds(model);
+				}
+				responseModel = new ModelDTO(model);
+			}
 		}
 
-		LoadingProgressResponse loadingProgressResponse = new LoadingProgressResponse(loadingProgress, responseModel);
+		LoadingProgressResponse loadingProgressResponse = new LoadingProgressResponse(loadingProgress, responseModel, modelPayload);
 
 		return ResponseEntity.status(HttpStatus.OK).body(loadingProgressResponse);
 	}
 
 	/**
-	 * This REST method generates a JSON report from the given model
+	 * This REST method generates a JSON report from the given model. The model is loaded before the response
+	 * is started, and the report is then written to the response one entity at a time.
 	 *
 	 * @param modelId
 	 * @return A JSON report
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/report", method = RequestMethod.GET)
-	public ResponseEntity<Object> generateReport(@PathVariable String modelId) {
+	public ResponseEntity<StreamingResponseBody> generateReport(@PathVariable String modelId) {
 		logger.info("Called REST method to GET report for model {}", modelId);
 
 		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
 
 		ReportGenerator reportGenerator = new ReportGenerator();
-		String reportJson = reportGenerator.generate(modelObjectsHelper, model);
-		return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(reportJson);
+		reportGenerator.setUp(modelObjectsHelper, model);
+
+		StreamingResponseBody body = out -> {
+			Writer writer = new OutputStreamWriter(StreamUtils.nonClosing(out), StandardCharsets.UTF_8);
+			reportGenerator.write(model, writer);
+		};
+
+		return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(body);
 	}
 
 	/**
@@ -1364,6 +1452,7 @@ public class ModelController {
      * @throws MisbehaviourSetInvalidException if an invalid target URIs set is provided
      * @throws InternalServerErrorException   if an error occurs during report generation
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/threatgraph", method = RequestMethod.GET)
 	public ResponseEntity<TreeJsonDoc> calculateThreatGraph(
             @PathVariable String modelId,
@@ -1386,7 +1475,7 @@ public class ModelController {
 
         AStoreWrapper store = storeModelManager.getStore();
 
-        try {
+        try (ModelLock lock = modelLocks.readLock(model)) {
             JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
                     model.getModelStack(), false);
 
@@ -1462,27 +1551,22 @@ public class ModelController {
 
         final String rm = riskMode;
 
-		final Model model;
-		Progress progress;
-
-		synchronized(this) {
-			model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
-            String mId = model.getId();
-
-			if (model.isValidating()) {
-				warnIsValidating(mId, modelId);
-				return new ResponseEntity<>(HttpStatus.ACCEPTED);
-			}
+		// The search runs without a model lock, and takes the write lock only while it changes controls in the model
+		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.READ);
+		String mId = model.getId();
 
-			if (model.isCalculatingRisks()) {
-				warnIsCalculatingRisks(mId, modelId);
-				return new ResponseEntity<>(HttpStatus.ACCEPTED);
-			}
+		if (!claimModel(model, modelId, RECOMMENDATIONS)) {
+			return new ResponseEntity<>(HttpStatus.ACCEPTED);
+		}
 
-			progress = modelObjectsHelper.getTaskProgressOfModel(RECOMMENDATIONS, model);
-			progress.updateProgress(0d, RECOMMENDATIONS + " " + STARTING);
+		Progress progress = modelObjectsHelper.getTaskProgressOfModel(RECOMMENDATIONS, model);
+		progress.updateProgress(0d, RECOMMENDATIONS + " " + STARTING);
+		try (ModelLock lock = modelLocks.writeLock(model)) {
 			model.markAsCalculatingRisks(rcMode, false);
-		} //synchronized block
+		} catch (RuntimeException e) {
+			modelLocks.release(mId);
+			throw e;
+		}
 
 		AStoreWrapper store = storeModelManager.getStore();
 
@@ -1490,48 +1574,75 @@ public class ModelController {
         String jobId = UUID.randomUUID().toString();
         logger.info("Submitting async job with id: {}", jobId);
 
-        ScheduledFuture<?> future = Executors.newScheduledThreadPool(1).schedule(() -> {
-            boolean success = false;
-
-            try {
-                JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
-                        model.getModelStack(), true);
-
-                querierDB.initForRiskCalculation();
-
-                logger.info("Calculating recommendations");
-
-                AttackPathDataset apd = new AttackPathDataset(querierDB);
-
-                // validate targetURIs (if set)
-				if (!apd.checkMisbehaviourList(finalTargetURIs)) {
-                    logger.error("Invalid target URIs set");
-                    throw new MisbehaviourSetInvalidException("Invalid misbehaviour set");
-                }
-
-                // validate acceptable risk level
-                if (!apd.checkRiskLevelKey(acceptableRiskLevel)) {
-                    logger.error("Invalid acceptableRiskLevel: {}", acceptableRiskLevel);
-                    throw new MisbehaviourSetInvalidException("Invalid acceptableRiskLevel value");
+        Future<?> future;
+        try {
+            future = jobScheduler.submit(JobType.RECOMMENDATIONS, model.getId(), () -> {
+                boolean success = false;
+
+                try {
+                    JenaQuerierDB querierDB = new JenaQuerierDB(((JenaTDBStoreWrapper) store).getDataset(),
+                            model.getModelStack(), true);
+
+                    // The search proposes and withdraws controls many times, so the change is reported once at the end
+                    querierDB.setChangeNotificationEnabled(false);
+
+                    AttackPathDataset apd;
+                    try (ModelLock lock = modelLocks.readLock(model)) {
+                        querierDB.initForRiskCalculation();
+                        apd = new AttackPathDataset(querierDB);
+                    }
+
+                    logger.info("Calculating recommendations");
+
+                    // validate targetURIs (if set)
+					if (!apd.checkMisbehaviourList(finalTargetURIs)) {
+                        logger.error("Invalid target URIs set");
+                        throw new MisbehaviourSetInvalidException("Invalid misbehaviour set");
+                    }
+
+                    // validate acceptable risk level
+                    if (!apd.checkRiskLevelKey(acceptableRiskLevel)) {
+                        logger.error("Invalid acceptableRiskLevel: {}", acceptableRiskLevel);
+                        throw new MisbehaviourSetInvalidException("Invalid acceptableRiskLevel value");
+                    }
+
+                    RecommendationsAlgorithmConfig recaConfig = new RecommendationsAlgorithmConfig(querierDB, model.getId(), rm, localSearch, acceptableRiskLevel, finalTargetURIs);
+                    recaConfig.setModelWriter(change -> {
+                        try (ModelLock lock = modelLocks.writeLock(model)) {
+                            change.run();
+                        }
+                    });
+                    recommendationsService.startRecommendationTask(jobId, recaConfig, progress);
+
+                    success = true;
+                } catch (BadRequestErrorException e) {
+                    throw e;
+                } catch (Exception e) {
+                    logger.error("Recommendations failed due to an error", e);
+                    throw new InternalServerErrorException(
+                            "Finding recommendations failed. Please contact support for further assistance.");
+                } finally {
+                    //the controls were changed during the search, even if it failed
+                    modelSnapshots.bump(mId);
+                    //always reset the flags even if the risk calculation crashes
+                    try (ModelLock lock = modelLocks.writeLock(model)) {
+                        model.finishedCalculatingRisks(success, rcMode, false);
+                    } finally {
+                        modelLocks.release(mId);
+                    }
+                    progress.updateProgress(1.0, "Recommendations complete");
                 }
-
-                RecommendationsAlgorithmConfig recaConfig = new RecommendationsAlgorithmConfig(querierDB, model.getId(), rm, localSearch, acceptableRiskLevel, finalTargetURIs);
-                recommendationsService.startRecommendationTask(jobId, recaConfig, progress);
-
-                success = true;
-            } catch (BadRequestErrorException e) {
-                throw e;
-            } catch (Exception e) {
-                logger.error("Recommendations failed due to an error", e);
-                throw new InternalServerErrorException(
-                        "Finding recommendations failed. Please contact support for further assistance.");
+				return true;
+            });
+        } catch (ServiceUnavailableException e) {
+            try (ModelLock lock = modelLocks.writeLock(model)) {
+                model.finishedCalculatingRisks(false, rcMode, false);
             } finally {
-                //always reset the flags even if the risk calculation crashes
-                model.finishedCalculatingRisks(success, rcMode, false);
-                progress.updateProgress(1.0, "Recommendations complete");
+                modelLocks.release(mId);
             }
-			return true;
-		}, 0, TimeUnit.SECONDS);
+            progress.updateProgress(1.0, "Recommendations failed", "failed", e.getMessage());
+            throw e;
+        }
 
 		modelObjectsHelper.registerTaskExecution(model.getId(), future);
 
@@ -1553,12 +1664,11 @@ public class ModelController {
 
         logger.info("Got request to cancel recommendation task for model: {}, jobId: {}", modelId, jobId);
 
-		synchronized(this) {
-			final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
-			Progress progress = modelObjectsHelper.getTaskProgressOfModel(RECOMMENDATIONS, model);
-			progress.setMessage("Cancelling");
-			recommendationsService.updateRecommendationJobState(jobId, RecommendationJobState.ABORTED, "job cancelled");
-		}
+		// No model lock, as the recommendations job being cancelled may have the model locked
+		final Model model = secureUrlHelper.getModelFromUrlThrowingException(modelId, WebKeyRole.WRITE);
+		Progress progress = modelObjectsHelper.getTaskProgressOfModel(RECOMMENDATIONS, model);
+		progress.setMessage("Cancelling");
+		recommendationsService.updateRecommendationJobState(jobId, RecommendationJobState.ABORTED, "job cancelled");
 
         return new ResponseEntity<>(HttpStatus.OK);
     }
@@ -0,0 +1,126 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.rest;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
+import uk.ac.soton.itinnovation.security.systemmodeller.model.ModelSnapshotCache;
+import uk.ac.soton.itinnovation.security.systemmodeller.model.WebKeyRole;
+import uk.ac.soton.itinnovation.security.systemmodeller.util.SecureUrlHelper;
+
+/**
+ * Increases the revision of a model at the end of any REST request that may have changed it, so that cached
+ * copies of the model are not used again.
+ *
+ * Requests are marked by SecureUrlHelper when they obtain a model with write (or owner) access, if they use a
+ * mutating HTTP method (POST, PUT, PATCH or DELETE). GET requests with write access (e.g. progress polls) do not
+ * change the model themselves: the jobs they start, and changes committed to the triple store, increase the
+ * revision separately. The revision is only increased once the request is complete, so that data loaded by other requests while the model was
+ * being changed are never cached against the new revision.
+ *
+ * Read-only methods annotated with ModelRevisionETag get an ETag made from the model revision, the query string
+ * and the user. If the request has a matching If-None-Match header, the method is not called and the response
+ * is 304 Not Modified. The ETag is worked out before the method runs, so a response that overlaps a change to
+ * the model is given the old revision, and will be fetched again next time.
+ */
+@Component
+public class ModelRevisionInterceptor implements HandlerInterceptor {
+
+	private static final String CHANGED_MODEL_ID = ModelRevisionInterceptor.class.getName() + ".modelId";
+
+	private static final Set<String> MUTATING_METHODS = new HashSet<>(Arrays.asList("POST", "PUT", "PATCH", "DELETE"));
+
+	@Autowired
+	private ModelSnapshotCache modelSnapshots;
+
+	@Autowired
+	@Lazy
+	private SecureUrlHelper secureUrlHelper;
+
+	/**
+	 * Record that the current request may change a model, if it uses a mutating HTTP method. Does nothing for
+	 * other requests, or outside a request (e.g. in a background job).
+	 */
+	public static void markModelChanged(String modelId) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes instanceof ServletRequestAttributes && modelId != null
+				&& MUTATING_METHODS.contains(((ServletRequestAttributes) attributes).getRequest().getMethod())) {
+			attributes.setAttribute(CHANGED_MODEL_ID, modelId, RequestAttributes.SCOPE_REQUEST);
+		}
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		//Streamed responses (e.g. exports) are dispatched again once written, but were checked the first time
+		if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+			return true;
+		}
+		ModelRevisionETag annotation = ((HandlerMethod) handler).getMethodAnnotation(ModelRevisionETag.class);
+		if (annotation == null || !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+			return true;
+		}
+
+		@SuppressWarnings("unchecked")
+		Map<String, String> pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		String webKey = pathVariables != null ? pathVariables.get(annotation.value()) : null;
+		if (webKey == null) {
+			return true;
+		}
+
+		//Check access first, so a 304 response reveals nothing to users who may not read the model
+		//The model is kept in a request attribute by SecureUrlHelper, so the handler does not look it up again
+		Model model = secureUrlHelper.getModelFromUrlThrowingException(webKey, WebKeyRole.READ);
+
+		String variant = request.getQueryString() + " " + request.getRemoteUser();
+		String etag = modelSnapshots.getETag(model.getId(), variant);
+
+		//Sets the ETag header, and the 304 status if the client already has this representation
+		return !new ServletWebRequest(request, response).checkNotModified(etag);
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		Object modelId = request.getAttribute(CHANGED_MODEL_ID);
+		if (modelId != null) {
+			modelSnapshots.bump((String) modelId);
+		}
+	}
+
+}
@@ -25,13 +25,18 @@
 
 package uk.ac.soton.itinnovation.security.systemmodeller.rest;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
 @Configuration
 public class MvcConfig extends WebMvcConfigurerAdapter {
 
+	@Autowired
+	private ModelRevisionInterceptor modelRevisionInterceptor;
+
 	@Override
 	public void addViewControllers(ViewControllerRegistry registry) {
 
@@ -42,4 +47,9 @@ public class MvcConfig extends WebMvcConfigurerAdapter {
 		registry.addViewController("/admin").setViewName("admin");
 	}
 
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(modelRevisionInterceptor);
+	}
+
 }
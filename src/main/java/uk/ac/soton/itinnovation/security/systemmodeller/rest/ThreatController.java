@@ -80,6 +80,7 @@ public class ThreatController {
 	 * @param cached boolean to optionally request for cached threats
 	 * @return a list of models' threats owned by the user
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/threats", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Set<ThreatDTO>> getThreats(@PathVariable String modelId, @RequestParam(required = false) boolean cached) {
@@ -119,6 +120,7 @@ public class ThreatController {
 	 * @param threatId
 	 * @return a JSON object describing the Threat with the given threat id
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/threats/{threatId}", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<ThreatDTO> getThreatInModel(@PathVariable String modelId, @PathVariable String threatId) {
@@ -246,6 +248,7 @@ public class ThreatController {
 	 * @param modelId
 	 * @return map of control sets
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/controlsets", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Map<String, ControlSet>> getControlSets(@PathVariable String modelId) {
@@ -265,6 +268,7 @@ public class ThreatController {
 	 * @param modelId
 	 * @return a list of controls
 	 */
+	@ModelRevisionETag
 	@RequestMapping(value = "/models/{modelId}/controls", method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<Map<String, Control>> getControls(@PathVariable String modelId) {
@@ -0,0 +1,105 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.rest.dto;
+
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler.JobMetrics;
+
+/**
+ * Current state and metrics of one type of background job. Times are in milliseconds.
+ */
+public class JobMetricsDTO {
+
+	private String type;
+	private int queueLength;
+	private int activeCount;
+	private long submitted;
+	private long coalesced;
+	private long rejected;
+	private long completed;
+	private long failed;
+	private long meanQueueTime;
+	private long maxQueueTime;
+	private long meanRunTime;
+	private long maxRunTime;
+
+	public JobMetricsDTO(String type, int queueLength, int activeCount, JobMetrics metrics) {
+		this.type = type;
+		this.queueLength = queueLength;
+		this.activeCount = activeCount;
+		this.submitted = metrics.getSubmitted();
+		this.coalesced = metrics.getCoalesced();
+		this.rejected = metrics.getRejected();
+		this.completed = metrics.getCompleted();
+		this.failed = metrics.getFailed();
+		this.meanQueueTime = metrics.getMeanQueueTime();
+		this.maxQueueTime = metrics.getMaxQueueTime();
+		this.meanRunTime = metrics.getMeanRunTime();
+		this.maxRunTime = metrics.getMaxRunTime();
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public int getQueueLength() {
+		return queueLength;
+	}
+
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	public long getSubmitted() {
+		return submitted;
+	}
+
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	public long getRejected() {
+		return rejected;
+	}
+
+	public long getCompleted() {
+		return completed;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public long getMeanQueueTime() {
+		return meanQueueTime;
+	}
+
+	public long getMaxQueueTime() {
+		return maxQueueTime;
+	}
+
+	public long getMeanRunTime() {
+		return meanRunTime;
+	}
+
+	public long getMaxRunTime() {
+		return maxRunTime;
+	}
+}
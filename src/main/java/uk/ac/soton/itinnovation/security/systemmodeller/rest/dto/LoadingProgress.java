@@ -24,6 +24,8 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.systemmodeller.rest.dto;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
@@ -36,6 +38,8 @@ public class LoadingProgress {
 	private String status;
 	private String error;
 	private Model model;
+	private long revision;     // Revision of the model when it was requested, used to find its cached JSON
+	private final Map<String, Long> stageTimes = new LinkedHashMap<>();     // Time taken by each loading stage in ms, in the order they finished
 
 	public LoadingProgress(String modelId) {
 		this.modelId = modelId;
@@ -63,7 +67,7 @@ public class LoadingProgress {
 		this.updateProgress(progress, message, status, error, model);
 	}
 
-	public void updateProgress(double progress, String message, String status, String error, Model model) {
+	public synchronized void updateProgress(double progress, String message, String status, String error, Model model) {
 		this.progress = progress;
 		this.message = message;
 		this.status = status;
@@ -77,6 +81,17 @@ public class LoadingProgress {
 		}
 	}
 
+	/**
+	 * Record the time taken by a stage of loading the model.
+	 */
+	public synchronized void recordStageTime(String stage, long time) {
+		stageTimes.put(stage, time);
+	}
+
+	public synchronized Map<String, Long> getStageTimes() {
+		return new LinkedHashMap<>(stageTimes);
+	}
+
 	public String getModelId() {
 		return this.modelId;
 	}
@@ -124,5 +139,13 @@ public class LoadingProgress {
 	public void setModel(Model model) {
 		this.model = model;
 	}
+
+	public long getRevision() {
+		return revision;
+	}
+
+	public void setRevision(long revision) {
+		this.revision = revision;
+	}
 	
 }
@@ -24,6 +24,16 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.systemmodeller.rest.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
 public class LoadingProgressResponse {
 
 	private double progress;
@@ -31,13 +41,25 @@ public class LoadingProgressResponse {
 	private String status;
 	private String error;
 	private ModelDTO model;
+	private Reader modelPayload;
+	private Map<String, Long> stageTimes;
 
 	public LoadingProgressResponse(LoadingProgress loadingProgress, ModelDTO model) {
+		this(loadingProgress, model, null);
+	}
+
+	/**
+	 * @param modelPayload reader for the cached JSON of the loaded model, which is used instead of the
+	 * ModelDTO if it is not null, and closed once it has been written
+	 */
+	public LoadingProgressResponse(LoadingProgress loadingProgress, ModelDTO model, Reader modelPayload) {
 		this.progress = loadingProgress.getProgress();
 		this.message = loadingProgress.getMessage();
 		this.status = loadingProgress.getStatus();
 		this.error = loadingProgress.getError();
 		this.model = model;
+		this.modelPayload = modelPayload;
+		this.stageTimes = loadingProgress.getStageTimes();
 	}
 
 	public double getProgress() {
@@ -72,6 +94,7 @@ public class LoadingProgressResponse {
 		this.error = error;
 	}
 
+	@JsonIgnore
 	public ModelDTO getModel() {
 		return model;
 	}
@@ -79,5 +102,63 @@ public class LoadingProgressResponse {
 	public void setModel(ModelDTO model) {
 		this.model = model;
 	}
-	
+
+	@JsonIgnore
+	public Reader getModelPayload() {
+		return modelPayload;
+	}
+
+	public void setModelPayload(Reader modelPayload) {
+		this.modelPayload = modelPayload;
+	}
+
+	/**
+	 * The model to be returned, which is written straight to the response rather than built in memory first.
+	 */
+	@JsonProperty("model")
+	public Object getModelValue() {
+		return model != null || modelPayload != null ? new StreamedModel() : null;
+	}
+
+	public Map<String, Long> getStageTimes() {
+		return stageTimes;
+	}
+
+	public void setStageTimes(Map<String, Long> stageTimes) {
+		this.stageTimes = stageTimes;
+	}
+
+	/**
+	 * Writes the model to the response, copying the cached JSON as it is if available. The response is flushed
+	 * first, so the client gets the progress details while the model is still being written.
+	 */
+	private class StreamedModel implements JsonSerializable {
+
+		@Override
+		public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+			gen.flush();
+			if (modelPayload == null) {
+				serializers.defaultSerializeValue(model, gen);
+				return;
+			}
+			try (Reader reader = modelPayload) {
+				char[] buffer = new char[8192];
+				int n = reader.read(buffer);
+				if (n < 0) {
+					gen.writeNull();
+					return;
+				}
+				gen.writeRawValue(buffer, 0, n);
+				while ((n = reader.read(buffer)) >= 0) {
+					gen.writeRaw(buffer, 0, n);
+				}
+			}
+		}
+
+		@Override
+		public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+			serialize(gen, serializers);
+		}
+	}
+
 }
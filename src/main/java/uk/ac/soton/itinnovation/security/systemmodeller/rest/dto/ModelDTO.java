@@ -24,13 +24,15 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.systemmodeller.rest.dto;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import uk.ac.soton.itinnovation.security.model.Level;
 import uk.ac.soton.itinnovation.security.model.system.Asset;
@@ -148,70 +150,107 @@ public class ModelDTO {
 		}
 	}
 	
+	/*
+	 * The DTOs for the entities of a model are created as the collections are iterated (i.e. as the ModelDTO
+	 * is serialised), so each can be discarded once it has been written, rather than holding a second copy
+	 * of the whole model in memory.
+	 */
+
 	// Get ControlStrategies as DTOs
 	private Map<String, ControlStrategyDTO> getControlStrategyDTOs(Map<String, ControlStrategy> controlStrategies) {
-		Map<String, ControlStrategyDTO> controlStrategyDTOs = new HashMap<>();
-
-		for (String csgUri : controlStrategies.keySet()) {
-			ControlStrategy csg = controlStrategies.get(csgUri);
-			ControlStrategyDTO csgDto = new ControlStrategyDTO(csg);
-			controlStrategyDTOs.put(csgUri, csgDto);
-		}
-
-		return controlStrategyDTOs;
+		return new MappedMap<>(controlStrategies, ControlStrategyDTO::new);
 	}
 
 	// Get Assets as DTOs
 	private Set<AssetDTO> getAssetDTOs(Set<Asset> assets) {
-		Set<AssetDTO> assetsSet = new HashSet<>();
-		for (Asset asset : assets) {
-			AssetDTO assetDto = new AssetDTO(asset);
-			assetsSet.add(assetDto);
-		}
-		return assetsSet;
+		return new MappedSet<>(assets, AssetDTO::new);
 	}
 
 	// Get AssetGroups as DTOs
 	private Set<AssetGroupDTO> getAssetGroupDTOs(Set<AssetGroup> assetGroups) {
-		Set<AssetGroupDTO> assetGroupsSet = new HashSet<>();
-		for (AssetGroup assetGroup : assetGroups) {
-			AssetGroupDTO assetDto = new AssetGroupDTO(assetGroup);
-			assetGroupsSet.add(assetDto);
-		}
-		return assetGroupsSet;
+		return new MappedSet<>(assetGroups, AssetGroupDTO::new);
 	}
 
 	// Get Threats as DTOs
 	private Set<ThreatDTO> getThreatDTOs(Set<Threat> threats) {
-		Set<ThreatDTO> threatsSet = new HashSet<>();
-		for (Threat threat : threats) {
-			ThreatDTO threatDto = new ThreatDTO(threat);
-			threatsSet.add(threatDto);
-		}
-		return threatsSet;
+		return new MappedSet<>(threats, ThreatDTO::new);
 	}
 
 	// Get Compliance Threats as DTOs
 	private Set<ComplianceThreatDTO> getComplianceThreatDTOs(Set<ComplianceThreat> threats) {
-		Set<ComplianceThreatDTO> threatsSet = new HashSet<>();
-		if (threats != null) {
-			for (ComplianceThreat threat : threats) {
-				ComplianceThreatDTO threatDto = new ComplianceThreatDTO(threat);
-				threatsSet.add(threatDto);
-			}
-		}
-		return threatsSet;
+		return threats != null ? new MappedSet<>(threats, ComplianceThreatDTO::new) : Collections.emptySet();
 	}
 	
 	private Set<ComplianceSetDTO> getComplianceSetDTOs(Set<ComplianceSet> complianceSets) {
-		Set<ComplianceSetDTO> complianceSetDTOs = new HashSet<>();
-		if (complianceSets != null) {
-			for (ComplianceSet complianceSet : complianceSets) {
-				ComplianceSetDTO complianceSetDto = new ComplianceSetDTO(complianceSet);
-				complianceSetDTOs.add(complianceSetDto);
-			}
+		return complianceSets != null ? new MappedSet<>(complianceSets, ComplianceSetDTO::new) : Collections.emptySet();
+	}
+
+	/**
+	 * Read-only view of a set, with each element converted when it is reached.
+	 */
+	private static class MappedSet<S, T> extends AbstractSet<T> {
+		private final Set<S> source;
+		private final Function<S, T> mapping;
+
+		MappedSet(Set<S> source, Function<S, T> mapping) {
+			this.source = source;
+			this.mapping = mapping;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			Iterator<S> it = source.iterator();
+			return new Iterator<T>() {
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public T next() {
+					return mapping.apply(it.next());
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return source.size();
+		}
+	}
+
+	/**
+	 * Read-only view of a map, with each value converted when it is reached.
+	 */
+	private static class MappedMap<K, S, T> extends AbstractMap<K, T> {
+		private final Map<K, S> source;
+		private final Function<S, T> mapping;
+
+		MappedMap(Map<K, S> source, Function<S, T> mapping) {
+			this.source = source;
+			this.mapping = mapping;
+		}
+
+		@Override
+		public Set<Entry<K, T>> entrySet() {
+			return new MappedSet<>(source.entrySet(),
+				entry -> new SimpleImmutableEntry<>(entry.getKey(), mapping.apply(entry.getValue())));
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return source.containsKey(key);
+		}
+
+		@Override
+		public T get(Object key) {
+			return source.containsKey(key) ? mapping.apply(source.get(key)) : null;
+		}
+
+		@Override
+		public int size() {
+			return source.size();
 		}
-		return complianceSetDTOs;
 	}
 
 	public String getName() {
@@ -0,0 +1,416 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.semantics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.ServiceUnavailableException;
+
+/**
+ * Runs background jobs on models (loading, validation, risk calculation and recommendations).
+ *
+ * Each type of job has its own fixed size pool of worker threads and a bounded queue, so one type of job
+ * cannot starve the others, and a burst of requests cannot create an unbounded number of threads. A job
+ * submitted when the queue for its type is full is rejected with a ServiceUnavailableException.
+ *
+ * Where a job type allows it, a job submitted for a model that already has a job of the same type waiting
+ * in the queue is coalesced with the waiting job, i.e. the caller gets the future of the waiting job. Once
+ * a job has started, a new submission will queue a new job, as the model may have changed since.
+ *
+ * This class also keeps track of the current task (validation, risk calculation or recommendations) of
+ * each model, and the job for each model loading request, so progress requests can check their results.
+ */
+@Component
+public class ModelJobScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelJobScheduler.class);
+
+	/**
+	 * Types of job, each with its own pool of threads.
+	 */
+	public enum JobType {
+		LOADING(true),
+		VALIDATION(true),
+		RISK_CALCULATION(true),
+		RECOMMENDATIONS(false);     // each recommendations job has its own job ID and results
+
+		private final boolean coalesced;
+
+		JobType(boolean coalesced) {
+			this.coalesced = coalesced;
+		}
+
+		public boolean isCoalesced() {
+			return coalesced;
+		}
+	}
+
+	@Value("${jobs.loading.threads:4}")
+	private int loadingThreads;
+
+	@Value("${jobs.validation.threads:2}")
+	private int validationThreads;
+
+	@Value("${jobs.risk.calculation.threads:2}")
+	private int riskCalculationThreads;
+
+	@Value("${jobs.recommendations.threads:1}")
+	private int recommendationsThreads;
+
+	@Value("${jobs.queue.depth:50}")
+	private int queueDepth;
+
+	@Value("${jobs.loading.stage.threads:8}")
+	private int loadingStageThreads;
+
+	private final Map<JobType, ThreadPoolExecutor> executors = new EnumMap<>(JobType.class);
+	private final Map<JobType, JobMetrics> metrics = new EnumMap<>(JobType.class);
+	private ThreadPoolExecutor loadingStageExecutor;        // Runs the stages of loading jobs, which wait for them
+
+	private final Map<String, Job<?>> pendingJobs = new ConcurrentHashMap<>();           // Jobs waiting to start, indexed by job type and model ID
+	private final Map<String, Future<?>> taskFutures = new ConcurrentHashMap<>();         // Current task of each model, indexed by model ID
+	private final Map<String, Future<?>> loadingFutures = new ConcurrentHashMap<>();      // Loading job for each loading request, indexed by loading ID
+
+	@PostConstruct
+	public void init() {
+		Map<JobType, Integer> threads = new EnumMap<>(JobType.class);
+		threads.put(JobType.LOADING, loadingThreads);
+		threads.put(JobType.VALIDATION, validationThreads);
+		threads.put(JobType.RISK_CALCULATION, riskCalculationThreads);
+		threads.put(JobType.RECOMMENDATIONS, recommendationsThreads);
+
+		for (JobType type : JobType.values()) {
+			int n = Math.max(1, threads.get(type));
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(Math.max(1, queueDepth)), new JobThreadFactory(type));
+			executor.allowCoreThreadTimeOut(true);
+			executors.put(type, executor);
+			metrics.put(type, new JobMetrics());
+			logger.info("Created {} job executor with {} threads and queue depth {}", type, n, queueDepth);
+		}
+
+		// The stage queue is not bounded, as the number of stages is limited by the number of loading jobs
+		int n = Math.max(1, loadingStageThreads);
+		loadingStageExecutor = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				new JobThreadFactory("loading-stage-"));
+		loadingStageExecutor.allowCoreThreadTimeOut(true);
+		logger.info("Created loading stage executor with {} threads", n);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		logger.info("Shutting down job executors");
+		executors.values().forEach(ThreadPoolExecutor::shutdownNow);
+		loadingStageExecutor.shutdownNow();
+	}
+
+	/**
+	 * Submit a job for a model.
+	 *
+	 * @param type the type of job
+	 * @param modelId the ID of the model
+	 * @param callable the job
+	 * @return the future for the job, which may be an earlier job that this one was coalesced with
+	 * @throws ServiceUnavailableException if the queue for this type of job is full
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Future<T> submit(JobType type, String modelId, Callable<T> callable) {
+		JobMetrics jobMetrics = metrics.get(type);
+		jobMetrics.submitted.incrementAndGet();
+
+		if (!type.isCoalesced()) {
+			return execute(new Job<>(type, modelId, null, callable));
+		}
+
+		String key = type + ":" + modelId;
+		Job<?>[] submitted = new Job<?>[1];
+		Job<?> job = pendingJobs.computeIfAbsent(key, k -> {
+			submitted[0] = new Job<>(type, modelId, k, callable);
+			return submitted[0];
+		});
+
+		if (submitted[0] == null) {
+			logger.info("Coalesced {} job for model {} with the job already waiting", type, modelId);
+			jobMetrics.coalesced.incrementAndGet();
+			return (Future<T>) job;
+		}
+
+		return execute((Job<T>) job);
+	}
+
+	private <T> Job<T> execute(Job<T> job) {
+		try {
+			executors.get(job.type).execute(job);
+		} catch (RejectedExecutionException e) {
+			if (job.key != null) {
+				pendingJobs.remove(job.key, job);
+			}
+			metrics.get(job.type).rejected.incrementAndGet();
+			logger.warn("Rejected {} job for model {}: queue is full", job.type, job.modelId);
+			throw new ServiceUnavailableException("The server is busy. Please try again later.");
+		}
+		return job;
+	}
+
+	/**
+	 * Get the executor for the stages of a model loading job (see ModelData). Stages run on their own threads
+	 * so that a loading job waiting for its stages does not hold up the stages of other loading jobs.
+	 */
+	public Executor getLoadingStageExecutor() {
+		return loadingStageExecutor;
+	}
+
+	// Task and loading job registers ///////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Register the current task for a model.
+	 *
+	 * @return false if the model already has a task that has not finished
+	 */
+	public boolean registerTask(String modelId, Future<?> future) {
+		Future<?> previous = taskFutures.get(modelId);
+		if (previous != null && !previous.isDone() && previous != future) {
+			logger.warn("Task execution already registered (still running)");
+			return false;
+		}
+
+		logger.debug("Registering task execution for model: {}", modelId);
+		taskFutures.put(modelId, future);
+		return true;
+	}
+
+	public Future<?> getTask(String modelId) {
+		return taskFutures.get(modelId);
+	}
+
+	public void removeTask(String modelId) {
+		taskFutures.remove(modelId);
+	}
+
+	/**
+	 * Register the job for a model loading request.
+	 *
+	 * @return false if there is already a job for the loading request that has not finished
+	 */
+	public boolean registerLoading(String loadingId, Future<?> future) {
+		Future<?> previous = loadingFutures.get(loadingId);
+		if (previous != null && !previous.isDone() && previous != future) {
+			logger.warn("Loading execution already registered (still running)");
+			return false;
+		}
+
+		logger.debug("Registering loading execution for model: {}", loadingId);
+		loadingFutures.put(loadingId, future);
+		return true;
+	}
+
+	public Future<?> getLoading(String loadingId) {
+		return loadingFutures.get(loadingId);
+	}
+
+	public void removeLoading(String loadingId) {
+		loadingFutures.remove(loadingId);
+	}
+
+	// Metrics ////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	public JobMetrics getMetrics(JobType type) {
+		return metrics.get(type);
+	}
+
+	public int getQueueLength(JobType type) {
+		return executors.get(type).getQueue().size();
+	}
+
+	public int getActiveCount(JobType type) {
+		return executors.get(type).getActiveCount();
+	}
+
+	/**
+	 * Counts and times for one type of job. Times are in milliseconds.
+	 */
+	public static class JobMetrics {
+		private final AtomicLong submitted = new AtomicLong();
+		private final AtomicLong coalesced = new AtomicLong();
+		private final AtomicLong rejected = new AtomicLong();
+		private final AtomicLong completed = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong totalQueueTime = new AtomicLong();
+		private final AtomicLong maxQueueTime = new AtomicLong();
+		private final AtomicLong totalRunTime = new AtomicLong();
+		private final AtomicLong maxRunTime = new AtomicLong();
+
+		private void recordStart(long queueTime) {
+			totalQueueTime.addAndGet(queueTime);
+			maxQueueTime.accumulateAndGet(queueTime, Math::max);
+		}
+
+		private void recordFinish(long runTime, boolean success) {
+			totalRunTime.addAndGet(runTime);
+			maxRunTime.accumulateAndGet(runTime, Math::max);
+			(success ? completed : failed).incrementAndGet();
+		}
+
+		public long getSubmitted() {
+			return submitted.get();
+		}
+
+		public long getCoalesced() {
+			return coalesced.get();
+		}
+
+		public long getRejected() {
+			return rejected.get();
+		}
+
+		public long getCompleted() {
+			return completed.get();
+		}
+
+		public long getFailed() {
+			return failed.get();
+		}
+
+		public long getTotalQueueTime() {
+			return totalQueueTime.get();
+		}
+
+		public long getMaxQueueTime() {
+			return maxQueueTime.get();
+		}
+
+		public long getTotalRunTime() {
+			return totalRunTime.get();
+		}
+
+		public long getMaxRunTime() {
+			return maxRunTime.get();
+		}
+
+		public long getMeanQueueTime() {
+			long finished = completed.get() + failed.get();
+			return finished > 0 ? totalQueueTime.get() / finished : 0;
+		}
+
+		public long getMeanRunTime() {
+			long finished = completed.get() + failed.get();
+			return finished > 0 ? totalRunTime.get() / finished : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("submitted=%d, coalesced=%d, rejected=%d, completed=%d, failed=%d, " +
+					"mean queue time=%d ms, max queue time=%d ms, mean run time=%d ms, max run time=%d ms",
+					submitted.get(), coalesced.get(), rejected.get(), completed.get(), failed.get(),
+					getMeanQueueTime(), maxQueueTime.get(), getMeanRunTime(), maxRunTime.get());
+		}
+	}
+
+	// Jobs and threads ///////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * A job, which records its queue and run times when it runs.
+	 */
+	private class Job<T> extends FutureTask<T> {
+		private final JobType type;
+		private final String modelId;
+		private final String key;               // Key in pendingJobs, or null if the job is not coalesced
+		private final long queuedAt = System.currentTimeMillis();
+		private boolean failed = false;
+
+		Job(JobType type, String modelId, String key, Callable<T> callable) {
+			super(callable);
+			this.type = type;
+			this.modelId = modelId;
+			this.key = key;
+		}
+
+		@Override
+		public void run() {
+			// Once started, later submissions must not be coalesced with this job
+			if (key != null) {
+				pendingJobs.remove(key, this);
+			}
+
+			long startedAt = System.currentTimeMillis();
+			JobMetrics jobMetrics = metrics.get(type);
+			jobMetrics.recordStart(startedAt - queuedAt);
+			try {
+				super.run();
+			} finally {
+				long finishedAt = System.currentTimeMillis();
+				jobMetrics.recordFinish(finishedAt - startedAt, !failed);
+				logger.info("{} job for model {}: queue time {} ms, run time {} ms", type, modelId,
+						startedAt - queuedAt, finishedAt - startedAt);
+				logger.debug("{} job metrics: {}", type, jobMetrics);
+			}
+		}
+
+		@Override
+		protected void setException(Throwable t) {
+			failed = true;
+			super.setException(t);
+		}
+	}
+
+	private static class JobThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		JobThreadFactory(JobType type) {
+			this(type.name().toLowerCase().replace('_', '-') + "-job-");
+		}
+
+		JobThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,198 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.semantics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
+
+/**
+ * Per-model read/write locks.
+ *
+ * Operations that only read a model (e.g. entity lookups, exports, reports and threat graphs) take the read
+ * lock, so they can run at the same time on the same model. Operations that change a model (e.g. asset and
+ * group updates, validation and saved risk calculations) take the write lock, so they have exclusive access.
+ * Operations on different models never wait for each other.
+ *
+ * Locks are obtained in a try-with-resources statement, e.g.
+ *
+ *     try (ModelLock lock = modelLocks.writeLock(model)) {
+ *         ...
+ *     }
+ *
+ * The locks are reentrant, and a thread holding the write lock may also take the read lock, but a thread
+ * holding the read lock must not try to take the write lock.
+ *
+ * The time spent waiting for locks is recorded, so contention can be monitored.
+ *
+ * A model may also be claimed by a validation or risk calculation task (see claim()), so that checking and setting
+ * the model's validating or calculating risks flags is atomic, without waiting for a task holding the model lock.
+ */
+@Component
+public class ModelLockRegistry {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelLockRegistry.class);
+
+	private static final long SLOW_WAIT_MS = 1000;      // Waits longer than this are logged at info level
+
+	private final Map<String, ReentrantReadWriteLock> locks = new ConcurrentHashMap<>();     // Lock for each model, indexed by model ID
+	private final Map<String, String> tasks = new ConcurrentHashMap<>();     // Task that has claimed each model, indexed by model ID
+
+	private final LockMetrics readMetrics = new LockMetrics();
+	private final LockMetrics writeMetrics = new LockMetrics();
+
+	/**
+	 * Take the read lock for a model, waiting if another thread has the write lock.
+	 */
+	public ModelLock readLock(Model model) {
+		return readLock(model.getId());
+	}
+
+	public ModelLock readLock(String modelId) {
+		return acquire(modelId, getLock(modelId).readLock(), readMetrics, "read");
+	}
+
+	/**
+	 * Take the write lock for a model, waiting if another thread has the read or write lock.
+	 */
+	public ModelLock writeLock(Model model) {
+		return writeLock(model.getId());
+	}
+
+	public ModelLock writeLock(String modelId) {
+		return acquire(modelId, getLock(modelId).writeLock(), writeMetrics, "write");
+	}
+
+	/**
+	 * Claim a model for a task, unless another task has already claimed it.
+	 *
+	 * @param modelId the model ID
+	 * @param task the name of the task, e.g. "Validation"
+	 * @return null if the model has been claimed, otherwise the name of the task that already has the claim
+	 */
+	public String claim(String modelId, String task) {
+		return tasks.putIfAbsent(modelId, task);
+	}
+
+	/**
+	 * Release the claim on a model, once the task has finished.
+	 */
+	public void release(String modelId) {
+		tasks.remove(modelId);
+	}
+
+	/**
+	 * Discard the lock for a model, e.g. once the model has been deleted.
+	 */
+	public void remove(String modelId) {
+		locks.remove(modelId);
+	}
+
+	public LockMetrics getReadMetrics() {
+		return readMetrics;
+	}
+
+	public LockMetrics getWriteMetrics() {
+		return writeMetrics;
+	}
+
+	private ReentrantReadWriteLock getLock(String modelId) {
+		return locks.computeIfAbsent(modelId, k -> new ReentrantReadWriteLock());
+	}
+
+	private ModelLock acquire(String modelId, Lock lock, LockMetrics metrics, String mode) {
+		long start = System.nanoTime();
+		lock.lock();
+		long waitMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		metrics.record(waitMs);
+
+		if (waitMs > SLOW_WAIT_MS) {
+			logger.info("Waited {} ms for {} lock on model {}", waitMs, mode, modelId);
+		} else {
+			logger.debug("Waited {} ms for {} lock on model {}", waitMs, mode, modelId);
+		}
+
+		return new ModelLock(lock);
+	}
+
+	/**
+	 * A lock held on a model, which is released by close().
+	 */
+	public static class ModelLock implements AutoCloseable {
+		private Lock lock;
+
+		private ModelLock(Lock lock) {
+			this.lock = lock;
+		}
+
+		@Override
+		public void close() {
+			if (lock != null) {
+				lock.unlock();
+				lock = null;
+			}
+		}
+	}
+
+	/**
+	 * Counts and wait times for one type of lock. Times are in milliseconds.
+	 */
+	public static class LockMetrics {
+		private final AtomicLong acquired = new AtomicLong();
+		private final AtomicLong totalWaitTime = new AtomicLong();
+		private final AtomicLong maxWaitTime = new AtomicLong();
+
+		private void record(long waitTime) {
+			acquired.incrementAndGet();
+			totalWaitTime.addAndGet(waitTime);
+			maxWaitTime.accumulateAndGet(waitTime, Math::max);
+		}
+
+		public long getAcquired() {
+			return acquired.get();
+		}
+
+		public long getTotalWaitTime() {
+			return totalWaitTime.get();
+		}
+
+		public long getMaxWaitTime() {
+			return maxWaitTime.get();
+		}
+
+		@Override
+		public String toString() {
+			long n = acquired.get();
+			return String.format("acquired=%d, mean wait time=%d ms, max wait time=%d ms",
+					n, n > 0 ? totalWaitTime.get() / n : 0, maxWaitTime.get());
+		}
+	}
+
+}
@@ -40,8 +40,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
@@ -79,6 +81,7 @@ import uk.ac.soton.itinnovation.security.systemmodeller.auth.KeycloakAdminClient
 import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.LoadingProgress;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.ModelException;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler.JobType;
 
 @Component
 public class ModelObjectsHelper {
@@ -96,6 +99,12 @@ public class ModelObjectsHelper {
 	@Autowired
 	private ModelObjectsHelper modelHelper;
 
+	@Autowired
+	private ModelJobScheduler jobScheduler;
+
+	@Autowired
+	private ModelLockRegistry modelLocks;
+
 	private Map<String, String> queries;
 	
 	private Map<String, Map<String, String>> modelAssetIDs;
@@ -103,15 +112,19 @@ public class ModelObjectsHelper {
 	private Map<String, Set<Threat>> modelThreats;
 
 	private Map<String, Progress> taskProgress;
-	private Map<String, ScheduledFuture<?>> taskFutures;
-	private HashMap<String, ScheduledFuture<?>> loadingFutures;
 
 	private Map<String, LoadingProgress> modelLoadingProgress;
 
-	private Map<String, Object> modelLocks;
+	private Map<Future<?>, LoadingProgress> loadingJobProgress;     // Progress updated by each loading job
 
 	@Value("${set.accepted.threats.as.resolved}")
 	private boolean setAcceptedThreatsAsResolved;
+
+	@Value("${risk.calculation.parallelism:1}")
+	private int riskCalculationParallelism;
+
+	@Value("${validation.parallelism:1}")
+	private int validationParallelism;
 	
 	private List<String> defaultUserDomainModels; //TODO: persist in TDB instead
 
@@ -126,14 +139,12 @@ public class ModelObjectsHelper {
 	@PostConstruct
 	public void init() throws IOException {
 		logger.debug("Initialising Model Objects Helper");
-		modelAssetIDs = new HashMap<>();
-		modelAssetUris = new HashMap<>();
-		modelThreats = new HashMap<>();
+		modelAssetIDs = new ConcurrentHashMap<>();
+		modelAssetUris = new ConcurrentHashMap<>();
+		modelThreats = new ConcurrentHashMap<>();
 		taskProgress = new HashMap<>();
-		taskFutures = new HashMap<>();
-		loadingFutures = new HashMap<>();
 		modelLoadingProgress = new HashMap<>();
-		modelLocks = new HashMap<>();
+		loadingJobProgress = new ConcurrentHashMap<>();
 		queries = loadQueries();
 		logger.debug("Finished initialising Model Objects Helper");
 	}
@@ -238,6 +249,8 @@ public class ModelObjectsHelper {
 		try {
 			IDomainReasoner domainReasoner = getDomainSpecificReasoner(model);
 			validator = new ModelValidator(storeManager.getStore(), model.getModelStack(), domainReasoner);
+			validator.setRiskCalculationParallelism(riskCalculationParallelism);
+			validator.setValidationParallelism(validationParallelism);
 		} catch (MissingArgumentException ex) {
 			logger.error("Could not create model validator", ex);
 			validator = null;
@@ -252,15 +265,11 @@ public class ModelObjectsHelper {
 		logger.info("Done");
 	}
 
-	public synchronized Object getModelLock(Model model) {
-		String modelId = model.getId();
-		//logger.debug("Getting lock object for model: " + modelId);
-		Object modelLock = modelLocks.get(modelId);
-		if (modelLock == null) {
-			modelLock = new Object();
-			modelLocks.put(modelId, modelLock);
-		}
-		return modelLock;
+	/**
+	 * Get the registry of per-model read/write locks, for callers that are not Spring components.
+	 */
+	public ModelLockRegistry getModelLocks() {
+		return modelLocks;
 	}
 	
 	private Map<String, String> getAssetIDsForModel(Model model) {
@@ -331,40 +340,42 @@ public class ModelObjectsHelper {
 		assetUris.remove(id);
 	}
 
-	public boolean registerTaskExecution(String modelId, ScheduledFuture<?> future) {
-
-		if (taskFutures.containsKey(modelId)){
-			ScheduledFuture<?> taskExecution = taskFutures.get(modelId);
-			if (taskExecution.isDone()) {
-				logger.debug("Clearing previous task execution");
-				//TODO: tidy up previous execution
-			} else {
-				logger.warn("Task execution already registered (still running)");
-				return false;
-			}
-		}
-
-		logger.debug("Registering task execution for model: {}", modelId);
-		taskFutures.put(modelId, future);
-		return true;
+	public boolean registerTaskExecution(String modelId, Future<?> future) {
+		return jobScheduler.registerTask(modelId, future);
 	}
 
-	public boolean registerLoadingExecution(String modelId, ScheduledFuture<?> future) {
+	public boolean registerLoadingExecution(String loadingId, Future<?> future) {
+		return jobScheduler.registerLoading(loadingId, future);
+	}
 
-		if (loadingFutures.containsKey(modelId)){
-			ScheduledFuture<?> loadingExecution = loadingFutures.get(modelId);
-			if (loadingExecution.isDone()) {
-				logger.debug("Clearing previous loading execution");
-				//TODO: tidy up previous execution
-			} else {
-				logger.warn("Loading execution already registered (still running)");
-				return false;
+	/**
+	 * Submit the loading job for a model loading request, and register it for the loading ID.
+	 *
+	 * The job may be coalesced with a loading job already waiting for the same model, in which case only
+	 * the earlier job runs, and it only updates the loading progress of the earlier request. The loading
+	 * ID of this request is then given the loading progress of the earlier request, so that it reports the
+	 * progress of the job that actually runs.
+	 *
+	 * @param loadingId the loading ID, for which the loading progress must already have been created
+	 * @param modelId the ID of the model
+	 * @param job the loading job, which updates the loading progress of this loading ID
+	 * @return the future for the job, which may be the job of an earlier request
+	 */
+	public Future<?> submitLoadingExecution(String loadingId, String modelId, Callable<?> job) {
+		// Submit and record the job's progress together, so a later request cannot find the job first
+		synchronized (loadingJobProgress) {
+			Future<?> future = jobScheduler.submit(JobType.LOADING, modelId, job);
+
+			LoadingProgress loadingProgress = modelLoadingProgress.get(loadingId);
+			LoadingProgress jobProgress = loadingJobProgress.putIfAbsent(future, loadingProgress);
+			if (jobProgress != null && jobProgress != loadingProgress) {
+				logger.info("Loading ID {} follows the progress of the loading job it was coalesced with", loadingId);
+				modelLoadingProgress.put(loadingId, jobProgress);
 			}
-		}
 
-		logger.debug("Registering loading execution for model: {}", modelId);
-		loadingFutures.put(modelId, future);
-		return true;
+			registerLoadingExecution(loadingId, future);
+			return future;
+		}
 	}
 
 	//Default method retuns validation progress
@@ -383,8 +394,8 @@ public class ModelObjectsHelper {
 			return progress;
 		}
 
-		if (taskFutures.containsKey(modelId)) {
-			ScheduledFuture<?> taskExecution = taskFutures.get(modelId);
+		Future<?> taskExecution = jobScheduler.getTask(modelId);
+		if (taskExecution != null) {
 			updateProgressWithTaskResult(taskExecution, name, modelId, progress);
 		}
 		else {
@@ -408,7 +419,7 @@ public class ModelObjectsHelper {
 		return progress;
 	}
 
-	private void updateProgressWithTaskResult(ScheduledFuture<?> taskExecution, String name, String modelId, Progress progress) {
+	private void updateProgressWithTaskResult(Future<?> taskExecution, String name, String modelId, Progress progress) {
 		if (taskExecution.isDone()) {
 			Object result;
 
@@ -431,7 +442,7 @@ public class ModelObjectsHelper {
 			
 			// Finally, remove the execution from the list
 			logger.info("Unregistering task execution for model: {}", modelId);
-			taskFutures.remove(modelId);
+			jobScheduler.removeTask(modelId);
 			//KEM - don't remove the progress object here, as others requests still need access to this
 			//(e.g. another user may monitor validation progress)
 			//modelValidationProgress.remove(modelId);
@@ -460,13 +471,20 @@ public class ModelObjectsHelper {
 
 		LoadingProgress loadingProgress = modelLoadingProgress.get(loadingProgressID);
 
+		Future<?> loadingExecution = jobScheduler.getLoading(loadingProgressID);
+
 		// No need to check execution if not yet running
 		if (! "loading".equals(loadingProgress.getStatus())) {
+			// A loading progress shared by coalesced requests is completed by whichever request checks it first
+			if (loadingExecution != null && loadingExecution.isDone()) {
+				logger.debug("Unregistering loading execution for id: {}", loadingProgressID);
+				jobScheduler.removeLoading(loadingProgressID);
+				modelLoadingProgress.remove(loadingProgressID);
+			}
 			return loadingProgress;
 		}
 
-		if (loadingFutures.containsKey(loadingProgressID)) {
-			ScheduledFuture<?> loadingExecution = loadingFutures.get(loadingProgressID);
+		if (loadingExecution != null) {
 			if (loadingExecution.isDone()) {
 				Object result;
 
@@ -497,7 +515,8 @@ public class ModelObjectsHelper {
 
 				// Finally, remove the execution from the list
 				logger.debug("Unregistering loading execution for id: {}", loadingProgressID);
-				loadingFutures.remove(loadingProgressID);
+				jobScheduler.removeLoading(loadingProgressID);
+				loadingJobProgress.remove(loadingExecution);
 				//KEM - don't remove the progress object here, as others requests still need access to this
 				//(e.g. another user may monitor loading progress)
 				//KEM 2/3/2018 reinstating this, as it causes memory problems without it (i.e. grogress objects hold onto loaded model object)
@@ -1455,7 +1474,7 @@ public class ModelObjectsHelper {
 	public void syncUsers() {
 		// Probably need to synchronise all this.
 		// Don't want to use the ModelObjectHelper instance as the lock though,
-		// as this will introduce contention with getModelLock().
+		// as this would introduce contention with anything else synchronized on it.
 		synchronized (syncUsersLock) {
 			logger.info("Syncing users with Keycloak");
 
@@ -0,0 +1,189 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.semantics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
+import uk.ac.soton.itinnovation.security.semanticstore.JenaTDBStoreWrapper;
+import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
+import uk.ac.soton.itinnovation.security.systemmodeller.model.ModelSnapshotCache;
+
+/**
+ * Pool of initialised, non-caching queriers used for read-only lookups of single entities (or collections of
+ * entities) from a model.
+ *
+ * Initialising a JenaQuerierDB loads the namespace prefixes, the domain model type hierarchy and the population
+ * and trustworthiness scales, which takes much longer than fetching one entity. Queriers in the pool are
+ * initialised once and then reused by later requests for the same model, as long as the model revision (see
+ * ModelSnapshotCache) has not changed. Changes to the model or to its domain model increase the revision, so a
+ * querier is never reused once the state it was initialised from may be out of date.
+ *
+ * A querier is only used by one request at a time. It is borrowed in a try-with-resources statement, inside
+ * the read lock for the model, e.g.
+ *
+ *     try (ModelLock lock = modelLocks.readLock(model); PooledQuerier querier = querierPool.borrow(model)) {
+ *         ThreatDB threat = querier.get().getThreat(uri, "system-inf");
+ *     }
+ *
+ * Queriers from the pool must not be used to change a model.
+ */
+@Component
+public class ModelQuerierPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelQuerierPool.class);
+
+	private final Map<String, Idle> idle = new ConcurrentHashMap<>();     // Idle queriers for each model, indexed by model ID
+
+	private final int maxIdle;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	@Autowired
+	private StoreModelManager storeModelManager;
+
+	@Autowired
+	private ModelSnapshotCache modelSnapshots;
+
+	@Autowired
+	public ModelQuerierPool(@Value("${entity.querier.pool.size:4}") int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Borrow an initialised querier for a model, which is returned to the pool by close(). The caller should
+	 * hold the read (or write) lock for the model.
+	 */
+	public PooledQuerier borrow(Model model) {
+		String modelId = model.getId();
+
+		// The revision must be obtained before initialising, in case the model is changed meanwhile
+		long revision = modelSnapshots.getRevision(modelId);
+
+		Idle queriers = idle.get(modelId);
+		JenaQuerierDB querier = queriers != null ? queriers.take(revision) : null;
+
+		if (querier != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+			JenaTDBStoreWrapper store = (JenaTDBStoreWrapper) storeModelManager.getStore();
+			querier = new JenaQuerierDB(store.getDataset(), model.getModelStack(), false);
+			querier.init();
+		}
+
+		return new PooledQuerier(modelId, revision, querier);
+	}
+
+	/**
+	 * Discard the idle queriers for a model, e.g. once the model has been deleted.
+	 */
+	public void remove(String modelId) {
+		idle.remove(modelId);
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	private void release(String modelId, long revision, JenaQuerierDB querier) {
+		querier.releaseEntities();
+
+		// Queriers initialised from an earlier revision are discarded
+		if (maxIdle > 0 && modelSnapshots.getRevision(modelId) == revision) {
+			idle.computeIfAbsent(modelId, k -> new Idle()).put(revision, querier, maxIdle);
+		}
+
+		logger.debug("Querier pool: {} hits, {} misses", hits.get(), misses.get());
+	}
+
+	/**
+	 * A querier borrowed from the pool, which is returned by close().
+	 */
+	public class PooledQuerier implements AutoCloseable {
+		private final String modelId;
+		private final long revision;
+		private JenaQuerierDB querier;
+
+		private PooledQuerier(String modelId, long revision, JenaQuerierDB querier) {
+			this.modelId = modelId;
+			this.revision = revision;
+			this.querier = querier;
+		}
+
+		public JenaQuerierDB get() {
+			if (querier == null) {
+				throw new IllegalStateException("Querier has already been returned to the pool");
+			}
+			return querier;
+		}
+
+		@Override
+		public void close() {
+			if (querier != null) {
+				release(modelId, revision, querier);
+				querier = null;
+			}
+		}
+	}
+
+	/**
+	 * Idle queriers for one model, all initialised at the same model revision.
+	 */
+	private static class Idle {
+		private final Deque<JenaQuerierDB> queriers = new ArrayDeque<>();
+		private long revision = -1;
+
+		synchronized JenaQuerierDB take(long revision) {
+			if (revision != this.revision) {
+				return null;
+			}
+			return queriers.pollFirst();
+		}
+
+		synchronized void put(long revision, JenaQuerierDB querier, int maxIdle) {
+			if (revision != this.revision) {
+				// Revisions only increase (apart from when a model is removed), so the new revision is the current one
+				queriers.clear();
+				this.revision = revision;
+			}
+			if (queriers.size() < maxIdle) {
+				queriers.addFirst(querier);
+			}
+		}
+	}
+
+}
@@ -52,6 +52,7 @@ import org.yaml.snakeyaml.Yaml;
 import uk.ac.soton.itinnovation.security.semanticstore.AStoreWrapper;
 import uk.ac.soton.itinnovation.security.semanticstore.IStoreWrapper;
 import uk.ac.soton.itinnovation.security.semanticstore.util.SparqlHelper;
+import uk.ac.soton.itinnovation.security.systemmodeller.model.ModelSnapshotCache;
 
 /**
  * Implementation of a IModelManager using a triple store via its IStoreWrapper interface. It defines the methods for
@@ -84,6 +85,9 @@ public class StoreModelManager {
 	@Autowired
 	private StoreFactory storeFactory;
 
+	@Autowired
+	private ModelSnapshotCache modelSnapshots;
+
 	@Value("${model.management.uri}")
 	private String managementGraph;
 
@@ -166,6 +170,9 @@ public class StoreModelManager {
 		);
 		store.update(insertDataSetQuery);
 
+		//Cached system models may refer to the old version of the domain model
+		modelSnapshots.clear();
+
 		logger.debug("Loaded model {} into graph <{}>: {}", modelName, modelGraph, insertDataSetQuery);
 		return modelGraph;
 	}
@@ -205,6 +212,9 @@ public class StoreModelManager {
 			logger.debug("Adding model {} with graph <{}> into management graph", modelName, modelGraph);
 			store.update(insertDataSetQuery);
 
+			//Cached system models may refer to the old version of the domain model
+			modelSnapshots.clear();
+
 		} catch (IOException e) {
 			logger.error("Could not create temporary file", e);
 		}
@@ -600,6 +610,7 @@ public class StoreModelManager {
 		);
 		logger.debug("Changing system model URI from <{}> to <{}> in graph <{}>", oldURI, newURI, graphURI);
 		store.update(sparql);
+		modelSnapshots.graphChanged(graphURI);
 	}
 	
 	/**
@@ -618,6 +629,7 @@ public class StoreModelManager {
 		);
 		logger.debug("Asserting <{}> imports <{}> ", systemGraph, domainGraph);
 		store.update(addImportQuery);
+		modelSnapshots.graphChanged(systemGraph);
 	}
 	
 	/**
@@ -636,6 +648,7 @@ public class StoreModelManager {
 		);
 		logger.debug("Retracting {} imports {} ", systemGraph, domainGraph);
 		store.update(deleteImportQuery);
+		modelSnapshots.graphChanged(systemGraph);
 	}
 	
 	/**
@@ -680,6 +693,7 @@ public class StoreModelManager {
 			clearGraph(modelGraph);
 			logger.debug("Deleting graph for model <{}>", modelGraph);
 			store.deleteGraph(modelGraph);
+			modelSnapshots.graphChanged(modelGraph);
 		} else {
 			logger.error("Cannot delete model: graph <{}> doesn't exist", modelGraph);
 			return false;
@@ -711,6 +725,7 @@ public class StoreModelManager {
 	private void clearGraph(String uri) {
 		logger.debug("Clearing graph: {}", uri);
 		store.clearGraph(SparqlHelper.escapeURI(uri));
+		modelSnapshots.graphChanged(uri);
 	}
 
 	/**
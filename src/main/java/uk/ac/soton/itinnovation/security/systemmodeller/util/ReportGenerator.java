@@ -25,9 +25,13 @@
 package uk.ac.soton.itinnovation.security.systemmodeller.util;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -47,6 +51,7 @@ import uk.ac.soton.itinnovation.security.model.system.Threat;
 import uk.ac.soton.itinnovation.security.model.system.TrustworthinessAttributeSet;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.LoadingProgress;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelLockRegistry.ModelLock;
 import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelObjectsHelper;
 
 public class ReportGenerator {
@@ -58,35 +63,78 @@ public class ReportGenerator {
     public String generate(ModelObjectsHelper modelObjectsHelper, Model model) {
         setUp(modelObjectsHelper, model);
 
-        JsonObject reportJson = new JsonObject();
+        StringWriter out = new StringWriter();
+        try {
+            write(model, out);
+        } catch (IOException e) {
+            // Not expected when writing to a string
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write the report for a model, one entity at a time, so the whole report is never held in memory. The
+     * model data must have been loaded by setUp() first.
+     */
+    public void write(Model model, Writer out) throws IOException {
+        write(model.getName(), model.getDomainGraph(), model.getAssets(), model.getRelations(), model.getThreats(),
+                model.getMisbehaviourSets().values(), model.getTwas().values(), model.getControlSets(),
+                model.getControlStrategies().values(), out);
+    }
+
+    /**
+     * Write the report for the given entities, so a report can be written without a stored model.
+     */
+    protected void write(String name, String domain, Collection<Asset> assets, Collection<Relation> relations,
+            Collection<Threat> threats, Collection<MisbehaviourSet> misbehaviourSets,
+            Collection<TrustworthinessAttributeSet> twas, Collection<ControlSet> controlSets,
+            Collection<ControlStrategy> controlStrategies, Writer out) throws IOException {
+        Gson gson = new Gson();
+        JsonWriter writer = new JsonWriter(out);
+
+        // Null fields are not serialised
+        writer.setSerializeNulls(false);
+        writer.setHtmlSafe(gson.htmlSafe());
+
+        writer.beginObject();
 
         // Model meta information
-        reportJson.addProperty("name", model.getName());
-        reportJson.addProperty("domain", model.getDomainGraph());
+        writer.name("name").value(name);
+        writer.name("domain").value(domain);
 
         // Split assets into asserted and inferred
-        List<Asset> assertedAssets = model.getAssets().stream().filter(a -> a.isAsserted()).collect(Collectors.toList());
-        List<Asset> inferredAssets = model.getAssets().stream().filter(a -> !a.isAsserted()).collect(Collectors.toList());
-
-        reportJson.add("assertedAssets", generateAssetsJson(assertedAssets));
-        reportJson.add("inferredAssets", generateAssetsJson(inferredAssets));
-        reportJson.add("relations", generateRelationsJson(model.getRelations()));
-        reportJson.add("threats", generateThreatsJson(model.getThreats()));
-        reportJson.add("misbehaviours", generateMisbehaviourSetsJson(model.getMisbehaviourSets().values()));
-        reportJson.add("trustworthinessAttributes", generateTrustworthinessAttributeSetsJson(model.getTwas().values()));
-        reportJson.add("controls", generateControlSetsJson(model.getControlSets()));
-        reportJson.add("controlStrategies", generateControlStrategiesJson(model.getControlStrategies().values()));
+        List<Asset> assertedAssets = assets.stream().filter(a -> a.isAsserted()).collect(Collectors.toList());
+        List<Asset> inferredAssets = assets.stream().filter(a -> !a.isAsserted()).collect(Collectors.toList());
 
-        // Null fields are not serialised
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        return gson.toJson(reportJson);
+        writeCollection(gson, writer, "assertedAssets", assertedAssets, this::generateAssetJson);
+        writeCollection(gson, writer, "inferredAssets", inferredAssets, this::generateAssetJson);
+
+        writer.name("relations").beginObject();
+        for (Relation relation : relations) {
+            writer.name(relation.getID());
+            gson.toJson(generateRelationJson(relation), writer);
+        }
+        writer.endObject();
+
+        writeCollection(gson, writer, "threats", threats, this::generateThreatJson);
+        writeCollection(gson, writer, "misbehaviours", misbehaviourSets, this::generateMisbehaviourSetJson);
+        writeCollection(gson, writer, "trustworthinessAttributes", twas, this::generateTrustworthinessAttributeSetJson);
+        writeCollection(gson, writer, "controls", controlSets, this::generateControlSetJson);
+        writeCollection(gson, writer, "controlStrategies", controlStrategies, this::generateControlStrategyJson);
+
+        writer.endObject();
+        writer.flush();
     }
 
-    private void setUp(ModelObjectsHelper modelObjectsHelper, Model model) {
+    /**
+     * Load the model data and the domain model asset labels needed for the report.
+     */
+    public void setUp(ModelObjectsHelper modelObjectsHelper, Model model) {
         List<Map<String, String>> domainAssets;
 
-        // Populating the model must be atomic
-        synchronized(modelObjectsHelper.getModelLock(model)) {
+        // Populating the model must not overlap with changes to it
+        try (ModelLock lock = modelObjectsHelper.getModelLocks().readLock(model)) {
             model.loadModelData(modelObjectsHelper, new LoadingProgress(null));
 
             // Needed to map asset types to labels
@@ -104,46 +152,14 @@ public class ReportGenerator {
         }
     }
 
-    protected JsonObject generateAssetsJson(Collection<Asset> assets) {
-        return generateCollectionJson(assets, this::generateAssetJson);
-    }
-
-    // This should also be done via a call to generateCollectionJson() but for
-    // some inexplicable reason Relation is not a subclass of SemanticEntity
-    protected JsonObject generateRelationsJson(Collection<Relation> relations) {
-        JsonObject json = new JsonObject();
-        for (Relation relation : relations) {
-            json.add(relation.getID(), generateRelationJson(relation));
-        }
-        return json;
-    }
-
-    protected JsonObject generateThreatsJson(Collection<Threat> threats) {
-        return generateCollectionJson(threats, this::generateThreatJson);
-    }
-
-    protected JsonObject generateMisbehaviourSetsJson(Collection<MisbehaviourSet> misbehaviourSets) {
-        return generateCollectionJson(misbehaviourSets, this::generateMisbehaviourSetJson);
-    }
-
-    protected JsonObject generateTrustworthinessAttributeSetsJson(Collection<TrustworthinessAttributeSet> trustworthinessSets) {
-        return generateCollectionJson(trustworthinessSets, this::generateTrustworthinessAttributeSetJson);
-    }
-
-    protected JsonObject generateControlSetsJson(Collection<ControlSet> controlSets) {
-        return generateCollectionJson(controlSets, this::generateControlSetJson);
-    }
-
-    protected JsonObject generateControlStrategiesJson(Collection<ControlStrategy> controlStrategies) {
-        return generateCollectionJson(controlStrategies, this::generateControlStrategyJson);
-    }
-
-    private <T extends SemanticEntity> JsonObject generateCollectionJson(Collection<T> ts, Function<T, JsonObject> generateEntityJson) {
-        JsonObject json = new JsonObject();
+    private <T extends SemanticEntity> void writeCollection(Gson gson, JsonWriter writer, String name, Collection<T> ts,
+            Function<T, JsonObject> generateEntityJson) throws IOException {
+        writer.name(name).beginObject();
         for (T t : ts) {
-            json.add(getShortUri(t.getUri()), generateEntityJson.apply(t));
+            writer.name(getShortUri(t.getUri()));
+            gson.toJson(generateEntityJson.apply(t), writer);
         }
-        return json;
+        writer.endObject();
     }
 
     private JsonObject generateAssetJson(Asset asset) {
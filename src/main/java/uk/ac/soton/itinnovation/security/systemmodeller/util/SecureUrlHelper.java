@@ -32,12 +32,15 @@ import java.util.Set;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import uk.ac.soton.itinnovation.security.systemmodeller.auth.KeycloakAdminClient;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.ModelFactory;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.WebKeyRole;
 import uk.ac.soton.itinnovation.security.systemmodeller.mongodb.IModelRepository;
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.ModelRevisionInterceptor;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.ModelCheckedOutException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.ModelInvalidException;
 import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.UserForbiddenException;
@@ -58,14 +61,34 @@ public class SecureUrlHelper {
 	@Autowired
 	private KeycloakAdminClient keycloakAdminClient;
 
+	private static final String READ_MODEL = SecureUrlHelper.class.getName() + ".readModel:";
+
 	private SecureRandom random = new SecureRandom();
 
 	public String generateHardToGuessUrl() {
 		return new BigInteger(512, random).toString(32);
 	}
 
+	/**
+	 * Retrieve the model for a particular web key, checking that the user is authorized to access it with the
+	 * required role. A model retrieved with read access is kept in a request attribute, so that a request that
+	 * has already retrieved it (e.g. in ModelRevisionInterceptor, to work out the ETag) does not look it up and
+	 * check its access again.
+	 */
 	public Model getModelFromUrlThrowingException(String url, WebKeyRole requiredRole){
-		return getModelFromUrlThrowingException(url, requiredRole, false, false);
+		RequestAttributes attributes = requiredRole == WebKeyRole.READ ? RequestContextHolder.getRequestAttributes() : null;
+		if (attributes == null) {
+			return getModelFromUrlThrowingException(url, requiredRole, false, false);
+		}
+
+		Object readModel = attributes.getAttribute(READ_MODEL + url, RequestAttributes.SCOPE_REQUEST);
+		if (readModel instanceof Model) {
+			return (Model) readModel;
+		}
+
+		Model model = getModelFromUrlThrowingException(url, requiredRole, false, false);
+		attributes.setAttribute(READ_MODEL + url, model, RequestAttributes.SCOPE_REQUEST);
+		return model;
 	}
 
 	/**
@@ -150,8 +173,12 @@ public class SecureUrlHelper {
 		// for all write operations, check out the model before performing any operations
 		// we don't want to automatically checkout if we're performing a checkin operation instead
 		if (requiredRoleVal == WebKeyRole.WRITE.ordinal() && forceCheckin == false){
-			model.setEditorId(editorId);
-			model.saveModelACLonly();
+			model.checkout(editorId);
+		}
+
+		// the model may be changed by a POST, PUT, PATCH or DELETE request, so its revision is increased once the request is complete
+		if (requiredRoleVal >= WebKeyRole.WRITE.ordinal()) {
+			ModelRevisionInterceptor.markModelChanged(model.getId());
 		}
 
 		// there were no problems
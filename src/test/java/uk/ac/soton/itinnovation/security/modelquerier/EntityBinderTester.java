@@ -0,0 +1,264 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.CASettingDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ConstructionPatternDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ControlDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ControlSetDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ControlStrategyDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.EntityDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.MatchingPatternDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.MisbehaviourDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.MisbehaviourSetDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.NodeDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.RoleDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.RootPatternDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ThreatDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.TrustworthinessAttributeDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.TrustworthinessAttributeSetDB;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that EntityBinder gives the same POJOs as the previous route, which converted each resource to a Gson
+ * JsonObject (merging the objects from each graph) and then deserialised it.
+ */
+@RunWith(JUnit4.class)
+public class EntityBinderTester {
+
+	private static final Logger logger = LoggerFactory.getLogger(EntityBinderTester.class);
+
+	private static final String CORE = "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/core#";
+	private static final String DOMAIN = "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/ssm-testing-6a3#";
+	private static final String G1 = "http://example.com/g1";
+	private static final String G2 = "http://example.com/g2";
+
+	private static final Map<String, String> PREFIXES = new HashMap<>();
+
+	static {
+		PREFIXES.put(CORE, "core");
+		PREFIXES.put(DOMAIN, "domain");
+		PREFIXES.put("http://it-innovation.soton.ac.uk/system/63971077df89a647814e6d8b#", "system");
+		PREFIXES.put(RDF.getURI(), "rdf");
+		PREFIXES.put("http://www.w3.org/2000/01/rdf-schema#", "rdfs");
+	}
+
+	private static final List<Class<? extends EntityDB>> ENTITY_CLASSES = Arrays.asList(
+		CASettingDB.class, ConstructionPatternDB.class, ControlDB.class, ControlSetDB.class, ControlStrategyDB.class,
+		MatchingPatternDB.class, MisbehaviourDB.class, MisbehaviourSetDB.class, NodeDB.class, RoleDB.class,
+		RootPatternDB.class, ThreatDB.class, TrustworthinessAttributeDB.class, TrustworthinessAttributeSetDB.class
+	);
+
+	private final Gson gson = new GsonBuilder().registerTypeAdapter(String.class, new JenaQuerierDB.StringDeserializer()).create();
+
+	@Test
+	public void testBindMatchesGsonAcrossGraphs() {
+		Dataset dataset = DatasetFactory.create();
+		Model g1 = dataset.getNamedModel(G1);
+		Model g2 = dataset.getNamedModel(G2);
+
+		Resource pattern = g1.createResource(DOMAIN + "CP-Test");
+		g1.add(pattern, RDF.type, g1.createResource(CORE + "ConstructionPattern"));
+		g1.add(pattern, core("hasID"), "quote \" backslash \\ tab \t newline \n control \u0001 separator \u2028");
+		g1.add(pattern, core("hasMatchingPattern"), g1.createResource(DOMAIN + "MP-First"));
+		g1.add(pattern, core("hasMatchingPattern"), g1.createResource(DOMAIN + "MP-Second"));
+		g1.add(pattern, core("hasInferredNode"), g1.createResource(DOMAIN + "Role_A"));
+		g1.add(pattern, core("hasInferredNode"), g1.createResource(DOMAIN + "Role_B"));
+		g1.addLiteral(pattern, core("hasPriority"), g1.createTypedLiteral("3", XSDDatatype.XSDinteger));
+		g1.addLiteral(pattern, core("iterate"), true);
+
+		//a later graph replaces each property it has, and leaves the others
+		g2.addLiteral(pattern, core("hasPriority"), g2.createTypedLiteral("5", XSDDatatype.XSDinteger));
+		g2.add(pattern, core("hasInferredNode"), g2.createResource(DOMAIN + "Role_C"));
+		g2.addLiteral(pattern, core("maxIterations"), g2.createTypedLiteral("4", XSDDatatype.XSDinteger));
+
+		ConstructionPatternDB bound = bind(dataset, DOMAIN + "CP-Test", ConstructionPatternDB.class, G1, G2);
+		ConstructionPatternDB deserialised = bindWithGson(dataset, DOMAIN + "CP-Test", ConstructionPatternDB.class, G1, G2);
+		logger.debug("Bound {}", bound);
+
+		assertThat(bound).isEqualTo(deserialised);
+
+		assertThat(bound.getUri()).isEqualTo("domain#CP-Test");
+		assertThat(bound.getId()).isEqualTo("quote \\\" backslash \\\\ tab \\t newline \\n control \\u0001 separator \\u2028");
+		assertThat(bound.getMatchingPattern()).isIn("domain#MP-First", "domain#MP-Second");
+		assertThat(bound.getInferredNodes()).containsExactly("domain#Role_C");
+		assertThat(bound.getPriority()).isEqualTo(5);
+		assertThat(bound.getIterate()).isTrue();
+		assertThat(bound.getMaxIterations()).isEqualTo(4);
+	}
+
+	@Test
+	public void testBindMatchesGsonForTestModels() {
+		Dataset dataset = DatasetFactory.create();
+		RDFDataMgr.read(dataset, getClass().getClassLoader().getResource("modelquerier/domain-ssm-testing-6a3.nq").getPath());
+		RDFDataMgr.read(dataset, getClass().getClassLoader().getResource("modelquerier/Test-6a3-00.nq.gz").getPath());
+
+		//the system model graph comes before its inferred graph, as in a querier's model stack
+		List<String> graphs = new ArrayList<>();
+		dataset.listNames().forEachRemaining(graphs::add);
+		Collections.sort(graphs);
+
+		int compared = 0;
+		for (Class<? extends EntityDB> entityClass : ENTITY_CLASSES) {
+			Resource type = ResourceFactory.createResource(CORE + entityClass.getSimpleName().replaceAll("DB$", ""));
+
+			Set<String> subjects = new TreeSet<>();
+			for (String graph : graphs) {
+				dataset.getNamedModel(graph).listResourcesWithProperty(RDF.type, type)
+					.forEachRemaining(resource -> subjects.add(resource.getURI()));
+			}
+
+			for (String subject : subjects) {
+				EntityDB bound = bind(dataset, subject, entityClass, graphs.toArray(new String[0]));
+				EntityDB deserialised = bindWithGson(dataset, subject, entityClass, graphs.toArray(new String[0]));
+				assertThat(bound).as("%s %s", entityClass.getSimpleName(), subject).isEqualTo(deserialised);
+				compared++;
+			}
+		}
+
+		logger.info("Compared {} entities", compared);
+		assertThat(compared).isGreaterThan(100);
+	}
+
+	private <T extends EntityDB> T bind(Dataset dataset, String subject, Class<T> entityClass, String... graphs) {
+		EntityBinder binder = new EntityBinder(EntityBinderTester::getShortName);
+		T entity = null;
+		for (String graph : graphs) {
+			Model model = dataset.getNamedModel(graph);
+			Resource resource = model.getResource(subject);
+			if (model.contains(resource, null, (RDFNode) null)) {
+				entity = binder.bind(model.getGraph(), resource.asNode(), entity, entityClass);
+			}
+		}
+		return entity;
+	}
+
+	/**
+	 * Deserialise a resource as JenaQuerierDB did before EntityBinder.
+	 */
+	private <T extends EntityDB> T bindWithGson(Dataset dataset, String subject, Class<T> entityClass, String... graphs) {
+		JsonObject json = null;
+		for (String graph : graphs) {
+			Model model = dataset.getNamedModel(graph);
+			Resource resource = model.getResource(subject);
+			if (model.contains(resource, null, (RDFNode) null)) {
+				JsonObject graphJson = resourceToJson(resource);
+				if (json == null) {
+					json = graphJson;
+				} else {
+					for (Map.Entry<String, JsonElement> entry : graphJson.entrySet()) {
+						json.add(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+		}
+		return gson.fromJson(json, entityClass);
+	}
+
+	private static JsonObject resourceToJson(Resource resource) {
+		JsonObject json = new JsonObject();
+		json.addProperty("uri", getShortName(resource.getURI(), true));
+
+		for (StmtIterator it = resource.listProperties(); it.hasNext(); ) {
+			Statement statement = it.next();
+			String predicate = getShortName(statement.getPredicate().getURI(), false);
+			RDFNode object = statement.getObject();
+
+			if (predicate.equals("uri")) {
+				continue;
+			}
+
+			if (object.isLiteral()) {
+				Literal literal = object.asLiteral();
+				RDFDatatype type = literal.getDatatype();
+				if (type.equals(XSDDatatype.XSDinteger)) {
+					json.addProperty(predicate, literal.getInt());
+				} else if (type.equals(XSDDatatype.XSDboolean)) {
+					json.addProperty(predicate, literal.getBoolean());
+				} else if (type.equals(XSDDatatype.XSDstring)) {
+					json.addProperty(predicate, literal.getString());
+				}
+			} else if (object.isURIResource()) {
+				JsonArray property = json.getAsJsonArray(predicate);
+				if (property == null) {
+					property = new JsonArray();
+					json.add(predicate, property);
+				}
+				property.add(getShortName(object.asResource().getURI(), true));
+			}
+		}
+
+		return json;
+	}
+
+	/**
+	 * Short names in the same form as JenaQuerierDB.getShortName().
+	 */
+	private static String getShortName(String uri, boolean keepGraph) {
+		int hash = uri.lastIndexOf('#');
+		String prefix = hash < 0 ? "" : PREFIXES.getOrDefault(uri.substring(0, hash + 1), "") + "#";
+		String name = uri.substring(hash + 1);
+
+		if (keepGraph || "label".equals(name) || "type".equals(name) || "comment".equals(name)) {
+			return prefix + name;
+		}
+		return name;
+	}
+
+	private static Property core(String name) {
+		return ResourceFactory.createProperty(CORE + name);
+	}
+
+}
@@ -0,0 +1,198 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+
+package uk.ac.soton.itinnovation.security.modelquerier.test;
+
+import junit.framework.TestCase;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.soton.itinnovation.security.modelquerier.DomainModelCache;
+import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
+
+@RunWith(JUnit4.class)
+public class DomainModelCacheTester extends TestCase {
+
+	public static Logger logger = LoggerFactory.getLogger(DomainModelCacheTester.class);
+
+	private static final String PREFIX = "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/";
+
+	private static TestHelper tester;
+	private static Dataset dataset;
+
+	private long stopwatch;
+
+	@Rule
+	public TestName name = new TestName();
+
+	@BeforeClass
+	public static void beforeClass() {
+
+		tester = new TestHelper("jena-tdb");
+
+		tester.addDomain(0, "modelquerier/domain-ssm-testing-6a3.nq", "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/ssm-testing-6a3");
+
+		tester.addSystem(0, "modelquerier/Test-6a3-00.nq.gz",
+				"http://it-innovation.soton.ac.uk/system/63971077df89a647814e6d8b");
+
+		tester.setUp();
+
+		dataset = TDBFactory.createDataset("jena-tdb");
+
+		logger.info("DomainModelCache tests executing...");
+	}
+
+	@Before
+	public void beforeEachTest() {
+
+		logger.info("Running test {}", name.getMethodName());
+		stopwatch = System.currentTimeMillis();
+
+		tester.switchModels(0, 0);
+	}
+
+	@After
+	public void afterEachTest() {
+
+		logger.debug("Test {} took {} milliseconds", name.getMethodName(), System.currentTimeMillis() - stopwatch);
+	}
+
+	private JenaQuerierDB createQuerier() {
+		JenaQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+		querierDB.init();
+		return querierDB;
+	}
+
+	/**
+	 * Add or remove a misbehaviour in the domain graph, without invalidating the cached domain model.
+	 */
+	private void setTestMisbehaviour(Resource misbehaviour, boolean present) {
+		Model domainModel = dataset.getNamedModel(tester.getGraph("domain"));
+		Resource misbehaviourType = ResourceFactory.createResource(PREFIX + "core#Misbehaviour");
+
+		dataset.begin(ReadWrite.WRITE);
+		try {
+			if (present) {
+				domainModel.add(misbehaviour, RDF.type, misbehaviourType);
+			} else {
+				domainModel.remove(misbehaviour, RDF.type, misbehaviourType);
+			}
+			dataset.commit();
+		} finally {
+			dataset.end();
+		}
+	}
+
+	// Tests //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Check that the same snapshot is returned for a domain graph until it is invalidated, and that the
+	 * snapshot is not shared with another dataset.
+	 */
+	@Test
+	public void testSnapshotReusedForSameDataset() {
+		String domainGraph = tester.getGraph("domain");
+
+		DomainModelCache.Snapshot snapshot = DomainModelCache.getSnapshot(dataset, domainGraph);
+		assertSame(snapshot, DomainModelCache.getSnapshot(dataset, domainGraph));
+		assertEquals(domainGraph, snapshot.getDomainGraph());
+		assertEquals(DomainModelCache.getVersion(domainGraph), snapshot.getVersion());
+
+		Dataset otherDataset = DatasetFactory.createTxnMem();
+		assertNotSame(snapshot, DomainModelCache.getSnapshot(otherDataset, domainGraph));
+	}
+
+	/**
+	 * Check that invalidating a domain graph (as on a domain model upload or delete) discards its snapshot,
+	 * and the next snapshot is for the new version.
+	 */
+	@Test
+	public void testSnapshotDiscardedAfterInvalidate() {
+		String domainGraph = tester.getGraph("domain");
+
+		DomainModelCache.Snapshot snapshot = DomainModelCache.getSnapshot(dataset, domainGraph);
+		long version = snapshot.getVersion();
+
+		DomainModelCache.invalidate(domainGraph);
+
+		DomainModelCache.Snapshot newSnapshot = DomainModelCache.getSnapshot(dataset, domainGraph);
+		assertNotSame(snapshot, newSnapshot);
+		assertEquals(version + 1, newSnapshot.getVersion());
+		assertSame(newSnapshot, DomainModelCache.getSnapshot(dataset, domainGraph));
+
+		// Clearing the cache invalidates every domain graph with a snapshot
+		DomainModelCache.clear();
+		assertEquals(version + 2, DomainModelCache.getVersion(domainGraph));
+		assertNotSame(newSnapshot, DomainModelCache.getSnapshot(dataset, domainGraph));
+	}
+
+	/**
+	 * Check that queriers get domain model entities from the snapshot, rather than the triple store, until
+	 * the domain graph is invalidated.
+	 */
+	@Test
+	public void testQueriersShareSnapshotUntilInvalidated() {
+		String domainGraph = tester.getGraph("domain");
+		Resource misbehaviour = ResourceFactory.createResource(PREFIX + "domain#CacheTestMisbehaviour");
+		String misbehaviourURI = "domain#CacheTestMisbehaviour";
+
+		DomainModelCache.invalidate(domainGraph);
+		int count = createQuerier().getMisbehaviours("domain").size();
+		assertTrue(count > 0);
+
+		try {
+			// A change made without invalidating the domain graph is not seen by later queriers
+			setTestMisbehaviour(misbehaviour, true);
+			JenaQuerierDB querierDB = createQuerier();
+			assertEquals(count, querierDB.getMisbehaviours("domain").size());
+			assertFalse(querierDB.getMisbehaviours("domain").containsKey(misbehaviourURI));
+
+			// Once invalidated, a new querier reads the domain model again
+			DomainModelCache.invalidate(domainGraph);
+			JenaQuerierDB newQuerierDB = createQuerier();
+			assertEquals(count + 1, newQuerierDB.getMisbehaviours("domain").size());
+			assertTrue(newQuerierDB.getMisbehaviours("domain").containsKey(misbehaviourURI));
+
+			// An existing querier keeps the snapshot it started with
+			assertFalse(querierDB.getMisbehaviours("domain").containsKey(misbehaviourURI));
+		} finally {
+			setTestMisbehaviour(misbehaviour, false);
+			DomainModelCache.invalidate(domainGraph);
+		}
+	}
+
+}
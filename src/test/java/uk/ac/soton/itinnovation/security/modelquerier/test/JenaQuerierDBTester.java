@@ -0,0 +1,162 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+
+package uk.ac.soton.itinnovation.security.modelquerier.test;
+
+import junit.framework.TestCase;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb.TDBFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.soton.itinnovation.security.model.system.RiskCalculationMode;
+import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.MisbehaviourSetDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.RiskCalcResultsDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ThreatDB;
+import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
+import uk.ac.soton.itinnovation.security.modelvalidator.Progress;
+import uk.ac.soton.itinnovation.security.modelvalidator.RiskCalculator;
+
+@RunWith(JUnit4.class)
+public class JenaQuerierDBTester extends TestCase {
+
+	public static Logger logger = LoggerFactory.getLogger(JenaQuerierDBTester.class);
+
+	private static TestHelper tester;
+	private static Dataset dataset;
+
+	private long stopwatch;
+
+	@Rule
+	public TestName name = new TestName();
+
+	@BeforeClass
+	public static void beforeClass() {
+
+		tester = new TestHelper("jena-tdb");
+
+		tester.addDomain(0, "modelvalidator/domain-network_8.0.0-SNAPSHOT-NETWORK-3j1-5.nq.gz", "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/domain-network-8_0_0");
+
+		//validated system model with risk calculation results
+		tester.addSystem(0, "modelvalidator/RC-rerun-test-V.nq.gz",
+				"http://it-innovation.soton.ac.uk/system/5f241c02992e8308e4a9aeb4");
+
+		tester.setUp();
+
+		dataset = TDBFactory.createDataset("jena-tdb");
+
+		logger.info("JenaQuerierDB tests executing...");
+	}
+
+	@Before
+	public void beforeEachTest() {
+
+		logger.info("Running test {}", name.getMethodName());
+		stopwatch = System.currentTimeMillis();
+	}
+
+	@After
+	public void afterEachTest() {
+
+		logger.debug("Test {} took {} milliseconds", name.getMethodName(), System.currentTimeMillis() - stopwatch);
+	}
+
+	/**
+	 * Check that two sets of risk calculation results have the same likelihood and risk level for every threat
+	 * and misbehaviour set, and the same inferred level for every TWAS
+	 *
+	 * @param expected the results to compare against
+	 * @param actual the results being checked
+	 */
+	private void assertSameResults(RiskCalcResultsDB expected, RiskCalcResultsDB actual) {
+		assertEquals(expected.getThreats().keySet(), actual.getThreats().keySet());
+		for (ThreatDB threat : expected.getThreats().values()) {
+			ThreatDB actualThreat = actual.getThreats().get(threat.getUri());
+			assertEquals(threat.getPrior(), actualThreat.getPrior());
+			assertEquals(threat.getRisk(), actualThreat.getRisk());
+			assertEquals(threat.isRootCause(), actualThreat.isRootCause());
+		}
+		assertEquals(expected.getMisbehaviourSets().keySet(), actual.getMisbehaviourSets().keySet());
+		for (MisbehaviourSetDB ms : expected.getMisbehaviourSets().values()) {
+			MisbehaviourSetDB actualMs = actual.getMisbehaviourSets().get(ms.getUri());
+			assertEquals(ms.getPrior(), actualMs.getPrior());
+			assertEquals(ms.getRisk(), actualMs.getRisk());
+		}
+		assertEquals(expected.getTwas().keySet(), actual.getTwas().keySet());
+		for (String twasURI : expected.getTwas().keySet()) {
+			assertEquals(expected.getTwas().get(twasURI).getInferredLevel(), actual.getTwas().get(twasURI).getInferredLevel());
+		}
+	}
+
+	// Tests //////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Check that saving the same risk calculation results twice skips the unchanged entities, and leaves the
+	 * results unchanged.
+	 */
+	@Test
+	public void testDiffSyncSkipsUnchangedEntities() {
+		tester.switchModels(0, 0);
+
+		JenaQuerierDB querierDB = null;
+		RiskCalcResultsDB priorResults = null;
+		RiskCalcResultsDB afterResults = null;
+
+		try {
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			RiskCalculator rc = new RiskCalculator(querierDB);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, true, new Progress(tester.getGraph("system")));
+
+			// A new risk calculator loads the saved results
+			IQuerierDB resultsQuerierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			resultsQuerierDB.initForRiskCalculation();
+			priorResults = new RiskCalculator(resultsQuerierDB).getRiskCalcResults();
+
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			querierDB.setSyncBatchSize(100);
+			rc = new RiskCalculator(querierDB);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, true, new Progress(tester.getGraph("system")));
+
+			resultsQuerierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			resultsQuerierDB.initForRiskCalculation();
+			afterResults = new RiskCalculator(resultsQuerierDB).getRiskCalcResults();
+		} catch (Exception e) {
+			logger.error("Exception thrown by risk level calculator", e);
+			fail("Exception thrown by risk level calculator");
+		}
+
+		assertTrue(querierDB.getSyncSkippedCount() > 0);
+		assertTrue(querierDB.getSyncSkippedCount() > querierDB.getSyncUpdatedCount());
+		assertSameResults(priorResults, afterResults);
+	}
+
+}
@@ -0,0 +1,97 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.modelquerier.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import uk.ac.soton.itinnovation.security.modelquerier.TypeHierarchy;
+
+@RunWith(JUnit4.class)
+public class TypeHierarchyTester extends TestCase {
+
+	/**
+	 * Create a hierarchy in which Host and Data are sub-types of Asset, Server is a sub-type of Host, and
+	 * WebServer is a sub-type of both Server and Host.
+	 */
+	private TypeHierarchy createHierarchy() {
+		Map<String, List<String>> subTypeMap = new HashMap<>();
+		subTypeMap.put("core#Asset", Arrays.asList("domain#Host", "domain#Data"));
+		subTypeMap.put("domain#Host", Arrays.asList("domain#Server", "domain#WebServer"));
+		subTypeMap.put("domain#Server", Collections.singletonList("domain#WebServer"));
+
+		Map<String, List<String>> superTypeMap = new HashMap<>();
+		superTypeMap.put("domain#Host", Collections.singletonList("core#Asset"));
+		superTypeMap.put("domain#Data", Collections.singletonList("core#Asset"));
+		superTypeMap.put("domain#Server", Collections.singletonList("domain#Host"));
+		superTypeMap.put("domain#WebServer", Arrays.asList("domain#Server", "domain#Host"));
+
+		return new TypeHierarchy(subTypeMap, superTypeMap);
+	}
+
+	@Test
+	public void testSubTypes() {
+		TypeHierarchy hierarchy = createHierarchy();
+
+		assertEquals(Arrays.asList("core#Asset", "domain#Host", "domain#Data", "domain#Server", "domain#WebServer"),
+				hierarchy.getSubTypes("core#Asset", true));
+		assertEquals(Arrays.asList("domain#Server", "domain#WebServer"), hierarchy.getSubTypes("domain#Host", false));
+		assertEquals(Collections.singletonList("domain#WebServer"), hierarchy.getSubTypes("domain#WebServer", true));
+		assertTrue(hierarchy.getSubTypes("domain#WebServer", false).isEmpty());
+	}
+
+	@Test
+	public void testSuperTypes() {
+		TypeHierarchy hierarchy = createHierarchy();
+
+		// Types reachable by more than one path are only listed once
+		assertEquals(Arrays.asList("domain#WebServer", "domain#Server", "domain#Host", "core#Asset"),
+				hierarchy.getSuperTypes("domain#WebServer", true));
+		assertEquals(Collections.singletonList("core#Asset"), hierarchy.getSuperTypes("domain#Data", false));
+	}
+
+	@Test
+	public void testIsSubTypeOf() {
+		TypeHierarchy hierarchy = createHierarchy();
+
+		assertTrue(hierarchy.isSubTypeOf("domain#WebServer", "core#Asset"));
+		assertTrue(hierarchy.isSubTypeOf("domain#Server", "domain#Server"));
+		assertFalse(hierarchy.isSubTypeOf("domain#Host", "domain#Server"));
+		assertFalse(hierarchy.isSubTypeOf("domain#Data", "domain#Host"));
+	}
+
+	@Test
+	public void testUnknownType() {
+		TypeHierarchy hierarchy = createHierarchy();
+
+		assertEquals(Collections.singletonList("domain#Unknown"), hierarchy.getSubTypes("domain#Unknown", true));
+		assertTrue(hierarchy.getSuperTypes("domain#Unknown", false).isEmpty());
+		assertTrue(hierarchy.isSubTypeOf("domain#Unknown", "domain#Unknown"));
+		assertFalse(hierarchy.isSubTypeOf("domain#Unknown", "core#Asset"));
+	}
+
+}
@@ -25,8 +25,10 @@
 package uk.ac.soton.itinnovation.security.modelvalidator.test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.tdb.TDBFactory;
@@ -43,6 +45,9 @@ import org.junit.runners.JUnit4;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.bpodgursky.jbool_expressions.Expression;
+import com.bpodgursky.jbool_expressions.Variable;
+
 import junit.framework.TestCase;
 import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
 import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
@@ -50,6 +55,9 @@ import uk.ac.soton.itinnovation.security.modelquerier.SystemModelQuerier;
 import uk.ac.soton.itinnovation.security.modelquerier.SystemModelUpdater;
 import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
 import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.AttackPathAlgorithm;
+import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.AttackPathDataset;
+import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.AttackTree;
+import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.LogicalExpression;
 import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.RecommendationsAlgorithm;
 import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.RecommendationsAlgorithmConfig;
 import uk.ac.soton.itinnovation.security.modelvalidator.attackpath.dto.TreeJsonDoc;
@@ -176,4 +184,62 @@ public class AttackPathTester extends TestCase {
 			return;
 		}
 	}
+
+	@Test
+	public void testAttackTreeUpdate() {
+		tester.switchModels(0, 0);
+
+		IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+		querierDB.init();
+
+		querierDB.initForValidation();
+
+		try {
+			Validator validator = new Validator(querierDB);
+			validator.validate(new Progress(tester.getGraph("system")));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown by validator preparing attack tree test case");
+			return;
+		}
+
+		try {
+			AttackPathDataset apd = new AttackPathDataset(querierDB);
+			apd.calculateRisk(tester.getGraph("system"), RiskCalculationMode.FUTURE);
+
+			List<String> targetUris = new ArrayList<>();
+			targetUris.add("system#MS-LossOfAuthenticity-a40e98cc");
+
+			AttackTree attackTree = new AttackTree(targetUris, true, true, apd);
+			Expression<String> mitigation = attackTree.attackMitigationCSG().getCause();
+
+			// Enable the control sets of the CSG in the first mitigation option
+			LogicalExpression options = attackTree.attackMitigationCSG();
+			options.applyDNF(300);
+			Expression option = options.getListFromOr().isEmpty() ? options.getCause() : options.getListFromOr().get(0);
+			Set<String> csSet = new HashSet<>();
+			for (Variable csg : LogicalExpression.getListFromAnd(option)) {
+				csSet.addAll(apd.getCsgInactiveControlSets(csg.toString()));
+			}
+			Assert.assertFalse(csSet.isEmpty());
+			apd.changeCS(csSet, true);
+			apd.calculateRisk(tester.getGraph("system"), RiskCalculationMode.FUTURE);
+
+			// The updated attack tree should give the same mitigations as a new attack tree
+			attackTree.update(targetUris);
+			AttackTree newAttackTree = new AttackTree(targetUris, true, true, apd);
+			Assert.assertEquals(newAttackTree.attackMitigationCSG().getCause(), attackTree.attackMitigationCSG().getCause());
+
+			// Undo the changes, which should restore the original mitigations
+			apd.changeCS(csSet, false);
+			apd.calculateRisk(tester.getGraph("system"), RiskCalculationMode.FUTURE);
+
+			attackTree.update(targetUris);
+			Assert.assertEquals(mitigation, attackTree.attackMitigationCSG().getCause());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown updating attack tree");
+			return;
+		}
+	}
 }
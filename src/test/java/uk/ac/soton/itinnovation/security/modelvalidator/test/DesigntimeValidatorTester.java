@@ -58,6 +58,7 @@ import uk.ac.soton.itinnovation.security.model.Level;
 import uk.ac.soton.itinnovation.security.model.system.Asset;
 import uk.ac.soton.itinnovation.security.model.system.MisbehaviourSet;
 import uk.ac.soton.itinnovation.security.model.system.Relation;
+import uk.ac.soton.itinnovation.security.model.system.RiskCalculationMode;
 import uk.ac.soton.itinnovation.security.model.system.Threat;
 import uk.ac.soton.itinnovation.security.model.system.TrustworthinessAttributeSet;
 import uk.ac.soton.itinnovation.security.modelquerier.IQuerierDB;
@@ -66,10 +67,16 @@ import uk.ac.soton.itinnovation.security.modelquerier.SystemModelQuerier;
 import uk.ac.soton.itinnovation.security.modelquerier.SystemModelUpdater;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.AssetDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.CardinalityConstraintDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ControlStrategyDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.LevelDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.MisbehaviourSetDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.RiskCalcResultsDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ThreatDB;
 import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
 import uk.ac.soton.itinnovation.security.modelvalidator.DesigntimeValidator;
 import uk.ac.soton.itinnovation.security.modelvalidator.Progress;
+import uk.ac.soton.itinnovation.security.modelvalidator.RiskCalculator;
+import uk.ac.soton.itinnovation.security.modelvalidator.Validator;
 import uk.ac.soton.itinnovation.security.semanticstore.IStoreWrapper;
 
 @RunWith(JUnit4.class)
@@ -108,6 +115,7 @@ public class DesigntimeValidatorTester extends TestCase {
 		tester.addDomain(6, "modelvalidator/TESTING-2b1-1.nq.gz",
 			"http://it-innovation.soton.ac.uk/ontologies/trustworthiness/domain-network-testing",
 			"http://it-innovation.soton.ac.uk/ontologies/trustworthiness/TESTING-2b1-1");
+		tester.addDomain(7, "modelvalidator/ssm-testing-6a3-0-16-auto-expanded.nq", "http://it-innovation.soton.ac.uk/ontologies/trustworthiness/ssm-testing-6a3-expanded");
 
 		//be cautious with sharing URIs: if the validated model contains anything asserted, the unvalidated model
 		//will have it too as it shared the same graph URI. For this reason, we define a new URI for this model to avoid clashes
@@ -128,6 +136,8 @@ public class DesigntimeValidatorTester extends TestCase {
 		tester.addSystem(8, "modelvalidator/ConstructionPatternTest_v2_-_v2b.nq.gz",
 			"http://it-innovation.soton.ac.uk/system/5d9b4af3884bd304c91ef4e0",
 			"http://it-innovation.soton.ac.uk/system/5d9b4af3884bd304c91ef4e2");
+		tester.addSystem(9, "modelvalidator/Test-6a3-1ANB-HighSatC-asserted.nq",
+			"http://it-innovation.soton.ac.uk/system/63b2f38af03b473a0ce2a3b9");
 
 		tester.setUp();
 
@@ -1203,6 +1213,146 @@ public class DesigntimeValidatorTester extends TestCase {
     }
 	}
 
+	/**
+	 * Check that two sets of risk calculation results have the same likelihood and risk level for every threat
+	 * and misbehaviour set, and the same inferred level for every TWAS
+	 *
+	 * @param expected the results to compare against
+	 * @param actual the results being checked
+	 */
+	private void assertSameResults(RiskCalcResultsDB expected, RiskCalcResultsDB actual) {
+		assertEquals(expected.getThreats().keySet(), actual.getThreats().keySet());
+		for (ThreatDB threat : expected.getThreats().values()) {
+			ThreatDB actualThreat = actual.getThreats().get(threat.getUri());
+			assertEquals(threat.getPrior(), actualThreat.getPrior());
+			assertEquals(threat.getRisk(), actualThreat.getRisk());
+			assertEquals(threat.isRootCause(), actualThreat.isRootCause());
+		}
+		assertEquals(expected.getMisbehaviourSets().keySet(), actual.getMisbehaviourSets().keySet());
+		for (MisbehaviourSetDB ms : expected.getMisbehaviourSets().values()) {
+			MisbehaviourSetDB actualMs = actual.getMisbehaviourSets().get(ms.getUri());
+			assertEquals(ms.getPrior(), actualMs.getPrior());
+			assertEquals(ms.getRisk(), actualMs.getRisk());
+		}
+		assertEquals(expected.getTwas().keySet(), actual.getTwas().keySet());
+		for (String twasURI : expected.getTwas().keySet()) {
+			assertEquals(expected.getTwas().get(twasURI).getInferredLevel(), actual.getTwas().get(twasURI).getInferredLevel());
+		}
+	}
+
+	/**
+	 * Check that validation with parallel pattern matching creates the same threats and control strategies
+	 * as a sequential validation, and that they lead to the same risk calculation results.
+	 */
+	@Test
+	public void testParallelValidationMatchesSequential() {
+		tester.switchModels(7, 9);
+
+		Map<String, ThreatDB> sequentialThreats = null;
+		Map<String, ControlStrategyDB> sequentialCSGs = null;
+		Map<String, ThreatDB> parallelThreats = null;
+		Map<String, ControlStrategyDB> parallelCSGs = null;
+		RiskCalcResultsDB sequentialResults = null;
+		RiskCalcResultsDB parallelResults = null;
+
+		try {
+			tester.getStore().clearGraph(tester.getGraph("system-inf"));
+			IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForValidation();
+			Validator validator = new Validator(querierDB);
+			validator.validate(new Progress(tester.getGraph("system")));
+			sequentialThreats = querierDB.getThreats("system-inf");
+			sequentialCSGs = querierDB.getControlStrategies("system-inf");
+
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			RiskCalculator rc = new RiskCalculator(querierDB);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			sequentialResults = rc.getRiskCalcResults();
+
+			tester.getStore().clearGraph(tester.getGraph("system-inf"));
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForValidation();
+			validator = new Validator(querierDB);
+			validator.setMatchingParallelism(4);
+			validator.validate(new Progress(tester.getGraph("system")));
+			parallelThreats = querierDB.getThreats("system-inf");
+			parallelCSGs = querierDB.getControlStrategies("system-inf");
+
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			rc = new RiskCalculator(querierDB);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			parallelResults = rc.getRiskCalcResults();
+		} catch (Exception e) {
+			logger.error("Exception thrown by validator or risk level calculator", e);
+			fail("Exception thrown by validator or risk level calculator");
+		}
+
+		assertFalse(sequentialThreats.isEmpty());
+		assertEquals(sequentialThreats.keySet(), parallelThreats.keySet());
+		for (ThreatDB threat : sequentialThreats.values()) {
+			ThreatDB parallelThreat = parallelThreats.get(threat.getUri());
+			assertEquals(threat.getAppliesTo(), parallelThreat.getAppliesTo());
+			assertEquals(threat.getThreatens(), parallelThreat.getThreatens());
+		}
+		assertEquals(sequentialCSGs.keySet(), parallelCSGs.keySet());
+		assertSameResults(sequentialResults, parallelResults);
+	}
+
+	/**
+	 * Validate the current test model with the Validator, starting from an empty inferred graph.
+	 *
+	 * @param backwardPruning whether pattern matching also prunes candidates no candidate links to
+	 * @return the querier holding the validated model
+	 */
+	private IQuerierDB validate(boolean backwardPruning) throws Exception {
+		tester.getStore().clearGraph(tester.getGraph("system-inf"));
+		IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+		querierDB.initForValidation();
+		Validator validator = new Validator(querierDB);
+		validator.setBackwardPruningEnabled(backwardPruning);
+		validator.validate(new Progress(tester.getGraph("system")));
+		return querierDB;
+	}
+
+	/**
+	 * Check that pattern matching with backward pruning creates the same inferred assets, threats and control
+	 * strategies as the forward-only pruning it replaced, for several of the test models.
+	 */
+	@Test
+	public void testBackwardPruningMatchesForwardOnly() {
+		int[][] testCases = {{4, 5}, {6, 7}, {7, 9}};
+
+		for (int[] testCase : testCases) {
+			tester.switchModels(testCase[0], testCase[1]);
+			logger.info("Validating domain model {} and system model {}", testCase[0], testCase[1]);
+
+			IQuerierDB forwardOnly = null;
+			IQuerierDB backward = null;
+			try {
+				forwardOnly = validate(false);
+				backward = validate(true);
+			} catch (Exception e) {
+				logger.error("Exception thrown by validator", e);
+				fail("Exception thrown by validator");
+			}
+
+			Map<String, ThreatDB> forwardOnlyThreats = forwardOnly.getThreats("system-inf");
+			Map<String, ThreatDB> backwardThreats = backward.getThreats("system-inf");
+			assertFalse(forwardOnlyThreats.isEmpty());
+			assertEquals(forwardOnlyThreats.keySet(), backwardThreats.keySet());
+			for (ThreatDB threat : forwardOnlyThreats.values()) {
+				ThreatDB backwardThreat = backwardThreats.get(threat.getUri());
+				assertEquals(threat.getAppliesTo(), backwardThreat.getAppliesTo());
+				assertEquals(threat.getThreatens(), backwardThreat.getThreatens());
+			}
+			assertEquals(forwardOnly.getAssets("system-inf").keySet(), backward.getAssets("system-inf").keySet());
+			assertEquals(forwardOnly.getControlStrategies("system-inf").keySet(),
+					backward.getControlStrategies("system-inf").keySet());
+		}
+	}
+
 /*
     @Test
 	public void testSubProperties() {
@@ -56,11 +56,13 @@ import uk.ac.soton.itinnovation.security.modelquerier.JenaQuerierDB;
 import uk.ac.soton.itinnovation.security.modelquerier.SystemModelQuerier;
 import uk.ac.soton.itinnovation.security.modelquerier.SystemModelUpdater;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.AssetDB;
+import uk.ac.soton.itinnovation.security.modelquerier.dto.ControlStrategyDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.EntityDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.MisbehaviourDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.MisbehaviourSetDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.RiskCalcResultsDB;
 import uk.ac.soton.itinnovation.security.modelquerier.dto.ThreatDB;
+import uk.ac.soton.itinnovation.security.modelquerier.util.QuerierUtils;
 import uk.ac.soton.itinnovation.security.modelquerier.util.TestHelper;
 import uk.ac.soton.itinnovation.security.modelvalidator.Progress;
 import uk.ac.soton.itinnovation.security.modelvalidator.RiskCalculator;
@@ -246,6 +248,33 @@ public class RiskLevelCalculatorTester extends TestCase {
 		tester.getStore().update(sparql, tester.getGraph("system"), tester.getGraph("system-inf"));
 	}
 
+	/**
+	 * Check that two sets of risk calculation results have the same likelihood and risk level for every threat
+	 * and misbehaviour set, and the same inferred level for every TWAS
+	 *
+	 * @param expected the results to compare against
+	 * @param actual the results being checked
+	 */
+	private void assertSameResults(RiskCalcResultsDB expected, RiskCalcResultsDB actual) {
+		assertEquals(expected.getThreats().keySet(), actual.getThreats().keySet());
+		for (ThreatDB threat : expected.getThreats().values()) {
+			ThreatDB actualThreat = actual.getThreats().get(threat.getUri());
+			assertEquals(threat.getPrior(), actualThreat.getPrior());
+			assertEquals(threat.getRisk(), actualThreat.getRisk());
+			assertEquals(threat.isRootCause(), actualThreat.isRootCause());
+		}
+		assertEquals(expected.getMisbehaviourSets().keySet(), actual.getMisbehaviourSets().keySet());
+		for (MisbehaviourSetDB ms : expected.getMisbehaviourSets().values()) {
+			MisbehaviourSetDB actualMs = actual.getMisbehaviourSets().get(ms.getUri());
+			assertEquals(ms.getPrior(), actualMs.getPrior());
+			assertEquals(ms.getRisk(), actualMs.getRisk());
+		}
+		assertEquals(expected.getTwas().keySet(), actual.getTwas().keySet());
+		for (String twasURI : expected.getTwas().keySet()) {
+			assertEquals(expected.getTwas().get(twasURI).getInferredLevel(), actual.getTwas().get(twasURI).getInferredLevel());
+		}
+	}
+
 	// Tests //////////////////////////////////////////////////////////////////////////////////////////////////////////
 
 	// Doesn't assert anything, so therefore crap.
@@ -670,4 +699,173 @@ public class RiskLevelCalculatorTester extends TestCase {
 		}
 	}
 
+	/**
+	 * Test that the worklist likelihood propagation gives the same results as a full sweep, without doing more
+	 * threat calculations. Results are not saved, so both runs start from the same triple store content.
+	 */
+	@Test
+	public void testWorklistPropagationMatchesSweep() {
+		tester.switchModels(4, 6);
+
+		RiskCalcResultsDB sweepResults = null;
+		RiskCalcResultsDB worklistResults = null;
+		int sweepCalculations = 0;
+		int worklistCalculations = 0;
+
+		try {
+			IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			RiskCalculator rc = new RiskCalculator(querierDB);
+			rc.setPropagationMode(RiskCalculator.PropagationMode.SWEEP);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			sweepResults = rc.getRiskCalcResults();
+			for (RiskCalculator.IterationStats stats : rc.getIterationStats()) {
+				sweepCalculations += stats.getThreatsCalculated();
+			}
+
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			rc = new RiskCalculator(querierDB);
+			rc.setPropagationMode(RiskCalculator.PropagationMode.WORKLIST);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			worklistResults = rc.getRiskCalcResults();
+			for (RiskCalculator.IterationStats stats : rc.getIterationStats()) {
+				worklistCalculations += stats.getThreatsCalculated();
+			}
+		} catch (Exception e) {
+			logger.error("Exception thrown by risk level calculator", e);
+			fail("Exception thrown by risk level calculator");
+		}
+
+		assertTrue(worklistCalculations <= sweepCalculations);
+		assertSameResults(sweepResults, worklistResults);
+	}
+
+	/**
+	 * Check that an incremental recalculation after changing a control set gives the same results as a full
+	 * calculation after the same change.
+	 */
+	@Test
+	public void testIncrementalRecalculationMatchesFull() {
+		tester.switchModels(4, 6);
+
+		RiskCalcResultsDB incrementalResults = null;
+		RiskCalcResultsDB fullResults = null;
+		Set<String> csTriplet = null;
+		boolean proposed = false;
+
+		try {
+			IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			RiskCalculator rc = new RiskCalculator(querierDB);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+
+			// Find a mandatory control set of some control strategy, and switch its status
+			List<ControlStrategyDB> csgs = new ArrayList<>(querierDB.getControlStrategies("system-inf").values());
+			csgs.sort(Comparator.comparing(ControlStrategyDB::getUri));
+			String csURI = null;
+			for (ControlStrategyDB csg : csgs) {
+				if (!csg.getMandatoryCS().isEmpty()) {
+					csURI = csg.getMandatoryCS().get(0);
+					break;
+				}
+			}
+			assertNotNull(csURI);
+
+			proposed = !rc.getRiskCalcResults().getCs().get(csURI).isProposed();
+			csTriplet = QuerierUtils.getControlTriplet(csURI);
+			for (String uri : csTriplet) {
+				querierDB.updateProposedStatus(proposed, uri, "system");
+			}
+
+			rc.recalculateRiskLevels(csTriplet, RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			incrementalResults = rc.getRiskCalcResults();
+
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			rc = new RiskCalculator(querierDB);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			fullResults = rc.getRiskCalcResults();
+		} catch (Exception e) {
+			logger.error("Exception thrown by risk level calculator", e);
+			fail("Exception thrown by risk level calculator");
+		} finally {
+			// Restore the original status, as the system graph is shared with the other tests
+			if (csTriplet != null) {
+				IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+				for (String uri : csTriplet) {
+					querierDB.updateProposedStatus(!proposed, uri, "system");
+				}
+			}
+		}
+
+		assertSameResults(fullResults, incrementalResults);
+	}
+
+	/**
+	 * Check that a parallel risk calculation gives the same results as a sequential one.
+	 */
+	@Test
+	public void testParallelCalculationMatchesSequential() {
+		tester.switchModels(4, 6);
+
+		RiskCalcResultsDB sequentialResults = null;
+		RiskCalcResultsDB parallelResults = null;
+
+		try {
+			IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			RiskCalculator rc = new RiskCalculator(querierDB);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			sequentialResults = rc.getRiskCalcResults();
+
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			rc = new RiskCalculator(querierDB);
+			rc.setParallelism(4);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			parallelResults = rc.getRiskCalcResults();
+		} catch (Exception e) {
+			logger.error("Exception thrown by risk level calculator", e);
+			fail("Exception thrown by risk level calculator");
+		}
+
+		assertEquals(sequentialResults.getModel().getRisk(), parallelResults.getModel().getRisk());
+		assertSameResults(sequentialResults, parallelResults);
+	}
+
+	/**
+	 * Check that likelihood propagation on the compiled threat graph gives the same results as the map-based
+	 * propagation.
+	 */
+	@Test
+	public void testCompiledGraphMatchesMaps() {
+		tester.switchModels(4, 6);
+
+		RiskCalcResultsDB mapResults = null;
+		RiskCalcResultsDB graphResults = null;
+
+		try {
+			IQuerierDB querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			RiskCalculator rc = new RiskCalculator(querierDB);
+			rc.setCompiledGraphEnabled(false);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			mapResults = rc.getRiskCalcResults();
+
+			querierDB = new JenaQuerierDB(dataset, tester.getModel(), true);
+			querierDB.initForRiskCalculation();
+			rc = new RiskCalculator(querierDB);
+			rc.setCompiledGraphEnabled(true);
+			rc.calculateRiskLevels(RiskCalculationMode.FUTURE, false, new Progress(tester.getGraph("system")));
+			graphResults = rc.getRiskCalcResults();
+		} catch (Exception e) {
+			logger.error("Exception thrown by risk level calculator", e);
+			fail("Exception thrown by risk level calculator");
+		}
+
+		assertEquals(mapResults.getModel().getRisk(), graphResults.getModel().getRisk());
+		assertSameResults(mapResults, graphResults);
+	}
+
 }
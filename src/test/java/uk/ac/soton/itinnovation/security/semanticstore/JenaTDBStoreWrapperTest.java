@@ -26,15 +26,28 @@
 
 package uk.ac.soton.itinnovation.security.semanticstore;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import junit.framework.TestCase;
+import org.apache.jena.query.QuerySolutionMap;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.riot.RDFDataMgr;
 import org.assertj.core.api.Assertions;
 import org.junit.After;
@@ -179,6 +192,140 @@ public class JenaTDBStoreWrapperTest extends TestCase {
 		assertEquals(334, result.size());
 	}
 
+	@Test
+	public void testStreamingQuerySelect() {
+		store.update("INSERT DATA {\n" +
+			"	GRAPH <" + GRAPH_A + "> {" +
+			"		<http://example.com/a> <http://example.com/size> 3 ." +
+			"		<http://example.com/b> <http://example.com/size> 5 ." +
+			"		<http://example.com/b> <http://example.com/flag> true ." +
+			"		<http://example.com/c> <http://example.com/label> \"c\" ." +
+			"	}\n" +
+			"}");
+
+		String sparql = "SELECT * WHERE { ?s ?p ?o }";
+		List<Map<String, String>> expected = store.translateSelectResult(store.querySelect(sparql, GRAPH_A));
+
+		List<Map<String, String>> streamed = new ArrayList<>();
+		Map<String, Integer> sizes = new HashMap<>();
+		store.querySelect(sparql, row -> {
+			Map<String, String> map = new HashMap<>();
+			for (String var : new String[] {"s", "p", "o"}) {
+				map.put(var, row.getString(var));
+			}
+			streamed.add(map);
+			if (row.getURI("p").equals("http://example.com/size")) {
+				sizes.put(row.getURI("s"), row.getInt("o", -1));
+			} else if (row.getURI("p").equals("http://example.com/flag")) {
+				assertTrue(row.getBoolean("o", false));
+			}
+			assertEquals(-1, row.getInt("x", -1));
+		}, GRAPH_A);
+
+		Assertions.assertThat(streamed).containsExactlyInAnyOrderElementsOf(expected);
+		assertEquals(Integer.valueOf(3), sizes.get("http://example.com/a"));
+		assertEquals(Integer.valueOf(5), sizes.get("http://example.com/b"));
+
+		// Exceptions thrown by the handler are passed on, and the transaction is closed
+		exception.expect(IllegalStateException.class);
+		try {
+			store.querySelect(sparql, row -> {
+				throw new IllegalStateException("stop");
+			}, GRAPH_A);
+		} finally {
+			assertEquals(4, store.translateSelectResult(store.querySelect(sparql, GRAPH_A)).size());
+		}
+	}
+
+	@Test
+	public void testParameterisedQuerySelect() {
+		store.update("INSERT DATA {\n" +
+			"	GRAPH <" + GRAPH_A + "> {" +
+			"		<http://example.com/a> <http://example.com/size> 3 ." +
+			"		<http://example.com/b> <http://example.com/size> 5 ." +
+			"	}\n" +
+			"}");
+
+		String sparql = "SELECT * WHERE { ?s <http://example.com/size> ?o }";
+		long misses = store.getQueryCacheMisses();
+		long hits = store.getQueryCacheHits();
+
+		for (String subject : new String[] {"http://example.com/a", "http://example.com/b"}) {
+			QuerySolutionMap bindings = new QuerySolutionMap();
+			bindings.add("s", ResourceFactory.createResource(subject));
+			List<String> rows = new ArrayList<>();
+			store.querySelect(sparql, bindings, row -> rows.add(row.getURI("s") + " " + row.getInt("o", -1)), GRAPH_A);
+			assertEquals(1, rows.size());
+			assertEquals(subject + (subject.endsWith("a") ? " 3" : " 5"), rows.get(0));
+		}
+
+		// The query is only parsed once, whatever the bindings
+		assertEquals(misses + 1, store.getQueryCacheMisses());
+		assertEquals(hits + 1, store.getQueryCacheHits());
+
+		// but is parsed again for a different set of graphs
+		store.querySelect(sparql, null, row -> {}, GRAPH_A, GRAPH_B);
+		assertEquals(misses + 2, store.getQueryCacheMisses());
+	}
+
+	/**
+	 * Run many queries at once, some on given graphs and some on the union of all graphs, and check that each
+	 * one sees the right graphs.
+	 */
+	@Test
+	public void testConcurrentQuerySelectGraphScoping() throws Exception {
+		store.update("INSERT DATA {\n" +
+			"	GRAPH <" + GRAPH_A + "> {" +
+			"		<http://example.com/a> <http://example.com/b> <http://example.com/c> ." +
+			"		<http://example.com/d> <http://example.com/e> <http://example.com/f> ." +
+			"	}\n" +
+			"	GRAPH <" + GRAPH_B + "> {" +
+			"		<http://example.com/g> <http://example.com/h> <http://example.com/i> ." +
+			"		<http://example.com/j> <http://example.com/k> <http://example.com/l> ." +
+			"		<http://example.com/m> <http://example.com/n> <http://example.com/o> ." +
+			"	}\n" +
+			"}");
+
+		String sparql = "SELECT * WHERE { ?s ?p ?o }";
+		int queries = 400;
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Integer>> results = new ArrayList<>();
+			for (int i = 0; i < queries; i++) {
+				final int n = i;
+				results.add(executor.submit(() -> {
+					start.await();
+					AtomicInteger count = new AtomicInteger();
+					switch (n % 4) {
+						case 0:
+							store.querySelect(sparql, row -> count.incrementAndGet());
+							break;
+						case 1:
+							store.querySelect(sparql, row -> count.incrementAndGet(), GRAPH_A);
+							break;
+						case 2:
+							store.querySelect(sparql, row -> count.incrementAndGet(), GRAPH_B);
+							break;
+						default:
+							count.set(store.translateSelectResult(store.querySelect(sparql)).size());
+							break;
+					}
+					return count.get();
+				}));
+			}
+			start.countDown();
+
+			int[] expected = {5, 2, 3, 5};
+			for (int i = 0; i < queries; i++) {
+				assertEquals("Wrong number of results for query " + i, expected[i % 4],
+					results.get(i).get(60, TimeUnit.SECONDS).intValue());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	@Test
 	public void testCount() {
 		store.update("INSERT DATA {\n" +
@@ -929,6 +1076,45 @@ public class JenaTDBStoreWrapperTest extends TestCase {
 		assertRenameGraphsPrefix();
 	}
 
+	@Test
+	public void testLoadInvalidQuads() {
+		String quads =
+			"<http://e.c/a> <http://e.c/p> <http://e.c/o> <http://e.c/g> .\n" +
+			"<http://e.c/a> <http://e.c/p> <http://e.c/o> <http://e.c/h> .\n" +
+			"<http://e.c/a> <http://e.c/p> not a quad\n";
+
+		Assertions.assertThatThrownBy(() ->
+			store.load(new ByteArrayInputStream(quads.getBytes(StandardCharsets.UTF_8)), "http://e.c/a", "http://e.c/b")
+		).isInstanceOf(RuntimeException.class);
+
+		//nothing is left from the failed load
+		assertEquals(0, store.getCount("http://e.c/g"));
+		assertEquals(0, store.getCount("http://e.c/h"));
+	}
+
+	@Test
+	public void testLoadInvalidQuadsAfterCommittedBatches() {
+		//one graph already has data, which must survive the failed load
+		store.update("INSERT DATA { GRAPH <http://e.c/g> { <http://e.c/x> <http://e.c/p> <http://e.c/o> } }");
+
+		//more quads than are added in one transaction, so some batches are committed before the load fails
+		StringBuilder quads = new StringBuilder();
+		quads.append("<http://e.c/x> <http://e.c/p> <http://e.c/o> <http://e.c/g> .\n");
+		for (int i = 0; i < 120000; i++) {
+			quads.append("<http://e.c/s").append(i).append("> <http://e.c/p> <http://e.c/o> <http://e.c/")
+				.append(i % 2 == 0 ? "g" : "h").append("> .\n");
+		}
+		quads.append("<http://e.c/a> <http://e.c/p> not a quad\n");
+
+		Assertions.assertThatThrownBy(() ->
+			store.load(new ByteArrayInputStream(quads.toString().getBytes(StandardCharsets.UTF_8)))
+		).isInstanceOf(RuntimeException.class);
+
+		//the graphs are as they were before the load
+		assertEquals(1, store.getCount("http://e.c/g"));
+		assertEquals(0, store.getCount("http://e.c/h"));
+	}
+
 	private void assertRenameGraphs() {
 		assertEquals(8, store.getCount("http://e.c/b"));
 		assertEquals(8, store.getCount("http://e.c/Xb"));
@@ -1047,6 +1233,19 @@ public class JenaTDBStoreWrapperTest extends TestCase {
 
 		result = store.export(Format.NQ, null);
 		assertEquals(1215, result.split("\n").length);
+
+		//quads are streamed, and may be changed or left out as they are written
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		store.exportQuads(out, null, "http://example.com/bm5/", "http://example.com/bm25/");
+		String[] quads = out.toString().split("\n");
+		assertEquals(store.export(Format.NQ, null, "http://example.com/bm5/", "http://example.com/bm25/").split("\n").length,
+			quads.length);
+
+		out.reset();
+		store.exportQuads(out, quad -> quad.getGraph().getURI().equals("http://example.com/bm5/") ? null : quad,
+			"http://example.com/bm5/", "http://example.com/bm25/");
+		assertEquals(quads.length - store.getCount("http://example.com/bm5/"), out.toString().split("\n").length);
+		assertFalse(out.toString().contains("<http://example.com/bm5/>"));
 		
 		
 		// Test exception cases.
@@ -27,10 +27,21 @@ package uk.ac.soton.itinnovation.security.systemmodeller.model;
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.google.common.io.CharStreams;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -78,6 +89,9 @@ public class ModelTest {
 	@Autowired
 	private IModelRepository modelRepository;
 
+	@Autowired
+	private ModelSnapshotCache modelSnapshots;
+
 	//Allows automatic logging of test names
 	@Rule
 	public TestName name = new TestName();
@@ -1047,6 +1061,143 @@ public class ModelTest {
 		assertTrue(testModel.hasModelData());
 	}
 
+	@Test
+	public void testLoadModelDataInParallel() throws InterruptedException {
+		Model sequentialModel = createTestModel(0);
+		sequentialModel.loadModelData(modelHelper, new LoadingProgress(null));
+
+		Model parallelModel = createTestModel(0);
+		LoadingProgress loadingProgress = new LoadingProgress(null);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			parallelModel.loadModelData(modelHelper, loadingProgress, executor);
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+
+		//Loading the stages in parallel gives the same model data
+		assertEquals(sequentialModel.getAssets().size(), parallelModel.getAssets().size());
+		assertEquals(sequentialModel.getRelations().size(), parallelModel.getRelations().size());
+		assertEquals(sequentialModel.getControlSets().size(), parallelModel.getControlSets().size());
+		assertEquals(sequentialModel.getMisbehaviourSets().keySet(), parallelModel.getMisbehaviourSets().keySet());
+		assertEquals(sequentialModel.getControlStrategies().keySet(), parallelModel.getControlStrategies().keySet());
+		assertEquals(sequentialModel.getThreats().size(), parallelModel.getThreats().size());
+		assertEquals(sequentialModel.getComplianceThreats().size(), parallelModel.getComplianceThreats().size());
+		assertEquals(sequentialModel.getComplianceSets().size(), parallelModel.getComplianceSets().size());
+		assertEquals(sequentialModel.getAssetGroups().size(), parallelModel.getAssetGroups().size());
+
+		//The time taken by each stage is recorded
+		assertEquals(12, loadingProgress.getStageTimes().size());
+		assertThat(loadingProgress.getStageTimes()).containsKeys("assets", "threats", "compliance sets");
+	}
+
+	@Test
+	public void testModelInfoIsCachedUntilModelIsSaved() {
+		Model testModel = createTestModel(0);
+		testModel.saveModelACL();
+		String id = testModel.getId();
+		long revision = modelSnapshots.getRevision(id);
+
+		//The first lookup loads the ModelInfo from Jena, and the second uses the cached copy
+		Model first = modelFactory.getModel(modelRepository.findOneById(id));
+		long hits = modelSnapshots.getHits();
+		Model second = modelFactory.getModel(modelRepository.findOneById(id));
+		assertEquals(hits + 1, modelSnapshots.getHits());
+		assertEquals(first.getName(), second.getName());
+		assertEquals(first.getDomainVersion(), second.getDomainVersion());
+
+		//Unsaved changes to a model do not affect the cached copy
+		second.setName("New name");
+		assertEquals(first.getName(), modelFactory.getModel(modelRepository.findOneById(id)).getName());
+
+		//Saving the model increases the revision, so the ModelInfo is loaded again
+		second.save();
+		assertTrue(modelSnapshots.getRevision(id) > revision);
+		assertEquals("New name", modelFactory.getModel(modelRepository.findOneById(id)).getName());
+	}
+
+	@Test
+	public void testCheckoutBySameEditorKeepsRevision() {
+		Model testModel = createTestModel(0);
+		testModel.saveModelACL();
+		String id = testModel.getId();
+
+		//Checking out the model for a new editor increases the revision
+		long revision = modelSnapshots.getRevision(id);
+		modelFactory.getModel(modelRepository.findOneById(id)).checkout("editor");
+		assertTrue(modelSnapshots.getRevision(id) > revision);
+		assertEquals("editor", modelRepository.findOneById(id).getEditorId());
+
+		//Checking it out again for the same editor does not
+		revision = modelSnapshots.getRevision(id);
+		modelFactory.getModel(modelRepository.findOneById(id)).checkout("editor");
+		assertEquals(revision, modelSnapshots.getRevision(id));
+	}
+
+	private static void putModelPayload(ModelSnapshotCache cache, String modelId, long revision, String payload) throws IOException {
+		Path file = cache.createPayloadFile(modelId);
+		Files.write(file, payload.getBytes(StandardCharsets.UTF_8));
+		cache.putModelPayload(modelId, revision, file);
+	}
+
+	private static String getModelPayload(ModelSnapshotCache cache, String modelId, long revision) throws IOException {
+		try (Reader reader = cache.openModelPayload(modelId, revision)) {
+			return reader != null ? CharStreams.toString(reader) : null;
+		}
+	}
+
+	@Test
+	public void testModelSnapshotCacheIsBounded() throws IOException {
+		//Room for two models, and 1 MB of payloads
+		Path dir = Files.createTempDirectory("model-cache-test");
+		ModelSnapshotCache cache = new ModelSnapshotCache(2, 1, dir.toString());
+		String payload = new String(new char[400 * 1024]).replace('\0', 'x');
+
+		putModelPayload(cache, "a", 0, payload);
+		putModelPayload(cache, "b", 0, payload);
+		assertEquals(payload, getModelPayload(cache, "a", 0));
+
+		//Payloads are kept in files, not in memory
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(2, files.count());
+		}
+
+		//Adding a third model discards the least recently used ("b")
+		putModelPayload(cache, "c", 0, payload);
+		assertEquals(2, cache.size());
+		assertNull(getModelPayload(cache, "b", 0));
+		assertEquals(payload, getModelPayload(cache, "c", 0));
+
+		//A payload that is open can still be read after it is discarded
+		Reader reader = cache.openModelPayload("c", 0);
+		cache.bump("c");
+		assertFalse(cache.hasModelPayload("c", 0));
+		assertEquals(payload, CharStreams.toString(reader));
+		reader.close();
+
+		//Payloads loaded before a model was changed are not returned or stored
+		putModelPayload(cache, "c", 1, payload);
+		cache.bump("a");
+		assertNull(getModelPayload(cache, "a", 0));
+		putModelPayload(cache, "a", 0, payload);
+		assertNull(getModelPayload(cache, "a", 1));
+
+		//Payloads are discarded when they exceed the total size
+		putModelPayload(cache, "a", 1, payload + payload);
+		assertTrue(cache.getPayloadBytes() <= 1024 * 1024);
+		assertNull(getModelPayload(cache, "c", 1));
+
+		//The files of discarded payloads are deleted
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(1, files.count());
+		}
+		cache.clear();
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(0, files.count());
+		}
+	}
+
 	@Test
 	public void testLoadModelDataForModelWithNoAssets() {
 		Model testModel = createTestModel(5);
@@ -27,9 +27,18 @@ package uk.ac.soton.itinnovation.security.systemmodeller.rest;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+
 import org.apache.http.HttpStatus;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -53,6 +62,7 @@ import uk.ac.soton.itinnovation.security.systemmodeller.auth.KeycloakAdminClient
 import uk.ac.soton.itinnovation.security.systemmodeller.model.Model;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.ModelFactory;
 import uk.ac.soton.itinnovation.security.systemmodeller.model.WebKeyRole;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelQuerierPool;
 import uk.ac.soton.itinnovation.security.systemmodeller.util.SecureUrlHelper;
 
 @RunWith(SpringRunner.class)
@@ -71,6 +81,9 @@ public class EntityControllerTest extends CommonTestSetup {
 	@Autowired
 	private KeycloakAdminClient keycloakAdminClient;
 
+	@Autowired
+	private ModelQuerierPool querierPool;
+
 	//Auth variables
 	@Value("${server.servlet.contextPath}")
 	private String contextPath;
@@ -166,6 +179,33 @@ public class EntityControllerTest extends CommonTestSetup {
 			assertThat().body("size()", is(59));
 	}
 
+	/**
+	 * Testing repeated requests for assets from model 10
+	 * Asserts the same assets are returned each time
+	 * Asserts later requests reuse the querier initialised by the first
+	 */
+	@Test
+	public void testGetAssetsReusesQuerier() {
+		switchToSystemModel(10);
+
+		long misses = querierPool.getMisses();
+		long hits = querierPool.getHits();
+
+		for (int i = 0; i < 3; i++) {
+			given().
+				filter(userSession).
+			when().
+				get("/models/testModel/entity/system/assets").
+			then().
+				assertThat().statusCode(HttpStatus.SC_OK).
+				and().
+				assertThat().body("size()", is(12));
+		}
+
+		assertEquals(misses + 1, querierPool.getMisses());
+		assertEquals(hits + 2, querierPool.getHits());
+	}
+
 	/**
 	 * Test getting assets from an invalid model ID
 	 * Assert NOT FOUND 404 status
@@ -275,6 +315,77 @@ public class EntityControllerTest extends CommonTestSetup {
 			assertThat().body("size()", is(550));
 	}
 
+	/**
+	 * Testing getting threats from model 11 a page at a time, highest risk first
+	 * Asserts OK 200 status for each page
+	 * Asserts all 550 threats are returned once, with only the requested fields
+	 */
+	@Test
+	public void testGetThreatsPaged() {
+		switchToSystemModel(11);
+
+		Set<String> uris = new HashSet<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			RequestSpecification request = given().
+				filter(userSession).
+				queryParam("limit", 200).
+				queryParam("sort", "risk").
+				queryParam("fields", "risk");
+			if (cursor != null) {
+				request.queryParam("cursor", cursor);
+			}
+
+			Response response = request.
+			when().
+				get("/models/testModel/entity/system/threats");
+
+			response.then().
+				assertThat().statusCode(HttpStatus.SC_OK).
+				and().
+				assertThat().header(EntityCollectionQuery.TOTAL_COUNT_HEADER, "550");
+
+			Map<String, Map<String, Object>> page = response.jsonPath().getMap("$");
+			for (Map.Entry<String, Map<String, Object>> threat : page.entrySet()) {
+				assertTrue(uris.add(threat.getKey()));
+				assertEquals(threat.getKey(), threat.getValue().get("uri"));
+				assertTrue(threat.getValue().keySet().size() <= 2);
+			}
+
+			cursor = response.getHeader(EntityCollectionQuery.NEXT_CURSOR_HEADER);
+			pages++;
+		} while (cursor != null);
+
+		assertEquals(550, uris.size());
+		assertEquals(3, pages);
+	}
+
+	/**
+	 * Testing getting threats with an invalid limit and sort order
+	 * Asserts BAD REQUEST 400 status
+	 */
+	@Test
+	public void testGetThreatsInvalidQuery() {
+		switchToSystemModel(11);
+
+		given().
+			filter(userSession).
+			queryParam("limit", 0).
+		when().
+			get("/models/testModel/entity/system/threats").
+		then().
+			assertThat().statusCode(HttpStatus.SC_BAD_REQUEST);
+
+		given().
+			filter(userSession).
+			queryParam("sort", "label").
+		when().
+			get("/models/testModel/entity/system/threats").
+		then().
+			assertThat().statusCode(HttpStatus.SC_BAD_REQUEST);
+	}
+
 	/**
 	 * Test getting a known threat from a model
 	 * Threat URI queried is "system#H.L.IoH.3-MP-IoH_3be54ba5_1c22bad9_a51becab_7ce5d07_3be54ba5_2b9585d2"
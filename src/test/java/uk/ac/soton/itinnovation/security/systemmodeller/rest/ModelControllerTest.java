@@ -34,6 +34,7 @@ import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -41,6 +42,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -54,8 +56,10 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 
 import org.apache.http.HttpStatus;
@@ -79,6 +83,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 import io.restassured.builder.MultiPartSpecBuilder;
 import io.restassured.http.ContentType;
 import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
 import io.restassured.specification.MultiPartSpecification;
 import uk.ac.soton.itinnovation.security.model.system.RiskCalculationMode;
 import uk.ac.soton.itinnovation.security.modelquerier.SystemModelQuerier;
@@ -333,6 +338,55 @@ public class ModelControllerTest extends CommonTestSetup{
 		}
 	}
 
+	/**
+	 * Load the test model, and poll the loading progress until the loaded model is returned.
+	 */
+	private Response getLoadedModel() {
+		String loadingId =
+			given().
+				filter(userSession).
+			when().
+				get("/models/testModel").
+			then().
+				assertThat().statusCode(HttpStatus.SC_OK).
+			extract().
+				body().path("loadingId");
+
+		int count = 0;
+
+		while (true) {
+			Response response =
+				given().
+					filter(userSession).
+				when().
+					get("/models/testModel/" + loadingId + "/loadingprogress").
+				then().
+					assertThat().statusCode(HttpStatus.SC_OK).
+				extract().
+					response();
+
+			String status = response.path("status");
+			if ("completed".equals(status)) {
+				return response;
+			}
+			else if ("failed".equals(status)) {
+				logger.error("Loading failed");
+				fail();
+			}
+			try {
+				Thread.sleep(100);
+				count++;
+				if (count > 600) {
+					logger.error("Loading timed out");
+					fail();
+				}
+			} catch (InterruptedException e) {
+				logger.error("Loading interuputed: {}", e);
+				fail();
+			}
+		}
+	}
+
 	private void assertTaskCompleted() {
 		int count = 0;
 
@@ -695,6 +749,25 @@ public class ModelControllerTest extends CommonTestSetup{
 		assertLoadingCompleted(loadingId);
 	}
 
+	/**
+	 * Test that the loaded model is streamed in the loading progress response
+	 * Asserts the response is chunked, i.e. written as it is generated rather than buffered to find its length
+	 * Asserts loading the unchanged model again returns the same model, copied from the cache
+	 */
+	@Test
+	public void testGetModelStreamsLoadedModel() {
+		switchToSystemModel(1);
+
+		Response loaded = getLoadedModel();
+		assertEquals("chunked", loaded.getHeader("Transfer-Encoding"));
+		assertNull(loaded.getHeader("Content-Length"));
+		assertEquals(testModel.getId(), loaded.path("model.id"));
+
+		Response cached = getLoadedModel();
+		assertEquals("chunked", cached.getHeader("Transfer-Encoding"));
+		assertEquals(loaded.jsonPath().getMap("model"), cached.jsonPath().getMap("model"));
+	}
+
 	/**
 	 * Test of getting model that does not exist
 	 * Asserts NOT FOUND 404 status
@@ -1065,6 +1138,32 @@ public class ModelControllerTest extends CommonTestSetup{
 			assertThat().body(not(isEmptyOrNullString()));
 	}
 
+	/**
+	 * Test exporting a valid model's assertions from the repository
+	 * Asserts the export is gzipped and marks the model as invalid
+	 * Asserts the model itself is still valid
+	 */
+	@Test
+	public void testExportAssertedOfValidModel() throws IOException {
+		switchToSystemModel(1);
+		testModel.setValid(true);
+		testModel.save();
+
+		byte[] export = given().
+			filter(userSession).
+		when().
+			get("/models/testModel/exportAsserted").
+		then().
+			assertThat().statusCode(HttpStatus.SC_OK).
+			extract().asByteArray();
+
+		String quads = new String(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(export))), "UTF-8");
+		assertTrue(quads.contains("<" + testModel.getUri() + "> <http://it-innovation.soton.ac.uk/ontologies/trustworthiness/core#isValid> \"false\""));
+		assertFalse(quads.contains("core#isValid> \"true\""));
+
+		assertTrue(modelFactory.getModel(testHelper.getModel(), testHelper.getStore()).isValid());
+	}
+
 	/**
 	 * Tests exporting an unknown model
 	 * Asserts NOT FOUND 404 status
@@ -1845,4 +1944,51 @@ public class ModelControllerTest extends CommonTestSetup{
 			and().
 			assertThat().body("riskCalculationMode", isEmptyOrNullString());
 	}
+
+	/**
+	 * Test conditional requests for model info
+	 * Asserts NOT MODIFIED 304 status when the client has the current ETag
+	 * Asserts OK 200 status and a new ETag once the model has been changed
+	 */
+	@Test
+	public void testGetModelInfoNotModified() {
+		switchToSystemModel(1);
+
+		String etag = given().
+			filter(userSession).
+		when().
+			get("models/testModel/info").
+		then().
+			assertThat().statusCode(HttpStatus.SC_OK).
+			extract().header("ETag");
+		assertNotNull(etag);
+
+		given().
+			filter(userSession).
+			header("If-None-Match", etag).
+		when().
+			get("models/testModel/info").
+		then().
+			assertThat().statusCode(HttpStatus.SC_NOT_MODIFIED);
+
+		//Updating the model increases its revision, so the old ETag no longer matches
+		given().
+			filter(userSession).
+			contentType(ContentType.JSON).
+			body(testModelDTO).
+		when().
+			put("/models/testModel").
+		then().
+			assertThat().statusCode(HttpStatus.SC_OK);
+
+		String newEtag = given().
+			filter(userSession).
+			header("If-None-Match", etag).
+		when().
+			get("models/testModel/info").
+		then().
+			assertThat().statusCode(HttpStatus.SC_OK).
+			extract().header("ETag");
+		assertNotEquals(etag, newEtag);
+	}
 }
@@ -0,0 +1,255 @@
+/////////////////////////////////////////////////////////////////////////
+//
+// © University of Southampton IT Innovation Centre, 2023
+//
+// Copyright in this software belongs to University of Southampton
+// IT Innovation Centre of Gamma House, Enterprise Road,
+// Chilworth Science Park, Southampton, SO16 7NS, UK.
+//
+// This software may not be used, sold, licensed, transferred, copied
+// or reproduced in whole or in part in any manner or form or in or
+// on any media by any person other than in accordance with the terms
+// of the Licence Agreement supplied with the software, or otherwise
+// without the prior written consent of the copyright owners.
+//
+// This software is distributed WITHOUT ANY WARRANTY, without even the
+// implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR
+// PURPOSE, except where stated in the Licence Agreement supplied with
+// the software.
+//
+/////////////////////////////////////////////////////////////////////////
+package uk.ac.soton.itinnovation.security.systemmodeller.semantics;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import uk.ac.soton.itinnovation.security.systemmodeller.rest.exceptions.ServiceUnavailableException;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler.JobMetrics;
+import uk.ac.soton.itinnovation.security.systemmodeller.semantics.ModelJobScheduler.JobType;
+
+public class ModelJobSchedulerTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(ModelJobSchedulerTest.class);
+
+	private static final int QUEUE_DEPTH = 2;
+
+	private ModelJobScheduler jobScheduler;
+
+	private CountDownLatch started;
+	private CountDownLatch release;
+
+	@Before
+	public void setUp() {
+		// One thread for each type of job, so a single job holds up the rest of the queue
+		jobScheduler = new ModelJobScheduler();
+		ReflectionTestUtils.setField(jobScheduler, "loadingThreads", 1);
+		ReflectionTestUtils.setField(jobScheduler, "validationThreads", 1);
+		ReflectionTestUtils.setField(jobScheduler, "riskCalculationThreads", 1);
+		ReflectionTestUtils.setField(jobScheduler, "recommendationsThreads", 1);
+		ReflectionTestUtils.setField(jobScheduler, "queueDepth", QUEUE_DEPTH);
+		ReflectionTestUtils.setField(jobScheduler, "loadingStageThreads", 1);
+		jobScheduler.init();
+
+		started = new CountDownLatch(1);
+		release = new CountDownLatch(1);
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		jobScheduler.shutdown();
+	}
+
+	/**
+	 * Submit a job that holds the only thread for the type of job until released.
+	 */
+	private Future<String> block(JobType type, String modelId) throws InterruptedException {
+		Future<String> blocker = jobScheduler.submit(type, modelId, () -> {
+			started.countDown();
+			release.await();
+			return "blocker";
+		});
+		assertTrue("Blocking job did not start", started.await(10, TimeUnit.SECONDS));
+		return blocker;
+	}
+
+	/**
+	 * Test that a job for a model with a job of the same type waiting in the queue gets the future of the
+	 * waiting job, and that only the waiting job runs.
+	 */
+	@Test
+	public void testCoalescesWaitingJob() throws Exception {
+		logger.info("Testing coalescing of a waiting job");
+
+		block(JobType.LOADING, "blocker");
+
+		AtomicInteger runs = new AtomicInteger();
+		Future<String> first = jobScheduler.submit(JobType.LOADING, "model", () -> {
+			runs.incrementAndGet();
+			return "first";
+		});
+		Future<String> second = jobScheduler.submit(JobType.LOADING, "model", () -> {
+			runs.incrementAndGet();
+			return "second";
+		});
+
+		assertSame(first, second);
+		assertEquals(1, jobScheduler.getQueueLength(JobType.LOADING));
+
+		release.countDown();
+		assertEquals("first", second.get(10, TimeUnit.SECONDS));
+		assertEquals(1, runs.get());
+
+		JobMetrics metrics = jobScheduler.getMetrics(JobType.LOADING);
+		assertEquals(3, metrics.getSubmitted());
+		assertEquals(1, metrics.getCoalesced());
+		assertEquals(0, metrics.getRejected());
+	}
+
+	/**
+	 * Test that jobs for different models, or of different types, are not coalesced.
+	 */
+	@Test
+	public void testDoesNotCoalesceOtherModelsOrTypes() throws Exception {
+		logger.info("Testing jobs for other models and types are not coalesced");
+
+		block(JobType.VALIDATION, "blocker");
+
+		Future<String> validation = jobScheduler.submit(JobType.VALIDATION, "model", () -> "validation");
+		Future<String> otherModel = jobScheduler.submit(JobType.VALIDATION, "other", () -> "other");
+		Future<String> riskCalculation = jobScheduler.submit(JobType.RISK_CALCULATION, "model", () -> "risk");
+
+		assertNotSame(validation, otherModel);
+		assertNotSame(validation, riskCalculation);
+		assertEquals("risk", riskCalculation.get(10, TimeUnit.SECONDS));
+
+		release.countDown();
+		assertEquals("validation", validation.get(10, TimeUnit.SECONDS));
+		assertEquals("other", otherModel.get(10, TimeUnit.SECONDS));
+		assertEquals(0, jobScheduler.getMetrics(JobType.VALIDATION).getCoalesced());
+	}
+
+	/**
+	 * Test that a job is not coalesced with a job for the same model that has already started, as the
+	 * model may have changed since the running job read it.
+	 */
+	@Test
+	public void testDoesNotCoalesceStartedJob() throws Exception {
+		logger.info("Testing a started job is not coalesced");
+
+		Future<String> running = block(JobType.RISK_CALCULATION, "model");
+		Future<String> next = jobScheduler.submit(JobType.RISK_CALCULATION, "model", () -> "next");
+
+		assertNotSame(running, next);
+
+		release.countDown();
+		assertEquals("blocker", running.get(10, TimeUnit.SECONDS));
+		assertEquals("next", next.get(10, TimeUnit.SECONDS));
+		assertEquals(0, jobScheduler.getMetrics(JobType.RISK_CALCULATION).getCoalesced());
+	}
+
+	/**
+	 * Test that recommendations jobs are never coalesced, as each has its own job ID and results.
+	 */
+	@Test
+	public void testDoesNotCoalesceRecommendations() throws Exception {
+		logger.info("Testing recommendations jobs are not coalesced");
+
+		block(JobType.RECOMMENDATIONS, "blocker");
+
+		Future<String> first = jobScheduler.submit(JobType.RECOMMENDATIONS, "model", () -> "first");
+		Future<String> second = jobScheduler.submit(JobType.RECOMMENDATIONS, "model", () -> "second");
+
+		assertNotSame(first, second);
+		assertEquals(2, jobScheduler.getQueueLength(JobType.RECOMMENDATIONS));
+
+		release.countDown();
+		assertEquals("first", first.get(10, TimeUnit.SECONDS));
+		assertEquals("second", second.get(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Test that a job is rejected when the queue for its type is full, that a job for a model already
+	 * waiting in the full queue is still coalesced, and that a rejected job can be submitted again later.
+	 */
+	@Test
+	public void testRejectsWhenQueueFull() throws Exception {
+		logger.info("Testing rejection when the queue is full");
+
+		block(JobType.LOADING, "blocker");
+
+		Future<String> first = jobScheduler.submit(JobType.LOADING, "model1", () -> "model1");
+		jobScheduler.submit(JobType.LOADING, "model2", () -> "model2");
+		assertEquals(QUEUE_DEPTH, jobScheduler.getQueueLength(JobType.LOADING));
+
+		try {
+			jobScheduler.submit(JobType.LOADING, "model3", () -> "model3");
+			fail("Expected the job to be rejected");
+		} catch (ServiceUnavailableException e) {
+			logger.info("Job rejected as expected: {}", e.getMessage());
+		}
+
+		// Coalescing does not need a place in the queue
+		assertSame(first, jobScheduler.submit(JobType.LOADING, "model1", () -> "again"));
+
+		// Other types of job have their own queues
+		assertEquals("validation", jobScheduler.submit(JobType.VALIDATION, "model3", () -> "validation")
+				.get(10, TimeUnit.SECONDS));
+
+		release.countDown();
+		assertEquals("model1", first.get(10, TimeUnit.SECONDS));
+
+		// The rejected job must not be left waiting to be coalesced with
+		Future<String> retry = jobScheduler.submit(JobType.LOADING, "model3", () -> "retry");
+		assertEquals("retry", retry.get(10, TimeUnit.SECONDS));
+
+		JobMetrics metrics = jobScheduler.getMetrics(JobType.LOADING);
+		assertEquals(6, metrics.getSubmitted());
+		assertEquals(1, metrics.getCoalesced());
+		assertEquals(1, metrics.getRejected());
+	}
+
+	/**
+	 * Test that completed and failed jobs are counted, and that a failed job reports its exception.
+	 */
+	@Test
+	public void testCountsCompletedAndFailedJobs() throws Exception {
+		logger.info("Testing completed and failed jobs are counted");
+
+		Future<String> completed = jobScheduler.submit(JobType.VALIDATION, "model1", () -> "done");
+		Future<String> failed = jobScheduler.submit(JobType.VALIDATION, "model2", () -> {
+			throw new IllegalStateException("failed");
+		});
+
+		assertEquals("done", completed.get(10, TimeUnit.SECONDS));
+		try {
+			failed.get(10, TimeUnit.SECONDS);
+			fail("Expected the job to fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		// The metrics are recorded after the job's future is done
+		JobMetrics metrics = jobScheduler.getMetrics(JobType.VALIDATION);
+		long deadline = System.currentTimeMillis() + 10000;
+		while (metrics.getCompleted() + metrics.getFailed() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(25);
+		}
+
+		assertEquals(2, metrics.getSubmitted());
+		assertEquals(1, metrics.getCompleted());
+		assertEquals(1, metrics.getFailed());
+	}
+}
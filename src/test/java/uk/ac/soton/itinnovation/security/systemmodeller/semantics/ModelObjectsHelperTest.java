@@ -34,6 +34,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -62,7 +63,8 @@ import uk.ac.soton.itinnovation.security.systemmodeller.rest.dto.LoadingProgress
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = SystemModellerApplication.class)
-@TestPropertySource(properties = {"model.management.uri=${model.management.uri.test}", "reset.on.start=false"})
+@TestPropertySource(properties = {"model.management.uri=${model.management.uri.test}", "reset.on.start=false",
+		"jobs.loading.threads=1"})
 public class ModelObjectsHelperTest {
 
 	private static final Logger logger = LoggerFactory.getLogger(ModelObjectsHelperTest.class);
@@ -444,6 +446,62 @@ public class ModelObjectsHelperTest {
 		
 	}
 
+	/**
+	 * Test of submitLoadingExecution for a loading request that is coalesced with the waiting loading job
+	 * of an earlier request. Asserts both loading IDs report the progress updated by the job that runs,
+	 * and that both are unregistered once they have seen it complete.
+	 */
+	@Test
+	public void testSubmitLoadingExecutionCoalesced() throws Exception {
+		logger.info("Testing submitLoadingExecution for coalesced requests");
+		Model testModel = createTestModel(0);
+
+		//Occupy the only loading thread, so the loading jobs for the test model wait in the queue
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		String blockerId = UUID.randomUUID().toString();
+		modelHelper.createLoadingProgressOfModel(testModel, blockerId).updateProgress(0.0, "Loading model");
+		Future<?> blocker = modelHelper.submitLoadingExecution(blockerId, "blocker", () -> {
+			started.countDown();
+			release.await();
+			return testModel;
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		String firstId = UUID.randomUUID().toString();
+		LoadingProgress firstProgress = modelHelper.createLoadingProgressOfModel(testModel, firstId);
+		firstProgress.updateProgress(0.0, "Loading model");
+		Future<?> first = modelHelper.submitLoadingExecution(firstId, testModel.getId(), () -> {
+			firstProgress.updateProgress(0.5, "Loading assets");
+			return testModel;
+		});
+
+		String secondId = UUID.randomUUID().toString();
+		LoadingProgress secondProgress = modelHelper.createLoadingProgressOfModel(testModel, secondId);
+		secondProgress.updateProgress(0.0, "Loading model");
+		Future<?> second = modelHelper.submitLoadingExecution(secondId, testModel.getId(), () -> {
+			secondProgress.updateProgress(0.5, "Loading assets");
+			return testModel;
+		});
+
+		//The second request must report the progress of the first request's job, which is the one that runs
+		assertSame(first, second);
+		assertSame(firstProgress, modelHelper.getLoadingProgressOfModel(secondId));
+
+		release.countDown();
+		blocker.get(10, TimeUnit.SECONDS);
+		first.get(10, TimeUnit.SECONDS);
+
+		assertEquals("completed", modelHelper.getLoadingProgressOfModel(secondId).getStatus());
+		assertEquals("completed", modelHelper.getLoadingProgressOfModel(firstId).getStatus());
+		assertSame(testModel, firstProgress.getModel());
+		assertEquals("loading", secondProgress.getStatus());
+
+		assertNull(modelHelper.getLoadingProgressOfModel(firstId));
+		assertNull(modelHelper.getLoadingProgressOfModel(secondId));
+		assertNotNull(modelHelper.getLoadingProgressOfModel(blockerId));
+	}
+
 	/**
 	 * Test of getLoadingProgressOfModel called with an invalid loading ID
 	 * Asserts null is returned
@@ -24,11 +24,16 @@
 /////////////////////////////////////////////////////////////////////////
 package uk.ac.soton.itinnovation.security.systemmodeller.util;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -263,9 +268,16 @@ public class ReportGeneratorTest extends CommonTestSetup {
             "}";
         logger.debug("Expected JSON:\n{}", expectedJson);
 
-        JsonObject result = reportGenerator.generateAssetsJson(assets);
+        JsonObject report = writeReport(reportGenerator, assets, none(), none(), none(), none(), none(), none());
 
-        assertThat(result, is(JsonParser.parseString(expectedJson)));
+        // The expected JSON does not split the asserted and inferred assets
+        JsonObject result = new JsonObject();
+        report.getAsJsonObject("assertedAssets").entrySet().forEach(e -> result.add(e.getKey(), e.getValue()));
+        report.getAsJsonObject("inferredAssets").entrySet().forEach(e -> result.add(e.getKey(), e.getValue()));
+
+        assertThat(report.getAsJsonObject("assertedAssets").keySet(), is(Collections.singleton(asset2.getUri())));
+
+        assertThat(result, is(parseWithoutNulls(expectedJson)));
     }
 
     @Test
@@ -309,9 +321,10 @@ public class ReportGeneratorTest extends CommonTestSetup {
             "}";
         logger.debug("Expected JSON:\n{}", expectedJson);
 
-        JsonObject result = reportGenerator.generateRelationsJson(relations);
+        JsonObject result = writeReport(reportGenerator, none(), relations, none(), none(), none(), none(), none())
+            .getAsJsonObject("relations");
 
-        assertThat(result, is(JsonParser.parseString(expectedJson)));
+        assertThat(result, is(parseWithoutNulls(expectedJson)));
     }
 
     @Test
@@ -434,9 +447,10 @@ public class ReportGeneratorTest extends CommonTestSetup {
             "}";
         logger.debug("Expected JSON:\n{}", expectedJson);
 
-        JsonObject result = reportGenerator.generateThreatsJson(threats);
+        JsonObject result = writeReport(reportGenerator, none(), none(), threats, none(), none(), none(), none())
+            .getAsJsonObject("threats");
 
-        assertThat(result, is(JsonParser.parseString(expectedJson)));
+        assertThat(result, is(parseWithoutNulls(expectedJson)));
     }
 
     @Test
@@ -503,9 +517,10 @@ public class ReportGeneratorTest extends CommonTestSetup {
             "}";
         logger.debug("Expected JSON:\n{}", expectedJson);
 
-        JsonObject result = reportGenerator.generateMisbehaviourSetsJson(misbehaviourSets);
+        JsonObject result = writeReport(reportGenerator, none(), none(), none(), misbehaviourSets, none(), none(), none())
+            .getAsJsonObject("misbehaviours");
 
-        assertThat(result, is(JsonParser.parseString(expectedJson)));
+        assertThat(result, is(parseWithoutNulls(expectedJson)));
     }
 
     @Test
@@ -573,9 +588,10 @@ public class ReportGeneratorTest extends CommonTestSetup {
             "}";
         logger.debug("Expected JSON:\n{}", expectedJson);
 
-        JsonObject result = reportGenerator.generateTrustworthinessAttributeSetsJson(trustworthinessAttributeSets);
+        JsonObject result = writeReport(reportGenerator, none(), none(), none(), none(), trustworthinessAttributeSets, none(), none())
+            .getAsJsonObject("trustworthinessAttributes");
 
-        assertThat(result, is(JsonParser.parseString(expectedJson)));
+        assertThat(result, is(parseWithoutNulls(expectedJson)));
     }
 
     @Test
@@ -627,9 +643,10 @@ public class ReportGeneratorTest extends CommonTestSetup {
             "}";
         logger.debug("Expected JSON:\n{}", expectedJson);
 
-        JsonObject result = reportGenerator.generateControlSetsJson(controlSets);
+        JsonObject result = writeReport(reportGenerator, none(), none(), none(), none(), none(), controlSets, none())
+            .getAsJsonObject("controls");
 
-        assertThat(result, is(JsonParser.parseString(expectedJson)));
+        assertThat(result, is(parseWithoutNulls(expectedJson)));
     }
 
     @Test
@@ -728,11 +745,12 @@ public class ReportGeneratorTest extends CommonTestSetup {
             "}";
         logger.debug("Expected JSON:\n{}", expectedJson);
 
-        JsonObject result = reportGenerator.generateControlStrategiesJson(controlStrategies);
+        JsonObject result = writeReport(reportGenerator, none(), none(), none(), none(), none(), none(), controlStrategies)
+            .getAsJsonObject("controlStrategies");
 
         logger.debug("Actual result:\n{}", result.toString());
 
-        assertThat(result, is(JsonParser.parseString(expectedJson)));
+        assertThat(result, is(parseWithoutNulls(expectedJson)));
     }
 
     @Test
@@ -972,4 +990,33 @@ public class ReportGeneratorTest extends CommonTestSetup {
     private Model createTestModel() {
         return modelFactory.getModel(testHelper.getModel(), testHelper.getStore());
     }
+
+    /**
+     * Write a report containing only the given entities, and parse it.
+     */
+    private static JsonObject writeReport(ReportGenerator reportGenerator, Collection<Asset> assets,
+            Collection<Relation> relations, Collection<Threat> threats, Collection<MisbehaviourSet> misbehaviourSets,
+            Collection<TrustworthinessAttributeSet> twas, Collection<ControlSet> controlSets,
+            Collection<ControlStrategy> controlStrategies) {
+        StringWriter out = new StringWriter();
+        try {
+            reportGenerator.write("model", "domain", assets, relations, threats, misbehaviourSets, twas, controlSets,
+                    controlStrategies, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.debug("Report JSON:\n{}", out);
+        return JsonParser.parseString(out.toString()).getAsJsonObject();
+    }
+
+    /**
+     * Parse the expected JSON, dropping the null fields that are not written to the report.
+     */
+    private static JsonElement parseWithoutNulls(String json) {
+        return JsonParser.parseString(new Gson().toJson(JsonParser.parseString(json)));
+    }
+
+    private static <T> Collection<T> none() {
+        return Collections.emptyList();
+    }
 }